@@ -0,0 +1,58 @@
+package github.couryrr.backend.playbook.data.client;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads calls round-robin over several channels to the same target. Each channel
+ * holds its own HTTP/2 connections, so busy clients are not capped by one
+ * connection's concurrent stream limit.
+ */
+final class ChannelPool extends Channel implements AutoCloseable {
+
+    private final List<ManagedChannel> channels;
+    private final AtomicInteger next = new AtomicInteger();
+
+    ChannelPool(List<ManagedChannel> channels) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("A channel pool needs at least one channel");
+        }
+        this.channels = List.copyOf(channels);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions options) {
+        return channels.get(Math.floorMod(next.getAndIncrement(), channels.size())).newCall(method, options);
+    }
+
+    @Override
+    public String authority() {
+        return channels.getFirst().authority();
+    }
+
+    int size() {
+        return channels.size();
+    }
+
+    /**
+     * Lets in-flight calls finish for up to five seconds, then cancels the rest.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        channels.forEach(ManagedChannel::shutdown);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (ManagedChannel channel : channels) {
+            long remaining = deadline - System.nanoTime();
+            if (!channel.awaitTermination(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+                channel.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package github.couryrr.backend.playbook.data.client;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records client-side latency per method and status in {@code data.client.calls}, from
+ * the start of a call until its last attempt closes, and counts the attempts behind
+ * each call in {@code data.client.attempts}. Attempts tagged {@code additional} are
+ * retries and hedges.
+ */
+final class ClientMetricsInterceptor implements ClientInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    ClientMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        String methodName = method.getFullMethodName();
+        CallOptions tracedOptions = callOptions.withStreamTracerFactory(new ClientStreamTracer.Factory() {
+            @Override
+            public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                meterRegistry.counter("data.client.attempts",
+                    "method", methodName,
+                    "attempt", info.getPreviousAttempts() == 0 ? "first" : "additional"
+                ).increment();
+                return new ClientStreamTracer() {};
+            }
+        });
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, tracedOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        sample.stop(Timer.builder("data.client.calls")
+                            .tag("method", methodName)
+                            .tag("status", status.getCode().name())
+                            .publishPercentileHistogram()
+                            .register(meterRegistry));
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+}
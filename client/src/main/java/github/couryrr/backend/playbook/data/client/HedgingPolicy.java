@@ -0,0 +1,22 @@
+package github.couryrr.backend.playbook.data.client;
+
+import java.time.Duration;
+
+/**
+ * Sends up to {@code maxAttempts} copies of an idempotent read, each {@code delay}
+ * after the previous one, and keeps whichever answers first. The copies go to the
+ * same data node, since only it holds the user, so a hedge helps with a stalled
+ * stream or a pause on that node but not with a node that is slow throughout.
+ */
+public record HedgingPolicy(int maxAttempts, Duration delay) {
+
+    public HedgingPolicy {
+        if (maxAttempts < 2 || maxAttempts > 5) {
+            throw new IllegalArgumentException("maxAttempts must be between 2 and 5");
+        }
+    }
+
+    public static HedgingPolicy defaults() {
+        return new HedgingPolicy(2, Duration.ofMillis(20));
+    }
+}
@@ -0,0 +1,20 @@
+package github.couryrr.backend.playbook.data.client;
+
+/**
+ * Caps retries and hedges across all calls on a channel. Each failure spends one
+ * token and each success earns back {@code tokenRatio}; while fewer than half of
+ * {@code maxTokens} remain, calls get no further attempts. This keeps a struggling
+ * data node from being hit with extra load.
+ */
+public record RetryBudget(int maxTokens, double tokenRatio) {
+
+    public RetryBudget {
+        if (maxTokens < 1 || maxTokens > 1000 || tokenRatio <= 0) {
+            throw new IllegalArgumentException("maxTokens must be between 1 and 1000 and tokenRatio positive");
+        }
+    }
+
+    public static RetryBudget defaults() {
+        return new RetryBudget(10, 0.1);
+    }
+}
@@ -0,0 +1,20 @@
+package github.couryrr.backend.playbook.data.client;
+
+import java.time.Duration;
+
+/**
+ * Retries a call that failed with {@code UNAVAILABLE}, backing off exponentially with
+ * jitter between attempts.
+ */
+public record RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff, double backoffMultiplier) {
+
+    public RetryPolicy {
+        if (maxAttempts < 2 || maxAttempts > 5) {
+            throw new IllegalArgumentException("maxAttempts must be between 2 and 5");
+        }
+    }
+
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(3, Duration.ofMillis(50), Duration.ofSeconds(1), 2.0);
+    }
+}
@@ -0,0 +1,119 @@
+package github.couryrr.backend.playbook.data.client;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import io.grpc.MethodDescriptor;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the gRPC service config for {@code UserService}, in the map form accepted by
+ * {@code ManagedChannelBuilder.defaultServiceConfig}. Numbers must be doubles and
+ * durations strings there.
+ *
+ * <p>Load balancing is {@code pick_first}: every data node keeps its own store and
+ * idempotency table, so a hedge or retry must reach the node that saw the first
+ * attempt. Hedging then only covers a slow stream, not a slow node.
+ */
+final class ServiceConfigs {
+
+    /**
+     * Reads with no side effects: safe to send more than once at the same time.
+     */
+    static final List<MethodDescriptor<?, ?>> HEDGED_READS = List.of(
+        UserServiceGrpc.getGetUserMethod(),
+        UserServiceGrpc.getGetUsersMethod(),
+        UserServiceGrpc.getCheckUsernameMethod(),
+        UserServiceGrpc.getValidateEmailMethod(),
+        UserServiceGrpc.getGetPublicKeysMethod()
+    );
+
+    /**
+     * Writes, made safe to retry by the idempotency key the client attaches to them.
+     */
+    static final List<MethodDescriptor<?, ?>> WRITES = List.of(
+        UserServiceGrpc.getCreateUserMethod(),
+        UserServiceGrpc.getUpdateUserMethod(),
+        UserServiceGrpc.getDeleteUserMethod(),
+        UserServiceGrpc.getRegisterPublicKeyMethod()
+    );
+
+    /**
+     * Calls that are not worth duplicating but can be retried when they never ran.
+     */
+    static final List<MethodDescriptor<?, ?>> RETRIED_CALLS = List.of(
+        UserServiceGrpc.getAuthenticateUserMethod(),
+        UserServiceGrpc.getSearchUsersMethod()
+    );
+
+    /**
+     * Calls that write the whole store, taking as long as it is large: no timeout
+     * beyond the caller's own deadline, and no retry that would start another one.
+     */
+    static final List<MethodDescriptor<?, ?>> BULK_CALLS = List.of(
+        UserServiceGrpc.getExportUsersMethod()
+    );
+
+    private ServiceConfigs() {
+    }
+
+    static Map<String, Object> userService(HedgingPolicy hedging, RetryPolicy retries, RetryBudget budget,
+            Duration readTimeout, Duration writeTimeout) {
+        return Map.of(
+            "loadBalancingConfig", List.of(Map.of("pick_first", Map.of())),
+            "retryThrottling", Map.of(
+                "maxTokens", (double) budget.maxTokens(),
+                "tokenRatio", budget.tokenRatio()
+            ),
+            "methodConfig", List.of(
+                Map.of(
+                    "name", names(HEDGED_READS),
+                    "timeout", duration(readTimeout),
+                    "hedgingPolicy", Map.of(
+                        "maxAttempts", (double) hedging.maxAttempts(),
+                        "hedgingDelay", duration(hedging.delay()),
+                        "nonFatalStatusCodes", List.of("UNAVAILABLE")
+                    )
+                ),
+                Map.of(
+                    "name", names(WRITES),
+                    "timeout", duration(writeTimeout),
+                    "retryPolicy", retryPolicy(retries)
+                ),
+                Map.of(
+                    "name", names(RETRIED_CALLS),
+                    "timeout", duration(writeTimeout),
+                    "retryPolicy", retryPolicy(retries)
+                ),
+                Map.of(
+                    "name", names(BULK_CALLS)
+                )
+            )
+        );
+    }
+
+    private static Map<String, Object> retryPolicy(RetryPolicy retries) {
+        return Map.of(
+            "maxAttempts", (double) retries.maxAttempts(),
+            "initialBackoff", duration(retries.initialBackoff()),
+            "maxBackoff", duration(retries.maxBackoff()),
+            "backoffMultiplier", retries.backoffMultiplier(),
+            "retryableStatusCodes", List.of("UNAVAILABLE")
+        );
+    }
+
+    private static List<Map<String, Object>> names(List<MethodDescriptor<?, ?>> methods) {
+        return methods.stream()
+            .<Map<String, Object>>map(method -> Map.of(
+                "service", method.getServiceName(),
+                "method", method.getBareMethodName()
+            ))
+            .toList();
+    }
+
+    private static String duration(Duration duration) {
+        return BigDecimal.valueOf(duration.toNanos(), 9).stripTrailingZeros().toPlainString() + "s";
+    }
+}
@@ -0,0 +1,267 @@
+package github.couryrr.backend.playbook.data.client;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.AuthenticateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.AuthenticateUserResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.CheckUsernameRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.CheckUsernameResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.CreateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.CreateUserResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.DeleteUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.DeleteUserResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.ExportUsersRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.ExportUsersResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetPublicKeysRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetPublicKeysResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetUserResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetUsersRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetUsersResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.RegisterPublicKeyRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.RegisterPublicKeyResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.SearchUsersRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.SearchUsersResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.UpdateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.UpdateUserResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import github.couryrr.backend.playbook.data.gen.user.v1.ValidateEmailRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.ValidateEmailResponse;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous client for the data service's {@code UserService}.
+ *
+ * <p>Calls are spread over a pool of channels to one data node. Idempotent reads
+ * ({@code getUser}, {@code checkUsername}, {@code validateEmail}) are hedged; writes
+ * and the remaining calls are retried on {@code UNAVAILABLE}. Every write carries a fresh
+ * {@code idempotency-key}, shared by all of its attempts, so the server replays the
+ * first attempt's response instead of applying it twice. Retries and hedges share one
+ * {@link RetryBudget} per channel, and every call gets the read or write timeout as
+ * its deadline.
+ *
+ * <pre>{@code
+ * try (UserClient client = UserClient.forTarget("dns:///data-0:9090").poolSize(4).build()) {
+ *     client.getUser(GetUserRequest.newBuilder().setId(id).build())
+ *         .thenAccept(response -> ...);
+ * }
+ * }</pre>
+ */
+public final class UserClient implements AutoCloseable {
+
+    static final Metadata.Key<String> IDEMPOTENCY_KEY =
+        Metadata.Key.of("idempotency-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final ChannelPool pool;
+    private final Channel channel;
+
+    private UserClient(ChannelPool pool, MeterRegistry meterRegistry) {
+        this.pool = pool;
+        this.channel = ClientInterceptors.intercept(pool, new ClientMetricsInterceptor(meterRegistry));
+    }
+
+    /**
+     * Plaintext channels to a gRPC target such as {@code dns:///data-0:9090}. The
+     * target must name a single data node: nodes do not share users or idempotency
+     * keys, so every attempt of a call has to land on the same one.
+     */
+    public static Builder forTarget(String target) {
+        return new Builder(() -> ManagedChannelBuilder.forTarget(target).usePlaintext());
+    }
+
+    /**
+     * Channels made by {@code channelBuilder}, for TLS or in-process transports. The
+     * client adds its own service config, so the builder should not set one.
+     */
+    public static Builder forChannelBuilder(Supplier<ManagedChannelBuilder<?>> channelBuilder) {
+        return new Builder(channelBuilder);
+    }
+
+    public CompletableFuture<GetUserResponse> getUser(GetUserRequest request) {
+        return call(UserServiceGrpc.getGetUserMethod(), request, channel);
+    }
+
+    public CompletableFuture<GetUsersResponse> getUsers(GetUsersRequest request) {
+        return call(UserServiceGrpc.getGetUsersMethod(), request, channel);
+    }
+
+    public CompletableFuture<CheckUsernameResponse> checkUsername(CheckUsernameRequest request) {
+        return call(UserServiceGrpc.getCheckUsernameMethod(), request, channel);
+    }
+
+    public CompletableFuture<ValidateEmailResponse> validateEmail(ValidateEmailRequest request) {
+        return call(UserServiceGrpc.getValidateEmailMethod(), request, channel);
+    }
+
+    public CompletableFuture<GetPublicKeysResponse> getPublicKeys(GetPublicKeysRequest request) {
+        return call(UserServiceGrpc.getGetPublicKeysMethod(), request, channel);
+    }
+
+    public CompletableFuture<AuthenticateUserResponse> authenticateUser(AuthenticateUserRequest request) {
+        return call(UserServiceGrpc.getAuthenticateUserMethod(), request, channel);
+    }
+
+    public CompletableFuture<SearchUsersResponse> searchUsers(SearchUsersRequest request) {
+        return call(UserServiceGrpc.getSearchUsersMethod(), request, channel);
+    }
+
+    /**
+     * Operator-only: the data node refuses it unless the channel carries the
+     * {@code data.admin.token} bearer token.
+     */
+    public CompletableFuture<ExportUsersResponse> exportUsers(ExportUsersRequest request) {
+        return call(UserServiceGrpc.getExportUsersMethod(), request, channel);
+    }
+
+    public CompletableFuture<CreateUserResponse> createUser(CreateUserRequest request) {
+        return write(UserServiceGrpc.getCreateUserMethod(), request);
+    }
+
+    public CompletableFuture<UpdateUserResponse> updateUser(UpdateUserRequest request) {
+        return write(UserServiceGrpc.getUpdateUserMethod(), request);
+    }
+
+    public CompletableFuture<DeleteUserResponse> deleteUser(DeleteUserRequest request) {
+        return write(UserServiceGrpc.getDeleteUserMethod(), request);
+    }
+
+    public CompletableFuture<RegisterPublicKeyResponse> registerPublicKey(RegisterPublicKeyRequest request) {
+        return write(UserServiceGrpc.getRegisterPublicKeyMethod(), request);
+    }
+
+    /**
+     * The pooled, instrumented channel, for stubs covering calls this class does not
+     * wrap, such as the {@code ImportUsers} stream.
+     */
+    public Channel channel() {
+        return channel;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        pool.close();
+    }
+
+    private <ReqT, RespT> CompletableFuture<RespT> write(MethodDescriptor<ReqT, RespT> method, ReqT request) {
+        Metadata headers = new Metadata();
+        headers.put(IDEMPOTENCY_KEY, UUID.randomUUID().toString());
+        return call(method, request, ClientInterceptors.intercept(channel,
+            MetadataUtils.newAttachHeadersInterceptor(headers)));
+    }
+
+    private static <ReqT, RespT> CompletableFuture<RespT> call(
+            MethodDescriptor<ReqT, RespT> method, ReqT request, Channel channel) {
+        ClientCall<ReqT, RespT> call = channel.newCall(method, CallOptions.DEFAULT);
+        CompletableFuture<RespT> response = new CompletableFuture<>();
+        ClientCalls.asyncUnaryCall(call, request, new StreamObserver<>() {
+            @Override
+            public void onNext(RespT value) {
+                response.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                response.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+        response.whenComplete((value, error) -> {
+            if (response.isCancelled()) {
+                call.cancel("Cancelled by the caller", null);
+            }
+        });
+        return response;
+    }
+
+    public static final class Builder {
+
+        private final Supplier<ManagedChannelBuilder<?>> channelBuilder;
+        private int poolSize = 2;
+        private HedgingPolicy hedging = HedgingPolicy.defaults();
+        private RetryPolicy retries = RetryPolicy.defaults();
+        private RetryBudget retryBudget = RetryBudget.defaults();
+        private Duration readTimeout = Duration.ofMillis(500);
+        private Duration writeTimeout = Duration.ofSeconds(2);
+        private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+        private Builder(Supplier<ManagedChannelBuilder<?>> channelBuilder) {
+            this.channelBuilder = channelBuilder;
+        }
+
+        public Builder poolSize(int poolSize) {
+            if (poolSize < 1) {
+                throw new IllegalArgumentException("poolSize must be at least 1");
+            }
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        public Builder hedging(HedgingPolicy hedging) {
+            this.hedging = hedging;
+            return this;
+        }
+
+        public Builder retries(RetryPolicy retries) {
+            this.retries = retries;
+            return this;
+        }
+
+        public Builder retryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        public Builder readTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        public Builder writeTimeout(Duration writeTimeout) {
+            this.writeTimeout = writeTimeout;
+            return this;
+        }
+
+        /**
+         * Where client metrics go; Micrometer's global registry by default.
+         */
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        public UserClient build() {
+            Map<String, ?> serviceConfig = ServiceConfigs.userService(
+                hedging, retries, retryBudget, readTimeout, writeTimeout);
+            List<ManagedChannel> channels = new ArrayList<>(poolSize);
+            for (int i = 0; i < poolSize; i++) {
+                channels.add(channelBuilder.get()
+                    .defaultServiceConfig(serviceConfig)
+                    .disableServiceConfigLookUp()
+                    .enableRetry()
+                    .build());
+            }
+            return new UserClient(new ChannelPool(channels), meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package github.couryrr.backend.playbook.data.client;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import io.grpc.MethodDescriptor;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ServiceConfigsTest {
+
+    private final Map<String, Object> serviceConfig = ServiceConfigs.userService(
+        new HedgingPolicy(2, Duration.ofMillis(20)),
+        new RetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(50), 2.0),
+        new RetryBudget(10, 0.1),
+        Duration.ofSeconds(2),
+        Duration.ofSeconds(5));
+
+    @Test
+    void shouldNeitherTimeOutNorRetryExports() {
+        Map<String, Object> export = methodConfig(UserServiceGrpc.getExportUsersMethod());
+
+        assertThat(export).containsOnlyKeys("name");
+    }
+
+    @Test
+    void shouldRetryAuthenticationWithinTheWriteTimeout() {
+        Map<String, Object> authenticate = methodConfig(UserServiceGrpc.getAuthenticateUserMethod());
+
+        assertThat(authenticate).containsEntry("timeout", "5s").containsKey("retryPolicy");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> methodConfig(MethodDescriptor<?, ?> method) {
+        Map<String, Object> name = Map.of("service", method.getServiceName(), "method", method.getBareMethodName());
+        List<Map<String, Object>> configs = ((List<?>) serviceConfig.get("methodConfig")).stream()
+            .map(config -> (Map<String, Object>) config)
+            .filter(config -> ((List<?>) config.get("name")).contains(name))
+            .toList();
+        assertThat(configs).hasSize(1);
+        return configs.get(0);
+    }
+}
@@ -0,0 +1,138 @@
+package github.couryrr.backend.playbook.data.client;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.CreateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.CreateUserResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetUserResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class UserClientTest {
+
+    private final AtomicInteger getUserAttempts = new AtomicInteger();
+    private final AtomicInteger createUserAttempts = new AtomicInteger();
+    private final List<String> idempotencyKeys = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private Server server;
+    private UserClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        String name = InProcessServerBuilder.generateName();
+        ServerInterceptor captureKeys = new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+                    ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+                String key = headers.get(UserClient.IDEMPOTENCY_KEY);
+                if (key != null) {
+                    idempotencyKeys.add(key);
+                }
+                return next.startCall(call, headers);
+            }
+        };
+        server = InProcessServerBuilder.forName(name)
+            .addService(ServerInterceptors.intercept(new FlakyUserService(), captureKeys))
+            .build()
+            .start();
+        client = UserClient.forChannelBuilder(() -> InProcessChannelBuilder.forName(name))
+            .poolSize(2)
+            .hedging(new HedgingPolicy(2, Duration.ofMillis(20)))
+            .retries(new RetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(50), 2.0))
+            .readTimeout(Duration.ofSeconds(2))
+            .meterRegistry(meterRegistry)
+            .build();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        client.close();
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void shouldHedgeReadPastStalledAttempt() throws Exception {
+        GetUserResponse response = client.getUser(GetUserRequest.newBuilder().setId("id-1").build())
+            .get(1, TimeUnit.SECONDS);
+
+        assertThat(response.getUser().getId()).isEqualTo("id-1");
+        assertThat(getUserAttempts).hasValue(2);
+        assertThat(meterRegistry.counter("data.client.attempts",
+            "method", UserServiceGrpc.getGetUserMethod().getFullMethodName(), "attempt", "additional").count())
+            .isEqualTo(1);
+        assertThat(meterRegistry.timer("data.client.calls",
+            "method", UserServiceGrpc.getGetUserMethod().getFullMethodName(), "status", "OK").count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void shouldRetryWriteWithSameIdempotencyKey() throws Exception {
+        CreateUserResponse response = client.createUser(CreateUserRequest.newBuilder().setUsername("alice").build())
+            .get(1, TimeUnit.SECONDS);
+
+        assertThat(response.getUser().getUsername()).isEqualTo("alice");
+        assertThat(createUserAttempts).hasValue(2);
+        assertThat(idempotencyKeys).hasSize(2).containsOnly(idempotencyKeys.getFirst());
+    }
+
+    @Test
+    void shouldUseFreshIdempotencyKeyPerWrite() throws Exception {
+        createUserAttempts.set(1);
+        client.createUser(CreateUserRequest.newBuilder().setUsername("alice").build()).get(1, TimeUnit.SECONDS);
+        client.createUser(CreateUserRequest.newBuilder().setUsername("bob").build()).get(1, TimeUnit.SECONDS);
+
+        assertThat(idempotencyKeys).doesNotHaveDuplicates().hasSize(2);
+    }
+
+    /**
+     * Never answers the first GetUser attempt, and fails the first CreateUser attempt.
+     */
+    private final class FlakyUserService extends UserServiceGrpc.UserServiceImplBase {
+
+        @Override
+        public void getUser(GetUserRequest request, StreamObserver<GetUserResponse> responseObserver) {
+            if (getUserAttempts.incrementAndGet() == 1) {
+                return;
+            }
+            responseObserver.onNext(GetUserResponse.newBuilder()
+                .setUser(User.newBuilder().setId(request.getId()))
+                .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void createUser(CreateUserRequest request, StreamObserver<CreateUserResponse> responseObserver) {
+            if (createUserAttempts.incrementAndGet() == 1) {
+                responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(CreateUserResponse.newBuilder()
+                .setUser(User.newBuilder().setUsername(request.getUsername()))
+                .build());
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package github.couryrr.backend.playbook.data.admin;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Operator RPCs are admitted only with {@code authorization: Bearer <token>}. Without
+ * a token every operator call is refused, and AdminService will not start.
+ */
+@ConfigurationProperties("data.admin")
+public record AdminProperties(
+    @DefaultValue("false") boolean enabled,
+    String token
+) {
+
+    public boolean hasToken() {
+        return token != null && !token.isBlank();
+    }
+}
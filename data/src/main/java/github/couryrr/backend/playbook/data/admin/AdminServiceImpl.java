@@ -0,0 +1,167 @@
+package github.couryrr.backend.playbook.data.admin;
+
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.admin.v1.AdminServiceGrpc;
+import github.couryrr.backend.playbook.data.gen.admin.v1.ConsistencyReport;
+import github.couryrr.backend.playbook.data.gen.admin.v1.GetHotKeysRequest;
+import github.couryrr.backend.playbook.data.gen.admin.v1.GetHotKeysResponse;
+import github.couryrr.backend.playbook.data.gen.admin.v1.GetStoreStatsRequest;
+import github.couryrr.backend.playbook.data.gen.admin.v1.GetStoreStatsResponse;
+import github.couryrr.backend.playbook.data.gen.admin.v1.HotKeyCount;
+import github.couryrr.backend.playbook.data.gen.admin.v1.HotKeyKind;
+import github.couryrr.backend.playbook.data.gen.admin.v1.HotKeySource;
+import github.couryrr.backend.playbook.data.gen.admin.v1.StoreStructure;
+import github.couryrr.backend.playbook.data.hotkeys.HotKey;
+import github.couryrr.backend.playbook.data.hotkeys.HotKeyProperties;
+import github.couryrr.backend.playbook.data.hotkeys.HotKeyTracker;
+import github.couryrr.backend.playbook.data.hotkeys.KeyKind;
+import github.couryrr.backend.playbook.data.hotkeys.KeySource;
+import github.couryrr.backend.playbook.data.service.UserServiceImpl;
+import github.couryrr.backend.playbook.data.store.StoreInspector;
+import github.couryrr.backend.playbook.data.store.StoreProperties;
+import github.couryrr.backend.playbook.data.store.StructureFootprint;
+import github.couryrr.backend.playbook.data.store.UserStore;
+import io.grpc.stub.StreamObserver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Operator-only RPCs. Only registered when {@code data.admin.enabled} is set, and then
+ * only reachable with the {@code data.admin.token} bearer token; see
+ * {@link OperatorAuthInterceptor}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "data.admin", name = "enabled", havingValue = "true")
+public class AdminServiceImpl extends AdminServiceGrpc.AdminServiceImplBase {
+
+    private final UserStore userStore;
+    private final StoreProperties storeProperties;
+    private final StoreInspector storeInspector;
+    private final UserServiceImpl userService;
+    private final HotKeyProperties hotKeyProperties;
+    private final ObjectProvider<HotKeyTracker> hotKeyTracker;
+
+    public AdminServiceImpl(AdminProperties adminProperties, UserStore userStore, StoreProperties storeProperties,
+            StoreInspector storeInspector, UserServiceImpl userService, HotKeyProperties hotKeyProperties,
+            ObjectProvider<HotKeyTracker> hotKeyTracker) {
+        if (!adminProperties.hasToken()) {
+            throw new IllegalStateException("data.admin.token must be set when data.admin.enabled is true");
+        }
+        this.userStore = userStore;
+        this.storeProperties = storeProperties;
+        this.storeInspector = storeInspector;
+        this.userService = userService;
+        this.hotKeyProperties = hotKeyProperties;
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    @Override
+    public void getStoreStats(GetStoreStatsRequest request, StreamObserver<GetStoreStatsResponse> responseObserver) {
+        try {
+            GetStoreStatsResponse.Builder response = GetStoreStatsResponse.newBuilder()
+                .setStoreMode(storeProperties.mode().name().toLowerCase().replace('_', '-'))
+                .setUserCount(userStore.size());
+
+            for (StructureFootprint structure : userStore.footprint()) {
+                response.addStructures(StoreStructure.newBuilder()
+                    .setName(structure.name())
+                    .setEntries(structure.entries())
+                    .setEstimatedBytes(structure.estimatedBytes())
+                    .setOffHeap(structure.offHeap())
+                    .build());
+            }
+
+            StoreInspector.ConsistencyReport report = storeInspector.lastReport();
+            if (report != null) {
+                response.setConsistency(ConsistencyReport.newBuilder()
+                    .setPass(report.pass())
+                    .setCompletedTime(timestamp(report.completedAt()))
+                    .setDurationMillis(report.duration().toMillis())
+                    .setUsersChecked(report.usersChecked())
+                    .setMissingUsernameClaims(report.missingUsernameClaims())
+                    .setMissingEmailClaims(report.missingEmailClaims())
+                    .setOrphanedUsernameClaims(report.orphanedUsernameClaims())
+                    .setOrphanedEmailClaims(report.orphanedEmailClaims())
+                    .build());
+            }
+
+            Optional<Instant> lastSnapshot = userService.lastExportCompletedAt();
+            lastSnapshot.ifPresent(at -> response
+                .setLastSnapshotTime(timestamp(at))
+                .setMillisSinceLastSnapshot(Duration.between(at, Instant.now()).toMillis()));
+
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void getHotKeys(GetHotKeysRequest request, StreamObserver<GetHotKeysResponse> responseObserver) {
+        try {
+            GetHotKeysResponse.Builder response = GetHotKeysResponse.newBuilder()
+                .setWindowMillis(hotKeyProperties.window().toMillis());
+
+            HotKeyTracker tracker = hotKeyTracker.getIfAvailable();
+            if (tracker != null) {
+                tracker.sources().stream()
+                    .filter(source -> request.getMethod().isEmpty() || source.method().equals(request.getMethod()))
+                    .sorted(Comparator.comparing(KeySource::method).thenComparing(KeySource::kind))
+                    .forEach(source -> response.addSources(hotKeySource(source, tracker)));
+            }
+
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    private static HotKeySource hotKeySource(KeySource source, HotKeyTracker tracker) {
+        HotKeySource.Builder builder = HotKeySource.newBuilder()
+            .setMethod(source.method())
+            .setKind(switch (source.kind()) {
+                case ID -> HotKeyKind.HOT_KEY_KIND_ID;
+                case USERNAME -> HotKeyKind.HOT_KEY_KIND_USERNAME;
+                case EMAIL -> HotKeyKind.HOT_KEY_KIND_EMAIL;
+            });
+        for (HotKey hotKey : tracker.top(source)) {
+            builder.addKeys(HotKeyCount.newBuilder()
+                .setKey(source.kind() == KeyKind.ID ? hotKey.key() : redact(hotKey.key()))
+                .setEstimatedCount(hotKey.estimatedCount())
+                .build());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Usernames and emails leave the node only as a truncated SHA-256, which an
+     * operator can match against a suspected key without the response listing them.
+     */
+    static String redact(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return "sha256:" + HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Timestamp timestamp(Instant instant) {
+        return Timestamp.newBuilder()
+            .setSeconds(instant.getEpochSecond())
+            .setNanos(instant.getNano())
+            .build();
+    }
+}
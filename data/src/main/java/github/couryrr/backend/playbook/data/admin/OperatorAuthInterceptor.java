@@ -0,0 +1,68 @@
+package github.couryrr.backend.playbook.data.admin;
+
+import github.couryrr.backend.playbook.data.gen.admin.v1.AdminServiceGrpc;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Refuses operator RPCs with {@code UNAUTHENTICATED} unless they carry the configured
+ * bearer token. Operator RPCs are all of AdminService plus {@code ImportUsers}, which
+ * creates accounts with caller-supplied password hashes, and {@code ExportUsers}, which
+ * writes every user to the node's disk. They share the gRPC port with UserService, so
+ * the token is what keeps them away from ordinary callers.
+ *
+ * <p>Runs before every other interceptor, so a refused call never takes a concurrency
+ * permit or touches the idempotency table.
+ */
+@Component
+@GlobalServerInterceptor
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OperatorAuthInterceptor implements ServerInterceptor {
+
+    static final Metadata.Key<String> AUTHORIZATION =
+        Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final String BEARER = "Bearer ";
+
+    private final byte[] token;
+
+    public OperatorAuthInterceptor(AdminProperties properties) {
+        this.token = properties.hasToken() ? properties.token().getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if (!isOperatorMethod(call.getMethodDescriptor()) || isAuthorized(headers.get(AUTHORIZATION))) {
+            return next.startCall(call, headers);
+        }
+        call.close(Status.UNAUTHENTICATED.withDescription("Operator RPCs need a valid bearer token"), new Metadata());
+        return new ServerCall.Listener<>() {};
+    }
+
+    static boolean isOperatorMethod(MethodDescriptor<?, ?> method) {
+        return AdminServiceGrpc.SERVICE_NAME.equals(method.getServiceName())
+            || UserServiceGrpc.getImportUsersMethod().getFullMethodName().equals(method.getFullMethodName())
+            || UserServiceGrpc.getExportUsersMethod().getFullMethodName().equals(method.getFullMethodName());
+    }
+
+    private boolean isAuthorized(String authorization) {
+        if (token == null || authorization == null || !authorization.startsWith(BEARER)) {
+            return false;
+        }
+        byte[] presented = authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(token, presented);
+    }
+}
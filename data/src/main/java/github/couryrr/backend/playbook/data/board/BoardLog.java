@@ -0,0 +1,134 @@
+package github.couryrr.backend.playbook.data.board;
+
+import github.couryrr.backend.playbook.data.gen.board.v1.Message;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * The messages of one board: a directory of {@link Segment}s named by their base
+ * offset. Only the newest segment is appended to; once it would grow past
+ * {@code segmentSize} it is flushed and sealed and a new one started.
+ *
+ * <p>Appends are serialized on this object. Reads take no lock: they find the
+ * segment holding their start offset and read forward through the following ones.
+ */
+final class BoardLog implements AutoCloseable {
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int indexInterval;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private volatile Segment active;
+
+    private BoardLog(Path directory, long segmentSize, int indexInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+    }
+
+    static BoardLog open(Path directory, long segmentSize, int indexInterval) throws IOException {
+        if (segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segments are limited to 2GB");
+        }
+        Files.createDirectories(directory);
+        BoardLog board = new BoardLog(directory, segmentSize, indexInterval);
+        List<Long> baseOffsets;
+        try (Stream<Path> files = Files.list(directory)) {
+            baseOffsets = files
+                .map(file -> file.getFileName().toString())
+                .filter(name -> name.endsWith(".log"))
+                .map(name -> Long.parseLong(name.substring(0, name.length() - ".log".length())))
+                .sorted()
+                .toList();
+        }
+        try {
+            for (int i = 0; i < baseOffsets.size() - 1; i++) {
+                board.segments.put(baseOffsets.get(i),
+                    Segment.openSealed(directory, baseOffsets.get(i), baseOffsets.get(i + 1), indexInterval));
+            }
+            long activeBase = baseOffsets.isEmpty() ? 0 : baseOffsets.getLast();
+            board.active = baseOffsets.isEmpty()
+                ? Segment.create(directory, activeBase, indexInterval)
+                : Segment.openActive(directory, activeBase, indexInterval);
+            board.segments.put(activeBase, board.active);
+        } catch (IOException | RuntimeException e) {
+            board.close();
+            throw e;
+        }
+        return board;
+    }
+
+    /**
+     * Assigns the next offset to {@code draft} and appends it.
+     */
+    synchronized Message append(Message.Builder draft) throws IOException {
+        Message message = draft.setOffset(active.nextOffset()).build();
+        long recordSize = Segment.HEADER_BYTES + message.getSerializedSize();
+        if (active.size() > 0 && active.size() + recordSize > segmentSize) {
+            roll();
+        }
+        active.append(message);
+        return message;
+    }
+
+    /**
+     * Up to {@code limit} messages from {@code fromOffset} on, in offset order.
+     */
+    List<Message> read(long fromOffset, int limit) throws IOException {
+        List<Message> messages = new ArrayList<>(Math.min(limit, 256));
+        Long start = segments.floorKey(fromOffset);
+        for (Segment segment : segments.tailMap(start != null ? start : segments.firstKey()).values()) {
+            if (messages.size() >= limit) {
+                break;
+            }
+            segment.read(fromOffset, limit - messages.size(), messages);
+        }
+        return messages;
+    }
+
+    /**
+     * The last {@code limit} messages.
+     */
+    List<Message> readLatest(int limit) throws IOException {
+        return read(Math.max(endOffset() - limit, 0), limit);
+    }
+
+    /**
+     * The offset the next message will get.
+     */
+    long endOffset() {
+        return active.nextOffset();
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Segment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void roll() throws IOException {
+        active.force();
+        Segment next = Segment.create(directory, active.nextOffset(), indexInterval);
+        segments.put(next.baseOffset(), next);
+        active = next;
+    }
+}
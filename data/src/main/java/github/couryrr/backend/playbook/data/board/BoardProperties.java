@@ -0,0 +1,36 @@
+package github.couryrr.backend.playbook.data.board;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Message board storage. Each board lives in its own directory under
+ * {@code directory} as segment files of up to {@code segmentSize}, with a sparse
+ * index entry every {@code indexInterval} bytes of log. A board with no subscribers
+ * is closed once no call has used it for {@code idleTimeout}.
+ */
+@ConfigurationProperties("data.board")
+public record BoardProperties(
+    @DefaultValue("boards") Path directory,
+    @DefaultValue("64MB") DataSize segmentSize,
+    @DefaultValue("4KB") DataSize indexInterval,
+    @DefaultValue("100") int maxPageSize,
+    @DefaultValue("64KB") DataSize maxPayloadSize,
+    @DefaultValue Subscription subscription,
+    @DefaultValue("10m") Duration idleTimeout
+) {
+
+    /**
+     * Each subscriber gets a queue of {@code queueCapacity} messages. When a post finds
+     * it full, {@code slowConsumerPolicy} decides what happens.
+     */
+    public record Subscription(
+        @DefaultValue("1024") int queueCapacity,
+        @DefaultValue("disconnect") SlowConsumerPolicy slowConsumerPolicy
+    ) {
+    }
+}
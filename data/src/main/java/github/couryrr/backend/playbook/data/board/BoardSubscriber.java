@@ -0,0 +1,186 @@
+package github.couryrr.backend.playbook.data.board;
+
+import github.couryrr.backend.playbook.data.gen.board.v1.Message;
+import github.couryrr.backend.playbook.data.gen.board.v1.SubscribeBoardResponse;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.Counter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One {@code SubscribeBoard} stream. Posts are offered to a bounded queue, and a
+ * drain task on the fan-out executor moves them to the stream while gRPC flow
+ * control reports it ready. A post never waits for a subscriber: when the queue is
+ * full the {@link SlowConsumerPolicy} applies.
+ *
+ * <p>At most one drain task runs at a time, so the stream is only ever written from
+ * one thread. A subscriber that asked for older messages is sent them from storage,
+ * a page at a time, before anything from its queue; queued messages it already got
+ * that way are skipped.
+ */
+final class BoardSubscriber {
+
+    static final Metadata.Key<String> RESUME_OFFSET =
+        Metadata.Key.of("resume-offset", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final int REPLAY_PAGE_SIZE = 100;
+
+    /**
+     * Reads stored messages of the subscribed board.
+     */
+    interface Replay {
+        List<Message> read(long fromOffset, int limit) throws IOException;
+    }
+
+    private final ServerCallStreamObserver<SubscribeBoardResponse> observer;
+    private final ArrayBlockingQueue<Message> queue;
+    private final SlowConsumerPolicy policy;
+    private final Executor executor;
+    private final Replay replay;
+    private final long replayEnd;
+    private final Counter droppedMessages;
+    private final Counter disconnects;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile Runnable onClose = () -> {};
+
+    private volatile boolean overflowed;
+    // Only touched by the drain task.
+    private long nextOffset;
+
+    BoardSubscriber(ServerCallStreamObserver<SubscribeBoardResponse> observer, int queueCapacity,
+            SlowConsumerPolicy policy, Executor executor, long fromOffset, long replayEnd, Replay replay,
+            Counter droppedMessages, Counter disconnects) {
+        this.observer = observer;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.policy = policy;
+        this.executor = executor;
+        this.replay = replay;
+        this.replayEnd = replayEnd;
+        this.nextOffset = fromOffset;
+        this.droppedMessages = droppedMessages;
+        this.disconnects = disconnects;
+        observer.setOnReadyHandler(this::schedule);
+        observer.setOnCancelHandler(this::close);
+    }
+
+    /**
+     * Runs {@code onClose} once the stream ends, for whatever reason.
+     */
+    void onClose(Runnable onClose) {
+        this.onClose = onClose;
+        if (closed.get()) {
+            onClose.run();
+        }
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Queues a newly posted message. Called with the board's append lock held, so
+     * messages arrive in offset order.
+     */
+    void offer(Message message) {
+        if (closed.get()) {
+            return;
+        }
+        if (!queue.offer(message)) {
+            if (policy == SlowConsumerPolicy.DROP) {
+                droppedMessages.increment();
+                return;
+            }
+            overflowed = true;
+        }
+        schedule();
+    }
+
+    void schedule() {
+        if (!closed.get() && scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!closed.get()) {
+                if (overflowed) {
+                    disconnect();
+                    return;
+                }
+                if (!observer.isReady()) {
+                    break;
+                }
+                if (nextOffset < replayEnd) {
+                    sendReplayPage();
+                    continue;
+                }
+                Message message = queue.poll();
+                if (message == null) {
+                    break;
+                }
+                if (message.getOffset() >= nextOffset) {
+                    send(message);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (close()) {
+                observer.onError(Status.INTERNAL.withDescription("Board subscription failed").withCause(e)
+                    .asRuntimeException());
+            }
+            return;
+        } finally {
+            scheduled.set(false);
+        }
+        // A post or an onReady callback may have come in after the last check.
+        if (overflowed || (observer.isReady() && (!queue.isEmpty() || nextOffset < replayEnd))) {
+            schedule();
+        }
+    }
+
+    private void sendReplayPage() throws IOException {
+        List<Message> page = replay.read(nextOffset, (int) Math.min(REPLAY_PAGE_SIZE, replayEnd - nextOffset));
+        if (page.isEmpty()) {
+            nextOffset = replayEnd;
+            return;
+        }
+        for (Message message : page) {
+            send(message);
+        }
+    }
+
+    private void send(Message message) {
+        observer.onNext(SubscribeBoardResponse.newBuilder()
+            .setMessage(message)
+            .build());
+        nextOffset = message.getOffset() + 1;
+    }
+
+    private void disconnect() {
+        if (!close()) {
+            return;
+        }
+        disconnects.increment();
+        queue.clear();
+        Metadata trailers = new Metadata();
+        trailers.put(RESUME_OFFSET, Long.toString(nextOffset));
+        observer.onError(Status.RESOURCE_EXHAUSTED
+            .withDescription("Subscriber fell behind; resubscribe from offset " + nextOffset)
+            .asRuntimeException(trailers));
+    }
+
+    private boolean close() {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        onClose.run();
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package github.couryrr.backend.playbook.data.board;
+
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.board.v1.ListMessagesRequest;
+import github.couryrr.backend.playbook.data.gen.board.v1.ListMessagesResponse;
+import github.couryrr.backend.playbook.data.gen.board.v1.Message;
+import github.couryrr.backend.playbook.data.gen.board.v1.MessageBoardServiceGrpc;
+import github.couryrr.backend.playbook.data.gen.board.v1.MessagePage;
+import github.couryrr.backend.playbook.data.gen.board.v1.PostMessageRequest;
+import github.couryrr.backend.playbook.data.gen.board.v1.PostMessageResponse;
+import github.couryrr.backend.playbook.data.gen.board.v1.SubscribeBoardRequest;
+import github.couryrr.backend.playbook.data.gen.board.v1.SubscribeBoardResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.FieldError;
+import github.couryrr.backend.playbook.data.gen.user.v1.ValidationError;
+import github.couryrr.backend.playbook.data.store.UserStore;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Posts and reads encrypted board messages. Authors are checked against the user
+ * store, so a message can only be posted on behalf of an existing user; proving the
+ * caller is that user is the API's job.
+ */
+@Component
+public class MessageBoardServiceImpl extends MessageBoardServiceGrpc.MessageBoardServiceImplBase {
+
+    private final MessageBoards boards;
+    private final UserStore userStore;
+    private final int maxPageSize;
+    private final long maxPayloadSize;
+
+    public MessageBoardServiceImpl(MessageBoards boards, UserStore userStore, BoardProperties properties) {
+        this.boards = boards;
+        this.userStore = userStore;
+        this.maxPageSize = properties.maxPageSize();
+        this.maxPayloadSize = properties.maxPayloadSize().toBytes();
+    }
+
+    @Override
+    public void postMessage(PostMessageRequest request, StreamObserver<PostMessageResponse> responseObserver) {
+        try {
+            ValidationError validationError = validatePostMessageRequest(request);
+            if (validationError != null) {
+                responseObserver.onNext(PostMessageResponse.newBuilder()
+                    .setError(validationError)
+                    .build());
+                responseObserver.onCompleted();
+                return;
+            }
+
+            Instant now = Instant.now();
+            Timestamp postedAt = Timestamp.newBuilder()
+                .setSeconds(now.getEpochSecond())
+                .setNanos(now.getNano())
+                .build();
+            Message message = boards.post(request.getBoardId(), request.getAuthorId(), request.getPayload(), postedAt);
+
+            responseObserver.onNext(PostMessageResponse.newBuilder()
+                .setMessage(message)
+                .build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void listMessages(ListMessagesRequest request, StreamObserver<ListMessagesResponse> responseObserver) {
+        try {
+            ValidationError validationError = null;
+            if (!MessageBoards.isValidBoardId(request.getBoardId())) {
+                validationError = fieldValidationError("board_id",
+                    "Board id must be 1 to 64 lowercase letters, digits, '-' or '_'");
+            } else if (request.hasSinceOffset() && request.getSinceOffset() < 0) {
+                validationError = fieldValidationError("since_offset", "Offset must not be negative");
+            } else if (request.getLimit() < 0) {
+                validationError = fieldValidationError("limit", "Limit must not be negative");
+            }
+            if (validationError != null) {
+                responseObserver.onNext(ListMessagesResponse.newBuilder()
+                    .setError(validationError)
+                    .build());
+                responseObserver.onCompleted();
+                return;
+            }
+
+            int limit = request.getLimit() == 0 ? maxPageSize : Math.min(request.getLimit(), maxPageSize);
+            String boardId = request.getBoardId();
+            long endOffset = boards.endOffset(boardId);
+            List<Message> messages = request.hasSinceOffset()
+                ? boards.read(boardId, request.getSinceOffset(), limit)
+                : boards.readLatest(boardId, limit);
+            long nextOffset = messages.isEmpty()
+                ? (request.hasSinceOffset() ? Math.min(request.getSinceOffset(), endOffset) : endOffset)
+                : messages.getLast().getOffset() + 1;
+
+            responseObserver.onNext(ListMessagesResponse.newBuilder()
+                .setPage(MessagePage.newBuilder()
+                    .addAllMessages(messages)
+                    .setNextOffset(nextOffset)
+                    .setEndOffset(Math.max(endOffset, nextOffset)))
+                .build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void subscribeBoard(SubscribeBoardRequest request, StreamObserver<SubscribeBoardResponse> responseObserver) {
+        try {
+            ValidationError validationError = null;
+            if (!MessageBoards.isValidBoardId(request.getBoardId())) {
+                validationError = fieldValidationError("board_id",
+                    "Board id must be 1 to 64 lowercase letters, digits, '-' or '_'");
+            } else if (request.hasSinceOffset() && request.getSinceOffset() < 0) {
+                validationError = fieldValidationError("since_offset", "Offset must not be negative");
+            }
+            if (validationError != null) {
+                responseObserver.onNext(SubscribeBoardResponse.newBuilder()
+                    .setError(validationError)
+                    .build());
+                responseObserver.onCompleted();
+                return;
+            }
+
+            boards.subscribe(request.getBoardId(), request.hasSinceOffset() ? request.getSinceOffset() : null,
+                (ServerCallStreamObserver<SubscribeBoardResponse>) responseObserver);
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    private ValidationError validatePostMessageRequest(PostMessageRequest request) {
+        ValidationError.Builder errorBuilder = ValidationError.newBuilder();
+        boolean hasErrors = false;
+
+        if (!MessageBoards.isValidBoardId(request.getBoardId())) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("board_id")
+                .setMessage("Board id must be 1 to 64 lowercase letters, digits, '-' or '_'")
+                .build());
+            hasErrors = true;
+        }
+
+        if (request.getAuthorId().isEmpty() || userStore.get(request.getAuthorId()) == null) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("author_id")
+                .setMessage("Author is not a known user")
+                .build());
+            hasErrors = true;
+        }
+
+        if (request.getPayload().isEmpty()) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("payload")
+                .setMessage("Payload is required")
+                .build());
+            hasErrors = true;
+        } else if (request.getPayload().size() > maxPayloadSize) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("payload")
+                .setMessage("Payload must be at most " + maxPayloadSize + " bytes")
+                .build());
+            hasErrors = true;
+        }
+
+        if (hasErrors) {
+            return errorBuilder
+                .setCode("VALIDATION_ERROR")
+                .setMessage("Validation failed")
+                .build();
+        }
+
+        return null;
+    }
+
+    private ValidationError fieldValidationError(String field, String message) {
+        return ValidationError.newBuilder()
+            .setCode("VALIDATION_ERROR")
+            .setMessage("Validation failed")
+            .addFieldErrors(FieldError.newBuilder()
+                .setField(field)
+                .setMessage(message)
+                .build())
+            .build();
+    }
+}
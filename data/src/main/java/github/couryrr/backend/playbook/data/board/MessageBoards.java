@@ -0,0 +1,301 @@
+package github.couryrr.backend.playbook.data.board;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.board.v1.Message;
+import github.couryrr.backend.playbook.data.gen.board.v1.SubscribeBoardResponse;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * The boards stored on this node, each a {@link BoardLog} under
+ * {@code data.board.directory}. Boards are opened on first use and closed again once
+ * they have had no subscribers and no calls for {@code data.board.idle-timeout}.
+ * Only a post creates a board: subscribing to one that does not exist yet just
+ * registers the subscriber, which then receives everything from the first post on.
+ *
+ * <p>Each post is handed to the board's live subscribers while its append lock is
+ * still held, so every subscriber queue receives messages in offset order, and a
+ * new subscriber's replay of stored messages ends exactly where its live messages
+ * begin. Queues are drained to the streams on a shared fan-out pool.
+ */
+@Component
+public class MessageBoards implements AutoCloseable {
+
+    // Board ids become directory names, so they are kept to a safe alphabet.
+    private static final Pattern BOARD_ID = Pattern.compile("[a-z0-9][a-z0-9_-]{0,63}");
+
+    private static final Logger log = LoggerFactory.getLogger(MessageBoards.class);
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int indexInterval;
+    private final Duration idleTimeout;
+    private final BoardProperties.Subscription subscription;
+    private final Map<String, OpenBoard> boards = new ConcurrentHashMap<>();
+    // Guards opening and evicting boards, and registering subscribers to boards that do not exist yet.
+    private final Object opening = new Object();
+    private final Map<String, Set<BoardSubscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService fanOutExecutor;
+    private final Counter droppedMessages;
+    private final Counter disconnects;
+
+    public MessageBoards(BoardProperties properties, MeterRegistry meterRegistry) {
+        this.directory = properties.directory();
+        this.segmentSize = properties.segmentSize().toBytes();
+        this.indexInterval = (int) properties.indexInterval().toBytes();
+        this.idleTimeout = properties.idleTimeout();
+        this.subscription = properties.subscription();
+        this.fanOutExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            Thread.ofPlatform().name("board-fan-out-", 0).daemon().factory());
+        this.droppedMessages = meterRegistry.counter("data.board.subscription.dropped_messages");
+        this.disconnects = meterRegistry.counter("data.board.subscription.disconnects");
+        meterRegistry.gauge("data.board.open_boards", boards, Map::size);
+        meterRegistry.gauge("data.board.subscribers", subscribers,
+            all -> all.values().stream().mapToInt(Set::size).sum());
+    }
+
+    public static boolean isValidBoardId(String boardId) {
+        return BOARD_ID.matcher(boardId).matches();
+    }
+
+    public Message post(String boardId, String authorId, ByteString payload, Timestamp postedAt) throws IOException {
+        OpenBoard board = acquire(boardId, true);
+        try {
+            synchronized (board.messages) {
+                Message message = board.messages.append(Message.newBuilder()
+                    .setBoardId(boardId)
+                    .setAuthorId(authorId)
+                    .setPayload(payload)
+                    .setPostedAt(postedAt));
+                Set<BoardSubscriber> live = subscribers.get(boardId);
+                if (live != null) {
+                    for (BoardSubscriber subscriber : live) {
+                        subscriber.offer(message);
+                    }
+                }
+                return message;
+            }
+        } finally {
+            board.release();
+        }
+    }
+
+    /**
+     * Streams the board's messages to {@code observer}: the stored ones from
+     * {@code sinceOffset}, if not {@code null}, then every message posted from now on.
+     */
+    public void subscribe(String boardId, Long sinceOffset, ServerCallStreamObserver<SubscribeBoardResponse> observer)
+            throws IOException {
+        BoardSubscriber subscriber = null;
+        while (subscriber == null) {
+            OpenBoard board = acquire(boardId, false);
+            if (board == null) {
+                subscriber = subscribeBeforeFirstPost(boardId, observer);
+                continue;
+            }
+            try {
+                synchronized (board.messages) {
+                    long endOffset = board.messages.endOffset();
+                    long fromOffset = sinceOffset == null ? endOffset : Math.min(sinceOffset, endOffset);
+                    subscriber = register(boardId, new BoardSubscriber(observer, subscription.queueCapacity(),
+                        subscription.slowConsumerPolicy(), fanOutExecutor, fromOffset, endOffset, board.messages::read,
+                        droppedMessages, disconnects));
+                }
+            } finally {
+                board.release();
+            }
+        }
+        subscriber.schedule();
+    }
+
+    /**
+     * Up to {@code limit} messages from {@code fromOffset} on; empty for a board that
+     * has never been posted to.
+     */
+    public List<Message> read(String boardId, long fromOffset, int limit) throws IOException {
+        OpenBoard board = acquire(boardId, false);
+        if (board == null) {
+            return List.of();
+        }
+        try {
+            return board.messages.read(fromOffset, limit);
+        } finally {
+            board.release();
+        }
+    }
+
+    public List<Message> readLatest(String boardId, int limit) throws IOException {
+        OpenBoard board = acquire(boardId, false);
+        if (board == null) {
+            return List.of();
+        }
+        try {
+            return board.messages.readLatest(limit);
+        } finally {
+            board.release();
+        }
+    }
+
+    public long endOffset(String boardId) throws IOException {
+        OpenBoard board = acquire(boardId, false);
+        if (board == null) {
+            return 0;
+        }
+        try {
+            return board.messages.endOffset();
+        } finally {
+            board.release();
+        }
+    }
+
+    /**
+     * Closes boards with no subscribers that no call has used for the idle timeout.
+     * Checking once per timeout closes a board between one and two timeouts after
+     * its last use.
+     */
+    @Scheduled(fixedDelayString = "${data.board.idle-timeout:10m}")
+    public void evictIdle() {
+        long idleNanos = idleTimeout.toNanos();
+        for (Map.Entry<String, OpenBoard> entry : boards.entrySet()) {
+            String boardId = entry.getKey();
+            OpenBoard board = entry.getValue();
+            synchronized (opening) {
+                if (subscribers.containsKey(boardId) || !board.evictIfIdle(idleNanos)) {
+                    continue;
+                }
+                boards.remove(boardId, board);
+            }
+            try {
+                board.messages.close();
+            } catch (IOException e) {
+                log.warn("Could not close idle board {}", boardId, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fanOutExecutor.shutdownNow();
+        for (OpenBoard board : boards.values()) {
+            board.messages.close();
+        }
+        boards.clear();
+    }
+
+    /**
+     * The open board, retained for the caller, who must release it. Returns
+     * {@code null} when the board does not exist and {@code create} is false.
+     */
+    private OpenBoard acquire(String boardId, boolean create) throws IOException {
+        if (!isValidBoardId(boardId)) {
+            throw new IllegalArgumentException("Invalid board id " + boardId);
+        }
+        OpenBoard open = boards.get(boardId);
+        if (open != null && open.retain()) {
+            return open;
+        }
+        synchronized (opening) {
+            // Eviction removes a board under this lock, so one found here is still open.
+            open = boards.get(boardId);
+            if (open == null) {
+                Path boardDirectory = directory.resolve(boardId);
+                if (!create && !Files.isDirectory(boardDirectory)) {
+                    return null;
+                }
+                open = new OpenBoard(BoardLog.open(boardDirectory, segmentSize, indexInterval));
+                boards.put(boardId, open);
+            }
+            open.retain();
+            return open;
+        }
+    }
+
+    /**
+     * Registers a subscriber to a board nothing has been posted to yet, or returns
+     * {@code null} if the board has appeared since. The first post opens the board
+     * under the same lock, so it finds the subscriber already registered.
+     */
+    private BoardSubscriber subscribeBeforeFirstPost(String boardId,
+            ServerCallStreamObserver<SubscribeBoardResponse> observer) {
+        synchronized (opening) {
+            if (boards.containsKey(boardId) || Files.isDirectory(directory.resolve(boardId))) {
+                return null;
+            }
+            return register(boardId, new BoardSubscriber(observer, subscription.queueCapacity(),
+                subscription.slowConsumerPolicy(), fanOutExecutor, 0, 0, (fromOffset, limit) -> List.of(),
+                droppedMessages, disconnects));
+        }
+    }
+
+    /**
+     * Adds and removes subscribers inside the map's compute, so a board's set leaves
+     * the map as its last subscriber does and a new subscriber never joins a set that
+     * has already been dropped.
+     */
+    private BoardSubscriber register(String boardId, BoardSubscriber subscriber) {
+        subscribers.compute(boardId, (id, live) -> {
+            Set<BoardSubscriber> joined = live == null ? ConcurrentHashMap.newKeySet() : live;
+            joined.add(subscriber);
+            return joined;
+        });
+        subscriber.onClose(() -> subscribers.computeIfPresent(boardId, (id, live) -> {
+            live.remove(subscriber);
+            return live.isEmpty() ? null : live;
+        }));
+        return subscriber;
+    }
+
+    /**
+     * An open board and the number of calls using it. Eviction marks the count
+     * {@code -1}, after which the board can no longer be retained.
+     */
+    private static final class OpenBoard {
+
+        final BoardLog messages;
+        private final AtomicInteger users = new AtomicInteger();
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        OpenBoard(BoardLog messages) {
+            this.messages = messages;
+        }
+
+        boolean retain() {
+            int current;
+            do {
+                current = users.get();
+                if (current < 0) {
+                    return false;
+                }
+            } while (!users.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            lastUsedNanos = System.nanoTime();
+            users.decrementAndGet();
+        }
+
+        boolean evictIfIdle(long idleNanos) {
+            return System.nanoTime() - lastUsedNanos >= idleNanos && users.compareAndSet(0, -1);
+        }
+    }
+}
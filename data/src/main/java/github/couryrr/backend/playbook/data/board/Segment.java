@@ -0,0 +1,287 @@
+package github.couryrr.backend.playbook.data.board;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import github.couryrr.backend.playbook.data.gen.board.v1.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * One append-only file of a board's log, holding the messages from
+ * {@link #baseOffset()} up to the next segment's base offset.
+ *
+ * <p>Records are {@code [int length][int crc32c][Message]}. Every
+ * {@code indexInterval} bytes the offset and file position of the next record are
+ * added to a sparse index, kept in memory and mirrored to a {@code .index} file of
+ * {@code [int relative offset][int position]} pairs. A read looks up the nearest
+ * indexed record at or before the offset it wants and reads forward from there, so
+ * it never scans more than one index interval it does not return.
+ *
+ * <p>Appends are serialized by the owning {@link BoardLog}. Readers run concurrently
+ * and only see records below the published {@link #size()}.
+ */
+final class Segment implements AutoCloseable {
+
+    static final int HEADER_BYTES = 8;
+    private static final int INDEX_ENTRY_BYTES = 8;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final long baseOffset;
+    private final Path logPath;
+    private final Path indexPath;
+    private final FileChannel log;
+    private final FileChannel index;
+    private final int indexInterval;
+
+    private int[] indexOffsets = new int[16];
+    private int[] indexPositions = new int[16];
+    private int indexCount;
+    private long bytesSinceIndexEntry;
+    private volatile long size;
+    private volatile long nextOffset;
+
+    private Segment(long baseOffset, Path directory, int indexInterval) throws IOException {
+        this.baseOffset = baseOffset;
+        this.logPath = directory.resolve(fileName(baseOffset, ".log"));
+        this.indexPath = directory.resolve(fileName(baseOffset, ".index"));
+        this.indexInterval = indexInterval;
+        this.log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.nextOffset = baseOffset;
+    }
+
+    static Segment create(Path directory, long baseOffset, int indexInterval) throws IOException {
+        return new Segment(baseOffset, directory, indexInterval);
+    }
+
+    /**
+     * Opens a sealed segment, trusting its index file. {@code nextOffset} is the base
+     * offset of the segment after it.
+     */
+    static Segment openSealed(Path directory, long baseOffset, long nextOffset, int indexInterval) throws IOException {
+        Segment segment = new Segment(baseOffset, directory, indexInterval);
+        segment.loadIndex();
+        segment.size = segment.log.size();
+        segment.nextOffset = nextOffset;
+        return segment;
+    }
+
+    /**
+     * Opens the segment that was last written to. It is scanned in full to rebuild its
+     * index, and a record torn by a crash mid-append is cut off.
+     */
+    static Segment openActive(Path directory, long baseOffset, int indexInterval) throws IOException {
+        Segment segment = new Segment(baseOffset, directory, indexInterval);
+        segment.recover();
+        return segment;
+    }
+
+    static String fileName(long baseOffset, String extension) {
+        return String.format("%020d%s", baseOffset, extension);
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    long nextOffset() {
+        return nextOffset;
+    }
+
+    long size() {
+        return size;
+    }
+
+    Path logPath() {
+        return logPath;
+    }
+
+    /**
+     * Appends {@code message}, whose offset must be {@link #nextOffset()}.
+     */
+    void append(Message message) throws IOException {
+        byte[] body = message.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + body.length);
+        record.putInt(body.length).putInt(crc(body, body.length)).put(body).flip();
+
+        long position = size;
+        if (indexCount == 0 || bytesSinceIndexEntry >= indexInterval) {
+            addIndexEntry((int) (message.getOffset() - baseOffset), (int) position, true);
+            bytesSinceIndexEntry = 0;
+        }
+        while (record.hasRemaining()) {
+            position += log.write(record, position);
+        }
+        bytesSinceIndexEntry += record.limit();
+        nextOffset = message.getOffset() + 1;
+        size = position;
+    }
+
+    /**
+     * Adds up to {@code limit} messages at or after {@code fromOffset} to {@code out}.
+     */
+    void read(long fromOffset, int limit, List<Message> out) throws IOException {
+        long end = size;
+        long position = floorPosition(fromOffset);
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, Math.max(end - position, HEADER_BYTES)));
+        buffer.limit(0);
+        int added = 0;
+        while (added < limit && position < end) {
+            if (buffer.remaining() < HEADER_BYTES) {
+                buffer = fill(buffer, position, end, HEADER_BYTES);
+            }
+            int length = buffer.getInt(buffer.position());
+            int crc = buffer.getInt(buffer.position() + 4);
+            if (length < 0) {
+                throw new IOException("Corrupt record at " + logPath + ":" + position);
+            }
+            if (buffer.remaining() < HEADER_BYTES + length) {
+                buffer = fill(buffer, position, end, HEADER_BYTES + length);
+            }
+            buffer.position(buffer.position() + HEADER_BYTES);
+            byte[] body = new byte[length];
+            buffer.get(body);
+            if (crc(body, length) != crc) {
+                throw new IOException("Corrupt record at " + logPath + ":" + position);
+            }
+            position += HEADER_BYTES + length;
+
+            Message message = Message.parseFrom(body);
+            if (message.getOffset() >= fromOffset) {
+                out.add(message);
+                added++;
+            }
+        }
+    }
+
+    /**
+     * Makes everything appended so far durable. Called when the segment is sealed.
+     */
+    void force() throws IOException {
+        log.force(false);
+        index.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (log; index) {
+            force();
+        }
+    }
+
+    private synchronized long floorPosition(long offset) {
+        int relative = (int) Math.max(offset - baseOffset, 0);
+        int found = Arrays.binarySearch(indexOffsets, 0, indexCount, relative);
+        int entry = found >= 0 ? found : -found - 2;
+        return entry < 0 ? 0 : indexPositions[entry];
+    }
+
+    private synchronized void addIndexEntry(int relativeOffset, int position, boolean persist) throws IOException {
+        if (indexCount == indexOffsets.length) {
+            indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexCount * 2);
+        }
+        indexOffsets[indexCount] = relativeOffset;
+        indexPositions[indexCount] = position;
+        indexCount++;
+        if (persist) {
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).putInt(relativeOffset).putInt(position).flip();
+            long indexPosition = (long) (indexCount - 1) * INDEX_ENTRY_BYTES;
+            while (entry.hasRemaining()) {
+                indexPosition += index.write(entry, indexPosition);
+            }
+        }
+    }
+
+    /**
+     * Compacts the unread bytes of {@code buffer} to its start and reads more from the
+     * log after them, growing the buffer when a single record needs more room.
+     */
+    private ByteBuffer fill(ByteBuffer buffer, long recordPosition, long end, int needed) throws IOException {
+        if (recordPosition + needed > end) {
+            throw new IOException("Truncated record at " + logPath + ":" + recordPosition);
+        }
+        if (buffer.capacity() < needed) {
+            buffer = ByteBuffer.allocate(needed).put(buffer);
+        } else {
+            buffer.compact();
+        }
+        long readPosition = recordPosition + buffer.position();
+        int toRead = (int) Math.min(buffer.remaining(), end - readPosition);
+        buffer.limit(buffer.position() + toRead);
+        while (buffer.hasRemaining()) {
+            int read = log.read(buffer, readPosition);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + logPath);
+            }
+            readPosition += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void loadIndex() throws IOException {
+        ByteBuffer entries = ByteBuffer.allocate((int) index.size());
+        while (entries.hasRemaining() && index.read(entries, entries.position()) >= 0) {
+            // Read the whole index file.
+        }
+        entries.flip();
+        while (entries.remaining() >= INDEX_ENTRY_BYTES) {
+            addIndexEntry(entries.getInt(), entries.getInt(), false);
+        }
+    }
+
+    private void recover() throws IOException {
+        long end = log.size();
+        long position = 0;
+        long offset = baseOffset;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        index.truncate(0);
+        while (position + HEADER_BYTES <= end) {
+            header.clear();
+            while (header.hasRemaining() && log.read(header, position + header.position()) >= 0) {
+                // Read the full header.
+            }
+            int length = header.getInt(0);
+            int crc = header.getInt(4);
+            if (length < 0 || position + HEADER_BYTES + length > end) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            while (body.hasRemaining() && log.read(body, position + HEADER_BYTES + body.position()) >= 0) {
+                // Read the full body.
+            }
+            if (crc(body.array(), length) != crc) {
+                break;
+            }
+            try {
+                offset = Message.parseFrom(body.array()).getOffset();
+            } catch (InvalidProtocolBufferException e) {
+                break;
+            }
+            if (indexCount == 0 || bytesSinceIndexEntry >= indexInterval) {
+                addIndexEntry((int) (offset - baseOffset), (int) position, true);
+                bytesSinceIndexEntry = 0;
+            }
+            position += HEADER_BYTES + length;
+            bytesSinceIndexEntry += HEADER_BYTES + length;
+            nextOffset = offset + 1;
+        }
+        if (position < end) {
+            log.truncate(position);
+        }
+        size = position;
+    }
+
+    private static int crc(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,17 @@
+package github.couryrr.backend.playbook.data.board;
+
+/**
+ * What to do with a subscriber whose queue is full when a message is posted.
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * Skip the message for that subscriber. It sees a gap in offsets and can fill it
+     * with {@code ListMessages}.
+     */
+    DROP,
+    /**
+     * End the stream with {@code RESOURCE_EXHAUSTED} and a {@code resume-offset}
+     * trailer, the offset of the first message the subscriber did not receive.
+     */
+    DISCONNECT
+}
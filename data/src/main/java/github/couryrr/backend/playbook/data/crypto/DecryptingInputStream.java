@@ -0,0 +1,103 @@
+package github.couryrr.backend.playbook.data.crypto;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Decrypts and authenticates a stream written by {@link EncryptingOutputStream}, one
+ * chunk at a time. Tampering, reordering or truncation of the ciphertext fails the
+ * read with an {@link IOException}; no unauthenticated plaintext is returned.
+ */
+final class DecryptingInputStream extends InputStream {
+
+    private final PushbackInputStream in;
+    private final Cipher cipher;
+    private final SecretKey key;
+    private final byte[] header;
+    private final byte[] noncePrefix;
+    private final byte[] ciphertext;
+    private final byte[] plaintext;
+    private int position;
+    private int limit;
+    private int chunkIndex;
+    private boolean finished;
+
+    DecryptingInputStream(InputStream in, SecretKey key, byte[] header, byte[] noncePrefix, int chunkSize)
+            throws IOException {
+        this.in = new PushbackInputStream(in, 1);
+        this.cipher = StreamEncryption.newCipher();
+        this.key = key;
+        this.header = header;
+        this.noncePrefix = noncePrefix;
+        this.ciphertext = new byte[chunkSize + StreamEncryption.TAG_BYTES];
+        this.plaintext = new byte[chunkSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (position == limit) {
+            if (finished) {
+                return -1;
+            }
+            readChunk();
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(plaintext, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readChunk() throws IOException {
+        int length = in.readNBytes(ciphertext, 0, ciphertext.length);
+        if (length < StreamEncryption.TAG_BYTES) {
+            throw new IOException("Encrypted stream is truncated");
+        }
+        int next = in.read();
+        boolean last = next < 0;
+        if (!last) {
+            in.unread(next);
+            if (length < ciphertext.length) {
+                throw new IOException("Encrypted stream is corrupt");
+            }
+        }
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(StreamEncryption.TAG_BYTES * 8,
+                StreamEncryption.nonce(noncePrefix, chunkIndex, last)));
+            cipher.updateAAD(header);
+            limit = cipher.doFinal(ciphertext, 0, length, plaintext, 0);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Chunk " + chunkIndex + " failed authentication"
+                + (last ? "; the stream may be truncated" : ""), e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not decrypt chunk " + chunkIndex, e);
+        }
+        position = 0;
+        chunkIndex++;
+        finished = last;
+    }
+}
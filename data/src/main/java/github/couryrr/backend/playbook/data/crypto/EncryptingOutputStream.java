@@ -0,0 +1,101 @@
+package github.couryrr.backend.playbook.data.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Encrypts a stream as a sequence of AES-GCM chunks; see {@link StreamEncryption} for
+ * the format. Plaintext is buffered until a chunk is full, so {@link #flush()} does
+ * not push out a partial chunk. {@link #finish()} or {@link #close()} writes the
+ * final chunk, without which the stream does not decrypt.
+ */
+public final class EncryptingOutputStream extends FilterOutputStream {
+
+    private final Cipher cipher;
+    private final SecretKey key;
+    private final byte[] header;
+    private final byte[] noncePrefix;
+    private final byte[] plaintext;
+    private final byte[] ciphertext;
+    private int buffered;
+    private int chunkIndex;
+    private boolean finished;
+
+    EncryptingOutputStream(OutputStream out, SecretKey key, byte[] header, byte[] noncePrefix, int chunkSize)
+            throws IOException {
+        super(out);
+        this.cipher = StreamEncryption.newCipher();
+        this.key = key;
+        this.header = header;
+        this.noncePrefix = noncePrefix;
+        this.plaintext = new byte[chunkSize];
+        this.ciphertext = new byte[chunkSize + StreamEncryption.TAG_BYTES];
+        out.write(header);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream already finished");
+        }
+        while (len > 0) {
+            // A full chunk is only sealed once more data arrives, so the final chunk is
+            // never followed by an empty one.
+            if (buffered == plaintext.length) {
+                writeChunk(false);
+            }
+            int n = Math.min(len, plaintext.length - buffered);
+            System.arraycopy(b, off, plaintext, buffered, n);
+            buffered += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes the final chunk without closing the underlying stream.
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            writeChunk(true);
+            finished = true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeChunk(boolean last) throws IOException {
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(StreamEncryption.TAG_BYTES * 8,
+                StreamEncryption.nonce(noncePrefix, chunkIndex, last)));
+            cipher.updateAAD(header);
+            int length = cipher.doFinal(plaintext, 0, buffered, ciphertext, 0);
+            out.write(ciphertext, 0, length);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt chunk " + chunkIndex, e);
+        }
+        buffered = 0;
+        chunkIndex++;
+        if (chunkIndex < 0) {
+            throw new IOException("Stream too long to encrypt");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package github.couryrr.backend.playbook.data.crypto;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Encryption at rest. {@code keys} maps key ids to base64-encoded AES keys of 16, 24
+ * or 32 bytes; new files are encrypted with {@code activeKeyId}, and files under any
+ * other key are re-encrypted every {@code reencryptionInterval}. Retired keys must
+ * stay configured until that has finished.
+ */
+@ConfigurationProperties("data.encryption")
+public record EncryptionProperties(
+    @DefaultValue("false") boolean enabled,
+    String activeKeyId,
+    Map<String, String> keys,
+    @DefaultValue("64KB") DataSize chunkSize,
+    @DefaultValue("1m") Duration reencryptionInterval
+) {
+}
@@ -0,0 +1,68 @@
+package github.couryrr.backend.playbook.data.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AES-GCM for individual records of files that do not outlive the process, under a
+ * key that exists only in this process's memory. A sealed record is
+ * {@code nonce (12) | ciphertext | tag (16)}. Nonces come from a counter, so none
+ * repeats under the key, and there are no keys to configure or rotate.
+ */
+public final class RecordEncryption {
+
+    private static final int NONCE_BYTES = 12;
+
+    public static final int OVERHEAD = NONCE_BYTES + StreamEncryption.TAG_BYTES;
+
+    private final SecretKey key;
+    private final AtomicLong nonces = new AtomicLong();
+
+    private RecordEncryption(SecretKey key) {
+        this.key = key;
+    }
+
+    /**
+     * An instance with a fresh random AES-256 key.
+     */
+    public static RecordEncryption ephemeral() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return new RecordEncryption(new SecretKeySpec(key, "AES"));
+    }
+
+    public byte[] seal(byte[] plaintext) throws IOException {
+        byte[] nonce = ByteBuffer.allocate(NONCE_BYTES).putInt(0).putLong(nonces.incrementAndGet()).array();
+        Cipher cipher = StreamEncryption.newCipher();
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(StreamEncryption.TAG_BYTES * 8, nonce));
+            byte[] sealed = new byte[NONCE_BYTES + cipher.getOutputSize(plaintext.length)];
+            System.arraycopy(nonce, 0, sealed, 0, NONCE_BYTES);
+            cipher.doFinal(plaintext, 0, plaintext.length, sealed, NONCE_BYTES);
+            return sealed;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt record", e);
+        }
+    }
+
+    public byte[] open(byte[] sealed) throws IOException {
+        if (sealed.length < OVERHEAD) {
+            throw new IOException("Encrypted record is truncated");
+        }
+        Cipher cipher = StreamEncryption.newCipher();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key,
+                new GCMParameterSpec(StreamEncryption.TAG_BYTES * 8, sealed, 0, NONCE_BYTES));
+            return cipher.doFinal(sealed, NONCE_BYTES, sealed.length - NONCE_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Encrypted record failed authentication", e);
+        }
+    }
+}
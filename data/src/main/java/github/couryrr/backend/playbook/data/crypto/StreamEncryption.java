@@ -0,0 +1,201 @@
+package github.couryrr.backend.playbook.data.crypto;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming authenticated encryption for files written to disk, using the JDK's
+ * AES-GCM, which runs on the AES-NI and carry-less multiply intrinsics where the CPU
+ * has them.
+ *
+ * <p>An encrypted stream is a header followed by chunks:
+ * <pre>
+ * header: "EMBE" | version (1) | key id length (1) | key id | chunk size (4) | nonce prefix (7)
+ * chunk:  AES-GCM(plaintext of chunk size bytes, or fewer for the last chunk) | tag (16)
+ * </pre>
+ * Every stream gets a random nonce prefix; chunk {@code i} is encrypted under the
+ * nonce {@code prefix | i | last}, with the header as associated data. Nonces are
+ * therefore never reused under a key, chunks cannot be reordered, and dropping
+ * trailing chunks is detected because the last chunk is marked.
+ */
+@Component
+public class StreamEncryption {
+
+    static final int TAG_BYTES = 16;
+    private static final byte[] MAGIC = "EMBE".getBytes(StandardCharsets.US_ASCII);
+    private static final byte VERSION = 1;
+    private static final int NONCE_PREFIX_BYTES = 7;
+    private static final int NONCE_BYTES = 12;
+    private static final int MAX_CHUNK_SIZE = 16 << 20;
+
+    private final boolean enabled;
+    private final String activeKeyId;
+    private final Map<String, SecretKey> keys = new HashMap<>();
+    private final int chunkSize;
+    private final SecureRandom random = new SecureRandom();
+
+    public StreamEncryption(EncryptionProperties properties) {
+        this.enabled = properties.enabled();
+        this.activeKeyId = properties.activeKeyId();
+        this.chunkSize = (int) properties.chunkSize().toBytes();
+        if (properties.keys() != null) {
+            properties.keys().forEach((id, encoded) -> keys.put(id, key(id, encoded)));
+        }
+        if (enabled && !keys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("data.encryption.active-key-id must name one of data.encryption.keys");
+        }
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("data.encryption.chunk-size must be between 1B and 16MB");
+        }
+    }
+
+    /**
+     * An instance that leaves new files unencrypted and can read none that are.
+     */
+    public static StreamEncryption disabled() {
+        return new StreamEncryption(new EncryptionProperties(false, null, Map.of(), DataSize.ofKilobytes(64),
+            Duration.ofMinutes(1)));
+    }
+
+    /**
+     * Whether new files should be encrypted.
+     */
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public String activeKeyId() {
+        return activeKeyId;
+    }
+
+    /**
+     * Writes the header to {@code out} and returns a stream that encrypts everything
+     * written to it under the active key.
+     */
+    public EncryptingOutputStream encrypt(OutputStream out) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Encryption at rest is disabled");
+        }
+        byte[] noncePrefix = new byte[NONCE_PREFIX_BYTES];
+        random.nextBytes(noncePrefix);
+        byte[] keyId = activeKeyId.getBytes(StandardCharsets.UTF_8);
+        byte[] header = ByteBuffer.allocate(MAGIC.length + 2 + keyId.length + 4 + NONCE_PREFIX_BYTES)
+            .put(MAGIC)
+            .put(VERSION)
+            .put((byte) keyId.length)
+            .put(keyId)
+            .putInt(chunkSize)
+            .put(noncePrefix)
+            .array();
+        return new EncryptingOutputStream(out, keys.get(activeKeyId), header, noncePrefix, chunkSize);
+    }
+
+    /**
+     * Reads the header from {@code in} and returns a stream of the decrypted contents,
+     * using whichever configured key the stream was written with.
+     */
+    public InputStream decrypt(InputStream in) throws IOException {
+        Header header = readHeader(in);
+        if (header == null) {
+            throw new IOException("Not an encrypted stream");
+        }
+        SecretKey key = keys.get(header.keyId());
+        if (key == null) {
+            throw new IOException("Stream is encrypted with unknown key " + header.keyId());
+        }
+        return new DecryptingInputStream(in, key, header.bytes(), header.noncePrefix(), header.chunkSize());
+    }
+
+    /**
+     * The id of the key {@code file} is encrypted with, or {@code null} if it is not
+     * an encrypted file.
+     */
+    public static String keyIdOf(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            Header header = readHeader(in);
+            return header == null ? null : header.keyId();
+        }
+    }
+
+    static Cipher newCipher() throws IOException {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES-GCM is not available", e);
+        }
+    }
+
+    static byte[] nonce(byte[] prefix, int chunkIndex, boolean last) {
+        return ByteBuffer.allocate(NONCE_BYTES)
+            .put(prefix)
+            .putInt(chunkIndex)
+            .put((byte) (last ? 1 : 0))
+            .array();
+    }
+
+    private record Header(byte[] bytes, String keyId, int chunkSize, byte[] noncePrefix) {
+    }
+
+    private static Header readHeader(InputStream in) throws IOException {
+        if (!Arrays.equals(in.readNBytes(MAGIC.length), MAGIC)) {
+            return null;
+        }
+        DataInputStream data = new DataInputStream(in);
+        try {
+            byte version = data.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported encrypted stream version " + version);
+            }
+            byte[] keyId = new byte[data.readUnsignedByte()];
+            data.readFully(keyId);
+            int chunkSize = data.readInt();
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IOException("Encrypted stream header is corrupt");
+            }
+            byte[] noncePrefix = new byte[NONCE_PREFIX_BYTES];
+            data.readFully(noncePrefix);
+            byte[] bytes = ByteBuffer.allocate(MAGIC.length + 2 + keyId.length + 4 + NONCE_PREFIX_BYTES)
+                .put(MAGIC)
+                .put(version)
+                .put((byte) keyId.length)
+                .put(keyId)
+                .putInt(chunkSize)
+                .put(noncePrefix)
+                .array();
+            return new Header(bytes, new String(keyId, StandardCharsets.UTF_8), chunkSize, noncePrefix);
+        } catch (EOFException e) {
+            throw new IOException("Encrypted stream header is truncated", e);
+        }
+    }
+
+    private static SecretKey key(String id, String encoded) {
+        byte[] bytes = Base64.getDecoder().decode(encoded);
+        if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32) {
+            throw new IllegalArgumentException("Key " + id + " must be 16, 24 or 32 bytes");
+        }
+        if (id.getBytes(StandardCharsets.UTF_8).length > 255) {
+            throw new IllegalArgumentException("Key id " + id + " is longer than 255 bytes");
+        }
+        return new SecretKeySpec(bytes, "AES");
+    }
+}
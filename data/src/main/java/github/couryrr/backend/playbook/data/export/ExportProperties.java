@@ -0,0 +1,17 @@
+package github.couryrr.backend.playbook.data.export;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * Export settings. The scheduled export itself is driven by {@code data.export.cron},
+ * which defaults to {@code -} (disabled).
+ */
+@ConfigurationProperties("data.export")
+public record ExportProperties(
+    @DefaultValue("exports") Path directory,
+    @DefaultValue("true") boolean compress
+) {
+}
@@ -0,0 +1,104 @@
+package github.couryrr.backend.playbook.data.export;
+
+import github.couryrr.backend.playbook.data.crypto.EncryptingOutputStream;
+import github.couryrr.backend.playbook.data.crypto.StreamEncryption;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Key rotation for exports: re-encrypts, in the background, every export file
+ * encrypted with a key other than the active one. Files are rewritten under a
+ * temporary name and moved into place, as exports are, and left alone if they
+ * change while being rewritten.
+ */
+@Component
+@ConditionalOnProperty(prefix = "data.encryption", name = "enabled", havingValue = "true")
+public class ExportReencryptor {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportReencryptor.class);
+
+    private final StreamEncryption encryption;
+    private final Path directory;
+    private final Counter reencryptedFiles;
+
+    public ExportReencryptor(StreamEncryption encryption, ExportProperties properties, MeterRegistry meterRegistry) {
+        this.encryption = encryption;
+        this.directory = properties.directory();
+        this.reencryptedFiles = meterRegistry.counter("data.encryption.reencrypted_files");
+    }
+
+    @Scheduled(fixedDelayString = "${data.encryption.reencryption-interval:1m}")
+    public void reencryptStaleFiles() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing
+                .filter(Files::isRegularFile)
+                .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                .toList();
+        } catch (IOException e) {
+            log.warn("Could not list exports in {} for key rotation", directory, e);
+            return;
+        }
+        for (Path file : files) {
+            try {
+                String keyId = StreamEncryption.keyIdOf(file);
+                if (keyId != null && !keyId.equals(encryption.activeKeyId()) && reencrypt(file)) {
+                    reencryptedFiles.increment();
+                    log.info("Re-encrypted {} from key {} to key {}", file, keyId, encryption.activeKeyId());
+                }
+            } catch (IOException e) {
+                log.warn("Could not re-encrypt {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code false} if {@code file} changed while it was being rewritten.
+     */
+    boolean reencrypt(Path file) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (InputStream in = encryption.decrypt(new BufferedInputStream(Files.newInputStream(file),
+                    UserExporter.WRITE_BUFFER_SIZE));
+                 FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream channelOut = Channels.newOutputStream(channel);
+                EncryptingOutputStream out = encryption.encrypt(channelOut);
+                in.transferTo(out);
+                out.finish();
+                channel.force(false);
+            }
+            if (!Files.getLastModifiedTime(file).equals(modified)) {
+                Files.deleteIfExists(temp);
+                return false;
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+}
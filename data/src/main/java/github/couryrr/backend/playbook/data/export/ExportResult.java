@@ -0,0 +1,8 @@
+package github.couryrr.backend.playbook.data.export;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+public record ExportResult(Path path, long userCount, long bytesWritten, Duration duration, boolean compressed,
+    boolean encrypted) {
+}
@@ -0,0 +1,39 @@
+package github.couryrr.backend.playbook.data.export;
+
+import github.couryrr.backend.playbook.data.service.UserServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Nightly export of the user base, enabled by setting {@code data.export.cron}.
+ */
+@Component
+public class ScheduledUserExport {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduledUserExport.class);
+
+    private final UserServiceImpl userService;
+    private final ExportProperties properties;
+
+    public ScheduledUserExport(UserServiceImpl userService, ExportProperties properties) {
+        this.userService = userService;
+        this.properties = properties;
+    }
+
+    @Scheduled(cron = "${data.export.cron:-}")
+    public void export() {
+        String fileName = "users-" + LocalDate.now() + (properties.compress() ? ".pb.gz" : ".pb");
+        try {
+            ExportResult result = userService.exportTo(properties.directory().resolve(fileName), properties.compress());
+            log.info("Exported {} users to {} ({} bytes in {} ms)", result.userCount(), result.path(),
+                result.bytesWritten(), result.duration().toMillis());
+        } catch (IOException e) {
+            log.error("Scheduled user export to {} failed", fileName, e);
+        }
+    }
+}
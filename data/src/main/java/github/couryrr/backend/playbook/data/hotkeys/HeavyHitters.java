@@ -0,0 +1,104 @@
+package github.couryrr.backend.playbook.data.hotkeys;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the most frequent keys of one stream over a sliding window.
+ *
+ * <p>Counts go into a ring of {@link CountMinSketch} slots, one per sub-window, and a
+ * key's windowed count is the sum of its estimates across slots. Up to {@code k}
+ * candidates are kept with their last estimate. A key only takes the lock to enter
+ * the candidate set when its estimate reaches the smallest candidate's, so the common
+ * path is a handful of atomic increments.
+ */
+final class HeavyHitters {
+
+    private final CountMinSketch[] slots;
+    private final LongAdder[] slotTotals;
+    private final int k;
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+
+    private volatile int current;
+    private volatile long admissionThreshold;
+
+    HeavyHitters(int k, int slotCount, int sketchDepth, int sketchWidth) {
+        this.k = k;
+        this.slots = new CountMinSketch[slotCount];
+        this.slotTotals = new LongAdder[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new CountMinSketch(sketchDepth, sketchWidth);
+            slotTotals[i] = new LongAdder();
+        }
+    }
+
+    void offer(String key) {
+        long hash = CountMinSketch.hash(key);
+        int slot = current;
+        slots[slot].add(hash);
+        slotTotals[slot].increment();
+
+        long estimate = estimate(hash);
+        if (candidates.replace(key, estimate) == null && estimate >= admissionThreshold) {
+            admit(key, estimate);
+        }
+    }
+
+    /**
+     * Starts a new sub-window, dropping counts from the oldest one, and re-estimates
+     * the candidates so keys that went quiet fall out.
+     */
+    synchronized void rotate() {
+        int next = (current + 1) % slots.length;
+        slots[next].clear();
+        slotTotals[next].reset();
+        current = next;
+
+        candidates.replaceAll((key, count) -> estimate(CountMinSketch.hash(key)));
+        candidates.values().removeIf(count -> count == 0);
+        updateThreshold();
+    }
+
+    List<HotKey> top() {
+        return candidates.entrySet().stream()
+            .map(entry -> new HotKey(entry.getKey(), entry.getValue()))
+            .sorted(Comparator.comparingLong(HotKey::estimatedCount).reversed())
+            .limit(k)
+            .toList();
+    }
+
+    long windowTotal() {
+        long total = 0;
+        for (LongAdder slotTotal : slotTotals) {
+            total += slotTotal.sum();
+        }
+        return total;
+    }
+
+    private synchronized void admit(String key, long estimate) {
+        candidates.put(key, estimate);
+        if (candidates.size() > k) {
+            candidates.entrySet().stream()
+                .min(Map.Entry.comparingByValue())
+                .ifPresent(min -> candidates.remove(min.getKey()));
+        }
+        updateThreshold();
+    }
+
+    private void updateThreshold() {
+        admissionThreshold = candidates.size() < k
+            ? 0
+            : candidates.values().stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+
+    private long estimate(long hash) {
+        long total = 0;
+        for (CountMinSketch slot : slots) {
+            total += slot.estimate(hash);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,8 @@
+package github.couryrr.backend.playbook.data.hotkeys;
+
+/**
+ * A key and its estimated request count over the sliding window. The estimate may
+ * overcount but never undercounts.
+ */
+public record HotKey(String key, long estimatedCount) {
+}
@@ -0,0 +1,63 @@
+package github.couryrr.backend.playbook.data.hotkeys;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.AuthenticateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.CheckUsernameRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.UpdateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.ValidateEmailRequest;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds the key of every single-user lookup into the {@link HotKeyTracker}. Usernames
+ * and emails are lowercased the same way the store keys them.
+ *
+ * <p>Runs right after operator authentication and ahead of the idempotency table and
+ * the concurrency limiter, so lookups are counted even when they are replayed or shed.
+ */
+@Component
+@GlobalServerInterceptor
+@Order(100)
+@ConditionalOnProperty(prefix = "data.hot-keys", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class HotKeyInterceptor implements ServerInterceptor {
+
+    private final HotKeyTracker tracker;
+
+    public HotKeyInterceptor(HotKeyTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        String method = call.getMethodDescriptor().getBareMethodName();
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                record(method, message);
+                super.onMessage(message);
+            }
+        };
+    }
+
+    private void record(String method, Object message) {
+        switch (message) {
+            case GetUserRequest request -> tracker.record(method, KeyKind.ID, request.getId());
+            case UpdateUserRequest request -> tracker.record(method, KeyKind.ID, request.getId());
+            case AuthenticateUserRequest request ->
+                tracker.record(method, KeyKind.EMAIL, request.getEmail().toLowerCase());
+            case ValidateEmailRequest request -> tracker.record(method, KeyKind.EMAIL, request.getEmail().toLowerCase());
+            case CheckUsernameRequest request ->
+                tracker.record(method, KeyKind.USERNAME, request.getUsername().toLowerCase());
+            default -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package github.couryrr.backend.playbook.data.hotkeys;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * The sliding window is {@code slots} sub-windows of {@code slotDuration}; the oldest
+ * is dropped each time a new one starts.
+ */
+@ConfigurationProperties("data.hot-keys")
+public record HotKeyProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("20") int topK,
+    @DefaultValue("10s") Duration slotDuration,
+    @DefaultValue("6") int slots,
+    @DefaultValue("4") int sketchDepth,
+    @DefaultValue("1024") int sketchWidth
+) {
+
+    public Duration window() {
+        return slotDuration.multipliedBy(slots);
+    }
+}
@@ -0,0 +1,73 @@
+package github.couryrr.backend.playbook.data.hotkeys;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heavy-hitter tracking per {@link KeySource}. Keys themselves are never used as
+ * metric tags; only the share of the hottest key in each source is exported, as
+ * {@code data.hot_keys.top_share}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "data.hot-keys", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class HotKeyTracker {
+
+    private final HotKeyProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<KeySource, HeavyHitters> sources = new ConcurrentHashMap<>();
+
+    public HotKeyTracker(HotKeyProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void record(String method, KeyKind kind, String key) {
+        if (key.isEmpty()) {
+            return;
+        }
+        sources.computeIfAbsent(new KeySource(method, kind), this::newSource).offer(key);
+    }
+
+    public Set<KeySource> sources() {
+        return Set.copyOf(sources.keySet());
+    }
+
+    /**
+     * The hottest keys of a source over the current window, hottest first.
+     */
+    public List<HotKey> top(KeySource source) {
+        HeavyHitters hitters = sources.get(source);
+        return hitters == null ? List.of() : hitters.top();
+    }
+
+    @Scheduled(fixedRateString = "${data.hot-keys.slot-duration:10s}")
+    public void rotate() {
+        for (HeavyHitters hitters : sources.values()) {
+            hitters.rotate();
+        }
+    }
+
+    private HeavyHitters newSource(KeySource source) {
+        HeavyHitters hitters = new HeavyHitters(properties.topK(), properties.slots(),
+            properties.sketchDepth(), properties.sketchWidth());
+        Gauge.builder("data.hot_keys.top_share", hitters, HotKeyTracker::topShare)
+            .tag("method", source.method())
+            .tag("kind", source.kind().name().toLowerCase())
+            .register(meterRegistry);
+        return hitters;
+    }
+
+    private static double topShare(HeavyHitters hitters) {
+        long total = hitters.windowTotal();
+        List<HotKey> top = hitters.top();
+        return total == 0 || top.isEmpty() ? 0 : Math.min(1.0, (double) top.getFirst().estimatedCount() / total);
+    }
+}
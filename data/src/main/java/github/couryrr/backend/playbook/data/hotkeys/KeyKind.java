@@ -0,0 +1,7 @@
+package github.couryrr.backend.playbook.data.hotkeys;
+
+public enum KeyKind {
+    ID,
+    USERNAME,
+    EMAIL
+}
@@ -0,0 +1,8 @@
+package github.couryrr.backend.playbook.data.hotkeys;
+
+/**
+ * One tracked stream of keys: the bare RPC method name and which request field the
+ * keys come from.
+ */
+public record KeySource(String method, KeyKind kind) {
+}
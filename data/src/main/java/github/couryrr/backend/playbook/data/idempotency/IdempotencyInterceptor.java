@@ -0,0 +1,219 @@
+package github.couryrr.backend.playbook.data.idempotency;
+
+import com.google.protobuf.MessageLite;
+import github.couryrr.backend.playbook.data.gen.board.v1.MessageBoardServiceGrpc;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes retried writes safe: a call carrying an {@code idempotency-key} header that
+ * matches an earlier call to the same method gets that call's response replayed
+ * instead of running again. A retry that arrives while the first call is still
+ * running waits for it.
+ *
+ * <p>Only calls that complete with {@code OK} are remembered; that includes
+ * responses carrying a validation error. A failed call is forgotten so its retry runs
+ * afresh, and callers waiting on it get the same failure. Reusing a key with a
+ * different request is rejected with {@code INVALID_ARGUMENT}. A retry waits for the
+ * first call no longer than its own deadline, or the TTL when it has none. A first
+ * call that is cancelled before it closes is forgotten the same way.
+ *
+ * <p>Runs ahead of the concurrency limiter, so a replayed or joined retry never takes
+ * a permit.
+ */
+@Component
+@GlobalServerInterceptor
+@Order(200)
+@ConditionalOnProperty(prefix = "data.idempotency", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyInterceptor implements ServerInterceptor {
+
+    public static final Metadata.Key<String> IDEMPOTENCY_KEY =
+        Metadata.Key.of("idempotency-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyInterceptor.class);
+
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final Set<String> METHODS = Set.of(
+        UserServiceGrpc.getCreateUserMethod().getFullMethodName(),
+        UserServiceGrpc.getUpdateUserMethod().getFullMethodName(),
+        UserServiceGrpc.getDeleteUserMethod().getFullMethodName(),
+        UserServiceGrpc.getRegisterPublicKeyMethod().getFullMethodName(),
+        MessageBoardServiceGrpc.getPostMessageMethod().getFullMethodName()
+    );
+
+    private final IdempotencyTable table;
+    private final Duration ttl;
+    private final MeterRegistry meterRegistry;
+
+    public IdempotencyInterceptor(IdempotencyProperties properties, MeterRegistry meterRegistry) {
+        this(new IdempotencyTable(properties.ttl(), properties.maxEntries()), properties.ttl(), meterRegistry);
+    }
+
+    IdempotencyInterceptor(IdempotencyTable table, Duration ttl, MeterRegistry meterRegistry) {
+        this.table = table;
+        this.ttl = ttl;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("data.idempotency.entries", table, IdempotencyTable::size);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        String idempotencyKey = headers.get(IDEMPOTENCY_KEY);
+        String method = call.getMethodDescriptor().getFullMethodName();
+        if (idempotencyKey == null || !METHODS.contains(method)) {
+            return next.startCall(call, headers);
+        }
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            call.close(Status.INVALID_ARGUMENT.withDescription(
+                "idempotency-key must be 1 to " + MAX_KEY_LENGTH + " characters"), new Metadata());
+            return new ServerCall.Listener<>() {};
+        }
+
+        String key = method + '/' + idempotencyKey;
+        RecordingCall<ReqT, RespT> recordingCall = new RecordingCall<>(call, key);
+        ServerCall.Listener<ReqT> listener = next.startCall(recordingCall, headers);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+
+            private boolean duplicate;
+
+            @Override
+            public void onMessage(ReqT message) {
+                byte[] request = IdempotencyTable.digest((MessageLite) message);
+                IdempotencyTable.Entry entry = new IdempotencyTable.Entry(request);
+                IdempotencyTable.Entry existing = table.putIfAbsent(key, entry);
+                if (existing == null) {
+                    count(method, "executed");
+                    recordingCall.entry = entry;
+                    super.onMessage(message);
+                    return;
+                }
+
+                duplicate = true;
+                if (!existing.matches(request)) {
+                    count(method, "conflict");
+                    call.close(Status.INVALID_ARGUMENT.withDescription(
+                        "idempotency-key was already used with a different request"), new Metadata());
+                    return;
+                }
+                count(method, existing.response().isDone() ? "replayed" : "joined");
+                Deadline deadline = Context.current().getDeadline();
+                long waitNanos = deadline == null ? ttl.toNanos() : deadline.timeRemaining(TimeUnit.NANOSECONDS);
+                existing.response().copy()
+                    .orTimeout(waitNanos, TimeUnit.NANOSECONDS)
+                    .whenComplete((response, error) -> replay(call, response, error));
+            }
+
+            @Override
+            public void onHalfClose() {
+                // The handler never saw a request for a duplicate, so it must not run.
+                if (!duplicate) {
+                    super.onHalfClose();
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                recordingCall.fail(Status.CANCELLED.withDescription(
+                    "The call that first used this idempotency-key was cancelled"));
+                super.onCancel();
+            }
+
+            @Override
+            public void onComplete() {
+                // Close normally settles the entry; this covers a handler that never closed.
+                recordingCall.fail(Status.INTERNAL.withDescription(
+                    "The call that first used this idempotency-key completed without a response"));
+                super.onComplete();
+            }
+        };
+    }
+
+    private void count(String method, String outcome) {
+        meterRegistry.counter("data.idempotency.calls", "method", method, "outcome", outcome).increment();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <RespT> void replay(ServerCall<?, RespT> call, Object response, Throwable error) {
+        try {
+            if (error instanceof TimeoutException) {
+                call.close(Status.DEADLINE_EXCEEDED.withDescription(
+                    "Deadline exceeded waiting for the call that first used this idempotency-key"), new Metadata());
+                return;
+            }
+            if (error != null) {
+                call.close(Status.fromThrowable(error), new Metadata());
+                return;
+            }
+            call.sendHeaders(new Metadata());
+            call.sendMessage((RespT) response);
+            call.close(Status.OK, new Metadata());
+        } catch (IllegalStateException e) {
+            // The retry was cancelled while it waited for the original call.
+            log.debug("Could not replay idempotent response", e);
+        }
+    }
+
+    /**
+     * Captures the response of the first call made with a key and publishes it to the
+     * table entry when the call closes.
+     */
+    private final class RecordingCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final String key;
+        private volatile IdempotencyTable.Entry entry;
+        private RespT response;
+
+        private RecordingCall(ServerCall<ReqT, RespT> delegate, String key) {
+            super(delegate);
+            this.key = key;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            response = message;
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            IdempotencyTable.Entry recorded = entry;
+            if (recorded != null && status.isOk() && response != null) {
+                recorded.response().complete(response);
+            } else {
+                fail(status);
+            }
+            super.close(status, trailers);
+        }
+
+        /**
+         * Forgets the entry and fails its waiters, unless the entry already settled.
+         */
+        void fail(Status status) {
+            IdempotencyTable.Entry recorded = entry;
+            if (recorded != null && recorded.response().completeExceptionally(status.asRuntimeException())) {
+                table.release(key, recorded);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package github.couryrr.backend.playbook.data.idempotency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Responses are replayed for {@code ttl} after the original call started, and at
+ * most {@code maxEntries} keys are remembered; the oldest are forgotten first.
+ */
+@ConfigurationProperties("data.idempotency")
+public record IdempotencyProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("10m") Duration ttl,
+    @DefaultValue("100000") int maxEntries
+) {
+}
@@ -0,0 +1,121 @@
+package github.couryrr.backend.playbook.data.idempotency;
+
+import com.google.protobuf.MessageLite;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, time-expiring map from idempotency key to the call that first used it.
+ *
+ * <p>Entries are kept in insertion order, which with a fixed TTL is also expiry
+ * order, so expired and excess entries are always at the head.
+ */
+final class IdempotencyTable {
+
+    /**
+     * The first call made with a key: the {@link #digest} of its request and, once it
+     * completes successfully, its response. Only the digest is kept, so the table does
+     * not hold on to large requests or the passwords inside them.
+     */
+    static final class Entry {
+
+        private final byte[] requestDigest;
+        private final CompletableFuture<Object> response = new CompletableFuture<>();
+        private long createdAtNanos;
+
+        Entry(byte[] requestDigest) {
+            this.requestDigest = requestDigest;
+        }
+
+        boolean matches(byte[] otherRequestDigest) {
+            return MessageDigest.isEqual(requestDigest, otherRequestDigest);
+        }
+
+        CompletableFuture<Object> response() {
+            return response;
+        }
+    }
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoTime;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    IdempotencyTable(Duration ttl, int maxEntries) {
+        this(ttl, maxEntries, System::nanoTime);
+    }
+
+    IdempotencyTable(Duration ttl, int maxEntries, LongSupplier nanoTime) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Registers {@code entry} under {@code key} unless a live entry is already there,
+     * in which case that entry is returned instead.
+     */
+    synchronized Entry putIfAbsent(String key, Entry entry) {
+        long now = nanoTime.getAsLong();
+        evictExpired(now);
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        entry.createdAtNanos = now;
+        entries.put(key, entry);
+        if (entries.size() > maxEntries) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return null;
+    }
+
+    /**
+     * Forgets a failed call so the next retry with its key runs again.
+     */
+    synchronized void release(String key, Entry entry) {
+        entries.remove(key, entry);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * SHA-256 of the serialized request, computed as it is serialized rather than
+     * over a copy of its bytes.
+     */
+    static byte[] digest(MessageLite request) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            try (DigestOutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), sha256)) {
+                request.writeTo(out);
+            }
+            return sha256.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Entry>> oldest = entries.entrySet().iterator();
+        while (oldest.hasNext() && now - oldest.next().getValue().createdAtNanos > ttlNanos) {
+            oldest.remove();
+        }
+    }
+}
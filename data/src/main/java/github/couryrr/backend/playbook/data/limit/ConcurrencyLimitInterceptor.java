@@ -0,0 +1,90 @@
+package github.couryrr.backend.playbook.data.limit;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sheds UserService calls with {@code RESOURCE_EXHAUSTED} once the adaptive
+ * concurrency limit for their {@link MethodGroup} is reached.
+ *
+ * <p>Runs innermost, after authentication, hot-key counting and the idempotency
+ * table, so only calls that will actually execute take a permit.
+ */
+@Component
+@GlobalServerInterceptor
+@Order(300)
+@ConditionalOnProperty(prefix = "data.concurrency-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimitInterceptor.class);
+
+    private final ConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitInterceptor(ConcurrencyLimitProperties properties) {
+        this(new ConcurrencyLimiter(properties));
+    }
+
+    ConcurrencyLimitInterceptor(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        MethodGroup group = MethodGroup.of(call.getMethodDescriptor().getFullMethodName());
+        if (group == null) {
+            return next.startCall(call, headers);
+        }
+
+        ConcurrencyLimiter.Permit permit = limiter.tryAcquire(group);
+        if (permit == null) {
+            log.debug("Shedding {} call, {} limit is {}", call.getMethodDescriptor().getBareMethodName(),
+                group, limiter.getLimit(group));
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Server is over its concurrency limit"), new Metadata());
+            return new ServerCall.Listener<>() {};
+        }
+
+        ServerCall<ReqT, RespT> limitedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (status.getCode() == Status.Code.DEADLINE_EXCEEDED || status.getCode() == Status.Code.CANCELLED) {
+                    permit.onDropped();
+                } else {
+                    permit.onSuccess();
+                }
+                super.close(status, trailers);
+            }
+        };
+
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(limitedCall, headers);
+        } catch (RuntimeException e) {
+            permit.onDropped();
+            throw e;
+        }
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onCancel() {
+                permit.onDropped();
+                super.onCancel();
+            }
+        };
+    }
+}
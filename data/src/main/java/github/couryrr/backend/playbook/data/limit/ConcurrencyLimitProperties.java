@@ -0,0 +1,16 @@
+package github.couryrr.backend.playbook.data.limit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("data.concurrency-limit")
+public record ConcurrencyLimitProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("20") int initialLimit,
+    @DefaultValue("4") int minLimit,
+    @DefaultValue("1000") int maxLimit,
+    @DefaultValue("0.2") double smoothing,
+    @DefaultValue("1.5") double rttTolerance,
+    @DefaultValue("600") int longWindow
+) {
+}
@@ -0,0 +1,117 @@
+package github.couryrr.backend.playbook.data.limit;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admits requests per {@link MethodGroup}, each group tracking its own gradient limit.
+ *
+ * <p>On top of the per-group limit, a group is only admitted while total in-flight
+ * work is below its {@link MethodGroup#admissionShare()} of the combined limit, so
+ * reads keep headroom when writes and logins pile up.
+ */
+public class ConcurrencyLimiter {
+
+    private final Map<MethodGroup, GroupState> groups = new EnumMap<>(MethodGroup.class);
+    private final AtomicInteger totalInflight = new AtomicInteger();
+
+    public ConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+        for (MethodGroup group : MethodGroup.values()) {
+            groups.put(group, new GroupState(new GradientLimit(
+                properties.initialLimit(),
+                properties.minLimit(),
+                properties.maxLimit(),
+                properties.smoothing(),
+                properties.rttTolerance(),
+                properties.longWindow())));
+        }
+    }
+
+    /**
+     * Tries to admit one request. Returns {@code null} when the request should be shed.
+     */
+    public Permit tryAcquire(MethodGroup group) {
+        GroupState state = groups.get(group);
+        int groupLimit = state.limit.getLimit();
+        int sharedLimit = (int) (totalLimit() * group.admissionShare());
+
+        while (true) {
+            int current = state.inflight.get();
+            if (current >= groupLimit || totalInflight.get() >= sharedLimit) {
+                state.rejected.incrementAndGet();
+                return null;
+            }
+            if (state.inflight.compareAndSet(current, current + 1)) {
+                totalInflight.incrementAndGet();
+                return new Permit(state, current + 1, System.nanoTime());
+            }
+        }
+    }
+
+    public int getLimit(MethodGroup group) {
+        return groups.get(group).limit.getLimit();
+    }
+
+    public int getInflight(MethodGroup group) {
+        return groups.get(group).inflight.get();
+    }
+
+    public long getRejected(MethodGroup group) {
+        return groups.get(group).rejected.get();
+    }
+
+    private int totalLimit() {
+        int total = 0;
+        for (GroupState state : groups.values()) {
+            total += state.limit.getLimit();
+        }
+        return total;
+    }
+
+    private static final class GroupState {
+        private final GradientLimit limit;
+        private final AtomicInteger inflight = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private GroupState(GradientLimit limit) {
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * An admitted request. Exactly one of {@link #onSuccess()} or {@link #onDropped()}
+     * takes effect; later calls are ignored.
+     */
+    public final class Permit {
+        private final GroupState state;
+        private final int inflightAtStart;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(GroupState state, int inflightAtStart, long startNanos) {
+            this.state = state;
+            this.inflightAtStart = inflightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        public void onSuccess() {
+            release(false);
+        }
+
+        public void onDropped() {
+            release(true);
+        }
+
+        private void release(boolean dropped) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            state.inflight.decrementAndGet();
+            totalInflight.decrementAndGet();
+            state.limit.onSample(System.nanoTime() - startNanos, inflightAtStart, dropped);
+        }
+    }
+}
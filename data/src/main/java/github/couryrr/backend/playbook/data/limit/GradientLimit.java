@@ -0,0 +1,71 @@
+package github.couryrr.backend.playbook.data.limit;
+
+/**
+ * Latency-driven concurrency limit estimator in the style of Netflix's gradient2.
+ *
+ * <p>A long-term exponential average of round-trip time is compared against each
+ * new sample. While samples stay near the long-term average the limit grows by a
+ * queue allowance; once latency climbs the gradient drops below one and the limit
+ * shrinks proportionally.
+ */
+public class GradientLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final double longWindowFactor;
+
+    private double estimatedLimit;
+    private double longRttNanos = -1;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double rttTolerance, int longWindow) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+        this.longWindowFactor = 2.0 / (longWindow + 1);
+        this.estimatedLimit = initialLimit;
+    }
+
+    public synchronized int getLimit() {
+        return (int) estimatedLimit;
+    }
+
+    /**
+     * Feeds one completed request into the estimator.
+     *
+     * @param rttNanos observed latency of the request
+     * @param inflight number of requests in flight when this one started
+     * @param dropped whether the request was cancelled or timed out
+     */
+    public synchronized void onSample(long rttNanos, int inflight, boolean dropped) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        if (longRttNanos < 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) * longWindowFactor;
+        }
+
+        // Don't grow the limit on the back of samples taken while mostly idle.
+        if (!dropped && inflight < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = dropped
+            ? 0.5
+            : Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / rttNanos));
+        double queueSize = Math.sqrt(estimatedLimit);
+        double newLimit = estimatedLimit * gradient + queueSize;
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+        // Pull the long-term average back down when the service has recovered so it
+        // doesn't anchor on a period of elevated latency.
+        if (longRttNanos / rttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package github.couryrr.backend.playbook.data.limit;
+
+import github.couryrr.backend.playbook.data.gen.board.v1.MessageBoardServiceGrpc;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+
+import java.util.Map;
+
+/**
+ * Groups UserService and MessageBoardService RPCs by cost. Groups with a lower admission share are shed
+ * first once the server as a whole runs out of concurrency.
+ *
+ * <p>Bulk and streaming RPCs such as {@code ImportUsers}, {@code ExportUsers} and
+ * {@code SubscribeBoard} are not grouped, so they are not limited: a call that lives
+ * for seconds would hold a permit throughout and feed its duration to the RTT samples
+ * that size the limit for ordinary unary calls.
+ */
+public enum MethodGroup {
+    READ(1.0),
+    WRITE(0.8),
+    AUTH(0.7);
+
+    private static final Map<String, MethodGroup> BY_METHOD = Map.ofEntries(
+        Map.entry(UserServiceGrpc.getGetUserMethod().getFullMethodName(), READ),
+        Map.entry(UserServiceGrpc.getGetUsersMethod().getFullMethodName(), READ),
+        Map.entry(UserServiceGrpc.getCheckUsernameMethod().getFullMethodName(), READ),
+        Map.entry(UserServiceGrpc.getValidateEmailMethod().getFullMethodName(), READ),
+        Map.entry(UserServiceGrpc.getGetPublicKeysMethod().getFullMethodName(), READ),
+        Map.entry(UserServiceGrpc.getSearchUsersMethod().getFullMethodName(), READ),
+        Map.entry(UserServiceGrpc.getCreateUserMethod().getFullMethodName(), WRITE),
+        Map.entry(UserServiceGrpc.getUpdateUserMethod().getFullMethodName(), WRITE),
+        Map.entry(UserServiceGrpc.getDeleteUserMethod().getFullMethodName(), WRITE),
+        Map.entry(UserServiceGrpc.getRegisterPublicKeyMethod().getFullMethodName(), WRITE),
+        Map.entry(UserServiceGrpc.getAuthenticateUserMethod().getFullMethodName(), AUTH),
+        Map.entry(MessageBoardServiceGrpc.getListMessagesMethod().getFullMethodName(), READ),
+        Map.entry(MessageBoardServiceGrpc.getPostMessageMethod().getFullMethodName(), WRITE)
+    );
+
+    private final double admissionShare;
+
+    MethodGroup(double admissionShare) {
+        this.admissionShare = admissionShare;
+    }
+
+    public double admissionShare() {
+        return admissionShare;
+    }
+
+    /**
+     * Returns the group for a full method name, or {@code null} for methods that are
+     * not limited (health checks, reflection).
+     */
+    public static MethodGroup of(String fullMethodName) {
+        return BY_METHOD.get(fullMethodName);
+    }
+}
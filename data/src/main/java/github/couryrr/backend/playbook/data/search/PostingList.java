@@ -0,0 +1,116 @@
+package github.couryrr.backend.playbook.data.search;
+
+import java.util.Arrays;
+
+/**
+ * Ascending document numbers, stored as varint-encoded gaps. Most gaps in a large
+ * index fit in one or two bytes, against four for a plain {@code int[]}.
+ *
+ * <p>One writer appends; any number of readers iterate without locking. Both the
+ * buffer and {@code length} are volatile, and a reader reads {@code length} first, so
+ * whichever buffer it then sees holds at least that many valid bytes: the writer only
+ * replaces the buffer with a copy and only writes past {@code length}.
+ */
+final class PostingList {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private volatile byte[] bytes = new byte[INITIAL_CAPACITY];
+    private volatile int length;
+    private volatile int size;
+    private int last = -1;
+
+    /**
+     * Appends {@code doc}, which must not be lower than the last one appended.
+     * Appending the last document again is a no-op.
+     */
+    void add(int doc) {
+        if (doc == last) {
+            return;
+        }
+        if (doc < last) {
+            throw new IllegalArgumentException("Document " + doc + " appended after " + last);
+        }
+        int position = length;
+        byte[] buffer = bytes;
+        if (position + 5 > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + 5));
+            bytes = buffer;
+        }
+        int gap = doc - last;
+        while ((gap & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+        }
+        buffer[position++] = (byte) gap;
+        last = doc;
+        size++;
+        length = position;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Encoded bytes in use, excluding the buffer's spare capacity.
+     */
+    int encodedBytes() {
+        return length;
+    }
+
+    Cursor cursor() {
+        int end = length;
+        return new Cursor(bytes, end);
+    }
+
+    /**
+     * Forward-only iteration over the documents present when the cursor was made.
+     */
+    static final class Cursor {
+
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+        private int doc = -1;
+
+        private Cursor(byte[] bytes, int end) {
+            this.bytes = bytes;
+            this.end = end;
+        }
+
+        /**
+         * Returns the next document, or {@code -1} when exhausted.
+         */
+        int next() {
+            if (position >= end) {
+                return -1;
+            }
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += gap;
+            return doc;
+        }
+
+        /**
+         * Returns the first document at or after {@code target}, or {@code -1} when
+         * there is none. Never moves backwards.
+         */
+        int advance(int target) {
+            int current = doc;
+            while (current < target) {
+                current = next();
+                if (current < 0) {
+                    return -1;
+                }
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package github.couryrr.backend.playbook.data.search;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Inverted trigram index over username, first and last name and the local part of
+ * the email, for substring search.
+ *
+ * <p>Each indexed version of a user gets a new document number, appended to the
+ * {@link PostingList} of every trigram it contains, so lists stay sorted and a write
+ * never rewrites one. Versions replaced by an update or removed by a delete are left
+ * in place: every candidate is checked against the live user before it is returned,
+ * which drops stale versions and trigram false positives alike. Once stale versions
+ * outnumber live ones, the index is rebuilt from the store in the background.
+ *
+ * <p>A search examines at most {@code maxCandidates} candidate documents, oldest
+ * first, which bounds its cost however common the query is. Results are ranked among
+ * those, and the result says when candidates were left unexamined.
+ */
+public final class UserSearchIndex {
+
+    public static final int MIN_TERM_LENGTH = 3;
+
+    private static final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private static final int MIN_STALE_FOR_REBUILD = 1 << 16;
+    // Weights of the fields returned by searchableFields, in order.
+    private static final int[] FIELD_WEIGHTS = {3, 2, 2, 1};
+    private static final Comparator<Match> RANKING = Comparator.comparingInt(Match::score).reversed()
+        .thenComparing(match -> match.user().getUsername());
+
+    /**
+     * One page of ranked users. {@code totalMatches} counts matches among the
+     * candidates examined.
+     */
+    public record Result(List<User> users, int totalMatches, boolean truncated) {
+    }
+
+    private record Match(User user, int score) {
+    }
+
+    private final Supplier<Iterable<User>> source;
+    private final Executor rebuildExecutor;
+    private final int maxCandidates;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile Generation generation = new Generation();
+    // Guarded by this.
+    private long stale;
+    private List<User> addedDuringRebuild;
+
+    /**
+     * @param source every live user, read when the index is rebuilt
+     */
+    public UserSearchIndex(Supplier<Iterable<User>> source, Executor rebuildExecutor, int maxCandidates) {
+        this.source = source;
+        this.rebuildExecutor = rebuildExecutor;
+        this.maxCandidates = maxCandidates;
+    }
+
+    public synchronized void add(User user) {
+        generation.add(user);
+        if (addedDuringRebuild != null) {
+            addedDuringRebuild.add(user);
+        }
+    }
+
+    public synchronized void addAll(Collection<User> users) {
+        users.forEach(this::add);
+    }
+
+    /**
+     * Indexes the new version of an updated user, unless none of its searchable
+     * fields changed.
+     */
+    public void update(User previous, User current) {
+        if (Arrays.equals(searchableFields(previous), searchableFields(current))) {
+            return;
+        }
+        synchronized (this) {
+            add(current);
+            stale++;
+        }
+        rebuildIfDue();
+    }
+
+    public void remove(User user) {
+        synchronized (this) {
+            stale++;
+        }
+        rebuildIfDue();
+    }
+
+    /**
+     * Splits a query into lowercased, distinct terms.
+     */
+    public static List<String> terms(String query) {
+        return Arrays.stream(query.toLowerCase(Locale.ROOT).trim().split("\\s+"))
+            .filter(term -> !term.isEmpty())
+            .distinct()
+            .toList();
+    }
+
+    /**
+     * Finds users containing every term of {@code query}, each at least
+     * {@link #MIN_TERM_LENGTH} characters, and returns {@code limit} of them from
+     * {@code offset} in rank order. {@code users} resolves an id to the live user, or
+     * {@code null} when it is gone.
+     */
+    public Result search(String query, int offset, int limit, Function<String, User> users) {
+        List<String> terms = terms(query);
+        Generation current = generation;
+        List<String> candidates = new ArrayList<>();
+        boolean truncated = current.candidates(terms, maxCandidates, candidates);
+
+        List<Match> matches = new ArrayList<>();
+        for (String userId : candidates) {
+            User user = users.apply(userId);
+            int score = user == null ? -1 : score(user, terms);
+            if (score > 0) {
+                matches.add(new Match(user, score));
+            }
+        }
+        matches.sort(RANKING);
+        List<User> page = matches.stream()
+            .skip(offset)
+            .limit(limit)
+            .map(Match::user)
+            .toList();
+        return new Result(page, matches.size(), truncated);
+    }
+
+    public int documents() {
+        return generation.documents;
+    }
+
+    /**
+     * Bytes of encoded postings, for the footprint gauge.
+     */
+    public long postingBytes() {
+        return generation.postings.values().stream().mapToLong(PostingList::encodedBytes).sum();
+    }
+
+    /**
+     * Replaces the index with one built from {@link #source}. Writes that arrive while
+     * it runs go to both, so none is lost in the swap.
+     */
+    void rebuild() {
+        try {
+            long staleAtStart;
+            synchronized (this) {
+                addedDuringRebuild = new ArrayList<>();
+                staleAtStart = stale;
+            }
+            Generation fresh = new Generation();
+            for (User user : source.get()) {
+                fresh.add(user);
+            }
+            synchronized (this) {
+                addedDuringRebuild.forEach(fresh::add);
+                addedDuringRebuild = null;
+                stale -= staleAtStart;
+                generation = fresh;
+            }
+            log.info("Rebuilt user search index with {} documents", fresh.documents);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                addedDuringRebuild = null;
+            }
+            log.warn("User search index rebuild failed", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private void rebuildIfDue() {
+        boolean due;
+        synchronized (this) {
+            due = stale >= MIN_STALE_FOR_REBUILD && stale > generation.documents - stale;
+        }
+        if (due && rebuilding.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Sums, over the terms, the best weighted match of each term in any field: an exact
+     * match beats a prefix, which beats a substring, and the username outweighs names,
+     * which outweigh the email. Returns {@code -1} when a term matches no field.
+     */
+    static int score(User user, List<String> terms) {
+        String[] fields = searchableFields(user);
+        int total = 0;
+        for (String term : terms) {
+            int best = 0;
+            for (int i = 0; i < fields.length; i++) {
+                best = Math.max(best, fieldScore(fields[i], term) * FIELD_WEIGHTS[i]);
+            }
+            if (best == 0) {
+                return -1;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    private static int fieldScore(String field, String term) {
+        if (field.equals(term)) {
+            return 4;
+        }
+        if (field.startsWith(term)) {
+            return 3;
+        }
+        return field.contains(term) ? 1 : 0;
+    }
+
+    /**
+     * Username, first name, last name and email local part, lowercased.
+     */
+    private static String[] searchableFields(User user) {
+        String email = user.getEmail();
+        int at = email.indexOf('@');
+        return new String[] {
+            user.getUsername().toLowerCase(Locale.ROOT),
+            user.getFirstName().toLowerCase(Locale.ROOT),
+            user.getLastName().toLowerCase(Locale.ROOT),
+            (at < 0 ? email : email.substring(0, at)).toLowerCase(Locale.ROOT)
+        };
+    }
+
+    private static long gram(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    /**
+     * Document numbers, the user id behind each, and the trigram postings. Written by
+     * one thread at a time; read without locks. A document's id is set, with a volatile
+     * write, before it is appended to any posting list, so a reader that found a
+     * document can look it up.
+     */
+    private static final class Generation {
+
+        private final Map<Long, PostingList> postings = new ConcurrentHashMap<>();
+        private volatile AtomicReferenceArray<String> userIds = new AtomicReferenceArray<>(1024);
+        private volatile int documents;
+
+        void add(User user) {
+            int doc = documents;
+            AtomicReferenceArray<String> ids = userIds;
+            if (doc == ids.length()) {
+                AtomicReferenceArray<String> grown = new AtomicReferenceArray<>(doc * 2);
+                for (int i = 0; i < doc; i++) {
+                    grown.setPlain(i, ids.getPlain(i));
+                }
+                ids = grown;
+                userIds = grown;
+            }
+            ids.set(doc, user.getId());
+            for (String field : searchableFields(user)) {
+                for (int i = 0; i + MIN_TERM_LENGTH <= field.length(); i++) {
+                    // A trigram seen twice in one user hits the same list and is skipped there.
+                    postings.computeIfAbsent(gram(field, i), key -> new PostingList()).add(doc);
+                }
+            }
+            documents = doc + 1;
+        }
+
+        /**
+         * Adds to {@code out} the user ids of up to {@code limit} documents containing
+         * every trigram of every term, once per user. Returns whether it stopped at the
+         * limit with documents left.
+         */
+        boolean candidates(List<String> terms, int limit, List<String> out) {
+            Set<Long> grams = new HashSet<>();
+            for (String term : terms) {
+                for (int i = 0; i + MIN_TERM_LENGTH <= term.length(); i++) {
+                    grams.add(gram(term, i));
+                }
+            }
+            if (grams.isEmpty()) {
+                return false;
+            }
+            List<PostingList> lists = new ArrayList<>(grams.size());
+            for (long gram : grams) {
+                PostingList list = postings.get(gram);
+                if (list == null) {
+                    return false;
+                }
+                lists.add(list);
+            }
+            // Drive the join from the rarest trigram.
+            lists.sort(Comparator.comparingInt(PostingList::size));
+            PostingList.Cursor[] cursors = lists.stream().map(PostingList::cursor).toArray(PostingList.Cursor[]::new);
+
+            Set<String> seen = new HashSet<>();
+            int examined = 0;
+            int doc = cursors[0].next();
+            candidates:
+            while (doc >= 0) {
+                if (examined == limit) {
+                    return true;
+                }
+                for (int i = 1; i < cursors.length; i++) {
+                    int found = cursors[i].advance(doc);
+                    if (found < 0) {
+                        return false;
+                    }
+                    if (found > doc) {
+                        doc = cursors[0].advance(found);
+                        continue candidates;
+                    }
+                }
+                examined++;
+                String userId = userIds.get(doc);
+                if (seen.add(userId)) {
+                    out.add(userId);
+                }
+                doc = cursors[0].next();
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package github.couryrr.backend.playbook.data.service;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Checks the current gRPC {@link Context} before expensive stages so calls whose
+ * client has already timed out or gone away stop consuming capacity.
+ */
+class DeadlineGuard {
+
+    static final String WASTED_WORK_AVOIDED = "data.user.wasted_work.avoided";
+
+    private final MeterRegistry meterRegistry;
+
+    DeadlineGuard(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns {@code true} and fails the call when the caller is no longer waiting
+     * for it. Callers must return straight away without writing any state.
+     */
+    boolean abandon(String method, String stage, StreamObserver<?> responseObserver) {
+        Context context = Context.current();
+        Deadline deadline = context.getDeadline();
+        boolean expired = deadline != null && deadline.isExpired();
+        if (!expired && !context.isCancelled()) {
+            return false;
+        }
+
+        meterRegistry.counter(WASTED_WORK_AVOIDED, "method", method, "stage", stage).increment();
+        Status status = expired
+            ? Status.DEADLINE_EXCEEDED.withDescription("Deadline exceeded before " + stage)
+            : Status.CANCELLED.withDescription("Call cancelled before " + stage);
+        responseObserver.onError(status.asRuntimeException());
+        return true;
+    }
+}
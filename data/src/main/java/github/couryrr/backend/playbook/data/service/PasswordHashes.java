@@ -0,0 +1,82 @@
+package github.couryrr.backend.playbook.data.service;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Verifies credentials that were hashed before being imported, encoded as
+ * {@code pbkdf2-sha256$<iterations>$<base64 salt>$<base64 hash>}.
+ *
+ * <p>Iterations and hash length are bounded, so an imported row cannot make every
+ * later login for its email spend an unbounded amount of CPU.
+ */
+final class PasswordHashes {
+
+    static final String PBKDF2_SHA256 = "pbkdf2-sha256";
+    static final int MIN_ITERATIONS = 1_000;
+    static final int MAX_ITERATIONS = 2_000_000;
+    static final int MIN_HASH_BYTES = 16;
+    static final int MAX_HASH_BYTES = 64;
+
+    private PasswordHashes() {
+    }
+
+    static String encode(String password, byte[] salt, int iterations) {
+        byte[] hash = pbkdf2(password, salt, iterations, 256);
+        return PBKDF2_SHA256 + "$" + iterations + "$"
+            + Base64.getEncoder().encodeToString(salt) + "$"
+            + Base64.getEncoder().encodeToString(hash);
+    }
+
+    static boolean isValid(String encoded) {
+        return parse(encoded) != null;
+    }
+
+    static boolean matches(String password, String encoded) {
+        Parsed parsed = parse(encoded);
+        if (parsed == null) {
+            return false;
+        }
+        byte[] actual = pbkdf2(password, parsed.salt, parsed.iterations, parsed.hash.length * 8);
+        return MessageDigest.isEqual(actual, parsed.hash);
+    }
+
+    private static Parsed parse(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 4 || !PBKDF2_SHA256.equals(parts[0])) {
+            return null;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] hash = Base64.getDecoder().decode(parts[3]);
+            if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS || salt.length == 0
+                    || hash.length < MIN_HASH_BYTES || hash.length > MAX_HASH_BYTES) {
+                return null;
+            }
+            return new Parsed(iterations, salt, hash);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations, int keyLengthBits) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keyLengthBits);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private record Parsed(int iterations, byte[] salt, byte[] hash) {
+    }
+}
@@ -0,0 +1,105 @@
+package github.couryrr.backend.playbook.data.service;
+
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.user.v1.PublicKeyBatch;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserPublicKeys;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * In-memory index of published public keys, answering {@code GetPublicKeys} without
+ * going to the user store.
+ *
+ * <p>Only users with at least one key have an entry, and an entry shares the key
+ * bytes of the stored {@link User} instead of copying them. Each entry keeps the
+ * answer with and without retired keys ready-made, so resolving a user is one hash
+ * probe and no filtering. The store stays the source of truth: callers refresh the
+ * entry after every write that may change a user's keys or username.
+ */
+class PublicKeyDirectory {
+
+    private record Entry(Timestamp updatedAt, UserPublicKeys all, UserPublicKeys active) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Brings the entry for {@code user} in line with the version just written. A
+     * refresh carrying an older version than the entry, from a write that lost a race,
+     * is ignored.
+     */
+    void refresh(User user) {
+        entries.compute(user.getId(), (id, existing) -> {
+            if (existing != null && compare(user.getUpdatedAt(), existing.updatedAt()) < 0) {
+                return existing;
+            }
+            return user.getPublicKeysCount() == 0 ? null : entryOf(user);
+        });
+    }
+
+    void remove(String userId) {
+        entries.remove(userId);
+    }
+
+    /**
+     * Resolves keys for {@code userIds}, then {@code usernames}. A user named more than
+     * once is returned once; names that resolve to no user, or to a user with no key to
+     * return, are reported as missing.
+     */
+    PublicKeyBatch lookup(List<String> userIds, List<String> usernames, boolean includeRetired,
+            Function<String, String> idByUsername) {
+        PublicKeyBatch.Builder batch = PublicKeyBatch.newBuilder();
+        Set<String> seen = new HashSet<>();
+        for (String userId : userIds) {
+            add(batch, seen, userId, userId, includeRetired);
+        }
+        for (String username : usernames) {
+            add(batch, seen, idByUsername.apply(username.toLowerCase()), username, includeRetired);
+        }
+        return batch.build();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void add(PublicKeyBatch.Builder batch, Set<String> seen, String userId, String requested,
+            boolean includeRetired) {
+        Entry entry = userId == null ? null : entries.get(userId);
+        UserPublicKeys keys = entry == null ? null : includeRetired ? entry.all() : entry.active();
+        if (keys == null) {
+            batch.addMissing(requested);
+        } else if (seen.add(userId)) {
+            batch.addUsers(keys);
+        }
+    }
+
+    private static Entry entryOf(User user) {
+        UserPublicKeys all = UserPublicKeys.newBuilder()
+            .setUserId(user.getId())
+            .setUsername(user.getUsername())
+            .addAllKeys(user.getPublicKeysList())
+            .build();
+        UserPublicKeys.Builder active = UserPublicKeys.newBuilder()
+            .setUserId(user.getId())
+            .setUsername(user.getUsername());
+        user.getPublicKeysList().stream()
+            .filter(key -> !key.hasRetiredAt())
+            .forEach(active::addKeys);
+        if (active.getKeysCount() == all.getKeysCount()) {
+            return new Entry(user.getUpdatedAt(), all, all);
+        }
+        return new Entry(user.getUpdatedAt(), all, active.getKeysCount() == 0 ? null : active.build());
+    }
+
+    private static int compare(Timestamp a, Timestamp b) {
+        int bySeconds = Long.compare(a.getSeconds(), b.getSeconds());
+        return bySeconds != 0 ? bySeconds : Integer.compare(a.getNanos(), b.getNanos());
+    }
+}
@@ -0,0 +1,87 @@
+package github.couryrr.backend.playbook.data.service;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the load and
+ * every caller that arrives while it is in flight gets the same result. Nothing is
+ * cached once the load completes.
+ *
+ * <p>Followers wait no longer than their own gRPC deadline. Results are shared
+ * between callers, so they must be immutable.
+ */
+class SingleFlight<K, V> {
+
+    static final String CALLS = "data.user.single_flight.calls";
+    static final String COALESCING_RATIO = "data.user.single_flight.coalescing_ratio";
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    SingleFlight(String method, MeterRegistry meterRegistry) {
+        this.leaders = meterRegistry.counter(CALLS, "method", method, "role", "leader");
+        this.followers = meterRegistry.counter(CALLS, "method", method, "role", "follower");
+        Gauge.builder(COALESCING_RATIO, this, SingleFlight::coalescingRatio)
+            .tag("method", method)
+            .register(meterRegistry);
+    }
+
+    V load(K key, Supplier<V> loader) throws Exception {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            followers.increment();
+            return await(existing);
+        }
+
+        leaders.increment();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (Throwable t) {
+            // Errors too, or followers would wait on a call that never completes.
+            call.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    double coalescingRatio() {
+        double total = leaders.count() + followers.count();
+        return total == 0 ? 0 : followers.count() / total;
+    }
+
+    private V await(CompletableFuture<V> call) throws Exception {
+        try {
+            Deadline deadline = Context.current().getDeadline();
+            if (deadline == null) {
+                return call.get();
+            }
+            return call.get(deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw Status.DEADLINE_EXCEEDED.withDescription("Deadline exceeded waiting for in-flight load")
+                .asRuntimeException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package github.couryrr.backend.playbook.data.service;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, lock-free string deduplication for highly repetitive user fields.
+ *
+ * <p>The pool is a direct-mapped table: each string hashes to exactly one slot and
+ * replaces whatever was there on a miss. That keeps memory fixed and the write path
+ * to one hash and one comparison, at the cost of occasionally missing a share when
+ * two common values collide.
+ */
+class StringPool {
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    StringPool(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    String intern(String value) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        lookups.increment();
+        int hash = value.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        String existing = slots.get(index);
+        if (existing != null && existing.equals(value)) {
+            if (existing != value) {
+                hits.increment();
+                bytesSaved.add(retainedSize(value));
+            }
+            return existing;
+        }
+        slots.set(index, value);
+        return value;
+    }
+
+    long getLookups() {
+        return lookups.sum();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Estimated heap no longer retained because a duplicate was replaced by a pooled
+     * instance. Assumes compressed oops and Latin-1 compact strings.
+     */
+    long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    static long retainedSize(String value) {
+        long arrayBytes = 16 + value.length();
+        return 24 + ((arrayBytes + 7) & ~7L);
+    }
+}
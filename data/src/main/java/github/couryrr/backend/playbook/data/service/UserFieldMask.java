@@ -0,0 +1,91 @@
+package github.couryrr.backend.playbook.data.service;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.FieldMask;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+
+/**
+ * The top-level {@link User} fields a read asked for, as a bit per field number.
+ *
+ * <p>Projecting copies only the selected fields into a new message, so a username-only
+ * read builds and serializes one string instead of the whole user with its
+ * timestamps and keys. A mask that selects every field, including the empty one,
+ * hands back the stored instance untouched. Nested paths such as
+ * {@code public_keys.key_id} are not supported.
+ */
+class UserFieldMask {
+
+    private static final long ALL_FIELDS = User.getDescriptor().getFields().stream()
+        .mapToLong(field -> bit(field.getNumber()))
+        .reduce(0, (left, right) -> left | right);
+
+    static final UserFieldMask ALL = new UserFieldMask(ALL_FIELDS);
+
+    private final long fields;
+
+    private UserFieldMask(long fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Parses {@code mask}, returning {@link #ALL} when it has no paths and
+     * {@code null} when a path names no field of {@link User}.
+     */
+    static UserFieldMask of(FieldMask mask) {
+        if (mask.getPathsCount() == 0) {
+            return ALL;
+        }
+        long fields = 0;
+        for (String path : mask.getPathsList()) {
+            FieldDescriptor field = User.getDescriptor().findFieldByName(path);
+            if (field == null) {
+                return null;
+            }
+            fields |= bit(field.getNumber());
+        }
+        return fields == ALL_FIELDS ? ALL : new UserFieldMask(fields);
+    }
+
+    User apply(User user) {
+        if (fields == ALL_FIELDS) {
+            return user;
+        }
+        User.Builder builder = User.newBuilder();
+        if (selects(User.ID_FIELD_NUMBER)) {
+            builder.setId(user.getId());
+        }
+        if (selects(User.USERNAME_FIELD_NUMBER)) {
+            builder.setUsername(user.getUsername());
+        }
+        if (selects(User.EMAIL_FIELD_NUMBER)) {
+            builder.setEmail(user.getEmail());
+        }
+        if (selects(User.FIRST_NAME_FIELD_NUMBER)) {
+            builder.setFirstName(user.getFirstName());
+        }
+        if (selects(User.LAST_NAME_FIELD_NUMBER)) {
+            builder.setLastName(user.getLastName());
+        }
+        if (selects(User.CREATED_AT_FIELD_NUMBER) && user.hasCreatedAt()) {
+            builder.setCreatedAt(user.getCreatedAt());
+        }
+        if (selects(User.UPDATED_AT_FIELD_NUMBER) && user.hasUpdatedAt()) {
+            builder.setUpdatedAt(user.getUpdatedAt());
+        }
+        if (selects(User.DELETED_AT_FIELD_NUMBER) && user.hasDeletedAt()) {
+            builder.setDeletedAt(user.getDeletedAt());
+        }
+        if (selects(User.PUBLIC_KEYS_FIELD_NUMBER)) {
+            builder.addAllPublicKeys(user.getPublicKeysList());
+        }
+        return builder.build();
+    }
+
+    private boolean selects(int fieldNumber) {
+        return (fields & bit(fieldNumber)) != 0;
+    }
+
+    private static long bit(int fieldNumber) {
+        return 1L << fieldNumber;
+    }
+}
@@ -1,33 +1,139 @@
 package github.couryrr.backend.playbook.data.service;
 
+import github.couryrr.backend.playbook.data.crypto.StreamEncryption;
+import github.couryrr.backend.playbook.data.export.ExportProperties;
+import github.couryrr.backend.playbook.data.export.ExportResult;
+import github.couryrr.backend.playbook.data.export.UserExporter;
 import github.couryrr.backend.playbook.data.gen.user.v1.*;
+import github.couryrr.backend.playbook.data.search.UserSearchIndex;
+import github.couryrr.backend.playbook.data.store.HeapUserStore;
+import github.couryrr.backend.playbook.data.store.UserSnapshot;
+import github.couryrr.backend.playbook.data.store.UserStore;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import com.google.protobuf.FieldMask;
 import com.google.protobuf.Timestamp;
 
 @Component
 public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
 
-    private final Map<String, User> users = new ConcurrentHashMap<>();
-    private final Map<String, String> emailToId = new ConcurrentHashMap<>();
-    private final Map<String, String> usernameToId = new ConcurrentHashMap<>();
     private final Map<String, String> passwords = new ConcurrentHashMap<>();
+    private final Map<String, String> passwordHashes = new ConcurrentHashMap<>();
     
+    private static final int IMPORT_BATCH_SIZE = 1024;
+    private static final int IMPORT_MAX_REPORTED_ERRORS = 1000;
+    private static final int STRING_POOL_CAPACITY = 1 << 16;
+    private static final int USER_WRITE_LOCK_STRIPES = 256;
+    private static final String STAGE_OBSERVATION = "data.user.stage";
+    private static final String CONDITIONAL_READS = "data.user.get.conditional";
+    private static final int MAX_PUBLIC_KEYS = 16;
+    private static final int MAX_PUBLIC_KEY_BYTES = 1024;
+    private static final int MAX_PUBLIC_KEY_LOOKUPS = 1000;
+    private static final int MAX_BATCH_USERS = 1000;
+    private static final int SEARCH_MAX_CANDIDATES = 10_000;
+    private static final int SEARCH_DEFAULT_PAGE_SIZE = 20;
+    private static final int SEARCH_MAX_PAGE_SIZE = 100;
+    private static final int SEARCH_MAX_TERMS = 8;
+
     private static final Pattern EMAIL_PATTERN = Pattern.compile(
         "^[A-Za-z0-9+_.-]+@([A-Za-z0-9.-]+\\.[A-Za-z]{2,})$"
     );
+    private static final Pattern KEY_ID_PATTERN = Pattern.compile("^[A-Za-z0-9._-]{1,64}$");
+    private static final Pattern PAGE_TOKEN_PATTERN = Pattern.compile("^[0-9]{1,9}$");
+    private static final Set<String> UPDATABLE_FIELDS = Set.of("username", "email", "first_name", "last_name");
+
+    private final UserStore userStore;
+    private final ObservationRegistry observationRegistry;
+    private final DeadlineGuard deadlineGuard;
+    private final SingleFlight<String, User> userLoads;
+    private final SingleFlight<String, String> usernameLookups;
+    private final Counter conditionalModified;
+    private final Counter conditionalNotModified;
+    private final StringPool namePool = new StringPool(STRING_POOL_CAPACITY);
+    private final PublicKeyDirectory publicKeys = new PublicKeyDirectory();
+    // Striped locks serializing each user's read-modify-write (update, key registration
+    // and delete), so neither write overwrites the other's changes.
+    private final ReentrantLock[] userWriteLocks = Stream.generate(ReentrantLock::new)
+        .limit(USER_WRITE_LOCK_STRIPES)
+        .toArray(ReentrantLock[]::new);
+    private final UserSearchIndex searchIndex;
+    private final UserExporter userExporter;
+    private final Path exportDirectory;
+    private volatile Instant lastExportCompletedAt;
+
+    public UserServiceImpl() {
+        this(new SimpleMeterRegistry());
+    }
+
+    public UserServiceImpl(MeterRegistry meterRegistry) {
+        this(meterRegistry, new ExportProperties(Path.of("exports"), true), new HeapUserStore(),
+            ObservationRegistry.NOOP, StreamEncryption.disabled());
+    }
+
+    @Autowired
+    public UserServiceImpl(MeterRegistry meterRegistry, ExportProperties exportProperties, UserStore userStore,
+            ObservationRegistry observationRegistry, StreamEncryption streamEncryption) {
+        this.userStore = userStore;
+        this.userExporter = new UserExporter(streamEncryption);
+        this.observationRegistry = observationRegistry;
+        this.deadlineGuard = new DeadlineGuard(meterRegistry);
+        this.userLoads = new SingleFlight<>("GetUser", meterRegistry);
+        this.usernameLookups = new SingleFlight<>("CheckUsername", meterRegistry);
+        this.conditionalModified = meterRegistry.counter(CONDITIONAL_READS, "result", "modified");
+        this.conditionalNotModified = meterRegistry.counter(CONDITIONAL_READS, "result", "not_modified");
+        this.exportDirectory = exportProperties.directory();
+        this.searchIndex = new UserSearchIndex(userStore::users,
+            command -> Thread.ofVirtual().name("user-search-rebuild").start(command), SEARCH_MAX_CANDIDATES);
+
+        meterRegistry.gauge("data.user.string_pool.hits", namePool, StringPool::getHits);
+        meterRegistry.gauge("data.user.string_pool.lookups", namePool, StringPool::getLookups);
+        meterRegistry.gauge("data.user.string_pool.bytes_saved", namePool, StringPool::getBytesSaved);
+        meterRegistry.gauge("data.user.public_keys.users", publicKeys, PublicKeyDirectory::size);
+        meterRegistry.gauge("data.user.search.documents", searchIndex, UserSearchIndex::documents);
+        meterRegistry.gauge("data.user.search.posting_bytes", searchIndex, UserSearchIndex::postingBytes);
+        TimeGauge.builder("data.user.export.last_snapshot_age", this, TimeUnit.SECONDS, service ->
+                service.lastExportCompletedAt().map(at -> Duration.between(at, Instant.now()).toMillis() / 1000.0)
+                    .orElse(Double.NaN))
+            .register(meterRegistry);
+    }
 
     @Override
     public void createUser(CreateUserRequest request, StreamObserver<CreateUserResponse> responseObserver) {
         try {
-            ValidationError validationError = validateCreateUserRequest(request);
+            if (deadlineGuard.abandon("CreateUser", "validation", responseObserver)) {
+                return;
+            }
+
+            ValidationError validationError = stage("validate", () -> validateCreateUserRequest(request, false));
             if (validationError != null) {
                 CreateUserResponse response = CreateUserResponse.newBuilder()
                     .setError(validationError)
@@ -37,7 +143,7 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
                 return;
             }
 
-            String userId = UUID.randomUUID().toString();
+            String userId = stage("generate-id", () -> UUID.randomUUID().toString());
             Instant now = Instant.now();
             Timestamp timestamp = Timestamp.newBuilder()
                 .setSeconds(now.getEpochSecond())
@@ -48,32 +154,81 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
                 .setId(userId)
                 .setUsername(request.getUsername())
                 .setEmail(request.getEmail())
-                .setFirstName(request.getFirstName())
-                .setLastName(request.getLastName())
+                .setFirstName(namePool.intern(request.getFirstName()))
+                .setLastName(namePool.intern(request.getLastName()))
                 .setCreatedAt(timestamp)
                 .setUpdatedAt(timestamp)
                 .build();
 
-            users.put(userId, user);
-            emailToId.put(request.getEmail().toLowerCase(), userId);
-            usernameToId.put(request.getUsername().toLowerCase(), userId);
-            passwords.put(userId, request.getPassword());
+            // Claim the unique keys first so a concurrent create with the same username
+            // or email loses cleanly, and so a cancelled call can back out before the
+            // user becomes visible.
+            String usernameKey = request.getUsername().toLowerCase();
+            String emailKey = request.getEmail().toLowerCase();
+            ValidationError claimError = stage("claim-keys", () -> claimKeys(usernameKey, emailKey, userId));
+            if (claimError != null) {
+                responseObserver.onNext(CreateUserResponse.newBuilder()
+                    .setError(claimError)
+                    .build());
+                responseObserver.onCompleted();
+                return;
+            }
+            if (deadlineGuard.abandon("CreateUser", "write", responseObserver)) {
+                userStore.releaseUsername(usernameKey, userId);
+                userStore.releaseEmail(emailKey, userId);
+                return;
+            }
+
+            runStage("store-write", () -> {
+                passwords.put(userId, request.getPassword());
+                try {
+                    userStore.put(user);
+                } catch (RuntimeException e) {
+                    // A store that is full or failing to spill must not leave the keys
+                    // claimed by a user that was never written.
+                    passwords.remove(userId);
+                    releaseKeys(usernameKey, emailKey, userId);
+                    throw e;
+                }
+                searchIndex.add(user);
+            });
 
             CreateUserResponse response = CreateUserResponse.newBuilder()
                 .setUser(user)
                 .build();
             
-            responseObserver.onNext(response);
-            responseObserver.onCompleted();
+            runStage("respond", () -> {
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            });
         } catch (Exception e) {
             responseObserver.onError(e);
         }
     }
 
+    /**
+     * Answers a conditional read whose cached copy is still current with a
+     * {@link NotModified} carrying only the timestamp, so revalidating a cache costs a
+     * lookup and a few bytes instead of serializing the whole user.
+     */
     @Override
     public void getUser(GetUserRequest request, StreamObserver<GetUserResponse> responseObserver) {
         try {
-            User user = users.get(request.getId());
+            if (deadlineGuard.abandon("GetUser", "lookup", responseObserver)) {
+                return;
+            }
+
+            UserFieldMask readMask = UserFieldMask.of(request.getReadMask());
+            if (readMask == null) {
+                GetUserResponse response = GetUserResponse.newBuilder()
+                    .setValidationError(fieldValidationError("read_mask", "Read mask names an unknown field"))
+                    .build();
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+                return;
+            }
+
+            User user = userLoads.load(request.getId(), () -> userStore.get(request.getId()));
             if (user == null) {
                 NotFoundError error = NotFoundError.newBuilder()
                     .setMessage("User not found with id: " + request.getId())
@@ -86,8 +241,21 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
                 return;
             }
 
+            if (request.hasIfModifiedSince()) {
+                if (!isAfter(user.getUpdatedAt(), request.getIfModifiedSince())) {
+                    conditionalNotModified.increment();
+                    GetUserResponse response = GetUserResponse.newBuilder()
+                        .setNotModified(NotModified.newBuilder().setUpdatedAt(user.getUpdatedAt()))
+                        .build();
+                    responseObserver.onNext(response);
+                    responseObserver.onCompleted();
+                    return;
+                }
+                conditionalModified.increment();
+            }
+
             GetUserResponse response = GetUserResponse.newBuilder()
-                .setUser(user)
+                .setUser(readMask.apply(user))
                 .build();
             
             responseObserver.onNext(response);
@@ -97,64 +265,383 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
         }
     }
 
+    /**
+     * Reads every requested user from one snapshot, so a concurrent update shows up in
+     * all of them or in none.
+     */
     @Override
-    public void updateUser(UpdateUserRequest request, StreamObserver<UpdateUserResponse> responseObserver) {
+    public void getUsers(GetUsersRequest request, StreamObserver<GetUsersResponse> responseObserver) {
         try {
-            User existingUser = users.get(request.getId());
-            if (existingUser == null) {
-                NotFoundError error = NotFoundError.newBuilder()
-                    .setMessage("User not found with id: " + request.getId())
+            if (deadlineGuard.abandon("GetUsers", "lookup", responseObserver)) {
+                return;
+            }
+
+            if (request.getIdsCount() > MAX_BATCH_USERS) {
+                GetUsersResponse response = GetUsersResponse.newBuilder()
+                    .setError(fieldValidationError("ids", "At most " + MAX_BATCH_USERS + " ids per call"))
                     .build();
-                UpdateUserResponse response = UpdateUserResponse.newBuilder()
-                    .setNotFoundError(error)
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+                return;
+            }
+
+            UserFieldMask readMask = UserFieldMask.of(request.getReadMask());
+            if (readMask == null) {
+                GetUsersResponse response = GetUsersResponse.newBuilder()
+                    .setError(fieldValidationError("read_mask", "Read mask names an unknown field"))
                     .build();
                 responseObserver.onNext(response);
                 responseObserver.onCompleted();
                 return;
             }
 
-            ValidationError validationError = validateUpdateUserRequest(request, existingUser);
-            if (validationError != null) {
+            UserBatch batch = stage("lookup", () -> {
+                UserBatch.Builder builder = UserBatch.newBuilder();
+                try (UserSnapshot snapshot = userStore.snapshot()) {
+                    for (String id : new LinkedHashSet<>(request.getIdsList())) {
+                        User user = snapshot.get(id);
+                        if (user == null) {
+                            builder.addMissing(id);
+                        } else {
+                            builder.addUsers(readMask.apply(user));
+                        }
+                    }
+                }
+                return builder.build();
+            });
+            GetUsersResponse response = GetUsersResponse.newBuilder()
+                .setBatch(batch)
+                .build();
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void updateUser(UpdateUserRequest request, StreamObserver<UpdateUserResponse> responseObserver) {
+        try {
+            if (deadlineGuard.abandon("UpdateUser", "validation", responseObserver)) {
+                return;
+            }
+
+            if (!UPDATABLE_FIELDS.containsAll(request.getUpdateMask().getPathsList())) {
                 UpdateUserResponse response = UpdateUserResponse.newBuilder()
-                    .setValidationError(validationError)
+                    .setValidationError(fieldValidationError("update_mask",
+                        "Update mask may only name username, email, first_name and last_name"))
                     .build();
                 responseObserver.onNext(response);
                 responseObserver.onCompleted();
                 return;
             }
+            UpdateUserRequest update = withUpdateMask(request);
+
+            ReentrantLock writeLock = userWriteLock(update.getId());
+            writeLock.lock();
+            try {
+                User existingUser = userStore.get(update.getId());
+                if (existingUser == null) {
+                    NotFoundError error = NotFoundError.newBuilder()
+                        .setMessage("User not found with id: " + update.getId())
+                        .build();
+                    UpdateUserResponse response = UpdateUserResponse.newBuilder()
+                        .setNotFoundError(error)
+                        .build();
+                    responseObserver.onNext(response);
+                    responseObserver.onCompleted();
+                    return;
+                }
+
+                ValidationError validationError = stage("validate", () -> validateUpdateUserRequest(update, existingUser));
+                if (validationError != null) {
+                    UpdateUserResponse response = UpdateUserResponse.newBuilder()
+                        .setValidationError(validationError)
+                        .build();
+                    responseObserver.onNext(response);
+                    responseObserver.onCompleted();
+                    return;
+                }
+
+                User.Builder userBuilder = existingUser.toBuilder();
+                userBuilder.setUpdatedAt(nextUpdatedAt(existingUser.getUpdatedAt(), Instant.now()));
+
+                if (update.hasUsername()) {
+                    userBuilder.setUsername(update.getUsername());
+                }
+                if (update.hasEmail()) {
+                    userBuilder.setEmail(update.getEmail());
+                }
+                if (update.hasFirstName()) {
+                    userBuilder.setFirstName(namePool.intern(update.getFirstName()));
+                }
+                if (update.hasLastName()) {
+                    userBuilder.setLastName(namePool.intern(update.getLastName()));
+                }
+                User updatedUser = userBuilder.build();
+
+                // New keys are claimed before the old ones are released, so a cancelled or
+                // conflicting update never leaves the user without an index entry.
+                String userId = update.getId();
+                String oldUsernameKey = existingUser.getUsername().toLowerCase();
+                String oldEmailKey = existingUser.getEmail().toLowerCase();
+                String newUsernameKey = updatedUser.getUsername().toLowerCase();
+                String newEmailKey = updatedUser.getEmail().toLowerCase();
+                boolean usernameChanged = !newUsernameKey.equals(oldUsernameKey);
+                boolean emailChanged = !newEmailKey.equals(oldEmailKey);
+                ValidationError claimError = stage("claim-keys", () -> claimKeys(
+                    usernameChanged ? newUsernameKey : null, emailChanged ? newEmailKey : null, userId));
+                if (claimError != null) {
+                    responseObserver.onNext(UpdateUserResponse.newBuilder()
+                        .setValidationError(claimError)
+                        .build());
+                    responseObserver.onCompleted();
+                    return;
+                }
+                if (deadlineGuard.abandon("UpdateUser", "write", responseObserver)) {
+                    releaseKeys(usernameChanged ? newUsernameKey : null, emailChanged ? newEmailKey : null, userId);
+                    return;
+                }
+
+                boolean written = stage("store-write", () -> {
+                    boolean stored;
+                    try {
+                        stored = userStore.put(updatedUser);
+                    } catch (RuntimeException e) {
+                        releaseKeys(usernameChanged ? newUsernameKey : null, emailChanged ? newEmailKey : null, userId);
+                        throw e;
+                    }
+                    if (!stored) {
+                        return false;
+                    }
+                    releaseKeys(usernameChanged ? oldUsernameKey : null, emailChanged ? oldEmailKey : null, userId);
+                    return true;
+                });
+                if (!written) {
+                    // Deleted while this update was in flight.
+                    releaseKeys(usernameChanged ? newUsernameKey : null, emailChanged ? newEmailKey : null, userId);
+                    responseObserver.onNext(UpdateUserResponse.newBuilder()
+                        .setNotFoundError(NotFoundError.newBuilder()
+                            .setMessage("User not found with id: " + userId)
+                            .build())
+                        .build());
+                    responseObserver.onCompleted();
+                    return;
+                }
+                searchIndex.update(existingUser, updatedUser);
+                publicKeys.refresh(updatedUser);
+
+                UpdateUserResponse response = UpdateUserResponse.newBuilder()
+                    .setUser(updatedUser)
+                    .build();
+            
+                runStage("respond", () -> {
+                    responseObserver.onNext(response);
+                    responseObserver.onCompleted();
+                });
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void deleteUser(DeleteUserRequest request, StreamObserver<DeleteUserResponse> responseObserver) {
+        try {
+            if (deadlineGuard.abandon("DeleteUser", "write", responseObserver)) {
+                return;
+            }
 
-            User.Builder userBuilder = existingUser.toBuilder();
+            String userId = request.getId();
             Instant now = Instant.now();
             Timestamp timestamp = Timestamp.newBuilder()
                 .setSeconds(now.getEpochSecond())
                 .setNanos(now.getNano())
                 .build();
-            userBuilder.setUpdatedAt(timestamp);
+            // Under the user's write lock, so a key registration that was stored before
+            // the tombstone cannot put the user back in the directory afterwards.
+            ReentrantLock writeLock = userWriteLock(userId);
+            User deletedUser;
+            writeLock.lock();
+            try {
+                deletedUser = stage("store-write", () -> userStore.delete(userId, timestamp));
+                if (deletedUser != null) {
+                    publicKeys.remove(userId);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            if (deletedUser == null) {
+                NotFoundError error = NotFoundError.newBuilder()
+                    .setMessage("User not found with id: " + userId)
+                    .build();
+                DeleteUserResponse response = DeleteUserResponse.newBuilder()
+                    .setError(error)
+                    .build();
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+                return;
+            }
+
+            // The tombstone blocks any further write to this id, so its keys can be
+            // released without an in-flight update claiming them back for it.
+            releaseKeys(deletedUser.getUsername().toLowerCase(), deletedUser.getEmail().toLowerCase(), userId);
+            passwords.remove(userId);
+            passwordHashes.remove(userId);
+            searchIndex.remove(deletedUser);
+
+            DeleteUserResponse response = DeleteUserResponse.newBuilder()
+                .setUser(deletedUser.toBuilder().setDeletedAt(timestamp).build())
+                .build();
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void registerPublicKey(RegisterPublicKeyRequest request,
+            StreamObserver<RegisterPublicKeyResponse> responseObserver) {
+        try {
+            if (deadlineGuard.abandon("RegisterPublicKey", "validation", responseObserver)) {
+                return;
+            }
+
+            String userId = request.getUserId();
+            ReentrantLock writeLock = userWriteLock(userId);
+            writeLock.lock();
+            try {
+                User existingUser = userStore.get(userId);
+                if (existingUser == null) {
+                    NotFoundError error = NotFoundError.newBuilder()
+                        .setMessage("User not found with id: " + userId)
+                        .build();
+                    RegisterPublicKeyResponse response = RegisterPublicKeyResponse.newBuilder()
+                        .setNotFoundError(error)
+                        .build();
+                    responseObserver.onNext(response);
+                    responseObserver.onCompleted();
+                    return;
+                }
+
+                ValidationError validationError = stage("validate",
+                    () -> validateRegisterPublicKeyRequest(request, existingUser));
+                if (validationError != null) {
+                    RegisterPublicKeyResponse response = RegisterPublicKeyResponse.newBuilder()
+                        .setValidationError(validationError)
+                        .build();
+                    responseObserver.onNext(response);
+                    responseObserver.onCompleted();
+                    return;
+                }
+                if (deadlineGuard.abandon("RegisterPublicKey", "write", responseObserver)) {
+                    return;
+                }
+
+                Timestamp timestamp = nextUpdatedAt(existingUser.getUpdatedAt(), Instant.now());
+                User updatedUser = withPublicKey(existingUser, request, timestamp);
+                // Writes to this user are serialized, so the version read above is still
+                // the stored one and the directory sees versions in store order.
+                boolean written = stage("store-write", () -> userStore.put(updatedUser));
+                if (!written) {
+                    responseObserver.onNext(RegisterPublicKeyResponse.newBuilder()
+                        .setNotFoundError(NotFoundError.newBuilder()
+                            .setMessage("User not found with id: " + userId)
+                            .build())
+                        .build());
+                    responseObserver.onCompleted();
+                    return;
+                }
+                publicKeys.refresh(updatedUser);
 
-            if (request.hasUsername()) {
-                usernameToId.remove(existingUser.getUsername().toLowerCase());
-                usernameToId.put(request.getUsername().toLowerCase(), request.getId());
-                userBuilder.setUsername(request.getUsername());
+                RegisterPublicKeyResponse response = RegisterPublicKeyResponse.newBuilder()
+                    .setUser(updatedUser)
+                    .build();
+
+                runStage("respond", () -> {
+                    responseObserver.onNext(response);
+                    responseObserver.onCompleted();
+                });
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void getPublicKeys(GetPublicKeysRequest request, StreamObserver<GetPublicKeysResponse> responseObserver) {
+        try {
+            if (deadlineGuard.abandon("GetPublicKeys", "lookup", responseObserver)) {
+                return;
             }
-            if (request.hasEmail()) {
-                emailToId.remove(existingUser.getEmail().toLowerCase());
-                emailToId.put(request.getEmail().toLowerCase(), request.getId());
-                userBuilder.setEmail(request.getEmail());
+
+            if (request.getUserIdsCount() + request.getUsernamesCount() > MAX_PUBLIC_KEY_LOOKUPS) {
+                GetPublicKeysResponse response = GetPublicKeysResponse.newBuilder()
+                    .setError(fieldValidationError("user_ids",
+                        "At most " + MAX_PUBLIC_KEY_LOOKUPS + " user ids and usernames per call"))
+                    .build();
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+                return;
             }
-            if (request.hasFirstName()) {
-                userBuilder.setFirstName(request.getFirstName());
+
+            PublicKeyBatch batch = publicKeys.lookup(request.getUserIdsList(), request.getUsernamesList(),
+                request.getIncludeRetired(), userStore::findIdByUsername);
+            GetPublicKeysResponse response = GetPublicKeysResponse.newBuilder()
+                .setBatch(batch)
+                .build();
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void searchUsers(SearchUsersRequest request, StreamObserver<SearchUsersResponse> responseObserver) {
+        try {
+            if (deadlineGuard.abandon("SearchUsers", "lookup", responseObserver)) {
+                return;
             }
-            if (request.hasLastName()) {
-                userBuilder.setLastName(request.getLastName());
+
+            ValidationError validationError = stage("validate", () -> validateSearchUsersRequest(request));
+            if (validationError != null) {
+                SearchUsersResponse response = SearchUsersResponse.newBuilder()
+                    .setError(validationError)
+                    .build();
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+                return;
             }
 
-            User updatedUser = userBuilder.build();
-            users.put(request.getId(), updatedUser);
+            int pageSize = request.getPageSize() == 0 ? SEARCH_DEFAULT_PAGE_SIZE : request.getPageSize();
+            int offset = request.getPageToken().isEmpty() ? 0 : Integer.parseInt(request.getPageToken());
+            UserSearchIndex.Result result = stage("search", () -> {
+                try (UserSnapshot snapshot = userStore.snapshot()) {
+                    return searchIndex.search(request.getQuery(), offset, pageSize, snapshot::get);
+                }
+            });
 
-            UpdateUserResponse response = UpdateUserResponse.newBuilder()
-                .setUser(updatedUser)
+            UserFieldMask readMask = UserFieldMask.of(request.getReadMask());
+            SearchUsersPage.Builder page = SearchUsersPage.newBuilder()
+                .addAllUsers(result.users().stream().map(readMask::apply).toList())
+                .setTotalMatches(result.totalMatches())
+                .setTruncated(result.truncated());
+            if (offset + pageSize < result.totalMatches()) {
+                page.setNextPageToken(Integer.toString(offset + pageSize));
+            }
+            SearchUsersResponse response = SearchUsersResponse.newBuilder()
+                .setPage(page)
                 .build();
-            
+
             responseObserver.onNext(response);
             responseObserver.onCompleted();
         } catch (Exception e) {
@@ -165,9 +652,13 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
     @Override
     public void validateEmail(ValidateEmailRequest request, StreamObserver<ValidateEmailResponse> responseObserver) {
         try {
+            if (deadlineGuard.abandon("ValidateEmail", "validation", responseObserver)) {
+                return;
+            }
+
             String email = request.getEmail();
             boolean isValid = EMAIL_PATTERN.matcher(email).matches();
-            boolean isAvailable = !emailToId.containsKey(email.toLowerCase());
+            boolean isAvailable = userStore.findIdByEmail(email.toLowerCase()) == null;
             
             String message = "";
             if (!isValid) {
@@ -194,8 +685,13 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
     @Override
     public void checkUsername(CheckUsernameRequest request, StreamObserver<CheckUsernameResponse> responseObserver) {
         try {
-            String username = request.getUsername();
-            boolean isAvailable = !usernameToId.containsKey(username.toLowerCase());
+            if (deadlineGuard.abandon("CheckUsername", "lookup", responseObserver)) {
+                return;
+            }
+
+            String usernameKey = request.getUsername().toLowerCase();
+            boolean isAvailable = usernameLookups.load(usernameKey,
+                () -> userStore.findIdByUsername(usernameKey)) == null;
             
             String message = isAvailable ? "Username is available" : "Username is already taken";
 
@@ -214,7 +710,11 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
     @Override
     public void authenticateUser(AuthenticateUserRequest request, StreamObserver<AuthenticateUserResponse> responseObserver) {
         try {
-            String userId = emailToId.get(request.getEmail().toLowerCase());
+            if (deadlineGuard.abandon("AuthenticateUser", "lookup", responseObserver)) {
+                return;
+            }
+
+            String userId = userStore.findIdByEmail(request.getEmail().toLowerCase());
             if (userId == null) {
                 AuthenticationError error = AuthenticationError.newBuilder()
                     .setCode("INVALID_CREDENTIALS")
@@ -228,8 +728,15 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
                 return;
             }
 
+            if (deadlineGuard.abandon("AuthenticateUser", "verify", responseObserver)) {
+                return;
+            }
+
             String storedPassword = passwords.get(userId);
-            if (!request.getPassword().equals(storedPassword)) {
+            boolean matches = storedPassword != null
+                ? request.getPassword().equals(storedPassword)
+                : PasswordHashes.matches(request.getPassword(), passwordHashes.get(userId));
+            if (!matches) {
                 AuthenticationError error = AuthenticationError.newBuilder()
                     .setCode("INVALID_CREDENTIALS")
                     .setMessage("Invalid email or password")
@@ -242,7 +749,7 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
                 return;
             }
 
-            User user = users.get(userId);
+            User user = userStore.get(userId);
             AuthenticateUserResponse response = AuthenticateUserResponse.newBuilder()
                 .setUser(user)
                 .build();
@@ -254,7 +761,71 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
         }
     }
 
-    private ValidationError validateCreateUserRequest(CreateUserRequest request) {
+    @Override
+    public StreamObserver<ImportUsersRequest> importUsers(StreamObserver<ImportUsersResponse> responseObserver) {
+        return new UserImport(responseObserver);
+    }
+
+    @Override
+    public void exportUsers(ExportUsersRequest request, StreamObserver<ExportUsersResponse> responseObserver) {
+        try {
+            if (deadlineGuard.abandon("ExportUsers", "write", responseObserver)) {
+                return;
+            }
+
+            String fileName = request.getFileName();
+            Path relative = fileName.isBlank() ? null : Path.of(fileName);
+            if (relative == null || relative.isAbsolute() || relative.getNameCount() != 1
+                    || fileName.equals(".") || fileName.equals("..")) {
+                ExportUsersResponse response = ExportUsersResponse.newBuilder()
+                    .setError(fieldValidationError("file_name", "File name must be a plain file name"))
+                    .build();
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+                return;
+            }
+
+            ExportResult result = exportTo(exportDirectory.resolve(relative), request.getCompress());
+            ExportUsersResponse response = ExportUsersResponse.newBuilder()
+                .setSummary(ExportSummary.newBuilder()
+                    .setPath(result.path().toString())
+                    .setUserCount(result.userCount())
+                    .setBytesWritten(result.bytesWritten())
+                    .setDurationMillis(result.duration().toMillis())
+                    .setCompressed(result.compressed())
+                    .setEncrypted(result.encrypted())
+                    .build())
+                .build();
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    /**
+     * Streams every user to {@code target} straight from a store snapshot, without
+     * copying it. The file holds the users as of the moment the export started; writes
+     * made while it runs are neither blocked nor reflected.
+     */
+    public ExportResult exportTo(Path target, boolean compress) throws IOException {
+        ExportResult result;
+        try (UserSnapshot snapshot = userStore.snapshot()) {
+            result = userExporter.export(snapshot.users(), target, compress);
+        }
+        lastExportCompletedAt = Instant.now();
+        return result;
+    }
+
+    /**
+     * When the last export, from the RPC or the schedule, finished writing its file.
+     */
+    public Optional<Instant> lastExportCompletedAt() {
+        return Optional.ofNullable(lastExportCompletedAt);
+    }
+
+    private ValidationError validateCreateUserRequest(CreateUserRequest request, boolean passwordPreHashed) {
         ValidationError.Builder errorBuilder = ValidationError.newBuilder();
         boolean hasErrors = false;
 
@@ -264,7 +835,7 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
                 .setMessage("Username is required")
                 .build());
             hasErrors = true;
-        } else if (usernameToId.containsKey(request.getUsername().toLowerCase())) {
+        } else if (userStore.findIdByUsername(request.getUsername().toLowerCase()) != null) {
             errorBuilder.addFieldErrors(FieldError.newBuilder()
                 .setField("username")
                 .setMessage("Username is already taken")
@@ -284,7 +855,7 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
                 .setMessage("Invalid email format")
                 .build());
             hasErrors = true;
-        } else if (emailToId.containsKey(request.getEmail().toLowerCase())) {
+        } else if (userStore.findIdByEmail(request.getEmail().toLowerCase()) != null) {
             errorBuilder.addFieldErrors(FieldError.newBuilder()
                 .setField("email")
                 .setMessage("Email is already taken")
@@ -292,13 +863,13 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
             hasErrors = true;
         }
 
-        if (request.getPassword().trim().isEmpty()) {
+        if (!passwordPreHashed && request.getPassword().trim().isEmpty()) {
             errorBuilder.addFieldErrors(FieldError.newBuilder()
                 .setField("password")
                 .setMessage("Password is required")
                 .build());
             hasErrors = true;
-        } else if (request.getPassword().length() < 6) {
+        } else if (!passwordPreHashed && request.getPassword().length() < 6) {
             errorBuilder.addFieldErrors(FieldError.newBuilder()
                 .setField("password")
                 .setMessage("Password must be at least 6 characters")
@@ -344,7 +915,7 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
             hasErrors = true;
         } else if (request.hasUsername() && 
                    !request.getUsername().equals(existingUser.getUsername()) &&
-                   usernameToId.containsKey(request.getUsername().toLowerCase())) {
+                   userStore.findIdByUsername(request.getUsername().toLowerCase()) != null) {
             errorBuilder.addFieldErrors(FieldError.newBuilder()
                 .setField("username")
                 .setMessage("Username is already taken")
@@ -366,7 +937,7 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
             hasErrors = true;
         } else if (request.hasEmail() && 
                    !request.getEmail().equals(existingUser.getEmail()) &&
-                   emailToId.containsKey(request.getEmail().toLowerCase())) {
+                   userStore.findIdByEmail(request.getEmail().toLowerCase()) != null) {
             errorBuilder.addFieldErrors(FieldError.newBuilder()
                 .setField("email")
                 .setMessage("Email is already taken")
@@ -383,4 +954,428 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
 
         return null;
     }
+
+    /**
+     * Turns a masked update into the presence-based form the rest of UpdateUser reads:
+     * every masked field is set, an unset one as empty, and the others are cleared.
+     */
+    private static UpdateUserRequest withUpdateMask(UpdateUserRequest request) {
+        FieldMask mask = request.getUpdateMask();
+        if (mask.getPathsCount() == 0) {
+            return request;
+        }
+        UpdateUserRequest.Builder update = UpdateUserRequest.newBuilder().setId(request.getId());
+        for (String path : mask.getPathsList()) {
+            switch (path) {
+                case "username" -> update.setUsername(request.getUsername());
+                case "email" -> update.setEmail(request.getEmail());
+                case "first_name" -> update.setFirstName(request.getFirstName());
+                case "last_name" -> update.setLastName(request.getLastName());
+                default -> throw new IllegalArgumentException("Not an updatable field: " + path);
+            }
+        }
+        return update.build();
+    }
+
+    private ValidationError validateRegisterPublicKeyRequest(RegisterPublicKeyRequest request, User existingUser) {
+        ValidationError.Builder errorBuilder = ValidationError.newBuilder();
+        boolean hasErrors = false;
+
+        if (!KEY_ID_PATTERN.matcher(request.getKeyId()).matches()) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("key_id")
+                .setMessage("Key id must be 1 to 64 letters, digits, '.', '_' or '-'")
+                .build());
+            hasErrors = true;
+        } else if (existingUser.getPublicKeysList().stream()
+                .anyMatch(key -> key.getKeyId().equals(request.getKeyId()))) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("key_id")
+                .setMessage("Key id is already registered")
+                .build());
+            hasErrors = true;
+        }
+
+        if (request.getAlgorithm().trim().isEmpty()) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("algorithm")
+                .setMessage("Algorithm is required")
+                .build());
+            hasErrors = true;
+        }
+
+        if (request.getKey().isEmpty()) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("key")
+                .setMessage("Key is required")
+                .build());
+            hasErrors = true;
+        } else if (request.getKey().size() > MAX_PUBLIC_KEY_BYTES) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("key")
+                .setMessage("Key must be at most " + MAX_PUBLIC_KEY_BYTES + " bytes")
+                .build());
+            hasErrors = true;
+        }
+
+        long activeKeys = existingUser.getPublicKeysList().stream().filter(key -> !key.hasRetiredAt()).count();
+        if (!request.getRetireOthers() && activeKeys >= MAX_PUBLIC_KEYS) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("retire_others")
+                .setMessage("User already has " + MAX_PUBLIC_KEYS + " active keys; retire them to add another")
+                .build());
+            hasErrors = true;
+        }
+
+        if (hasErrors) {
+            return errorBuilder
+                .setCode("VALIDATION_ERROR")
+                .setMessage("Validation failed")
+                .build();
+        }
+
+        return null;
+    }
+
+    private ValidationError validateSearchUsersRequest(SearchUsersRequest request) {
+        ValidationError.Builder errorBuilder = ValidationError.newBuilder();
+        boolean hasErrors = false;
+
+        List<String> terms = UserSearchIndex.terms(request.getQuery());
+        if (terms.isEmpty()) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("query")
+                .setMessage("Query is required")
+                .build());
+            hasErrors = true;
+        } else if (terms.size() > SEARCH_MAX_TERMS) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("query")
+                .setMessage("Query can have at most " + SEARCH_MAX_TERMS + " terms")
+                .build());
+            hasErrors = true;
+        } else if (terms.stream().anyMatch(term -> term.length() < UserSearchIndex.MIN_TERM_LENGTH)) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("query")
+                .setMessage("Query terms must be at least " + UserSearchIndex.MIN_TERM_LENGTH + " characters")
+                .build());
+            hasErrors = true;
+        }
+
+        if (request.getPageSize() < 0 || request.getPageSize() > SEARCH_MAX_PAGE_SIZE) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("page_size")
+                .setMessage("Page size must be between 0 and " + SEARCH_MAX_PAGE_SIZE)
+                .build());
+            hasErrors = true;
+        }
+
+        if (!request.getPageToken().isEmpty() && !PAGE_TOKEN_PATTERN.matcher(request.getPageToken()).matches()) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("page_token")
+                .setMessage("Invalid page token")
+                .build());
+            hasErrors = true;
+        }
+
+        if (UserFieldMask.of(request.getReadMask()) == null) {
+            errorBuilder.addFieldErrors(FieldError.newBuilder()
+                .setField("read_mask")
+                .setMessage("Read mask names an unknown field")
+                .build());
+            hasErrors = true;
+        }
+
+        if (hasErrors) {
+            return errorBuilder
+                .setCode("VALIDATION_ERROR")
+                .setMessage("Validation failed")
+                .build();
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds the requested key to {@code user}, retiring the others first when asked.
+     * Past {@link #MAX_PUBLIC_KEYS}, the oldest retired keys are dropped.
+     */
+    private static User withPublicKey(User user, RegisterPublicKeyRequest request, Timestamp timestamp) {
+        User.Builder userBuilder = user.toBuilder().setUpdatedAt(timestamp);
+        if (request.getRetireOthers()) {
+            for (PublicKey.Builder key : userBuilder.getPublicKeysBuilderList()) {
+                if (!key.hasRetiredAt()) {
+                    key.setRetiredAt(timestamp);
+                }
+            }
+        }
+        userBuilder.addPublicKeys(PublicKey.newBuilder()
+            .setKeyId(request.getKeyId())
+            .setAlgorithm(request.getAlgorithm())
+            .setKey(request.getKey())
+            .setCreatedAt(timestamp)
+            .build());
+        for (int i = 0; userBuilder.getPublicKeysCount() > MAX_PUBLIC_KEYS; ) {
+            if (userBuilder.getPublicKeys(i).hasRetiredAt()) {
+                userBuilder.removePublicKeys(i);
+            } else {
+                i++;
+            }
+        }
+        return userBuilder.build();
+    }
+
+    /**
+     * Claims a username and email for {@code userId}, either of which may be
+     * {@code null} to skip it. On conflict nothing stays claimed and the matching
+     * validation error is returned.
+     */
+    private ValidationError claimKeys(String usernameKey, String emailKey, String userId) {
+        if (usernameKey != null && !userStore.claimUsername(usernameKey, userId)) {
+            return fieldValidationError("username", "Username is already taken");
+        }
+        boolean emailClaimed;
+        try {
+            emailClaimed = emailKey == null || userStore.claimEmail(emailKey, userId);
+        } catch (RuntimeException e) {
+            // A store that is out of space for claims must not keep the username.
+            releaseKeys(usernameKey, null, userId);
+            throw e;
+        }
+        if (!emailClaimed) {
+            releaseKeys(usernameKey, null, userId);
+            return fieldValidationError("email", "Email is already taken");
+        }
+        return null;
+    }
+
+    private ReentrantLock userWriteLock(String userId) {
+        return userWriteLocks[Math.floorMod(userId.hashCode(), userWriteLocks.length)];
+    }
+
+    private void releaseKeys(String usernameKey, String emailKey, String userId) {
+        if (usernameKey != null) {
+            userStore.releaseUsername(usernameKey, userId);
+        }
+        if (emailKey != null) {
+            userStore.releaseEmail(emailKey, userId);
+        }
+    }
+
+    private <T> T stage(String name, Supplier<T> work) {
+        return Observation.createNotStarted(STAGE_OBSERVATION, observationRegistry)
+            .contextualName(name)
+            .lowCardinalityKeyValue("stage", name)
+            .observe(work);
+    }
+
+    private void runStage(String name, Runnable work) {
+        Observation.createNotStarted(STAGE_OBSERVATION, observationRegistry)
+            .contextualName(name)
+            .lowCardinalityKeyValue("stage", name)
+            .observe(work);
+    }
+
+    /**
+     * The {@code updated_at} for a new version of a user last updated at
+     * {@code previous}: {@code now}, or a nanosecond past {@code previous} when the
+     * clock has not moved past it, so a conditional read never misses a change.
+     */
+    static Timestamp nextUpdatedAt(Timestamp previous, Instant now) {
+        Instant after = Instant.ofEpochSecond(previous.getSeconds(), previous.getNanos()).plusNanos(1);
+        Instant stamp = now.isBefore(after) ? after : now;
+        return Timestamp.newBuilder()
+            .setSeconds(stamp.getEpochSecond())
+            .setNanos(stamp.getNano())
+            .build();
+    }
+
+    private static boolean isAfter(Timestamp a, Timestamp b) {
+        return a.getSeconds() != b.getSeconds() ? a.getSeconds() > b.getSeconds() : a.getNanos() > b.getNanos();
+    }
+
+    private ValidationError fieldValidationError(String field, String message) {
+        return ValidationError.newBuilder()
+            .setCode("VALIDATION_ERROR")
+            .setMessage("Validation failed")
+            .addFieldErrors(FieldError.newBuilder()
+                .setField(field)
+                .setMessage(message)
+                .build())
+            .build();
+    }
+
+    private ValidationError validateImportRow(ImportUsersRequest row) {
+        if (row.getPasswordHash().isEmpty()) {
+            return validateCreateUserRequest(row.getUser(), false);
+        }
+        if (!row.getUser().getPassword().isEmpty()) {
+            return fieldValidationError("password_hash", "Provide either password or password_hash, not both");
+        }
+        if (!PasswordHashes.isValid(row.getPasswordHash())) {
+            return fieldValidationError("password_hash", "Unsupported password hash format");
+        }
+        return validateCreateUserRequest(row.getUser(), true);
+    }
+
+    /**
+     * Server side of an ImportUsers stream. Rows are buffered into batches; each batch
+     * is validated in parallel, then claims its usernames and emails and is published
+     * to the store in one pass.
+     */
+    private final class UserImport implements StreamObserver<ImportUsersRequest> {
+
+        private final StreamObserver<ImportUsersResponse> responseObserver;
+        private final List<ImportUsersRequest> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        private final ImportUsersResponse.Builder summary = ImportUsersResponse.newBuilder();
+        private long nextRow;
+        private boolean abandoned;
+
+        private UserImport(StreamObserver<ImportUsersResponse> responseObserver) {
+            this.responseObserver = responseObserver;
+        }
+
+        @Override
+        public void onNext(ImportUsersRequest row) {
+            if (abandoned) {
+                return;
+            }
+            batch.add(row);
+            if (batch.size() >= IMPORT_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // Batches that were already flushed stay imported; the client can resume
+            // from the rows after them since every row is checked for uniqueness.
+            abandoned = true;
+            batch.clear();
+        }
+
+        @Override
+        public void onCompleted() {
+            if (abandoned) {
+                return;
+            }
+            try {
+                flush();
+                if (abandoned) {
+                    return;
+                }
+                responseObserver.onNext(summary.build());
+                responseObserver.onCompleted();
+            } catch (Exception e) {
+                responseObserver.onError(e);
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (deadlineGuard.abandon("ImportUsers", "write", responseObserver)) {
+                abandoned = true;
+                batch.clear();
+                return;
+            }
+
+            int size = batch.size();
+            Instant now = Instant.now();
+            Timestamp timestamp = Timestamp.newBuilder()
+                .setSeconds(now.getEpochSecond())
+                .setNanos(now.getNano())
+                .build();
+
+            ValidationError[] errors = new ValidationError[size];
+            User[] built = new User[size];
+            IntStream.range(0, size).parallel().forEach(i -> {
+                ImportUsersRequest row = batch.get(i);
+                errors[i] = validateImportRow(row);
+                if (errors[i] == null) {
+                    CreateUserRequest request = row.getUser();
+                    built[i] = User.newBuilder()
+                        .setId(UUID.randomUUID().toString())
+                        .setUsername(request.getUsername())
+                        .setEmail(request.getEmail())
+                        .setFirstName(namePool.intern(request.getFirstName()))
+                        .setLastName(namePool.intern(request.getLastName()))
+                        .setCreatedAt(timestamp)
+                        .setUpdatedAt(timestamp)
+                        .build();
+                }
+            });
+
+            Map<String, User> imported = new HashMap<>(size * 2);
+            Map<String, String> importedPasswords = new HashMap<>(size * 2);
+            Map<String, String> importedHashes = new HashMap<>();
+            try {
+                for (int i = 0; i < size; i++) {
+                    long row = nextRow + i;
+                    if (errors[i] != null) {
+                        recordError(row, errors[i]);
+                        continue;
+                    }
+
+                    User user = built[i];
+                    ValidationError claimError = claimKeys(
+                        user.getUsername().toLowerCase(), user.getEmail().toLowerCase(), user.getId());
+                    if (claimError != null) {
+                        recordError(row, claimError);
+                        continue;
+                    }
+
+                    imported.put(user.getId(), user);
+                    ImportUsersRequest request = batch.get(i);
+                    if (request.getPasswordHash().isEmpty()) {
+                        importedPasswords.put(user.getId(), request.getUser().getPassword());
+                    } else {
+                        importedHashes.put(user.getId(), request.getPasswordHash());
+                    }
+                }
+
+                passwords.putAll(importedPasswords);
+                passwordHashes.putAll(importedHashes);
+                userStore.putAll(imported.values());
+            } catch (RuntimeException e) {
+                backOut(imported.values());
+                throw e;
+            }
+            searchIndex.addAll(imported.values());
+
+            summary.setReceivedCount(summary.getReceivedCount() + size)
+                .setImportedCount(summary.getImportedCount() + imported.size());
+            nextRow += size;
+            batch.clear();
+        }
+
+        /**
+         * Releases the claims and credentials of the rows a failed batch did
+         * not store, and indexes the ones it did.
+         */
+        private void backOut(Collection<User> batchUsers) {
+            List<User> written = new ArrayList<>();
+            for (User user : batchUsers) {
+                if (userStore.peek(user.getId()) != null) {
+                    written.add(user);
+                    continue;
+                }
+                releaseKeys(user.getUsername().toLowerCase(), user.getEmail().toLowerCase(), user.getId());
+                passwords.remove(user.getId());
+                passwordHashes.remove(user.getId());
+            }
+            searchIndex.addAll(written);
+        }
+
+        private void recordError(long row, ValidationError error) {
+            summary.setFailedCount(summary.getFailedCount() + 1);
+            if (summary.getErrorsCount() < IMPORT_MAX_REPORTED_ERRORS) {
+                summary.addErrors(ImportRowError.newBuilder()
+                    .setRow(row)
+                    .setError(error)
+                    .build());
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,272 @@
+package github.couryrr.backend.playbook.data.store;
+
+import github.couryrr.backend.playbook.data.crypto.RecordEncryption;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only files holding the users a tiered {@link HeapUserStore} has spilled
+ * from memory. Records are {@code [int length][int crc32c][User]}, like a message
+ * board segment, and a new file is started once the active one would grow past
+ * {@code segmentSize}.
+ *
+ * <p>An address packs the segment number, the record's position and its length into
+ * one {@code long}, so the store keeps a single field per spilled user and a read is
+ * one positioned read of exactly the record. Records that do not fit the length
+ * bits are refused, and such users simply stay in memory.
+ *
+ * <p>The store releases a record once nothing can read it any more, and a sealed
+ * segment is deleted once all of its records are. The store also moves records out
+ * of {@linkplain #isSparse sparse} segments as it comes across them, so the files
+ * stay near the size of the records still live. Nothing here outlives the process:
+ * the directory is cleared on open.
+ *
+ * <p>When opened with a {@link RecordEncryption}, every user is sealed with it before
+ * it is written, so the files never hold a user in the clear.
+ */
+final class ColdSegments implements AutoCloseable {
+
+    static final long NO_ADDRESS = -1;
+    static final int HEADER_BYTES = 8;
+    static final int MAX_RECORD_BYTES = (1 << 18) - 1;
+    static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private static final Logger log = LoggerFactory.getLogger(ColdSegments.class);
+    private static final String EXTENSION = ".cold";
+    private static final int SEGMENT_BITS = 16;
+    private static final int POSITION_BITS = 30;
+    private static final int LENGTH_BITS = 18;
+
+    private final Path directory;
+    private final long segmentSize;
+    // Null when records are written in the clear.
+    private final RecordEncryption encryption;
+    private final Map<Integer, ColdFile> files = new ConcurrentHashMap<>();
+    // Reads hold the read lock so a file is never closed under them.
+    private final ReentrantReadWriteLock deletion = new ReentrantReadWriteLock();
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicLong liveBytes = new AtomicLong();
+    // Guarded by this.
+    private ColdFile active;
+
+    private static final class ColdFile {
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        final AtomicLong live = new AtomicLong();
+        volatile long size;
+        volatile boolean sealed;
+
+        ColdFile(int number, Path path) throws IOException {
+            this.number = number;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        }
+    }
+
+    private ColdSegments(Path directory, long segmentSize, RecordEncryption encryption) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.encryption = encryption;
+    }
+
+    /**
+     * Opens an empty store in {@code directory}, deleting segments a previous process
+     * left behind.
+     */
+    static ColdSegments open(Path directory, long segmentSize) throws IOException {
+        return open(directory, segmentSize, null);
+    }
+
+    /**
+     * Like {@link #open(Path, long)}, sealing every record with {@code encryption}
+     * unless it is {@code null}.
+     */
+    static ColdSegments open(Path directory, long segmentSize, RecordEncryption encryption) throws IOException {
+        if (segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Cold segments are limited to 1GB");
+        }
+        Files.createDirectories(directory);
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            for (Path file : leftovers.filter(path -> path.getFileName().toString().endsWith(EXTENSION)).toList()) {
+                Files.delete(file);
+            }
+        }
+        ColdSegments segments = new ColdSegments(directory, segmentSize, encryption);
+        segments.active = segments.create(0);
+        return segments;
+    }
+
+    /**
+     * Appends {@code user} and returns its address, or {@link #NO_ADDRESS} when the
+     * record is too large to address.
+     */
+    synchronized long write(User user) throws IOException {
+        byte[] body = encryption == null ? user.toByteArray() : encryption.seal(user.toByteArray());
+        int recordSize = HEADER_BYTES + body.length;
+        if (recordSize > MAX_RECORD_BYTES) {
+            return NO_ADDRESS;
+        }
+        if (active.size > 0 && active.size + recordSize > segmentSize) {
+            roll();
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putInt(body.length).putInt(crc(body)).put(body).flip();
+        long position = active.size;
+        while (record.hasRemaining()) {
+            position += active.channel.write(record, position);
+        }
+        active.live.addAndGet(recordSize);
+        liveBytes.addAndGet(recordSize);
+        diskBytes.addAndGet(recordSize);
+        long address = address(active.number, active.size, recordSize);
+        active.size = position;
+        return address;
+    }
+
+    /**
+     * Reads the user at {@code address}, or returns {@code null} when its segment has
+     * been deleted since, which only happens once the record was released.
+     */
+    User read(long address) throws IOException {
+        deletion.readLock().lock();
+        try {
+            ColdFile file = files.get(segment(address));
+            if (file == null) {
+                return null;
+            }
+            long position = position(address);
+            ByteBuffer record = ByteBuffer.allocate(length(address));
+            while (record.hasRemaining()) {
+                if (file.channel.read(record, position + record.position()) < 0) {
+                    throw new IOException("Truncated cold record at " + file.path + ":" + position);
+                }
+            }
+            int bodyLength = record.getInt(0);
+            byte[] body = new byte[bodyLength];
+            record.get(HEADER_BYTES, body);
+            if (bodyLength != record.capacity() - HEADER_BYTES || crc(body) != record.getInt(4)) {
+                throw new IOException("Corrupt cold record at " + file.path + ":" + position);
+            }
+            return User.parseFrom(encryption == null ? body : encryption.open(body));
+        } finally {
+            deletion.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the record at {@code address} as no longer needed, deleting its segment
+     * when it was the last live record of a sealed one.
+     */
+    void release(long address) {
+        ColdFile file = files.get(segment(address));
+        if (file == null) {
+            return;
+        }
+        int length = length(address);
+        liveBytes.addAndGet(-length);
+        if (file.live.addAndGet(-length) == 0 && file.sealed) {
+            delete(file);
+        }
+    }
+
+    /**
+     * Whether the record at {@code address} is in a sealed segment that is less than
+     * half live, and worth moving so the segment can be deleted.
+     */
+    boolean isSparse(long address) {
+        ColdFile file = files.get(segment(address));
+        return file != null && file.sealed && file.live.get() * 2 < file.size;
+    }
+
+    long diskBytes() {
+        return diskBytes.get();
+    }
+
+    long liveBytes() {
+        return liveBytes.get();
+    }
+
+    int segmentCount() {
+        return files.size();
+    }
+
+    @Override
+    public void close() {
+        for (ColdFile file : files.values()) {
+            delete(file);
+        }
+    }
+
+    private void roll() throws IOException {
+        ColdFile sealed = active;
+        int number = sealed.number;
+        do {
+            number = (number + 1) & ((1 << SEGMENT_BITS) - 1);
+        } while (files.containsKey(number));
+        active = create(number);
+        sealed.sealed = true;
+        if (sealed.live.get() == 0) {
+            delete(sealed);
+        }
+    }
+
+    private ColdFile create(int number) throws IOException {
+        ColdFile file = new ColdFile(number, directory.resolve(String.format("%05d%s", number, EXTENSION)));
+        files.put(number, file);
+        return file;
+    }
+
+    private void delete(ColdFile file) {
+        deletion.writeLock().lock();
+        try {
+            if (!files.remove(file.number, file)) {
+                return;
+            }
+            diskBytes.addAndGet(-file.size);
+            file.channel.close();
+            Files.deleteIfExists(file.path);
+        } catch (IOException e) {
+            log.warn("Failed to delete cold segment {}", file.path, e);
+        } finally {
+            deletion.writeLock().unlock();
+        }
+    }
+
+    private static long address(int segment, long position, int length) {
+        return ((long) segment << (POSITION_BITS + LENGTH_BITS)) | (position << LENGTH_BITS) | length;
+    }
+
+    private static int segment(long address) {
+        return (int) (address >>> (POSITION_BITS + LENGTH_BITS));
+    }
+
+    private static long position(long address) {
+        return (address >>> LENGTH_BITS) & ((1L << POSITION_BITS) - 1);
+    }
+
+    private static int length(long address) {
+        return (int) (address & ((1L << LENGTH_BITS) - 1));
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,7 @@
+package github.couryrr.backend.playbook.data.store;
+
+/**
+ * What one {@link UserStore#purgeTombstones} call removed.
+ */
+public record CompactionResult(long tombstonesPurged, long bytesReclaimed) {
+}
@@ -0,0 +1,762 @@
+package github.couryrr.backend.playbook.data.store;
+
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.crypto.RecordEncryption;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The default store: plain concurrent maps on the Java heap. {@link #users()} is a
+ * weakly consistent view of the live map.
+ *
+ * <p>Each id maps to a chain of versions, newest first, stamped with a global commit
+ * sequence. A writer takes the next sequence while it holds the user's map entry and
+ * publishes sequences strictly in order, so a {@link #snapshot()} pinned at the last
+ * published sequence sees each write entirely or not at all. Versions below the
+ * newest one every open snapshot can read are cut from their chain: right after the
+ * write when no snapshot is open, otherwise once the snapshots needing them close.
+ *
+ * <p>A tiered store, made with a memory budget, spills users to {@link ColdSegments}
+ * once the users in memory take more than the budget. Only the user itself leaves the
+ * heap: its map entry and version stay, keeping the record's address, so the map is
+ * also the directory of the cold tier. A CLOCK sweep picks what to spill, skipping
+ * and clearing users read since its last pass. Reading a spilled user faults it back
+ * in; scans read spilled users from disk without bringing them back.
+ *
+ * <p>Byte estimates are kept as running totals updated on every write, so
+ * {@link #footprint()} never walks the maps. Tombstones replace users in the same
+ * map, so writes can refuse deleted ids atomically, and are queued in deletion order
+ * for purging.
+ */
+public class HeapUserStore implements UserStore {
+
+    // ConcurrentHashMap node plus its share of the bucket table.
+    private static final long MAP_ENTRY_BYTES = 40;
+    // User message object and its two Timestamp messages, excluding string contents.
+    private static final long USER_OBJECT_BYTES = 112;
+    // Version node: header, sequence, cold address, two references and a flag.
+    private static final long VERSION_BYTES = 40;
+    // A writer waiting to publish spins this often, then parks between checks.
+    private static final int PUBLISH_SPINS = 64;
+    private static final long PUBLISH_PARK_NANOS = 20_000;
+    private static final AtomicReferenceFieldUpdater<Version, Version> PREVIOUS =
+        AtomicReferenceFieldUpdater.newUpdater(Version.class, Version.class, "previous");
+
+    private static final Logger log = LoggerFactory.getLogger(HeapUserStore.class);
+
+    private final Map<String, Version> users = new ConcurrentHashMap<>();
+    private final Map<String, String> emailToId = new ConcurrentHashMap<>();
+    private final Map<String, String> usernameToId = new ConcurrentHashMap<>();
+    private final LongAdder userBytes = new LongAdder();
+    private final LongAdder emailBytes = new LongAdder();
+    private final LongAdder usernameBytes = new LongAdder();
+    private final ConcurrentLinkedQueue<Version> tombstoneQueue = new ConcurrentLinkedQueue<>();
+    private final LongAdder tombstoneCount = new LongAdder();
+    private final LongAdder tombstoneBytes = new LongAdder();
+    private final AtomicLong lastSequence = new AtomicLong();
+    private final AtomicLong publishedSequence = new AtomicLong();
+    // Pinned sequence of each open snapshot, with how many share it. Guarded by itself.
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+    // No open or future snapshot reads below the newest version at or before this.
+    private volatile long horizon;
+    private final ConcurrentLinkedQueue<Version> untrimmed = new ConcurrentLinkedQueue<>();
+    private final LongAdder versionCount = new LongAdder();
+    private final LongAdder versionBytes = new LongAdder();
+    // Null unless tiered.
+    private final ColdTier cold;
+
+    private static final class Version {
+        // Null while spilled.
+        volatile User user;
+        final long sequence;
+        volatile Version previous;
+        // Where the user was spilled. Kept when it is read back in, so spilling it again is free.
+        volatile long coldAddress = ColdSegments.NO_ADDRESS;
+        // Set by reads, cleared by the eviction sweep.
+        volatile boolean referenced;
+
+        Version(User user, long sequence, Version previous) {
+            this.user = user;
+            this.sequence = sequence;
+            this.previous = previous;
+        }
+    }
+
+    private static final class ColdTier {
+        final long memoryBudget;
+        final ColdSegments segments;
+        final ReentrantLock evictionLock = new ReentrantLock();
+        // Guarded by evictionLock.
+        Iterator<Map.Entry<String, Version>> clockHand = Collections.emptyIterator();
+        final LongAdder spilledUsers = new LongAdder();
+        // Users held in memory, excluding the map entries and ids every user keeps.
+        final LongAdder residentBytes = new LongAdder();
+        final Counter memoryReads;
+        final Counter diskReads;
+        final Counter evictions;
+        final Timer faults;
+
+        ColdTier(long memoryBudget, ColdSegments segments, MeterRegistry meterRegistry) {
+            this.memoryBudget = memoryBudget;
+            this.segments = segments;
+            this.memoryReads = meterRegistry.counter("data.store.tiered.reads", "tier", "memory");
+            this.diskReads = meterRegistry.counter("data.store.tiered.reads", "tier", "disk");
+            this.evictions = meterRegistry.counter("data.store.tiered.evictions");
+            this.faults = Timer.builder("data.store.tiered.cold_fault")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+            Gauge.builder("data.store.tiered.hit_ratio", this, ColdTier::hitRatio).register(meterRegistry);
+            Gauge.builder("data.store.tiered.cold_users", spilledUsers, LongAdder::sum).register(meterRegistry);
+            Gauge.builder("data.store.tiered.disk_bytes", segments, ColdSegments::diskBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+            Gauge.builder("data.store.tiered.disk_live_bytes", segments, ColdSegments::liveBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+            Gauge.builder("data.store.tiered.segments", segments, ColdSegments::segmentCount).register(meterRegistry);
+        }
+
+        void hit(Version version) {
+            if (!version.referenced) {
+                version.referenced = true;
+            }
+            memoryReads.increment();
+        }
+
+        double hitRatio() {
+            double total = memoryReads.count() + diskReads.count();
+            return total == 0 ? 0 : memoryReads.count() / total;
+        }
+    }
+
+    public HeapUserStore() {
+        this.cold = null;
+    }
+
+    /**
+     * A tiered store, keeping users within {@code memoryBudget} bytes of heap, besides
+     * the map entry and id every user keeps, and spilling the rest to segments of {@code segmentSize} in {@code coldDirectory}.
+     */
+    public HeapUserStore(long memoryBudget, Path coldDirectory, long segmentSize, MeterRegistry meterRegistry)
+            throws IOException {
+        this(memoryBudget, coldDirectory, segmentSize, false, meterRegistry);
+    }
+
+    /**
+     * A tiered store whose segments hold users encrypted under a key kept only in
+     * memory when {@code encryptColdTier} is set.
+     */
+    public HeapUserStore(long memoryBudget, Path coldDirectory, long segmentSize, boolean encryptColdTier,
+            MeterRegistry meterRegistry) throws IOException {
+        this.cold = new ColdTier(memoryBudget, ColdSegments.open(coldDirectory, segmentSize,
+            encryptColdTier ? RecordEncryption.ephemeral() : null), meterRegistry);
+    }
+
+    @Override
+    public User get(String id) {
+        Version head = users.get(id);
+        while (head != null) {
+            User user = head.user;
+            if (user != null) {
+                if (user.hasDeletedAt()) {
+                    return null;
+                }
+                if (cold != null) {
+                    cold.hit(head);
+                }
+                return user;
+            }
+            user = fault(id, head);
+            if (user != null) {
+                return user;
+            }
+            // Replaced, and its record released, while we read it.
+            head = next(id, head);
+        }
+        return null;
+    }
+
+    /**
+     * Reads a spilled user from disk without faulting it back in or marking it read.
+     */
+    @Override
+    public User peek(String id) {
+        return scanned(id, users.get(id));
+    }
+
+    @Override
+    public boolean put(User user) {
+        Version[] written = new Version[1];
+        users.compute(user.getId(), (id, head) -> {
+            if (head != null && isTombstone(head)) {
+                return head;
+            }
+            if (head == null) {
+                userBytes.add(MAP_ENTRY_BYTES + stringBytes(id) + userBytes(user));
+                addResident(userBytes(user));
+            } else {
+                userBytes.add(userBytes(user) - residentBytes(head));
+                addResident(userBytes(user) - residentBytes(head));
+                if (head.user == null) {
+                    cold.spilledUsers.decrement();
+                }
+                retain(head);
+            }
+            written[0] = new Version(user, lastSequence.incrementAndGet(), head);
+            return written[0];
+        });
+        if (written[0] == null) {
+            return false;
+        }
+        publish(written[0]);
+        enforceBudget();
+        return true;
+    }
+
+    @Override
+    public void putAll(Collection<User> batch) {
+        for (User user : batch) {
+            put(user);
+        }
+    }
+
+    @Override
+    public User delete(String id, Timestamp deletedAt) {
+        User tombstone = User.newBuilder()
+            .setId(id)
+            .setUpdatedAt(deletedAt)
+            .setDeletedAt(deletedAt)
+            .build();
+        Version[] written = new Version[1];
+        User[] deleted = new User[1];
+        long[] freedBytes = new long[1];
+        users.computeIfPresent(id, (key, head) -> {
+            if (isTombstone(head)) {
+                return head;
+            }
+            // Read a spilled user before taking a sequence: a sequence taken is one every
+            // later writer waits on, so nothing may fail between taking and publishing it.
+            deleted[0] = stored(head);
+            freedBytes[0] = residentBytes(head);
+            if (head.user == null) {
+                cold.spilledUsers.decrement();
+            }
+            retain(head);
+            written[0] = new Version(tombstone, lastSequence.incrementAndGet(), head);
+            return written[0];
+        });
+        if (written[0] == null) {
+            return null;
+        }
+        userBytes.add(-(MAP_ENTRY_BYTES + stringBytes(id) + freedBytes[0]));
+        addResident(-freedBytes[0]);
+        tombstoneBytes.add(MAP_ENTRY_BYTES + stringBytes(id) + userBytes(tombstone));
+        tombstoneCount.increment();
+        tombstoneQueue.add(written[0]);
+        publish(written[0]);
+        return deleted[0];
+    }
+
+    @Override
+    public Iterable<User> tombstones() {
+        return () -> tombstoneQueue.stream().map(version -> version.user).iterator();
+    }
+
+    /**
+     * Expects a single caller at a time, the compactor. Stops at the first tombstone
+     * an open snapshot still needs to see past.
+     */
+    @Override
+    public CompactionResult purgeTombstones(Instant deletedBefore, int limit) {
+        long purged = 0;
+        long reclaimedBytes = 0;
+        while (purged < limit) {
+            Version version = tombstoneQueue.peek();
+            if (version == null || version.sequence > horizon) {
+                break;
+            }
+            User tombstone = version.user;
+            if (!Instant.ofEpochSecond(tombstone.getDeletedAt().getSeconds(),
+                    tombstone.getDeletedAt().getNanos()).isBefore(deletedBefore)) {
+                break;
+            }
+            tombstoneQueue.poll();
+            if (users.remove(tombstone.getId(), version)) {
+                release(PREVIOUS.getAndSet(version, null));
+                long bytes = MAP_ENTRY_BYTES + stringBytes(tombstone.getId()) + userBytes(tombstone);
+                tombstoneBytes.add(-bytes);
+                tombstoneCount.decrement();
+                reclaimedBytes += bytes;
+                purged++;
+            }
+        }
+        return new CompactionResult(purged, reclaimedBytes);
+    }
+
+    @Override
+    public boolean claimUsername(String username, String userId) {
+        return claim(usernameToId, usernameBytes, username, userId);
+    }
+
+    @Override
+    public boolean claimEmail(String email, String userId) {
+        return claim(emailToId, emailBytes, email, userId);
+    }
+
+    @Override
+    public void releaseUsername(String username, String userId) {
+        release(usernameToId, usernameBytes, username, userId);
+    }
+
+    @Override
+    public void releaseEmail(String email, String userId) {
+        release(emailToId, emailBytes, email, userId);
+    }
+
+    @Override
+    public String findIdByUsername(String username) {
+        return usernameToId.get(username);
+    }
+
+    @Override
+    public String findIdByEmail(String email) {
+        return emailToId.get(email);
+    }
+
+    @Override
+    public long size() {
+        return users.size() - tombstoneCount.sum();
+    }
+
+    @Override
+    public Iterable<User> users() {
+        return () -> users.entrySet().stream()
+            .map(entry -> scanned(entry.getKey(), entry.getValue()))
+            .filter(Objects::nonNull)
+            .iterator();
+    }
+
+    @Override
+    public UserSnapshot snapshot() {
+        synchronized (openSnapshots) {
+            long sequence = publishedSequence.get();
+            openSnapshots.merge(sequence, 1, Integer::sum);
+            return new Snapshot(sequence);
+        }
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, String>> usernameClaims() {
+        return usernameToId.entrySet();
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, String>> emailClaims() {
+        return emailToId.entrySet();
+    }
+
+    @Override
+    public List<StructureFootprint> footprint() {
+        return List.of(
+            new StructureFootprint("users", size(), userBytes.sum(), false),
+            new StructureFootprint("tombstones", tombstoneCount.sum(), tombstoneBytes.sum(), false),
+            new StructureFootprint("versions", versionCount.sum(), versionBytes.sum(), false),
+            new StructureFootprint("usernameToId", usernameToId.size(), usernameBytes.sum(), false),
+            new StructureFootprint("emailToId", emailToId.size(), emailBytes.sum(), false)
+        );
+    }
+
+    @Override
+    public void close() {
+        if (cold != null) {
+            cold.segments.close();
+        }
+    }
+
+    private static boolean isTombstone(Version version) {
+        // Only live users are spilled.
+        User user = version.user;
+        return user != null && user.hasDeletedAt();
+    }
+
+    private void addResident(long bytes) {
+        if (cold != null) {
+            cold.residentBytes.add(bytes);
+        }
+    }
+
+    private static long residentBytes(Version version) {
+        User user = version.user;
+        return user == null ? 0 : userBytes(user);
+    }
+
+    /**
+     * Reads a spilled user back in, leaving it in memory if it is still the newest
+     * version. Returns {@code null} when its record has been released.
+     */
+    private User fault(String id, Version version) {
+        long start = System.nanoTime();
+        User user = readCold(version);
+        if (user == null) {
+            return null;
+        }
+        users.computeIfPresent(id, (key, head) -> {
+            if (head == version && version.user == null) {
+                version.user = user;
+                userBytes.add(userBytes(user));
+                cold.residentBytes.add(userBytes(user));
+                cold.spilledUsers.decrement();
+            }
+            return head;
+        });
+        version.referenced = true;
+        cold.diskReads.increment();
+        cold.faults.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        enforceBudget();
+        return user;
+    }
+
+    /**
+     * The user of a version the caller knows cannot be released under it, read from
+     * disk without bringing it back when spilled.
+     */
+    private User stored(Version version) {
+        User user = version.user;
+        if (user != null) {
+            return user;
+        }
+        user = readCold(version);
+        if (user == null) {
+            throw new IllegalStateException("Cold record of a version still in use was released");
+        }
+        return user;
+    }
+
+    /**
+     * The live user behind a head met by a scan, or {@code null} for a tombstone.
+     */
+    private User scanned(String id, Version head) {
+        while (head != null) {
+            User user = head.user;
+            if (user == null) {
+                user = readCold(head);
+            }
+            if (user != null) {
+                return user.hasDeletedAt() ? null : user;
+            }
+            head = next(id, head);
+        }
+        return null;
+    }
+
+    /**
+     * The version that replaced {@code released} as the newest of its user.
+     */
+    private Version next(String id, Version released) {
+        Version head = users.get(id);
+        if (head == released) {
+            // Records of a current version only go away with the cold tier.
+            throw new IllegalStateException("Store is closed");
+        }
+        return head;
+    }
+
+    private User readCold(Version version) {
+        try {
+            while (true) {
+                long address = version.coldAddress;
+                User user = cold.segments.read(address);
+                // A null read is final unless the record was moved meanwhile.
+                if (user != null || version.coldAddress == address) {
+                    return user;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Spills users until those in memory are a tenth under budget, or a full sweep
+     * finds nothing more to spill. Runs on the writer or reader that crossed the
+     * budget; others carry on while it does. Spilled users the sweep passes whose
+     * segment is mostly released are moved to the active one, so that segment can go.
+     */
+    private void enforceBudget() {
+        if (cold == null || cold.residentBytes.sum() <= cold.memoryBudget || !cold.evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long target = cold.memoryBudget - cold.memoryBudget / 10;
+            long sinceLastSpill = 0;
+            while (cold.residentBytes.sum() > target && sinceLastSpill <= 2L * users.size()) {
+                if (!cold.clockHand.hasNext()) {
+                    cold.clockHand = users.entrySet().iterator();
+                    if (!cold.clockHand.hasNext()) {
+                        return;
+                    }
+                }
+                Map.Entry<String, Version> entry = cold.clockHand.next();
+                Version head = entry.getValue();
+                if (head.user == null) {
+                    if (cold.segments.isSparse(head.coldAddress)) {
+                        relocate(entry.getKey(), head);
+                    }
+                    sinceLastSpill++;
+                } else if (head.referenced) {
+                    head.referenced = false;
+                    sinceLastSpill++;
+                } else if (spill(entry.getKey(), head)) {
+                    sinceLastSpill = 0;
+                } else {
+                    sinceLastSpill++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to spill users to the cold tier", e);
+        } finally {
+            cold.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the user out, unless it already has a record worth keeping, and drops it
+     * from memory if it is still the newest version.
+     */
+    private boolean spill(String id, Version version) throws IOException {
+        User user = version.user;
+        if (user == null || user.hasDeletedAt()) {
+            return false;
+        }
+        long previous = version.coldAddress;
+        boolean written = previous == ColdSegments.NO_ADDRESS || cold.segments.isSparse(previous);
+        long address = written ? cold.segments.write(user) : previous;
+        if (address == ColdSegments.NO_ADDRESS) {
+            return false;
+        }
+        boolean[] spilled = new boolean[1];
+        users.computeIfPresent(id, (key, head) -> {
+            if (head == version && version.user != null) {
+                // The address is visible before the user is gone.
+                version.coldAddress = address;
+                version.user = null;
+                userBytes.add(-userBytes(user));
+                cold.residentBytes.add(-userBytes(user));
+                cold.spilledUsers.increment();
+                spilled[0] = true;
+            }
+            return head;
+        });
+        if (spilled[0]) {
+            cold.evictions.increment();
+            if (written && previous != ColdSegments.NO_ADDRESS) {
+                cold.segments.release(previous);
+            }
+        } else if (written) {
+            cold.segments.release(address);
+        }
+        return spilled[0];
+    }
+
+    private void relocate(String id, Version version) throws IOException {
+        long previous = version.coldAddress;
+        User user = cold.segments.read(previous);
+        long address = user == null ? ColdSegments.NO_ADDRESS : cold.segments.write(user);
+        if (address == ColdSegments.NO_ADDRESS) {
+            return;
+        }
+        boolean[] moved = new boolean[1];
+        users.computeIfPresent(id, (key, head) -> {
+            if (head == version && version.user == null && version.coldAddress == previous) {
+                version.coldAddress = address;
+                moved[0] = true;
+            }
+            return head;
+        });
+        cold.segments.release(moved[0] ? previous : address);
+    }
+
+    /**
+     * Makes {@code version} visible to new snapshots once every earlier sequence is,
+     * then cuts what no snapshot can read any more.
+     */
+    private void publish(Version version) {
+        // Sequences are taken inside map updates, which can finish out of order. The
+        // wait is normally a few spins; parking keeps a descheduled writer from
+        // pinning every writer behind it to a core.
+        for (int spins = 0; publishedSequence.get() != version.sequence - 1; spins++) {
+            if (spins < PUBLISH_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PUBLISH_PARK_NANOS);
+            }
+        }
+        publishedSequence.set(version.sequence);
+        if (!trim(version, advanceHorizon())) {
+            untrimmed.add(version);
+            // A snapshot closing since the trim may have drained the queue before the add.
+            long safe = horizon;
+            if (version.sequence <= safe) {
+                drainUntrimmed(safe);
+            }
+        }
+    }
+
+    private long advanceHorizon() {
+        synchronized (openSnapshots) {
+            horizon = openSnapshots.isEmpty() ? publishedSequence.get() : openSnapshots.firstKey();
+            return horizon;
+        }
+    }
+
+    /**
+     * Cuts the chain below the newest version at or before {@code horizon}. Returns
+     * whether {@code version} is itself at or before it, leaving nothing to cut later.
+     */
+    private boolean trim(Version version, long horizon) {
+        Version keep = version;
+        while (keep != null && keep.sequence > horizon) {
+            keep = keep.previous;
+        }
+        if (keep != null) {
+            release(PREVIOUS.getAndSet(keep, null));
+        }
+        return version.sequence <= horizon;
+    }
+
+    private void drainUntrimmed(long safe) {
+        for (int pending = untrimmed.size(); pending > 0; pending--) {
+            Version version = untrimmed.poll();
+            if (version == null) {
+                break;
+            }
+            if (!trim(version, safe)) {
+                untrimmed.add(version);
+            }
+        }
+    }
+
+    // Only the newest version is spilled or read back in, so an older one's residency is fixed.
+    private void retain(Version version) {
+        versionCount.increment();
+        versionBytes.add(VERSION_BYTES + residentBytes(version));
+    }
+
+    // Each link is detached by exactly one caller, so concurrent cuts count a version once.
+    private void release(Version cut) {
+        for (Version version = cut; version != null; version = PREVIOUS.getAndSet(version, null)) {
+            versionCount.decrement();
+            versionBytes.add(-(VERSION_BYTES + residentBytes(version)));
+            if (version.coldAddress != ColdSegments.NO_ADDRESS) {
+                cold.segments.release(version.coldAddress);
+            }
+        }
+    }
+
+    private final class Snapshot implements UserSnapshot {
+
+        private final long sequence;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Snapshot(long sequence) {
+            this.sequence = sequence;
+        }
+
+        @Override
+        public User get(String id) {
+            Version version = visible(users.get(id));
+            if (version == null || isTombstone(version)) {
+                return null;
+            }
+            User user = version.user;
+            if (user == null) {
+                user = fault(id, version);
+                if (user == null) {
+                    throw new IllegalStateException("Cold record of a snapshot version was released");
+                }
+            } else if (cold != null) {
+                cold.hit(version);
+            }
+            return user;
+        }
+
+        @Override
+        public Iterable<User> users() {
+            return () -> users.values().stream()
+                .map(this::visible)
+                .filter(Objects::nonNull)
+                .map(HeapUserStore.this::stored)
+                .filter(user -> !user.hasDeletedAt())
+                .iterator();
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            synchronized (openSnapshots) {
+                openSnapshots.computeIfPresent(sequence, (key, count) -> count == 1 ? null : count - 1);
+            }
+            drainUntrimmed(advanceHorizon());
+        }
+
+        private Version visible(Version version) {
+            while (version != null && version.sequence > sequence) {
+                version = version.previous;
+            }
+            return version;
+        }
+    }
+
+    // The user id value is shared with the users map, so a claim only pays for its key.
+    private static boolean claim(Map<String, String> index, LongAdder bytes, String key, String userId) {
+        if (index.putIfAbsent(key, userId) != null) {
+            return false;
+        }
+        bytes.add(MAP_ENTRY_BYTES + stringBytes(key));
+        return true;
+    }
+
+    private static void release(Map<String, String> index, LongAdder bytes, String key, String userId) {
+        if (index.remove(key, userId)) {
+            bytes.add(-(MAP_ENTRY_BYTES + stringBytes(key)));
+        }
+    }
+
+    private static long userBytes(User user) {
+        return USER_OBJECT_BYTES + stringBytes(user.getId()) + stringBytes(user.getUsername())
+            + stringBytes(user.getEmail()) + stringBytes(user.getFirstName()) + stringBytes(user.getLastName());
+    }
+
+    private static long stringBytes(String value) {
+        long arrayBytes = 16 + value.length();
+        return 24 + ((arrayBytes + 7) & ~7L);
+    }
+}
@@ -0,0 +1,12 @@
+package github.couryrr.backend.playbook.data.store;
+
+/**
+ * Thrown by a write that would take a store past its configured memory limit. The
+ * write is not applied.
+ */
+public class StoreFullException extends IllegalStateException {
+
+    public StoreFullException(String message) {
+        super(message);
+    }
+}
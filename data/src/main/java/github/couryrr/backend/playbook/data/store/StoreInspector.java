@@ -0,0 +1,226 @@
+package github.couryrr.backend.playbook.data.store;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Checks the user store's username and email indexes against its records in the
+ * background, a small batch at a time, and publishes the result of each full pass.
+ *
+ * <p>A pass first visits every user and checks that its current username and email
+ * are claimed by it, then visits every claim and checks that it belongs to a user who
+ * still has that username or email. Claims are taken before the user they reserve is
+ * written, so a claim only counts as orphaned once it has looked orphaned in two
+ * consecutive passes.
+ */
+@Component
+public class StoreInspector {
+
+    private static final Logger log = LoggerFactory.getLogger(StoreInspector.class);
+
+    private static final int MAX_SUSPECTS = 10_000;
+
+    public record ConsistencyReport(
+        long pass,
+        Instant completedAt,
+        Duration duration,
+        long usersChecked,
+        long missingUsernameClaims,
+        long missingEmailClaims,
+        long orphanedUsernameClaims,
+        long orphanedEmailClaims
+    ) {
+    }
+
+    private enum Phase {
+        USERS,
+        USERNAME_CLAIMS,
+        EMAIL_CLAIMS
+    }
+
+    private final UserStore store;
+    private final int batchSize;
+
+    private Phase phase = Phase.USERS;
+    private Iterator<User> userCursor;
+    private Iterator<Map.Entry<String, String>> claimCursor;
+    private Instant passStartedAt;
+    private long pass;
+    private long usersChecked;
+    private long missingUsernameClaims;
+    private long missingEmailClaims;
+    private long orphanedUsernameClaims;
+    private long orphanedEmailClaims;
+    private Set<String> usernameSuspects = new HashSet<>();
+    private Set<String> emailSuspects = new HashSet<>();
+    private Set<String> nextUsernameSuspects = new HashSet<>();
+    private Set<String> nextEmailSuspects = new HashSet<>();
+
+    private volatile ConsistencyReport lastReport;
+
+    public StoreInspector(UserStore store, StoreProperties properties, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.batchSize = properties.inspection().batchSize();
+
+        for (StructureFootprint structure : store.footprint()) {
+            String name = structure.name();
+            String memory = structure.offHeap() ? "off-heap" : "heap";
+            Gauge.builder("data.store.entries", store, s -> footprintOf(s, name).entries())
+                .tag("structure", name)
+                .register(meterRegistry);
+            Gauge.builder("data.store.estimated_bytes", store, s -> footprintOf(s, name).estimatedBytes())
+                .tag("structure", name)
+                .tag("memory", memory)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        }
+        registerInconsistencyGauge(meterRegistry, "missing_username_claim", ConsistencyReport::missingUsernameClaims);
+        registerInconsistencyGauge(meterRegistry, "missing_email_claim", ConsistencyReport::missingEmailClaims);
+        registerInconsistencyGauge(meterRegistry, "orphaned_username_claim", ConsistencyReport::orphanedUsernameClaims);
+        registerInconsistencyGauge(meterRegistry, "orphaned_email_claim", ConsistencyReport::orphanedEmailClaims);
+        TimeGauge.builder("data.store.consistency.last_pass_age", this, TimeUnit.SECONDS, inspector -> {
+                ConsistencyReport report = inspector.lastReport;
+                return report == null
+                    ? Double.NaN
+                    : Duration.between(report.completedAt(), Instant.now()).toMillis() / 1000.0;
+            })
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${data.store.inspection.interval:1s}")
+    public void inspect() {
+        step(batchSize);
+    }
+
+    /**
+     * The most recent completed pass, or {@code null} before the first one finishes.
+     */
+    public ConsistencyReport lastReport() {
+        return lastReport;
+    }
+
+    synchronized void step(int budget) {
+        if (passStartedAt == null) {
+            passStartedAt = Instant.now();
+            userCursor = store.users().iterator();
+        }
+        while (budget-- > 0) {
+            switch (phase) {
+                case USERS -> {
+                    if (userCursor.hasNext()) {
+                        checkUser(userCursor.next());
+                    } else {
+                        userCursor = null;
+                        claimCursor = store.usernameClaims().iterator();
+                        phase = Phase.USERNAME_CLAIMS;
+                    }
+                }
+                case USERNAME_CLAIMS -> {
+                    if (claimCursor.hasNext()) {
+                        Map.Entry<String, String> claim = claimCursor.next();
+                        User owner = store.peek(claim.getValue());
+                        if (owner == null || !owner.getUsername().toLowerCase().equals(claim.getKey())) {
+                            orphanedUsernameClaims += suspect(claim, usernameSuspects, nextUsernameSuspects);
+                        }
+                    } else {
+                        claimCursor = store.emailClaims().iterator();
+                        phase = Phase.EMAIL_CLAIMS;
+                    }
+                }
+                case EMAIL_CLAIMS -> {
+                    if (claimCursor.hasNext()) {
+                        Map.Entry<String, String> claim = claimCursor.next();
+                        User owner = store.peek(claim.getValue());
+                        if (owner == null || !owner.getEmail().toLowerCase().equals(claim.getKey())) {
+                            orphanedEmailClaims += suspect(claim, emailSuspects, nextEmailSuspects);
+                        }
+                    } else {
+                        completePass();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void checkUser(User snapshot) {
+        // Iterators may hand out an older version; check the user as it is now.
+        User user = store.peek(snapshot.getId());
+        if (user == null) {
+            return;
+        }
+        usersChecked++;
+        if (!user.getId().equals(store.findIdByUsername(user.getUsername().toLowerCase()))) {
+            missingUsernameClaims++;
+        }
+        if (!user.getId().equals(store.findIdByEmail(user.getEmail().toLowerCase()))) {
+            missingEmailClaims++;
+        }
+    }
+
+    private static int suspect(Map.Entry<String, String> claim, Set<String> previous, Set<String> next) {
+        String key = claim.getKey() + '\n' + claim.getValue();
+        if (next.size() < MAX_SUSPECTS) {
+            next.add(key);
+        }
+        return previous.contains(key) ? 1 : 0;
+    }
+
+    private void completePass() {
+        Instant now = Instant.now();
+        ConsistencyReport report = new ConsistencyReport(++pass, now, Duration.between(passStartedAt, now),
+            usersChecked, missingUsernameClaims, missingEmailClaims, orphanedUsernameClaims, orphanedEmailClaims);
+        if (report.missingUsernameClaims() + report.missingEmailClaims()
+                + report.orphanedUsernameClaims() + report.orphanedEmailClaims() > 0) {
+            log.warn("Store consistency pass {} found inconsistencies: {}", report.pass(), report);
+        }
+        lastReport = report;
+
+        usernameSuspects = nextUsernameSuspects;
+        emailSuspects = nextEmailSuspects;
+        nextUsernameSuspects = new HashSet<>();
+        nextEmailSuspects = new HashSet<>();
+        phase = Phase.USERS;
+        claimCursor = null;
+        passStartedAt = null;
+        usersChecked = 0;
+        missingUsernameClaims = 0;
+        missingEmailClaims = 0;
+        orphanedUsernameClaims = 0;
+        orphanedEmailClaims = 0;
+    }
+
+    private void registerInconsistencyGauge(MeterRegistry meterRegistry, String kind,
+            ToLongFunction<ConsistencyReport> count) {
+        Gauge.builder("data.store.inconsistencies", this, inspector -> {
+                ConsistencyReport report = inspector.lastReport;
+                return report == null ? 0 : count.applyAsLong(report);
+            })
+            .tag("kind", kind)
+            .register(meterRegistry);
+    }
+
+    private static StructureFootprint footprintOf(UserStore store, String name) {
+        for (StructureFootprint structure : store.footprint()) {
+            if (structure.name().equals(name)) {
+                return structure;
+            }
+        }
+        throw new IllegalArgumentException("Unknown store structure " + name);
+    }
+}
@@ -0,0 +1,73 @@
+package github.couryrr.backend.playbook.data.store;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties("data.store")
+public record StoreProperties(
+    @DefaultValue("heap") Mode mode,
+    @DefaultValue OffHeap offHeap,
+    @DefaultValue Tiered tiered,
+    @DefaultValue Inspection inspection,
+    @DefaultValue Compaction compaction
+) {
+
+    public enum Mode {
+        HEAP,
+        OFF_HEAP,
+        TIERED
+    }
+
+    /**
+     * Native storage in chunks of {@code chunkSize}, which must be under 2GB. Space
+     * held by superseded versions and released claims is reused by later writes; the
+     * record arena stops growing at {@code maxRecordsSize} and the username and email
+     * claims at {@code maxKeysSize}, after which writes that no freed space fits fail.
+     */
+    public record OffHeap(
+        @DefaultValue("64MB") DataSize chunkSize,
+        @DefaultValue("1024") int initialIndexCapacity,
+        @DefaultValue("4GB") DataSize maxRecordsSize,
+        @DefaultValue("1GB") DataSize maxKeysSize
+    ) {
+    }
+
+    /**
+     * Heap storage that keeps users within {@code memoryBudget} and spills the least
+     * recently read to segment files of up to {@code segmentSize} in {@code directory}.
+     * With {@code data.encryption.enabled}, spilled users are encrypted under a key
+     * held only in memory; the files are discarded on restart either way.
+     */
+    public record Tiered(
+        @DefaultValue("256MB") DataSize memoryBudget,
+        @DefaultValue("cold-users") Path directory,
+        @DefaultValue("64MB") DataSize segmentSize
+    ) {
+    }
+
+    /**
+     * Background consistency checking: every {@code interval}, {@link StoreInspector}
+     * checks up to {@code batchSize} users or claims.
+     */
+    public record Inspection(
+        @DefaultValue("1s") Duration interval,
+        @DefaultValue("1000") int batchSize
+    ) {
+    }
+
+    /**
+     * Tombstones are kept for {@code tombstoneRetention} so replicas and watchers can
+     * observe deletions, then purged by {@link TombstoneCompactor} at most
+     * {@code batchSize} per {@code interval}.
+     */
+    public record Compaction(
+        @DefaultValue("1s") Duration interval,
+        @DefaultValue("10m") Duration tombstoneRetention,
+        @DefaultValue("1000") int batchSize
+    ) {
+    }
+}
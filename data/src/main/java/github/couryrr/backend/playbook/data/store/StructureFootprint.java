@@ -0,0 +1,9 @@
+package github.couryrr.backend.playbook.data.store;
+
+/**
+ * Entry count and approximate memory held by one internal structure of a
+ * {@link UserStore}. {@code offHeap} structures live in native memory and do not
+ * count against the Java heap.
+ */
+public record StructureFootprint(String name, long entries, long estimatedBytes, boolean offHeap) {
+}
@@ -0,0 +1,42 @@
+package github.couryrr.backend.playbook.data.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Purges tombstones older than the retention period in small batches, so compaction
+ * never pauses the store for longer than one batch. Throughput and reclaimed memory
+ * are reported as {@code data.store.compaction.*}.
+ */
+@Component
+public class TombstoneCompactor {
+
+    private final UserStore store;
+    private final StoreProperties.Compaction properties;
+    private final Counter tombstonesPurged;
+    private final Counter bytesReclaimed;
+    private final Timer batchDuration;
+
+    public TombstoneCompactor(UserStore store, StoreProperties properties, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.properties = properties.compaction();
+        this.tombstonesPurged = meterRegistry.counter("data.store.compaction.tombstones_purged");
+        this.bytesReclaimed = Counter.builder("data.store.compaction.bytes_reclaimed")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.batchDuration = meterRegistry.timer("data.store.compaction.batch_duration");
+    }
+
+    @Scheduled(fixedDelayString = "${data.store.compaction.interval:1s}")
+    public void compact() {
+        Instant deletedBefore = Instant.now().minus(properties.tombstoneRetention());
+        CompactionResult result = batchDuration.record(() -> store.purgeTombstones(deletedBefore, properties.batchSize()));
+        tombstonesPurged.increment(result.tombstonesPurged());
+        bytesReclaimed.increment(result.bytesReclaimed());
+    }
+}
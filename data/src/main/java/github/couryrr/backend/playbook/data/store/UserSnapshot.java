@@ -0,0 +1,28 @@
+package github.couryrr.backend.playbook.data.store;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+
+/**
+ * A point-in-time view of a {@link UserStore}. Reads through it see every write that
+ * had completed when it was taken and none that completed later, however long it is
+ * held, and never block writers.
+ *
+ * <p>The store keeps the versions a snapshot may still read until it is closed, so
+ * close it as soon as the read is done.
+ */
+public interface UserSnapshot extends AutoCloseable {
+
+    /**
+     * The user as of the snapshot, or {@code null} when it did not exist or was
+     * deleted by then.
+     */
+    User get(String id);
+
+    /**
+     * Lazily visits every user live as of the snapshot.
+     */
+    Iterable<User> users();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,111 @@
+package github.couryrr.backend.playbook.data.store;
+
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage for user records and their unique username and email claims.
+ *
+ * <p>Username and email keys are expected to be lowercased by the caller. Claims
+ * follow {@code putIfAbsent} semantics so a key can be reserved before the user it
+ * belongs to is written.
+ *
+ * <p>Deleting a user leaves a tombstone under its id until it is purged. Tombstones
+ * are invisible to {@link #get}, {@link #users()} and {@link #size()}, and block
+ * writes to their id until purged.
+ */
+public interface UserStore extends AutoCloseable {
+
+    User get(String id);
+
+    /**
+     * Reads a user like {@link #get}, but leaves what the store keeps in memory
+     * unchanged, for background scans that should not displace the working set.
+     */
+    default User peek(String id) {
+        return get(id);
+    }
+
+    /**
+     * Writes a new version of a user. Returns {@code false}, without writing, when the
+     * id has been deleted.
+     */
+    boolean put(User user);
+
+    void putAll(Collection<User> users);
+
+    /**
+     * Replaces a live user with a tombstone that carries only its id,
+     * {@code updated_at} and {@code deleted_at}. Returns the user as it was, or
+     * {@code null} when there is no live user with that id. Claims are left to the
+     * caller to release.
+     */
+    User delete(String id, Timestamp deletedAt);
+
+    /**
+     * Tombstones not yet purged, oldest first.
+     */
+    Iterable<User> tombstones();
+
+    /**
+     * Drops up to {@code limit} tombstones deleted before {@code deletedBefore}, oldest
+     * first, along with anything else the store still keeps for those users.
+     */
+    CompactionResult purgeTombstones(Instant deletedBefore, int limit);
+
+    /**
+     * Reserves {@code username} for {@code userId}. Returns {@code false} when the
+     * username is already claimed, including by the same user.
+     */
+    boolean claimUsername(String username, String userId);
+
+    boolean claimEmail(String email, String userId);
+
+    /**
+     * Releases {@code username} only if it is still claimed by {@code userId}.
+     */
+    void releaseUsername(String username, String userId);
+
+    void releaseEmail(String email, String userId);
+
+    String findIdByUsername(String username);
+
+    String findIdByEmail(String email);
+
+    long size();
+
+    /**
+     * Lazily visits every stored user. Implementations document how the view behaves
+     * under concurrent writes; none of them copy the whole store up front.
+     */
+    Iterable<User> users();
+
+    /**
+     * Pins the current state of the store for reads that must be consistent across
+     * users. Tombstones written after the snapshot are not purged while it is open.
+     */
+    UserSnapshot snapshot();
+
+    /**
+     * Lazily visits username claims as {@code (username, userId)} pairs, with the same
+     * consistency as {@link #users()}.
+     */
+    Iterable<Map.Entry<String, String>> usernameClaims();
+
+    Iterable<Map.Entry<String, String>> emailClaims();
+
+    /**
+     * Per-structure entry counts and memory estimates. Cheap enough to call on every
+     * metrics scrape.
+     */
+    List<StructureFootprint> footprint();
+
+    @Override
+    default void close() {
+    }
+}
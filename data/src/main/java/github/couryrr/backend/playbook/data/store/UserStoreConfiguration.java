@@ -0,0 +1,49 @@
+package github.couryrr.backend.playbook.data.store;
+
+import github.couryrr.backend.playbook.data.crypto.StreamEncryption;
+import github.couryrr.backend.playbook.data.store.offheap.OffHeapUserStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+@Configuration(proxyBeanMethods = false)
+public class UserStoreConfiguration {
+
+    @Bean
+    UserStore userStore(StoreProperties properties, StreamEncryption encryption, MeterRegistry meterRegistry)
+            throws IOException {
+        return create(properties, encryption.enabled(), meterRegistry);
+    }
+
+    /**
+     * Builds the store {@code properties} select; the caller owns and closes it. With
+     * {@code encryptAtRest}, a tiered store encrypts what it spills to disk.
+     */
+    public static UserStore create(StoreProperties properties, boolean encryptAtRest, MeterRegistry meterRegistry)
+            throws IOException {
+        return switch (properties.mode()) {
+            case HEAP -> new HeapUserStore();
+            case OFF_HEAP -> new OffHeapUserStore(
+                chunkSize(properties.offHeap()),
+                properties.offHeap().initialIndexCapacity(),
+                properties.offHeap().maxRecordsSize().toBytes(),
+                properties.offHeap().maxKeysSize().toBytes());
+            case TIERED -> new HeapUserStore(
+                properties.tiered().memoryBudget().toBytes(),
+                properties.tiered().directory(),
+                properties.tiered().segmentSize().toBytes(),
+                encryptAtRest,
+                meterRegistry);
+        };
+    }
+
+    private static int chunkSize(StoreProperties.OffHeap offHeap) {
+        long bytes = offHeap.chunkSize().toBytes();
+        if (bytes > Integer.MAX_VALUE - 7) {
+            throw new IllegalArgumentException("data.store.off-heap.chunk-size must be under 2GB, was " + bytes);
+        }
+        return (int) bytes;
+    }
+}
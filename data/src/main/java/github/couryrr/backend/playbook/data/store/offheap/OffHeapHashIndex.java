@@ -0,0 +1,201 @@
+package github.couryrr.backend.playbook.data.store.offheap;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash table in native memory mapping a 64-bit key hash to a
+ * {@code long} value, typically a {@link RecordArena} address.
+ *
+ * <p>Each slot is 16 bytes: the hash (never zero, zero marks an empty slot) followed
+ * by the value. Collisions are resolved with linear probing and removals use
+ * backward-shift deletion, so no tombstones accumulate. Because two keys can share a
+ * hash, every lookup takes a predicate that confirms the candidate value really
+ * belongs to the key. Not thread-safe; callers synchronize.
+ */
+final class OffHeapHashIndex implements AutoCloseable {
+
+    static final long NOT_FOUND = -1;
+
+    private static final int SLOT_SIZE = 16;
+
+    private Arena arena;
+    private MemorySegment slots;
+    private int mask;
+    private int size;
+
+    OffHeapHashIndex(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1;
+        allocate(capacity);
+    }
+
+    long get(long hash, LongPredicate matcher) {
+        int slot = find(fingerprint(hash), matcher);
+        return slot < 0 ? NOT_FOUND : value(slot);
+    }
+
+    /**
+     * Inserts or replaces the value for a key and returns the previous value, or
+     * {@link #NOT_FOUND}.
+     */
+    long put(long hash, long value, LongPredicate matcher) {
+        long fingerprint = fingerprint(hash);
+        int existing = find(fingerprint, matcher);
+        if (existing >= 0) {
+            long previous = value(existing);
+            slots.set(ValueLayout.JAVA_LONG, (long) existing * SLOT_SIZE + 8, value);
+            return previous;
+        }
+        if ((size + 1) * 2 > mask + 1) {
+            resize((mask + 1) * 2);
+        }
+        insert(fingerprint, value);
+        size++;
+        return NOT_FOUND;
+    }
+
+    boolean remove(long hash, LongPredicate matcher) {
+        int slot = find(fingerprint(hash), matcher);
+        if (slot < 0) {
+            return false;
+        }
+        int hole = slot;
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            long nextFingerprint = fingerprintAt(next);
+            if (nextFingerprint == 0) {
+                break;
+            }
+            int home = home(nextFingerprint);
+            boolean homeBetween = hole <= next
+                ? hole < home && home <= next
+                : hole < home || home <= next;
+            if (homeBetween) {
+                continue;
+            }
+            setSlot(hole, nextFingerprint, value(next));
+            hole = next;
+        }
+        setSlot(hole, 0, 0);
+        size--;
+        return true;
+    }
+
+    void forEachValue(LongConsumer consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (fingerprintAt(slot) != 0) {
+                consumer.accept(value(slot));
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * The value in {@code slot}, or {@link #NOT_FOUND} when the slot is empty. Used to
+     * walk the table a few slots at a time without holding the caller's lock throughout.
+     */
+    long valueAt(int slot) {
+        return fingerprintAt(slot) == 0 ? NOT_FOUND : value(slot);
+    }
+
+    long byteSize() {
+        return slots.byteSize();
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private int find(long fingerprint, LongPredicate matcher) {
+        int slot = home(fingerprint);
+        while (true) {
+            long current = fingerprintAt(slot);
+            if (current == 0) {
+                return -1;
+            }
+            if (current == fingerprint && matcher.test(value(slot))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void insert(long fingerprint, long value) {
+        int slot = home(fingerprint);
+        while (fingerprintAt(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        setSlot(slot, fingerprint, value);
+    }
+
+    private void resize(int capacity) {
+        Arena oldArena = arena;
+        MemorySegment oldSlots = slots;
+        int oldCapacity = mask + 1;
+        allocate(capacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long fingerprint = oldSlots.get(ValueLayout.JAVA_LONG, (long) slot * SLOT_SIZE);
+            if (fingerprint != 0) {
+                insert(fingerprint, oldSlots.get(ValueLayout.JAVA_LONG, (long) slot * SLOT_SIZE + 8));
+            }
+        }
+        oldArena.close();
+    }
+
+    private void allocate(int capacity) {
+        arena = Arena.ofShared();
+        slots = arena.allocate((long) capacity * SLOT_SIZE, 8);
+        mask = capacity - 1;
+    }
+
+    private long fingerprintAt(int slot) {
+        return slots.get(ValueLayout.JAVA_LONG, (long) slot * SLOT_SIZE);
+    }
+
+    private long value(int slot) {
+        return slots.get(ValueLayout.JAVA_LONG, (long) slot * SLOT_SIZE + 8);
+    }
+
+    private void setSlot(int slot, long fingerprint, long value) {
+        slots.set(ValueLayout.JAVA_LONG, (long) slot * SLOT_SIZE, fingerprint);
+        slots.set(ValueLayout.JAVA_LONG, (long) slot * SLOT_SIZE + 8, value);
+    }
+
+    private int home(long fingerprint) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+    }
+
+    private static long fingerprint(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * 64-bit FNV-1a over the bytes, finished with the MurmurHash3 mixer so the low
+     * bits used for slot selection are well distributed.
+     */
+    static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
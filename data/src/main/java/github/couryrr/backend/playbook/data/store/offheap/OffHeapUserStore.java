@@ -0,0 +1,748 @@
+package github.couryrr.backend.playbook.data.store.offheap;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import github.couryrr.backend.playbook.data.store.CompactionResult;
+import github.couryrr.backend.playbook.data.store.StoreFullException;
+import github.couryrr.backend.playbook.data.store.StructureFootprint;
+import github.couryrr.backend.playbook.data.store.UserSnapshot;
+import github.couryrr.backend.playbook.data.store.UserStore;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+
+/**
+ * Keeps serialized users in native memory so large user bases don't weigh on the GC.
+ *
+ * <p>User records are written to a {@link RecordArena} as
+ * {@code [int userLength][int idLength][long previousAddress][long sequence][id][user]}
+ * and are only parsed into {@link User} when a caller asks for one. An update writes a
+ * new record, stamped with the next commit sequence, that points back at the one it
+ * replaces. Username and email claims are written to a second arena as
+ * {@code [int keyLength][int idLength][key][id]}. The id, username and email indexes
+ * are {@link OffHeapHashIndex} tables keyed by a 64-bit hash of the UTF-8 key.
+ *
+ * <p>A {@link #snapshot()} pins the last commit sequence and reads each user's newest
+ * version at or below it. A write frees the versions it supersedes unless an open
+ * snapshot can still read them; those users are queued and their chains trimmed when
+ * snapshots close. Released claims are freed too, and freed space is reused by later
+ * writes. A single read-write lock guards the arenas and indexes.
+ *
+ * <p>A delete writes a tombstone record, flagged in the top bit of its user length,
+ * so snapshots taken earlier still see the user. Purging a tombstone drops its id
+ * from the index and frees the tombstone along with any versions still below it.
+ *
+ * <p>The record arena is capped at {@code maxRecordsBytes} and the key arena at
+ * {@code maxKeysBytes}: once neither freed space nor a new chunk fits a write, it
+ * fails with {@link StoreFullException} without being applied, while reads carry on.
+ */
+public class OffHeapUserStore implements UserStore {
+
+    private static final int RECORD_HEADER = 24;
+    private static final int KEY_HEADER = 8;
+    private static final long NO_PREVIOUS = -1;
+    private static final int TOMBSTONE_FLAG = 0x8000_0000;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RecordArena records;
+    private final RecordArena keys;
+    private final OffHeapHashIndex idIndex;
+    private final OffHeapHashIndex usernameIndex;
+    private final OffHeapHashIndex emailIndex;
+    private final ArrayDeque<PendingTombstone> tombstoneQueue = new ArrayDeque<>();
+    // Pinned sequence of each open snapshot, with how many share it. Guarded by itself.
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+    // Ids of users whose chains still hold versions an open snapshot could read.
+    private final Set<String> untrimmed = new LinkedHashSet<>();
+    private long lastSequence;
+    private long tombstoneBytes;
+
+    private record PendingTombstone(String id, Instant deletedAt) {
+    }
+
+    public OffHeapUserStore(int chunkSize, int initialIndexCapacity) {
+        this(chunkSize, initialIndexCapacity, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public OffHeapUserStore(int chunkSize, int initialIndexCapacity, long maxRecordsBytes, long maxKeysBytes) {
+        this.records = new RecordArena(chunkSize, maxRecordsBytes);
+        this.keys = new RecordArena(chunkSize, maxKeysBytes);
+        this.idIndex = new OffHeapHashIndex(initialIndexCapacity);
+        this.usernameIndex = new OffHeapHashIndex(initialIndexCapacity);
+        this.emailIndex = new OffHeapHashIndex(initialIndexCapacity);
+    }
+
+    @Override
+    public User get(String id) {
+        byte[] idBytes = utf8(id);
+        lock.readLock().lock();
+        try {
+            long address = findRecord(idBytes);
+            return address == OffHeapHashIndex.NOT_FOUND || isTombstone(address) ? null : parseUser(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean put(User user) {
+        byte[] idBytes = utf8(user.getId());
+        byte[] userBytes = user.toByteArray();
+        lock.writeLock().lock();
+        try {
+            if (isTombstone(findRecord(idBytes))) {
+                return false;
+            }
+            writeRecord(idBytes, userBytes, false);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Collection<User> users) {
+        byte[][] ids = new byte[users.size()][];
+        byte[][] serialized = new byte[users.size()][];
+        int i = 0;
+        for (User user : users) {
+            ids[i] = utf8(user.getId());
+            serialized[i] = user.toByteArray();
+            i++;
+        }
+        lock.writeLock().lock();
+        try {
+            for (int j = 0; j < ids.length; j++) {
+                if (!isTombstone(findRecord(ids[j]))) {
+                    writeRecord(ids[j], serialized[j], false);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public User delete(String id, Timestamp deletedAt) {
+        byte[] idBytes = utf8(id);
+        byte[] tombstone = User.newBuilder()
+            .setId(id)
+            .setUpdatedAt(deletedAt)
+            .setDeletedAt(deletedAt)
+            .build()
+            .toByteArray();
+        lock.writeLock().lock();
+        try {
+            long address = findRecord(idBytes);
+            if (address == OffHeapHashIndex.NOT_FOUND || isTombstone(address)) {
+                return null;
+            }
+            User deleted = parseUser(address);
+            writeRecord(idBytes, tombstone, true);
+            tombstoneQueue.addLast(new PendingTombstone(id,
+                Instant.ofEpochSecond(deletedAt.getSeconds(), deletedAt.getNanos())));
+            tombstoneBytes += recordSize(idBytes.length, tombstone.length);
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Each tombstone is purged under its own write lock so readers and writers are
+     * only held off for one at a time. Stops at the first tombstone committed after the
+     * oldest open snapshot, which must still see the user it deleted.
+     */
+    @Override
+    public CompactionResult purgeTombstones(Instant deletedBefore, int limit) {
+        long purged = 0;
+        long reclaimedBytes = 0;
+        while (purged < limit) {
+            lock.writeLock().lock();
+            try {
+                PendingTombstone pending = tombstoneQueue.peekFirst();
+                if (pending == null || !pending.deletedAt().isBefore(deletedBefore)) {
+                    break;
+                }
+                byte[] idBytes = utf8(pending.id());
+                long address = findRecord(idBytes);
+                if (isTombstone(address) && sequence(address) > oldestSnapshot()) {
+                    break;
+                }
+                tombstoneQueue.removeFirst();
+                if (!isTombstone(address)) {
+                    continue;
+                }
+                tombstoneBytes -= recordSize(address);
+                idIndex.remove(OffHeapHashIndex.hash(idBytes), candidate -> candidate == address);
+                untrimmed.remove(pending.id());
+                reclaimedBytes += freeChain(address);
+                purged++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return new CompactionResult(purged, reclaimedBytes);
+    }
+
+    @Override
+    public Iterable<User> tombstones() {
+        lock.readLock().lock();
+        try {
+            List<User> tombstones = new ArrayList<>(tombstoneQueue.size());
+            for (PendingTombstone pending : tombstoneQueue) {
+                tombstones.add(parseUser(findRecord(utf8(pending.id()))));
+            }
+            return tombstones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean claimUsername(String username, String userId) {
+        return claim(usernameIndex, username, userId);
+    }
+
+    @Override
+    public boolean claimEmail(String email, String userId) {
+        return claim(emailIndex, email, userId);
+    }
+
+    @Override
+    public void releaseUsername(String username, String userId) {
+        release(usernameIndex, username, userId);
+    }
+
+    @Override
+    public void releaseEmail(String email, String userId) {
+        release(emailIndex, email, userId);
+    }
+
+    @Override
+    public String findIdByUsername(String username) {
+        return findId(usernameIndex, username);
+    }
+
+    @Override
+    public String findIdByEmail(String email) {
+        return findId(emailIndex, email);
+    }
+
+    @Override
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return idIndex.size() - tombstoneQueue.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walks the id index slot by slot, taking the read lock for one user at a time,
+     * and returns each user's latest version when it is reached. Unlike a snapshot it
+     * pins nothing, so a long scan does not hold back reclaiming old versions. A resize
+     * or purge during the walk can cause users to be skipped or repeated.
+     */
+    @Override
+    public Iterable<User> users() {
+        return () -> new IndexIterator<>(idIndex, address -> isTombstone(address) ? null : parseUser(address));
+    }
+
+    @Override
+    public UserSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            long sequence = lastSequence;
+            synchronized (openSnapshots) {
+                openSnapshots.merge(sequence, 1, Integer::sum);
+            }
+            return new ArenaSnapshot(records.end(), sequence);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walks the username index slot by slot, taking the read lock for one claim at a
+     * time. A resize during the walk can cause claims to be skipped or repeated.
+     */
+    @Override
+    public Iterable<Map.Entry<String, String>> usernameClaims() {
+        return () -> new IndexIterator<>(usernameIndex, address -> Map.entry(keyName(address), keyOwner(address)));
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, String>> emailClaims() {
+        return () -> new IndexIterator<>(emailIndex, address -> Map.entry(keyName(address), keyOwner(address)));
+    }
+
+    /**
+     * Record and key arenas are reported at their reserved size, which is what they
+     * hold in native memory, including the freed space listed separately for reuse.
+     */
+    @Override
+    public List<StructureFootprint> footprint() {
+        lock.readLock().lock();
+        try {
+            return List.of(
+                new StructureFootprint("records", idIndex.size(), records.reservedBytes(), true),
+                new StructureFootprint("freeRecords", records.freeBlocks(), records.freeBytes(), true),
+                new StructureFootprint("tombstones", tombstoneQueue.size(), tombstoneBytes, true),
+                new StructureFootprint("keys", usernameIndex.size() + emailIndex.size(), keys.reservedBytes(), true),
+                new StructureFootprint("freeKeys", keys.freeBlocks(), keys.freeBytes(), true),
+                new StructureFootprint("idIndex", idIndex.size(), idIndex.byteSize(), true),
+                new StructureFootprint("usernameIndex", usernameIndex.size(), usernameIndex.byteSize(), true),
+                new StructureFootprint("emailIndex", emailIndex.size(), emailIndex.byteSize(), true)
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Native bytes held by record and key arenas plus index tables.
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return records.reservedBytes() + keys.reservedBytes()
+                + idIndex.byteSize() + usernameIndex.byteSize() + emailIndex.byteSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            untrimmed.clear();
+            records.close();
+            keys.close();
+            idIndex.close();
+            usernameIndex.close();
+            emailIndex.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long oldestSnapshot() {
+        synchronized (openSnapshots) {
+            return openSnapshots.isEmpty() ? Long.MAX_VALUE : openSnapshots.firstKey();
+        }
+    }
+
+    /**
+     * Newest version of the user committed at or before {@code sequence}, or
+     * {@link OffHeapHashIndex#NOT_FOUND}.
+     */
+    private long versionAt(byte[] idBytes, long sequence) {
+        long version = findRecord(idBytes);
+        while (version != OffHeapHashIndex.NOT_FOUND && sequence(version) > sequence) {
+            version = previousVersion(version);
+            if (version == NO_PREVIOUS) {
+                return OffHeapHashIndex.NOT_FOUND;
+            }
+        }
+        return version;
+    }
+
+    private void writeRecord(byte[] idBytes, byte[] userBytes, boolean tombstone) {
+        long hash = OffHeapHashIndex.hash(idBytes);
+        long previous = idIndex.get(hash, candidate -> recordIdMatches(candidate, idBytes));
+        long address = records.allocate(RECORD_HEADER + idBytes.length + userBytes.length);
+        MemorySegment chunk = records.chunk(address);
+        long offset = RecordArena.offset(address);
+        chunk.set(ValueLayout.JAVA_INT, offset, tombstone ? userBytes.length | TOMBSTONE_FLAG : userBytes.length);
+        chunk.set(ValueLayout.JAVA_INT, offset + 4, idBytes.length);
+        chunk.set(ValueLayout.JAVA_LONG, offset + 8, previous == OffHeapHashIndex.NOT_FOUND ? NO_PREVIOUS : previous);
+        chunk.set(ValueLayout.JAVA_LONG, offset + 16, ++lastSequence);
+        MemorySegment.copy(idBytes, 0, chunk, ValueLayout.JAVA_BYTE, offset + RECORD_HEADER, idBytes.length);
+        MemorySegment.copy(userBytes, 0, chunk, ValueLayout.JAVA_BYTE,
+            offset + RECORD_HEADER + idBytes.length, userBytes.length);
+        idIndex.put(hash, address, candidate -> recordIdMatches(candidate, idBytes));
+        if (!trim(address, Math.min(oldestSnapshot(), lastSequence))) {
+            untrimmed.add(new String(idBytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Frees the versions below the newest one at or before {@code horizon}, which no
+     * open snapshot can read. Returns whether the chain is down to its head, leaving
+     * nothing for a later trim to free.
+     */
+    private boolean trim(long address, long horizon) {
+        long keep = address;
+        while (sequence(keep) > horizon) {
+            keep = previousVersion(keep);
+            if (keep == NO_PREVIOUS) {
+                return previousVersion(address) == NO_PREVIOUS;
+            }
+        }
+        long cut = previousVersion(keep);
+        if (cut != NO_PREVIOUS) {
+            records.chunk(keep).set(ValueLayout.JAVA_LONG, RecordArena.offset(keep) + 8, NO_PREVIOUS);
+            freeChain(cut);
+        }
+        return keep == address;
+    }
+
+    /**
+     * Trims the chains of users written while snapshots were open, keeping queued only
+     * those a still-open snapshot reads from. Called with the write lock held.
+     */
+    private void drainUntrimmed() {
+        long horizon = Math.min(oldestSnapshot(), lastSequence);
+        for (Iterator<String> ids = untrimmed.iterator(); ids.hasNext(); ) {
+            long address = findRecord(utf8(ids.next()));
+            if (address == OffHeapHashIndex.NOT_FOUND || trim(address, horizon)) {
+                ids.remove();
+            }
+        }
+    }
+
+    /**
+     * Frees {@code address} and every older version it points back at, returning the
+     * bytes given back to the arena.
+     */
+    private long freeChain(long address) {
+        long freed = 0;
+        for (long version = address; version != NO_PREVIOUS; ) {
+            long previous = previousVersion(version);
+            long size = recordSize(version);
+            records.free(version, (int) size);
+            freed += size;
+            version = previous;
+        }
+        return freed;
+    }
+
+    private long findRecord(byte[] idBytes) {
+        return idIndex.get(OffHeapHashIndex.hash(idBytes), candidate -> recordIdMatches(candidate, idBytes));
+    }
+
+    private boolean isTombstone(long address) {
+        return address != OffHeapHashIndex.NOT_FOUND
+            && (records.chunk(address).get(ValueLayout.JAVA_INT, RecordArena.offset(address)) & TOMBSTONE_FLAG) != 0;
+    }
+
+    private long previousVersion(long address) {
+        return records.chunk(address).get(ValueLayout.JAVA_LONG, RecordArena.offset(address) + 8);
+    }
+
+    private long sequence(long address) {
+        return records.chunk(address).get(ValueLayout.JAVA_LONG, RecordArena.offset(address) + 16);
+    }
+
+    private long recordSize(long address) {
+        MemorySegment chunk = records.chunk(address);
+        long offset = RecordArena.offset(address);
+        return recordSize(chunk.get(ValueLayout.JAVA_INT, offset + 4), userLength(chunk, offset));
+    }
+
+    private static long recordSize(int idLength, int userLength) {
+        return RecordArena.aligned(RECORD_HEADER + idLength + userLength);
+    }
+
+    private static int userLength(MemorySegment chunk, long offset) {
+        return chunk.get(ValueLayout.JAVA_INT, offset) & ~TOMBSTONE_FLAG;
+    }
+
+    private boolean recordIdMatches(long address, byte[] idBytes) {
+        MemorySegment chunk = records.chunk(address);
+        long offset = RecordArena.offset(address);
+        int idLength = chunk.get(ValueLayout.JAVA_INT, offset + 4);
+        return idLength == idBytes.length && MemorySegment.mismatch(
+            chunk, offset + RECORD_HEADER, offset + RECORD_HEADER + idLength,
+            MemorySegment.ofArray(idBytes), 0, idBytes.length) == -1;
+    }
+
+    private User parseUser(long address) {
+        MemorySegment chunk = records.chunk(address);
+        long offset = RecordArena.offset(address);
+        int userLength = userLength(chunk, offset);
+        int idLength = chunk.get(ValueLayout.JAVA_INT, offset + 4);
+        try {
+            return User.parseFrom(chunk.asSlice(offset + RECORD_HEADER + idLength, userLength).asByteBuffer());
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Corrupt user record at " + Long.toHexString(address), e);
+        }
+    }
+
+    private boolean claim(OffHeapHashIndex index, String key, String userId) {
+        byte[] keyBytes = utf8(key);
+        byte[] idBytes = utf8(userId);
+        long hash = OffHeapHashIndex.hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            if (index.get(hash, candidate -> keyMatches(candidate, keyBytes)) != OffHeapHashIndex.NOT_FOUND) {
+                return false;
+            }
+            long address = keys.allocate(KEY_HEADER + keyBytes.length + idBytes.length);
+            MemorySegment chunk = keys.chunk(address);
+            long offset = RecordArena.offset(address);
+            chunk.set(ValueLayout.JAVA_INT, offset, keyBytes.length);
+            chunk.set(ValueLayout.JAVA_INT, offset + 4, idBytes.length);
+            MemorySegment.copy(keyBytes, 0, chunk, ValueLayout.JAVA_BYTE, offset + KEY_HEADER, keyBytes.length);
+            MemorySegment.copy(idBytes, 0, chunk, ValueLayout.JAVA_BYTE,
+                offset + KEY_HEADER + keyBytes.length, idBytes.length);
+            index.put(hash, address, candidate -> keyMatches(candidate, keyBytes));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void release(OffHeapHashIndex index, String key, String userId) {
+        byte[] keyBytes = utf8(key);
+        long hash = OffHeapHashIndex.hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            long address = index.get(hash, candidate -> keyMatches(candidate, keyBytes));
+            if (address != OffHeapHashIndex.NOT_FOUND && userId.equals(keyOwner(address))) {
+                index.remove(hash, candidate -> candidate == address);
+                MemorySegment chunk = keys.chunk(address);
+                long offset = RecordArena.offset(address);
+                keys.free(address, KEY_HEADER + chunk.get(ValueLayout.JAVA_INT, offset)
+                    + chunk.get(ValueLayout.JAVA_INT, offset + 4));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private String findId(OffHeapHashIndex index, String key) {
+        byte[] keyBytes = utf8(key);
+        long hash = OffHeapHashIndex.hash(keyBytes);
+        lock.readLock().lock();
+        try {
+            long address = index.get(hash, candidate -> keyMatches(candidate, keyBytes));
+            return address == OffHeapHashIndex.NOT_FOUND ? null : keyOwner(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean keyMatches(long address, byte[] keyBytes) {
+        MemorySegment chunk = keys.chunk(address);
+        long offset = RecordArena.offset(address);
+        int keyLength = chunk.get(ValueLayout.JAVA_INT, offset);
+        return keyLength == keyBytes.length && MemorySegment.mismatch(
+            chunk, offset + KEY_HEADER, offset + KEY_HEADER + keyLength,
+            MemorySegment.ofArray(keyBytes), 0, keyBytes.length) == -1;
+    }
+
+    private String keyName(long address) {
+        MemorySegment chunk = keys.chunk(address);
+        long offset = RecordArena.offset(address);
+        int keyLength = chunk.get(ValueLayout.JAVA_INT, offset);
+        byte[] key = chunk.asSlice(offset + KEY_HEADER, keyLength).toArray(ValueLayout.JAVA_BYTE);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private String keyOwner(long address) {
+        MemorySegment chunk = keys.chunk(address);
+        long offset = RecordArena.offset(address);
+        int keyLength = chunk.get(ValueLayout.JAVA_INT, offset);
+        int idLength = chunk.get(ValueLayout.JAVA_INT, offset + 4);
+        byte[] id = chunk.asSlice(offset + KEY_HEADER + keyLength, idLength).toArray(ValueLayout.JAVA_BYTE);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Visits the values of an index, mapped under the read lock; values mapped to
+     * {@code null} are skipped.
+     */
+    private final class IndexIterator<T> implements Iterator<T> {
+
+        private final OffHeapHashIndex index;
+        private final LongFunction<T> mapper;
+        private int slot;
+        private T next;
+
+        private IndexIterator(OffHeapHashIndex index, LongFunction<T> mapper) {
+            this.index = index;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T value = next;
+            next = null;
+            return value;
+        }
+
+        private void advance() {
+            lock.readLock().lock();
+            try {
+                while (slot < index.capacity()) {
+                    long address = index.valueAt(slot++);
+                    if (address != OffHeapHashIndex.NOT_FOUND) {
+                        next = mapper.apply(address);
+                        if (next != null) {
+                            return;
+                        }
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Scans the record arena up to where it ended when the snapshot was taken, stepping
+     * over free blocks. Blocks only ever split, so the scan position always stays at
+     * the start of a block, and the versions the snapshot reads are not freed while
+     * it is open.
+     */
+    private final class SnapshotIterator implements Iterator<User> {
+
+        private final long end;
+        private final long sequence;
+        private int chunkIndex;
+        private int offset;
+        private User next;
+
+        private SnapshotIterator(long end, long sequence) {
+            this.end = end;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public User next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            User user = next;
+            next = null;
+            return user;
+        }
+
+        private void advance() {
+            lock.readLock().lock();
+            try {
+                int endChunk = RecordArena.chunkIndex(end);
+                while (chunkIndex < endChunk || (chunkIndex == endChunk && offset < RecordArena.offset(end))) {
+                    int limit = chunkIndex == endChunk ? RecordArena.offset(end) : records.limit(chunkIndex);
+                    if (chunkIndex >= records.chunkCount() || offset >= limit) {
+                        chunkIndex++;
+                        offset = 0;
+                        continue;
+                    }
+                    long address = RecordArena.address(chunkIndex, offset);
+                    MemorySegment chunk = records.chunk(address);
+                    if (RecordArena.isFree(chunk, offset)) {
+                        offset += RecordArena.freeSize(chunk, offset);
+                        continue;
+                    }
+                    int userLength = userLength(chunk, offset);
+                    int idLength = chunk.get(ValueLayout.JAVA_INT, offset + 4);
+                    offset += (int) recordSize(idLength, userLength);
+                    if (!isTombstone(address) && isSnapshotVersion(address, chunk, idLength)) {
+                        next = parseUser(address);
+                        return;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * A record belongs to the snapshot when it is the newest version of its user
+         * committed at or before the snapshot's sequence.
+         */
+        private boolean isSnapshotVersion(long address, MemorySegment chunk, int idLength) {
+            long recordOffset = RecordArena.offset(address);
+            byte[] idBytes = chunk.asSlice(recordOffset + RECORD_HEADER, idLength).toArray(ValueLayout.JAVA_BYTE);
+            return versionAt(idBytes, sequence) == address;
+        }
+    }
+
+    private final class ArenaSnapshot implements UserSnapshot {
+
+        private final long end;
+        private final long sequence;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private ArenaSnapshot(long end, long sequence) {
+            this.end = end;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public User get(String id) {
+            byte[] idBytes = utf8(id);
+            lock.readLock().lock();
+            try {
+                long address = versionAt(idBytes, sequence);
+                return address == OffHeapHashIndex.NOT_FOUND || isTombstone(address) ? null : parseUser(address);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public Iterable<User> users() {
+            return () -> new SnapshotIterator(end, sequence);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                synchronized (openSnapshots) {
+                    openSnapshots.computeIfPresent(sequence, (key, count) -> count == 1 ? null : count - 1);
+                }
+                lock.writeLock().lock();
+                try {
+                    drainUntrimmed();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package github.couryrr.backend.playbook.data.store.offheap;
+
+import github.couryrr.backend.playbook.data.store.StoreFullException;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+/**
+ * Native memory carved into fixed-size chunks, allocated by appending or from blocks
+ * that were given back with {@link #free}.
+ *
+ * <p>An address packs the chunk index into the high 32 bits and the offset into the
+ * low 32 bits. Allocations are 8-byte aligned and never move. Chunks are only
+ * returned when the whole arena is closed, so an arena refuses to grow past
+ * {@code maxBytes}; past that, allocations are served from freed blocks alone.
+ *
+ * <p>A freed block is overwritten with {@code [int size][int -1][long next]} and
+ * linked into a free list: one list per size up to {@link #MAX_CLASS_SIZE}, where a
+ * block is reused whole or split, and one first-fit list for larger blocks. Blocks are
+ * never merged, so the start of a block stays the start of a block, and scanners can
+ * step over free blocks with {@link #isFree} and {@link #freeSize}. The second int of
+ * every allocation must therefore never be negative. Callers are responsible for
+ * synchronizing allocations and frees with reads.
+ */
+final class RecordArena implements AutoCloseable {
+
+    static final int MIN_BLOCK = 16;
+
+    private static final int FREE_MARK = -1;
+    private static final long NO_BLOCK = -1;
+    private static final int MAX_CLASS_SIZE = 1024;
+
+    private final Arena arena = Arena.ofShared();
+    private final int chunkSize;
+    private final long maxBytes;
+    private MemorySegment[] chunks = new MemorySegment[0];
+    private int[] limits = new int[0];
+    // Head of the free list for each block size divided by 8, up to MAX_CLASS_SIZE.
+    private final long[] freeLists = new long[MAX_CLASS_SIZE / 8 + 1];
+    private long largeFreeList = NO_BLOCK;
+    private long freeBlocks;
+    private long freeBytes;
+
+    RecordArena(int chunkSize) {
+        this(chunkSize, Long.MAX_VALUE);
+    }
+
+    RecordArena(int chunkSize, long maxBytes) {
+        if (chunkSize < 64 || chunkSize % 8 != 0) {
+            throw new IllegalArgumentException("Chunk size must be a multiple of 8 and at least 64 bytes");
+        }
+        if (maxBytes < chunkSize) {
+            throw new IllegalArgumentException("Arena limit must be at least one chunk");
+        }
+        this.chunkSize = chunkSize;
+        this.maxBytes = maxBytes;
+        Arrays.fill(freeLists, NO_BLOCK);
+    }
+
+    static int chunkIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    static int offset(long address) {
+        return (int) address;
+    }
+
+    static long address(int chunkIndex, int offset) {
+        return ((long) chunkIndex << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    static int aligned(int size) {
+        return (Math.max(size, MIN_BLOCK) + 7) & ~7;
+    }
+
+    static boolean isFree(MemorySegment chunk, long offset) {
+        return chunk.get(ValueLayout.JAVA_INT, offset + 4) == FREE_MARK;
+    }
+
+    static int freeSize(MemorySegment chunk, long offset) {
+        return chunk.get(ValueLayout.JAVA_INT, offset);
+    }
+
+    /**
+     * Reserves {@code size} bytes, rounded up by {@link #aligned}, and returns their
+     * address. Freed blocks are used before new space is appended; when neither has
+     * room, throws {@link StoreFullException}.
+     */
+    long allocate(int size) {
+        int aligned = aligned(size);
+        if (aligned > chunkSize) {
+            throw new IllegalArgumentException("Record of " + size + " bytes exceeds chunk size " + chunkSize);
+        }
+        long reused = takeFree(aligned);
+        if (reused != NO_BLOCK) {
+            return reused;
+        }
+        int current = chunks.length - 1;
+        if (current < 0 || limits[current] + aligned > chunkSize) {
+            current = addChunk();
+        }
+        long address = address(current, limits[current]);
+        limits[current] += aligned;
+        return address;
+    }
+
+    /**
+     * Returns the block at {@code address}, allocated with {@code size}, for reuse.
+     */
+    void free(long address, int size) {
+        int aligned = aligned(size);
+        freeBlocks++;
+        freeBytes += aligned;
+        push(address, aligned);
+    }
+
+    MemorySegment chunk(long address) {
+        return chunks[chunkIndex(address)];
+    }
+
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    int limit(int chunkIndex) {
+        return limits[chunkIndex];
+    }
+
+    /**
+     * The address the next appended allocation would start at if it fit in the
+     * current chunk. Everything allocated so far lies below it.
+     */
+    long end() {
+        int current = chunks.length - 1;
+        return current < 0 ? 0 : address(current, limits[current]);
+    }
+
+    long reservedBytes() {
+        return (long) chunks.length * chunkSize;
+    }
+
+    long usedBytes() {
+        long used = 0;
+        for (int limit : limits) {
+            used += limit;
+        }
+        return used - freeBytes;
+    }
+
+    long freeBlocks() {
+        return freeBlocks;
+    }
+
+    long freeBytes() {
+        return freeBytes;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private long takeFree(int aligned) {
+        if (aligned <= MAX_CLASS_SIZE) {
+            long exact = pop(aligned >>> 3);
+            if (exact != NO_BLOCK) {
+                return claimed(exact, aligned, aligned);
+            }
+            for (int size = aligned + MIN_BLOCK; size <= MAX_CLASS_SIZE; size += 8) {
+                long block = pop(size >>> 3);
+                if (block != NO_BLOCK) {
+                    return claimed(block, size, aligned);
+                }
+            }
+        }
+        long previous = NO_BLOCK;
+        for (long block = largeFreeList; block != NO_BLOCK; block = next(block)) {
+            int size = freeSize(chunk(block), offset(block));
+            if (size == aligned || size >= aligned + MIN_BLOCK) {
+                if (previous == NO_BLOCK) {
+                    largeFreeList = next(block);
+                } else {
+                    chunk(previous).set(ValueLayout.JAVA_LONG, offset(previous) + 8L, next(block));
+                }
+                return claimed(block, size, aligned);
+            }
+            previous = block;
+        }
+        return NO_BLOCK;
+    }
+
+    /**
+     * Takes {@code aligned} bytes from the start of a free block of {@code size} and
+     * gives the rest back.
+     */
+    private long claimed(long block, int size, int aligned) {
+        freeBlocks--;
+        freeBytes -= size;
+        if (size > aligned) {
+            free(block + aligned, size - aligned);
+        }
+        return block;
+    }
+
+    private void push(long address, int aligned) {
+        MemorySegment chunk = chunk(address);
+        long offset = offset(address);
+        long next;
+        if (aligned <= MAX_CLASS_SIZE) {
+            next = freeLists[aligned >>> 3];
+            freeLists[aligned >>> 3] = address;
+        } else {
+            next = largeFreeList;
+            largeFreeList = address;
+        }
+        chunk.set(ValueLayout.JAVA_INT, offset, aligned);
+        chunk.set(ValueLayout.JAVA_INT, offset + 4, FREE_MARK);
+        chunk.set(ValueLayout.JAVA_LONG, offset + 8, next);
+    }
+
+    private long pop(int sizeClass) {
+        long block = freeLists[sizeClass];
+        if (block != NO_BLOCK) {
+            freeLists[sizeClass] = next(block);
+        }
+        return block;
+    }
+
+    private long next(long block) {
+        return chunk(block).get(ValueLayout.JAVA_LONG, offset(block) + 8L);
+    }
+
+    private int addChunk() {
+        if (reservedBytes() + chunkSize > maxBytes) {
+            throw new StoreFullException("Off-heap arena is full at " + reservedBytes() + " bytes");
+        }
+        MemorySegment chunk = arena.allocate(chunkSize, 8);
+        chunks = Arrays.copyOf(chunks, chunks.length + 1);
+        limits = Arrays.copyOf(limits, limits.length + 1);
+        chunks[chunks.length - 1] = chunk;
+        return chunks.length - 1;
+    }
+}
@@ -0,0 +1,61 @@
+package github.couryrr.backend.playbook.data.tracing;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps the most recent finished spans in memory for offline inspection and tests.
+ * Spans reach it through {@link #exporter()}, so it can sit behind tail sampling
+ * without being registered as an exporter of its own.
+ */
+public class InMemorySpanCollector {
+
+    private final int capacity;
+    private final ArrayDeque<SpanData> spans = new ArrayDeque<>();
+
+    public InMemorySpanCollector(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public SpanExporter exporter() {
+        return new SpanExporter() {
+            @Override
+            public CompletableResultCode export(Collection<SpanData> batch) {
+                record(batch);
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode flush() {
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        };
+    }
+
+    synchronized void record(Collection<SpanData> batch) {
+        for (SpanData span : batch) {
+            if (spans.size() == capacity) {
+                spans.removeFirst();
+            }
+            spans.addLast(span);
+        }
+    }
+
+    public synchronized List<SpanData> getFinishedSpans() {
+        return List.copyOf(spans);
+    }
+
+    public synchronized void reset() {
+        spans.clear();
+    }
+}
@@ -0,0 +1,113 @@
+package github.couryrr.backend.playbook.data.tracing;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holds spans back per trace until the trace's local root span finishes, then
+ * decides whether the whole trace is worth exporting.
+ *
+ * <p>Children always finish before their local root, so by the time the root
+ * arrives this service's part of the trace is complete. Traces whose root never
+ * shows up are dropped once they exceed the pending limit or age.
+ */
+public class TailSamplingSpanExporter implements SpanExporter {
+
+    private final SpanExporter delegate;
+    private final long latencyThresholdNanos;
+    private final double keepProbability;
+    private final int maxPendingTraces;
+    private final long maxTraceAgeNanos;
+    private final Map<String, PendingTrace> pending = new LinkedHashMap<>();
+
+    public TailSamplingSpanExporter(SpanExporter delegate, TracingProperties.Tail properties) {
+        this.delegate = delegate;
+        this.latencyThresholdNanos = properties.latencyThreshold().toNanos();
+        this.keepProbability = properties.keepProbability();
+        this.maxPendingTraces = properties.maxPendingTraces();
+        this.maxTraceAgeNanos = properties.maxTraceAge().toNanos();
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<SpanData> sampled = new ArrayList<>();
+        synchronized (pending) {
+            long now = System.nanoTime();
+            for (SpanData span : spans) {
+                PendingTrace trace = pending.computeIfAbsent(span.getTraceId(), id -> new PendingTrace(now));
+                trace.spans.add(span);
+                trace.error |= span.getStatus().getStatusCode() == StatusCode.ERROR;
+                if (isLocalRoot(span)) {
+                    pending.remove(span.getTraceId());
+                    if (shouldKeep(trace, span)) {
+                        sampled.addAll(trace.spans);
+                    }
+                }
+            }
+            evict(now);
+        }
+        return sampled.isEmpty() ? CompletableResultCode.ofSuccess() : delegate.export(sampled);
+    }
+
+    int pendingTraces() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        synchronized (pending) {
+            pending.clear();
+        }
+        return delegate.shutdown();
+    }
+
+    private boolean shouldKeep(PendingTrace trace, SpanData root) {
+        return trace.error
+            || root.getEndEpochNanos() - root.getStartEpochNanos() >= latencyThresholdNanos
+            || ThreadLocalRandom.current().nextDouble() < keepProbability;
+    }
+
+    private void evict(long now) {
+        Iterator<PendingTrace> oldest = pending.values().iterator();
+        while (oldest.hasNext()) {
+            PendingTrace trace = oldest.next();
+            if (pending.size() <= maxPendingTraces && now - trace.firstSeenNanos <= maxTraceAgeNanos) {
+                break;
+            }
+            oldest.remove();
+        }
+    }
+
+    private static boolean isLocalRoot(SpanData span) {
+        SpanContext parent = span.getParentSpanContext();
+        return !parent.isValid() || parent.isRemote();
+    }
+
+    private static final class PendingTrace {
+        private final long firstSeenNanos;
+        private final List<SpanData> spans = new ArrayList<>();
+        private boolean error;
+
+        private PendingTrace(long firstSeenNanos) {
+            this.firstSeenNanos = firstSeenNanos;
+        }
+    }
+}
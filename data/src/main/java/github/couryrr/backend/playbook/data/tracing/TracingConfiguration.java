@@ -0,0 +1,39 @@
+package github.couryrr.backend.playbook.data.tracing;
+
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Offline span exporters. Spring Boot's OpenTelemetry auto-configuration batches
+ * spans into any {@link SpanExporter} bean, and Spring gRPC opens a server span per
+ * call that continues the W3C trace context sent by the API.
+ */
+@Configuration(proxyBeanMethods = false)
+public class TracingConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "data.tracing", name = "exporter", havingValue = "file")
+    SpanExporter fileSpanExporter(TracingProperties properties) throws IOException {
+        return withTailSampling(new FileSpanExporter(properties.file()), properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "data.tracing", name = "exporter", havingValue = "memory")
+    InMemorySpanCollector inMemorySpanCollector(TracingProperties properties) {
+        return new InMemorySpanCollector(properties.memoryCapacity());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "data.tracing", name = "exporter", havingValue = "memory")
+    SpanExporter inMemorySpanExporter(InMemorySpanCollector collector, TracingProperties properties) {
+        return withTailSampling(collector.exporter(), properties);
+    }
+
+    private static SpanExporter withTailSampling(SpanExporter exporter, TracingProperties properties) {
+        return properties.tail().enabled() ? new TailSamplingSpanExporter(exporter, properties.tail()) : exporter;
+    }
+}
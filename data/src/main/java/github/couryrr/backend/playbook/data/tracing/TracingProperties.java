@@ -0,0 +1,39 @@
+package github.couryrr.backend.playbook.data.tracing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Where finished spans go and which traces are kept. Head sampling is Spring Boot's
+ * {@code management.tracing.sampling.probability}; tail sampling runs on top of it.
+ */
+@ConfigurationProperties("data.tracing")
+public record TracingProperties(
+    @DefaultValue("none") Exporter exporter,
+    @DefaultValue("traces/spans.jsonl") Path file,
+    @DefaultValue("10000") int memoryCapacity,
+    @DefaultValue Tail tail
+) {
+
+    public enum Exporter {
+        NONE,
+        FILE,
+        MEMORY
+    }
+
+    /**
+     * Keeps every trace with an error or a root slower than {@code latencyThreshold},
+     * plus {@code keepProbability} of the rest.
+     */
+    public record Tail(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("250ms") Duration latencyThreshold,
+        @DefaultValue("0.01") double keepProbability,
+        @DefaultValue("10000") int maxPendingTraces,
+        @DefaultValue("30s") Duration maxTraceAge
+    ) {
+    }
+}
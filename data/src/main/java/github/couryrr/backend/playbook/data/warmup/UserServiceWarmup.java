@@ -0,0 +1,183 @@
+package github.couryrr.backend.playbook.data.warmup;
+
+import com.google.protobuf.Message;
+import github.couryrr.backend.playbook.data.crypto.StreamEncryption;
+import github.couryrr.backend.playbook.data.export.ExportProperties;
+import github.couryrr.backend.playbook.data.gen.user.v1.*;
+import github.couryrr.backend.playbook.data.service.UserServiceImpl;
+import github.couryrr.backend.playbook.data.store.StoreProperties;
+import github.couryrr.backend.playbook.data.store.UserStore;
+import github.couryrr.backend.playbook.data.store.UserStoreConfiguration;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.protobuf.services.HealthStatusManager;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the UserService hot paths against a throwaway service instance before the
+ * pod reports itself ready, so the JIT has compiled them by the time real traffic
+ * arrives. gRPC health stays {@code NOT_SERVING}, and this indicator
+ * {@code OUT_OF_SERVICE}, until the warm-up completes.
+ *
+ * <p>The throwaway service uses a fresh store of the configured mode, spilling to a
+ * temporary directory in tiered mode, and the real observation registry, so the code
+ * it compiles is the code that serves traffic. Its meters go to a private registry.
+ */
+@Component
+@ConditionalOnProperty(prefix = "data.warmup", name = "enabled", havingValue = "true")
+public class UserServiceWarmup implements ApplicationRunner, HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(UserServiceWarmup.class);
+
+    private final WarmupProperties properties;
+    private final StoreProperties storeProperties;
+    private final StreamEncryption streamEncryption;
+    private final ObservationRegistry observationRegistry;
+    private final HealthStatusManager healthStatusManager;
+    private volatile boolean complete;
+    private volatile long durationMillis = -1;
+    private volatile int iterationsRun;
+
+    public UserServiceWarmup(WarmupProperties properties, ObjectProvider<HealthStatusManager> healthStatusManager,
+            MeterRegistry meterRegistry, StoreProperties storeProperties, StreamEncryption streamEncryption,
+            ObservationRegistry observationRegistry) {
+        this.properties = properties;
+        this.storeProperties = storeProperties;
+        this.streamEncryption = streamEncryption;
+        this.observationRegistry = observationRegistry;
+        this.healthStatusManager = healthStatusManager.getIfAvailable();
+        setServingStatus(ServingStatus.NOT_SERVING);
+
+        Gauge.builder("data.warmup.duration", this, warmup -> warmup.durationMillis)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + properties.maxDuration().toNanos();
+        Path coldDirectory = storeProperties.mode() == StoreProperties.Mode.TIERED
+            ? Files.createTempDirectory("warmup-cold-users")
+            : null;
+
+        int iteration = 0;
+        try (UserStore store = UserStoreConfiguration.create(scratchProperties(coldDirectory),
+                streamEncryption.enabled(), new SimpleMeterRegistry())) {
+            UserServiceImpl scratch = new UserServiceImpl(new SimpleMeterRegistry(),
+                new ExportProperties(Path.of("exports"), true), store, observationRegistry,
+                streamEncryption);
+            while (iteration < properties.iterations() && System.nanoTime() < deadline) {
+                exercise(scratch, iteration++);
+            }
+        } finally {
+            if (coldDirectory != null) {
+                FileSystemUtils.deleteRecursively(coldDirectory);
+            }
+        }
+
+        iterationsRun = iteration;
+        durationMillis = (System.nanoTime() - start) / 1_000_000;
+        complete = true;
+        setServingStatus(ServingStatus.SERVING);
+        log.info("UserService warm-up ran {} iterations in {} ms", iterationsRun, durationMillis);
+    }
+
+    @Override
+    public Health health() {
+        if (!complete) {
+            return Health.outOfService().withDetail("warmup", "in progress").build();
+        }
+        return Health.up()
+            .withDetail("iterations", iterationsRun)
+            .withDetail("durationMillis", durationMillis)
+            .build();
+    }
+
+    private StoreProperties scratchProperties(Path coldDirectory) {
+        if (coldDirectory == null) {
+            return storeProperties;
+        }
+        StoreProperties.Tiered tiered = storeProperties.tiered();
+        return new StoreProperties(storeProperties.mode(), storeProperties.offHeap(),
+            new StoreProperties.Tiered(tiered.memoryBudget(), coldDirectory, tiered.segmentSize()),
+            storeProperties.inspection(), storeProperties.compaction());
+    }
+
+    private static void exercise(UserServiceImpl scratch, int i) {
+        String username = "warmup" + i;
+        String email = "warmup" + i + "@example.invalid";
+
+        Capture<CreateUserResponse> created = new Capture<>();
+        scratch.createUser(CreateUserRequest.newBuilder()
+            .setUsername(username)
+            .setEmail(email)
+            .setPassword("warmup-password")
+            .setFirstName("Warm")
+            .setLastName("Up")
+            .build(), created);
+        String userId = created.value != null && created.value.hasUser() ? created.value.getUser().getId() : "";
+
+        scratch.validateEmail(ValidateEmailRequest.newBuilder().setEmail(email).build(), new Capture<>());
+        scratch.validateEmail(ValidateEmailRequest.newBuilder().setEmail("not-an-email").build(), new Capture<>());
+        scratch.checkUsername(CheckUsernameRequest.newBuilder().setUsername(username).build(), new Capture<>());
+        scratch.getUser(GetUserRequest.newBuilder().setId(userId).build(), new Capture<>());
+        scratch.authenticateUser(AuthenticateUserRequest.newBuilder()
+            .setEmail(email)
+            .setPassword("warmup-password")
+            .build(), new Capture<>());
+        scratch.authenticateUser(AuthenticateUserRequest.newBuilder()
+            .setEmail(email)
+            .setPassword("wrong-password")
+            .build(), new Capture<>());
+        scratch.updateUser(UpdateUserRequest.newBuilder()
+            .setId(userId)
+            .setFirstName("Warmed")
+            .build(), new Capture<>());
+    }
+
+    private void setServingStatus(ServingStatus status) {
+        if (healthStatusManager != null) {
+            healthStatusManager.setStatus(HealthStatusManager.SERVICE_NAME_ALL_SERVICES, status);
+            healthStatusManager.setStatus(UserServiceGrpc.SERVICE_NAME, status);
+        }
+    }
+
+    /**
+     * Keeps the last response and serializes it, so the marshalling path is warmed too.
+     */
+    private static final class Capture<T extends Message> implements StreamObserver<T> {
+        private T value;
+
+        @Override
+        public void onNext(T value) {
+            this.value = value;
+            value.toByteArray();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
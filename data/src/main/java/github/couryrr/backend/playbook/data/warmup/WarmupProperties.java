@@ -0,0 +1,14 @@
+package github.couryrr.backend.playbook.data.warmup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("data.warmup")
+public record WarmupProperties(
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("20000") int iterations,
+    @DefaultValue("30s") Duration maxDuration
+) {
+}
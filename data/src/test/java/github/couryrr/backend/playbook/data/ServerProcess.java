@@ -0,0 +1,76 @@
+package github.couryrr.backend.playbook.data;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A packaged {@code data} server launched in its own JVM, for benchmarks that need a
+ * fresh process.
+ */
+final class ServerProcess implements AutoCloseable {
+
+    static final Path TARGET = Path.of("target");
+    static final String JAR = "data-0.0.1-SNAPSHOT.jar";
+
+    private final Process process;
+    private final ManagedChannel channel;
+    private final Path log;
+    private final long startNanos;
+    private boolean exitedEarly;
+
+    private ServerProcess(Process process, ManagedChannel channel, Path log, long startNanos) {
+        this.process = process;
+        this.channel = channel;
+        this.log = log;
+        this.startNanos = startNanos;
+    }
+
+    static ServerProcess launch(List<String> launchArguments, int port, String... applicationArguments)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(launchArguments);
+        command.add("--spring.grpc.server.address=127.0.0.1:" + port);
+        command.addAll(List.of(applicationArguments));
+
+        Path log = Files.createTempFile("data-server", ".log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("127.0.0.1", port).usePlaintext().build();
+        return new ServerProcess(process, channel, log, start);
+    }
+
+    ManagedChannel channel() {
+        return channel;
+    }
+
+    long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    void assertAlive() {
+        if (!process.isAlive()) {
+            exitedEarly = true;
+            throw new IllegalStateException("Server exited, see " + log);
+        }
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        channel.shutdownNow();
+        process.destroy();
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+        if (!exitedEarly) {
+            Files.deleteIfExists(log);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package github.couryrr.backend.playbook.data;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.GetUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Measures time from process launch to the first served gRPC call, for the plain
+ * jar and for the {@code fast-startup} profile output. Build both first:
+ * {@code ./mvnw -Pfast-startup package -DskipTests}, then run
+ * {@code ./mvnw test -Dtest=StartupBenchmark -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StartupBenchmark {
+
+    private static final int RUNS = Integer.getInteger("benchmark.runs", 5);
+    private static final int PORT = 19090;
+
+    @Test
+    void compareTimeToFirstServedRpc() throws Exception {
+        Path plainJar = ServerProcess.TARGET.resolve(ServerProcess.JAR);
+        Path fastDir = ServerProcess.TARGET.resolve("fast-startup");
+        assertThat(plainJar).exists();
+        assertThat(fastDir.resolve("data.aot")).exists();
+
+        long plain = median(List.of("-jar", plainJar.toString()));
+        long fast = median(List.of(
+            "-XX:AOTCache=" + fastDir.resolve("data.aot"),
+            "-Dspring.aot.enabled=true",
+            "-jar", fastDir.resolve(ServerProcess.JAR).toString()));
+
+        System.out.printf("Time to first served RPC (median of %d): plain=%dms fast-startup=%dms (%.0f%% faster)%n",
+            RUNS, plain, fast, 100.0 * (plain - fast) / plain);
+    }
+
+    private static long median(List<String> launchArguments) throws Exception {
+        long[] samples = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            samples[run] = timeToFirstRpc(launchArguments);
+        }
+        Arrays.sort(samples);
+        return samples[RUNS / 2];
+    }
+
+    private static long timeToFirstRpc(List<String> launchArguments) throws Exception {
+        try (ServerProcess server = ServerProcess.launch(launchArguments, PORT)) {
+            UserServiceGrpc.UserServiceBlockingStub stub = UserServiceGrpc.newBlockingStub(server.channel());
+            while (true) {
+                server.assertAlive();
+                try {
+                    stub.withDeadlineAfter(1, TimeUnit.SECONDS)
+                        .getUser(GetUserRequest.newBuilder().setId("startup-probe").build());
+                    return server.elapsedMillis();
+                } catch (StatusRuntimeException e) {
+                    Thread.sleep(5);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package github.couryrr.backend.playbook.data;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.AuthenticateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.CreateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import github.couryrr.backend.playbook.data.gen.user.v1.ValidateEmailRequest;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthGrpc;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares latency of the first real calls after gRPC health turns {@code SERVING},
+ * with and without the JIT warm-up stage. Build the jar first with
+ * {@code ./mvnw package -DskipTests}, then run
+ * {@code ./mvnw test -Dtest=WarmupBenchmark -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class WarmupBenchmark {
+
+    private static final int PORT = 19091;
+    private static final int FIRST_CALLS = 2000;
+
+    @Test
+    void compareFirstTrafficLatency() throws Exception {
+        run(false);
+        run(true);
+    }
+
+    private static void run(boolean warmup) throws Exception {
+        List<String> launch = List.of("-jar", ServerProcess.TARGET.resolve(ServerProcess.JAR).toString());
+        try (ServerProcess server = ServerProcess.launch(launch, PORT, "--data.warmup.enabled=" + warmup)) {
+            awaitServing(server);
+            long ready = server.elapsedMillis();
+
+            UserServiceGrpc.UserServiceBlockingStub stub = UserServiceGrpc.newBlockingStub(server.channel());
+            long[] latencies = new long[FIRST_CALLS];
+            for (int i = 0; i < FIRST_CALLS; i++) {
+                String email = "first" + i + "@example.com";
+                long start = System.nanoTime();
+                stub.createUser(CreateUserRequest.newBuilder()
+                    .setUsername("first" + i)
+                    .setEmail(email)
+                    .setPassword("password123")
+                    .setFirstName("First")
+                    .setLastName("Call")
+                    .build());
+                stub.validateEmail(ValidateEmailRequest.newBuilder().setEmail(email).build());
+                stub.authenticateUser(AuthenticateUserRequest.newBuilder()
+                    .setEmail(email)
+                    .setPassword("password123")
+                    .build());
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+
+            System.out.printf("warmup=%-5s ready=%dms first %d calls: p50=%dus p99=%dus max=%dus%n",
+                warmup, ready, FIRST_CALLS,
+                latencies[FIRST_CALLS / 2] / 1000, latencies[(int) (FIRST_CALLS * 0.99)] / 1000,
+                latencies[FIRST_CALLS - 1] / 1000);
+        }
+    }
+
+    private static void awaitServing(ServerProcess server) throws InterruptedException {
+        HealthGrpc.HealthBlockingStub health = HealthGrpc.newBlockingStub(server.channel());
+        while (true) {
+            server.assertAlive();
+            try {
+                HealthCheckResponse response = health.withDeadlineAfter(1, TimeUnit.SECONDS)
+                    .check(HealthCheckRequest.newBuilder().setService("").build());
+                if (response.getStatus() == HealthCheckResponse.ServingStatus.SERVING) {
+                    return;
+                }
+            } catch (StatusRuntimeException e) {
+                // not listening yet
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package github.couryrr.backend.playbook.data.admin;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AdminServiceImplTest {
+
+    @Test
+    void shouldRedactKeysToAStableTruncatedHash() {
+        String redacted = AdminServiceImpl.redact("alice@example.com");
+
+        assertThat(redacted).matches("sha256:[0-9a-f]{16}").doesNotContain("alice");
+        assertThat(AdminServiceImpl.redact("alice@example.com")).isEqualTo(redacted);
+        assertThat(AdminServiceImpl.redact("bob@example.com")).isNotEqualTo(redacted);
+    }
+}
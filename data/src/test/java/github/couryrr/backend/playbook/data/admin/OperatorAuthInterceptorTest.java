@@ -0,0 +1,111 @@
+package github.couryrr.backend.playbook.data.admin;
+
+import github.couryrr.backend.playbook.data.gen.admin.v1.AdminServiceGrpc;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OperatorAuthInterceptorTest {
+
+    private final OperatorAuthInterceptor interceptor =
+        new OperatorAuthInterceptor(new AdminProperties(true, "s3cret"));
+
+    @Test
+    void shouldAdmitOperatorCallsWithTheToken() {
+        assertThat(call(interceptor, AdminServiceGrpc.getGetStoreStatsMethod(), "Bearer s3cret").started).isTrue();
+    }
+
+    @Test
+    void shouldRefuseOperatorCallsWithoutTheToken() {
+        for (String authorization : new String[] {null, "Bearer wrong", "s3cret", "Bearer s3cret2"}) {
+            RecordingServerCall<?, ?> call = call(interceptor, AdminServiceGrpc.getGetHotKeysMethod(), authorization);
+
+            assertThat(call.started).isFalse();
+            assertThat(call.status.getCode()).isEqualTo(Status.Code.UNAUTHENTICATED);
+        }
+    }
+
+    @Test
+    void shouldRefuseEveryOperatorCallWhenNoTokenIsConfigured() {
+        OperatorAuthInterceptor unconfigured = new OperatorAuthInterceptor(new AdminProperties(true, null));
+
+        RecordingServerCall<?, ?> call = call(unconfigured, AdminServiceGrpc.getGetStoreStatsMethod(), "Bearer ");
+
+        assertThat(call.status.getCode()).isEqualTo(Status.Code.UNAUTHENTICATED);
+    }
+
+    @Test
+    void shouldTreatExportUsersAsAnOperatorCall() {
+        assertThat(call(interceptor, UserServiceGrpc.getExportUsersMethod(), null).status.getCode())
+            .isEqualTo(Status.Code.UNAUTHENTICATED);
+        assertThat(call(interceptor, UserServiceGrpc.getExportUsersMethod(), "Bearer s3cret").started).isTrue();
+    }
+
+    @Test
+    void shouldTreatImportUsersAsAnOperatorCall() {
+        assertThat(call(interceptor, UserServiceGrpc.getImportUsersMethod(), null).status.getCode())
+            .isEqualTo(Status.Code.UNAUTHENTICATED);
+        assertThat(call(interceptor, UserServiceGrpc.getImportUsersMethod(), "Bearer s3cret").started).isTrue();
+    }
+
+    @Test
+    void shouldLeaveOrdinaryCallsAlone() {
+        assertThat(call(interceptor, UserServiceGrpc.getGetUserMethod(), null).started).isTrue();
+    }
+
+    private static <ReqT, RespT> RecordingServerCall<ReqT, RespT> call(OperatorAuthInterceptor interceptor,
+            MethodDescriptor<ReqT, RespT> method, String authorization) {
+        Metadata headers = new Metadata();
+        if (authorization != null) {
+            headers.put(OperatorAuthInterceptor.AUTHORIZATION, authorization);
+        }
+        RecordingServerCall<ReqT, RespT> call = new RecordingServerCall<>(method);
+        interceptor.interceptCall(call, headers, (handlerCall, handlerHeaders) -> {
+            call.started = true;
+            return new ServerCall.Listener<>() {};
+        });
+        return call;
+    }
+
+    private static final class RecordingServerCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
+        private final MethodDescriptor<ReqT, RespT> method;
+        private boolean started;
+        private Status status;
+
+        private RecordingServerCall(MethodDescriptor<ReqT, RespT> method) {
+            this.method = method;
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            this.status = status;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public MethodDescriptor<ReqT, RespT> getMethodDescriptor() {
+            return method;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package github.couryrr.backend.playbook.data.board;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures delivery latency, from the start of a post to a subscriber's stream
+ * receiving it, and delivery throughput for one board with many subscribers.
+ * Streams are in-memory and always ready, so this covers storage, fan-out and
+ * queue draining but not the network.
+ * Run with {@code ./mvnw test -Dtest=BoardFanOutBenchmark -Dbenchmark=true
+ * [-Dbenchmark.subscribers=N -Dbenchmark.messages=N]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BoardFanOutBenchmark {
+
+    private static final int SUBSCRIBERS = Integer.getInteger("benchmark.subscribers", 10_000);
+    private static final int MESSAGES = Integer.getInteger("benchmark.messages", 200);
+
+    @TempDir
+    Path boardDirectory;
+
+    @Test
+    void fanOutToSubscribersOfOneBoard() throws Exception {
+        BoardProperties properties = new BoardProperties(boardDirectory, DataSize.ofMegabytes(64),
+            DataSize.ofKilobytes(4), 100, DataSize.ofKilobytes(64),
+            new BoardProperties.Subscription(1024, SlowConsumerPolicy.DISCONNECT), Duration.ofMinutes(10));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        long[] postedAt = new long[MESSAGES];
+        long[] latencies = new long[SUBSCRIBERS * MESSAGES];
+        AtomicInteger deliveries = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(SUBSCRIBERS * MESSAGES);
+
+        try (MessageBoards boards = new MessageBoards(properties, meterRegistry)) {
+            for (int i = 0; i < SUBSCRIBERS; i++) {
+                boards.subscribe("bench", null, new FakeStreamObserver(response -> {
+                    long latency = System.nanoTime() - postedAt[(int) response.getMessage().getOffset()];
+                    latencies[deliveries.getAndIncrement()] = latency;
+                    done.countDown();
+                }));
+            }
+
+            ByteString payload = ByteString.copyFrom(new byte[256]);
+            long start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++) {
+                postedAt[i] = System.nanoTime();
+                boards.post("bench", "author", payload, Timestamp.getDefaultInstance());
+            }
+            boolean completed = done.await(5, TimeUnit.MINUTES);
+            long elapsed = System.nanoTime() - start;
+
+            int delivered = deliveries.get();
+            long[] sorted = Arrays.copyOf(latencies, delivered);
+            Arrays.sort(sorted);
+            System.out.printf(
+                "subscribers=%d messages=%d delivered=%d complete=%s elapsed=%dms throughput=%.0f deliveries/s"
+                    + " p50=%dus p99=%dus max=%dus disconnects=%.0f%n",
+                SUBSCRIBERS, MESSAGES, delivered, completed, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                delivered / (elapsed / 1e9),
+                sorted[delivered / 2] / 1000, sorted[(int) (delivered * 0.99)] / 1000, sorted[delivered - 1] / 1000,
+                meterRegistry.counter("data.board.subscription.disconnects").count());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package github.couryrr.backend.playbook.data.board;
+
+import com.google.protobuf.ByteString;
+import github.couryrr.backend.playbook.data.gen.board.v1.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class BoardLogTest {
+
+    private static final long SEGMENT_SIZE = 4096;
+    private static final int INDEX_INTERVAL = 256;
+
+    @TempDir
+    Path boardDirectory;
+
+    @Test
+    void shouldReadSinceOffsetAcrossSegments() throws IOException {
+        try (BoardLog board = BoardLog.open(boardDirectory, SEGMENT_SIZE, INDEX_INTERVAL)) {
+            post(board, 500);
+
+            assertThat(board.segmentCount()).isGreaterThan(1);
+            assertThat(board.endOffset()).isEqualTo(500);
+            assertThat(board.read(0, 500)).extracting(Message::getOffset)
+                .containsExactlyElementsOf(LongStream.range(0, 500).boxed().toList());
+            assertThat(board.read(123, 10)).extracting(Message::getOffset)
+                .containsExactly(123L, 124L, 125L, 126L, 127L, 128L, 129L, 130L, 131L, 132L);
+            assertThat(board.read(495, 10)).extracting(Message::getOffset)
+                .containsExactly(495L, 496L, 497L, 498L, 499L);
+            assertThat(board.read(500, 10)).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldReadLatestPage() throws IOException {
+        try (BoardLog board = BoardLog.open(boardDirectory, SEGMENT_SIZE, INDEX_INTERVAL)) {
+            assertThat(board.readLatest(10)).isEmpty();
+            post(board, 200);
+
+            List<Message> latest = board.readLatest(3);
+
+            assertThat(latest).extracting(Message::getOffset).containsExactly(197L, 198L, 199L);
+            assertThat(latest.getFirst().getPayload()).isEqualTo(payload(197));
+        }
+    }
+
+    @Test
+    void shouldReopenSegmentsAndContinueOffsets() throws IOException {
+        try (BoardLog board = BoardLog.open(boardDirectory, SEGMENT_SIZE, INDEX_INTERVAL)) {
+            post(board, 300);
+        }
+
+        try (BoardLog board = BoardLog.open(boardDirectory, SEGMENT_SIZE, INDEX_INTERVAL)) {
+            assertThat(board.endOffset()).isEqualTo(300);
+            assertThat(board.read(42, 1)).singleElement().extracting(Message::getPayload).isEqualTo(payload(42));
+
+            Message next = board.append(Message.newBuilder().setBoardId("general").setPayload(payload(300)));
+            assertThat(next.getOffset()).isEqualTo(300);
+        }
+    }
+
+    @Test
+    void shouldDropRecordTornByCrash() throws IOException {
+        try (BoardLog board = BoardLog.open(boardDirectory, SEGMENT_SIZE, INDEX_INTERVAL)) {
+            post(board, 5);
+        }
+        Path log = boardDirectory.resolve(Segment.fileName(0, ".log"));
+        long intactSize = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 100, 1, 2, 3}));
+        }
+
+        try (BoardLog board = BoardLog.open(boardDirectory, SEGMENT_SIZE, INDEX_INTERVAL)) {
+            assertThat(board.endOffset()).isEqualTo(5);
+            assertThat(Files.size(log)).isEqualTo(intactSize);
+            assertThat(board.append(Message.newBuilder().setPayload(payload(5))).getOffset()).isEqualTo(5);
+            assertThat(board.read(0, 10)).hasSize(6);
+        }
+    }
+
+    private static void post(BoardLog board, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            board.append(Message.newBuilder()
+                .setBoardId("general")
+                .setAuthorId("author-" + (i % 3))
+                .setPayload(payload(i)));
+        }
+    }
+
+    private static ByteString payload(int i) {
+        return ByteString.copyFromUtf8("ciphertext-" + i);
+    }
+}
@@ -0,0 +1,96 @@
+package github.couryrr.backend.playbook.data.board;
+
+import com.google.protobuf.ByteString;
+import github.couryrr.backend.playbook.data.gen.board.v1.Message;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class BoardSubscriberTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeStreamObserver observer = new FakeStreamObserver();
+
+    @Test
+    void shouldReplayStoredMessagesThenContinueWithLiveOnesWithoutDuplicates() {
+        List<Message> stored = LongStream.range(0, 3).mapToObj(BoardSubscriberTest::message).toList();
+        observer.ready = false;
+        BoardSubscriber subscriber = subscriber(16, SlowConsumerPolicy.DISCONNECT, 0, 3,
+            (from, limit) -> stored.subList((int) from, (int) Math.min(from + limit, stored.size())));
+
+        subscriber.offer(message(2));
+        subscriber.offer(message(3));
+        observer.becomeReady();
+
+        assertThat(observer.received).extracting(response -> response.getMessage().getOffset())
+            .containsExactly(0L, 1L, 2L, 3L);
+    }
+
+    @Test
+    void shouldDropMessagesForSlowSubscriber() {
+        BoardSubscriber subscriber = subscriber(2, SlowConsumerPolicy.DROP, 0, 0, (from, limit) -> List.of());
+        observer.ready = false;
+
+        for (long offset = 0; offset < 5; offset++) {
+            subscriber.offer(message(offset));
+        }
+        observer.becomeReady();
+        subscriber.offer(message(5));
+
+        assertThat(observer.received).extracting(response -> response.getMessage().getOffset())
+            .containsExactly(0L, 1L, 5L);
+        assertThat(meterRegistry.counter("data.board.subscription.dropped_messages").count()).isEqualTo(3);
+        assertThat(subscriber.isClosed()).isFalse();
+    }
+
+    @Test
+    void shouldDisconnectSlowSubscriberWithResumeOffset() {
+        BoardSubscriber subscriber = subscriber(2, SlowConsumerPolicy.DISCONNECT, 0, 0, (from, limit) -> List.of());
+        AtomicBoolean removed = new AtomicBoolean();
+        subscriber.onClose(() -> removed.set(true));
+
+        subscriber.offer(message(0));
+        observer.ready = false;
+        for (long offset = 1; offset < 4; offset++) {
+            subscriber.offer(message(offset));
+        }
+
+        assertThat(observer.received).hasSize(1);
+        assertThat(Status.fromThrowable(observer.error).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+        assertThat(Status.trailersFromThrowable(observer.error).get(BoardSubscriber.RESUME_OFFSET)).isEqualTo("1");
+        assertThat(subscriber.isClosed()).isTrue();
+        assertThat(removed).isTrue();
+    }
+
+    @Test
+    void shouldStopDeliveringAfterCancel() {
+        BoardSubscriber subscriber = subscriber(16, SlowConsumerPolicy.DISCONNECT, 0, 0, (from, limit) -> List.of());
+
+        observer.onCancelHandler.run();
+        subscriber.offer(message(0));
+
+        assertThat(observer.received).isEmpty();
+        assertThat(subscriber.isClosed()).isTrue();
+    }
+
+    private BoardSubscriber subscriber(int capacity, SlowConsumerPolicy policy, long fromOffset, long replayEnd,
+            BoardSubscriber.Replay replay) {
+        return new BoardSubscriber(observer, capacity, policy, Runnable::run, fromOffset, replayEnd, replay,
+            meterRegistry.counter("data.board.subscription.dropped_messages"),
+            meterRegistry.counter("data.board.subscription.disconnects"));
+    }
+
+    private static Message message(long offset) {
+        return Message.newBuilder()
+            .setBoardId("general")
+            .setOffset(offset)
+            .setPayload(ByteString.copyFromUtf8("ciphertext-" + offset))
+            .build();
+    }
+}
@@ -0,0 +1,89 @@
+package github.couryrr.backend.playbook.data.board;
+
+import github.couryrr.backend.playbook.data.gen.board.v1.SubscribeBoardResponse;
+import io.grpc.stub.ServerCallStreamObserver;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A subscription stream without a transport: readiness is set by the test, and
+ * messages go to a list or a callback.
+ */
+class FakeStreamObserver extends ServerCallStreamObserver<SubscribeBoardResponse> {
+
+    final List<SubscribeBoardResponse> received = new CopyOnWriteArrayList<>();
+    private final Consumer<SubscribeBoardResponse> onMessage;
+    volatile boolean ready = true;
+    volatile Throwable error;
+    volatile Runnable onReadyHandler;
+    volatile Runnable onCancelHandler;
+
+    FakeStreamObserver() {
+        this(null);
+    }
+
+    FakeStreamObserver(Consumer<SubscribeBoardResponse> onMessage) {
+        this.onMessage = onMessage;
+    }
+
+    void becomeReady() {
+        ready = true;
+        onReadyHandler.run();
+    }
+
+    @Override
+    public void onNext(SubscribeBoardResponse value) {
+        if (onMessage != null) {
+            onMessage.accept(value);
+        } else {
+            received.add(value);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        error = t;
+    }
+
+    @Override
+    public void onCompleted() {
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+        this.onReadyHandler = onReadyHandler;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+        this.onCancelHandler = onCancelHandler;
+    }
+
+    @Override
+    public void setCompression(String compression) {
+    }
+
+    @Override
+    public void disableAutoInboundFlowControl() {
+    }
+
+    @Override
+    public void request(int count) {
+    }
+
+    @Override
+    public void setMessageCompression(boolean enable) {
+    }
+}
@@ -0,0 +1,104 @@
+package github.couryrr.backend.playbook.data.board;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.board.v1.SubscribeBoardResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MessageBoardsTest {
+
+    @TempDir
+    Path boardDirectory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MessageBoards boards;
+
+    @BeforeEach
+    void setUp() {
+        boards = new MessageBoards(new BoardProperties(boardDirectory, DataSize.ofMegabytes(1),
+            DataSize.ofKilobytes(4), 100, DataSize.ofKilobytes(64),
+            new BoardProperties.Subscription(16, SlowConsumerPolicy.DISCONNECT), Duration.ZERO), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        boards.close();
+    }
+
+    @Test
+    void shouldNotCreateBoardOnSubscribe() throws Exception {
+        BlockingQueue<SubscribeBoardResponse> received = new LinkedBlockingQueue<>();
+        boards.subscribe("general", null, new FakeStreamObserver(received::add));
+
+        assertThat(boardDirectory.resolve("general")).doesNotExist();
+        assertThat(openBoards()).isZero();
+
+        boards.post("general", "author", ByteString.copyFromUtf8("first"), Timestamp.getDefaultInstance());
+
+        SubscribeBoardResponse response = received.poll(5, TimeUnit.SECONDS);
+        assertThat(response).isNotNull();
+        assertThat(response.getMessage().getOffset()).isZero();
+        assertThat(response.getMessage().getPayload().toStringUtf8()).isEqualTo("first");
+    }
+
+    @Test
+    void shouldCloseIdleBoardsAndReopenThemOnNextUse() throws Exception {
+        boards.post("general", "author", ByteString.copyFromUtf8("first"), Timestamp.getDefaultInstance());
+        assertThat(openBoards()).isEqualTo(1);
+
+        boards.evictIdle();
+
+        assertThat(openBoards()).isZero();
+        assertThat(boards.read("general", 0, 10)).hasSize(1);
+        assertThat(boards.endOffset("general")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepBoardsWithSubscribersOpen() throws Exception {
+        boards.post("general", "author", ByteString.copyFromUtf8("first"), Timestamp.getDefaultInstance());
+        boards.subscribe("general", null, new FakeStreamObserver());
+
+        boards.evictIdle();
+
+        assertThat(openBoards()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDropABoardsSubscriberSetWithItsLastSubscriber() throws Exception {
+        boards.post("general", "author", ByteString.copyFromUtf8("first"), Timestamp.getDefaultInstance());
+        FakeStreamObserver first = new FakeStreamObserver();
+        FakeStreamObserver second = new FakeStreamObserver();
+        boards.subscribe("general", null, first);
+        boards.subscribe("general", null, second);
+
+        first.onCancelHandler.run();
+        assertThat(subscribers()).isEqualTo(1);
+        second.onCancelHandler.run();
+        assertThat(subscribers()).isZero();
+
+        boards.evictIdle();
+        assertThat(openBoards()).isZero();
+    }
+
+    private double subscribers() {
+        return meterRegistry.get("data.board.subscribers").gauge().value();
+    }
+
+    private double openBoards() {
+        return meterRegistry.get("data.board.open_boards").gauge().value();
+    }
+}
@@ -0,0 +1,106 @@
+package github.couryrr.backend.playbook.data.crypto;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+class StreamEncryptionTest {
+
+    static final String KEY_1 = Base64.getEncoder().encodeToString(new byte[32]);
+    static final String KEY_2 = Base64.getEncoder().encodeToString(filled(32, (byte) 7));
+
+    @Test
+    void shouldRoundTripAcrossChunkBoundaries() throws IOException {
+        StreamEncryption encryption = encryption("k1", 1024);
+        for (int length : new int[] {0, 1, 1023, 1024, 1025, 4096, 10_000}) {
+            byte[] plaintext = random(length);
+
+            byte[] ciphertext = encrypt(encryption, plaintext);
+
+            assertThat(decrypt(encryption, ciphertext)).isEqualTo(plaintext);
+        }
+    }
+
+    @Test
+    void shouldUseFreshNoncesForEveryStream() throws IOException {
+        StreamEncryption encryption = encryption("k1", 1024);
+        byte[] plaintext = random(100);
+
+        assertThat(encrypt(encryption, plaintext)).isNotEqualTo(encrypt(encryption, plaintext));
+    }
+
+    @Test
+    void shouldRejectTamperedCiphertext() throws IOException {
+        StreamEncryption encryption = encryption("k1", 1024);
+        byte[] ciphertext = encrypt(encryption, random(3000));
+
+        ciphertext[ciphertext.length / 2] ^= 1;
+
+        assertThatThrownBy(() -> decrypt(encryption, ciphertext))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("failed authentication");
+    }
+
+    @Test
+    void shouldRejectStreamTruncatedAtChunkBoundary() throws IOException {
+        StreamEncryption encryption = encryption("k1", 1024);
+        byte[] ciphertext = encrypt(encryption, random(3000));
+        int headerBytes = ciphertext.length - 3000 - 3 * 16;
+
+        byte[] truncated = Arrays.copyOf(ciphertext, headerBytes + 2 * (1024 + 16));
+
+        assertThatThrownBy(() -> decrypt(encryption, truncated)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void shouldDecryptWithRetiredKeyAfterRotation() throws IOException {
+        byte[] plaintext = random(5000);
+        byte[] underOldKey = encrypt(encryption("k1", 1024), plaintext);
+
+        StreamEncryption rotated = encryption("k2", 1024);
+
+        assertThat(decrypt(rotated, underOldKey)).isEqualTo(plaintext);
+    }
+
+    static StreamEncryption encryption(String activeKeyId, int chunkSize) {
+        return new StreamEncryption(new EncryptionProperties(true, activeKeyId, Map.of("k1", KEY_1, "k2", KEY_2),
+            DataSize.ofBytes(chunkSize), Duration.ofMinutes(1)));
+    }
+
+    private static byte[] encrypt(StreamEncryption encryption, byte[] plaintext) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (EncryptingOutputStream encrypted = encryption.encrypt(out)) {
+            encrypted.write(plaintext);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decrypt(StreamEncryption encryption, byte[] ciphertext) throws IOException {
+        try (InputStream in = encryption.decrypt(new ByteArrayInputStream(ciphertext))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] random(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
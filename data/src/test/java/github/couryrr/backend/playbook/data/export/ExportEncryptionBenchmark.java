@@ -0,0 +1,67 @@
+package github.couryrr.backend.playbook.data.export;
+
+import github.couryrr.backend.playbook.data.crypto.EncryptionProperties;
+import github.couryrr.backend.playbook.data.crypto.StreamEncryption;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares export write throughput with and without encryption at rest, for both
+ * plain and gzip-compressed exports. The target is an encryption overhead under 10%.
+ * Run with {@code ./mvnw test -Dtest=ExportEncryptionBenchmark -Dbenchmark=true [-Dbenchmark.users=N]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExportEncryptionBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+    private static final int ROUNDS = 5;
+
+    @TempDir
+    Path exportDirectory;
+
+    @Test
+    void compareEncryptedAndPlainExports() throws IOException {
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(User.newBuilder()
+                .setId("user-" + i)
+                .setUsername("user" + i)
+                .setEmail("user" + i + "@example.com")
+                .setFirstName("First" + (i % 1000))
+                .setLastName("Last" + (i % 5000))
+                .build());
+        }
+        StreamEncryption encryption = new StreamEncryption(new EncryptionProperties(true, "bench",
+            Map.of("bench", Base64.getEncoder().encodeToString(new byte[32])), DataSize.ofKilobytes(64),
+            Duration.ofMinutes(1)));
+        UserExporter plain = new UserExporter();
+        UserExporter encrypted = new UserExporter(encryption);
+
+        for (boolean compress : new boolean[] {false, true}) {
+            double plainRate = bestRate(plain, users, compress);
+            double encryptedRate = bestRate(encrypted, users, compress);
+            System.out.printf("compress=%-5s plain=%.0f users/s encrypted=%.0f users/s overhead=%.1f%%%n",
+                compress, plainRate, encryptedRate, (plainRate / encryptedRate - 1) * 100);
+        }
+    }
+
+    private double bestRate(UserExporter exporter, List<User> users, boolean compress) throws IOException {
+        double best = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            ExportResult result = exporter.export(users, exportDirectory.resolve("users.pb"), compress);
+            best = Math.max(best, result.userCount() / (result.duration().toNanos() / 1e9));
+        }
+        return best;
+    }
+}
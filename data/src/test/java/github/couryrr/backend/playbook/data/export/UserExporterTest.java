@@ -0,0 +1,122 @@
+package github.couryrr.backend.playbook.data.export;
+
+import github.couryrr.backend.playbook.data.crypto.EncryptionProperties;
+import github.couryrr.backend.playbook.data.crypto.StreamEncryption;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class UserExporterTest {
+
+    @TempDir
+    Path exportDirectory;
+
+    private final UserExporter exporter = new UserExporter();
+
+    @Test
+    void shouldRoundTripUsersThroughUncompressedExport() throws IOException {
+        List<User> users = users(5000);
+
+        ExportResult result = exporter.export(users, exportDirectory.resolve("users.pb"), false);
+
+        assertThat(result.userCount()).isEqualTo(5000);
+        assertThat(result.bytesWritten()).isEqualTo(Files.size(exportDirectory.resolve("users.pb")));
+        List<User> read = new ArrayList<>();
+        assertThat(UserExporter.read(result.path(), false, read::add)).isEqualTo(5000);
+        assertThat(read).containsExactlyElementsOf(users);
+    }
+
+    @Test
+    void shouldCompressExportWhenRequested() throws IOException {
+        List<User> users = users(5000);
+
+        ExportResult plain = exporter.export(users, exportDirectory.resolve("users.pb"), false);
+        ExportResult compressed = exporter.export(users, exportDirectory.resolve("users.pb.gz"), true);
+
+        assertThat(compressed.bytesWritten()).isLessThan(plain.bytesWritten());
+        List<User> read = new ArrayList<>();
+        UserExporter.read(compressed.path(), true, read::add);
+        assertThat(read).containsExactlyElementsOf(users);
+    }
+
+    @Test
+    void shouldEncryptExportAtRest() throws IOException {
+        StreamEncryption encryption = encryption("k1");
+        List<User> users = users(5000);
+
+        ExportResult result = new UserExporter(encryption).export(users, exportDirectory.resolve("users.pb.gz"), true);
+
+        assertThat(result.encrypted()).isTrue();
+        assertThat(StreamEncryption.keyIdOf(result.path())).isEqualTo("k1");
+        List<User> read = new ArrayList<>();
+        UserExporter.read(result.path(), true, encryption, read::add);
+        assertThat(read).containsExactlyElementsOf(users);
+    }
+
+    @Test
+    void shouldReencryptExportsUnderRetiredKey() throws IOException {
+        List<User> users = users(100);
+        Path target = exportDirectory.resolve("users.pb");
+        new UserExporter(encryption("k1")).export(users, target, false);
+        assertThat(new String(Files.readAllBytes(target), StandardCharsets.ISO_8859_1)).doesNotContain("@example.com");
+
+        StreamEncryption rotated = encryption("k2");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new ExportReencryptor(rotated, new ExportProperties(exportDirectory, false), meterRegistry)
+            .reencryptStaleFiles();
+
+        assertThat(StreamEncryption.keyIdOf(target)).isEqualTo("k2");
+        assertThat(meterRegistry.counter("data.encryption.reencrypted_files").count()).isEqualTo(1);
+        List<User> read = new ArrayList<>();
+        UserExporter.read(target, false, rotated, read::add);
+        assertThat(read).containsExactlyElementsOf(users);
+        try (var files = Files.list(exportDirectory)) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    @Test
+    void shouldNotLeaveTemporaryFilesBehind() throws IOException {
+        exporter.export(users(10), exportDirectory.resolve("users.pb"), false);
+
+        try (var files = Files.list(exportDirectory)) {
+            assertThat(files).extracting(path -> path.getFileName().toString()).containsExactly("users.pb");
+        }
+    }
+
+    private static StreamEncryption encryption(String activeKeyId) {
+        Map<String, String> keys = Map.of(
+            "k1", Base64.getEncoder().encodeToString(new byte[32]),
+            "k2", Base64.getEncoder().encodeToString(new byte[16]));
+        return new StreamEncryption(new EncryptionProperties(true, activeKeyId, keys, DataSize.ofKilobytes(64),
+            Duration.ofMinutes(1)));
+    }
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(User.newBuilder()
+                .setId("id-" + i)
+                .setUsername("user" + i)
+                .setEmail("user" + i + "@example.com")
+                .setFirstName("First")
+                .setLastName("Last")
+                .build());
+        }
+        return users;
+    }
+}
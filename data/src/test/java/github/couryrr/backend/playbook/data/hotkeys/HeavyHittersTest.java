@@ -0,0 +1,58 @@
+package github.couryrr.backend.playbook.data.hotkeys;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class HeavyHittersTest {
+
+    @Test
+    void shouldFindHottestKeysAmongBackgroundTraffic() {
+        HeavyHitters hitters = new HeavyHitters(3, 6, 4, 1024);
+
+        for (int i = 0; i < 20_000; i++) {
+            hitters.offer("user-" + i);
+            if (i % 10 == 0) {
+                hitters.offer("bot@example.com");
+            }
+            if (i % 20 == 0) {
+                hitters.offer("shared-test-login");
+            }
+        }
+
+        List<HotKey> top = hitters.top();
+        assertThat(top).extracting(HotKey::key).startsWith("bot@example.com", "shared-test-login");
+        assertThat(top.getFirst().estimatedCount()).isGreaterThanOrEqualTo(2000);
+        assertThat(hitters.windowTotal()).isEqualTo(23_000);
+    }
+
+    @Test
+    void shouldForgetKeysOnceTheyLeaveTheWindow() {
+        HeavyHitters hitters = new HeavyHitters(3, 2, 4, 1024);
+        for (int i = 0; i < 100; i++) {
+            hitters.offer("old-hot-key");
+        }
+
+        hitters.rotate();
+        hitters.offer("new-key");
+        assertThat(hitters.top()).extracting(HotKey::key).containsExactly("old-hot-key", "new-key");
+
+        hitters.rotate();
+        assertThat(hitters.top()).extracting(HotKey::key).containsExactly("new-key");
+        assertThat(hitters.windowTotal()).isEqualTo(1);
+    }
+
+    @Test
+    void sketchShouldNeverUndercount() {
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(CountMinSketch.hash("key-" + (i % 100)));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(sketch.estimate(CountMinSketch.hash("key-" + i))).isGreaterThanOrEqualTo(10);
+        }
+    }
+}
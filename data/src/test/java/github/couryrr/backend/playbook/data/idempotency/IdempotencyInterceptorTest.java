@@ -0,0 +1,213 @@
+package github.couryrr.backend.playbook.data.idempotency;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.CreateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.CreateUserResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class IdempotencyInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final IdempotencyInterceptor interceptor = new IdempotencyInterceptor(
+        new IdempotencyTable(Duration.ofMinutes(10), 100), Duration.ofMinutes(10), meterRegistry);
+    private final AtomicInteger executions = new AtomicInteger();
+    private final List<ServerCall<CreateUserRequest, CreateUserResponse>> pending = new ArrayList<>();
+    private ServerCall.Listener<CreateUserRequest> lastListener;
+
+    @Test
+    void shouldReplayResponseForRetriedKey() {
+        RecordingServerCall first = call("key-1", request("alice"), true);
+        RecordingServerCall retry = call("key-1", request("alice"), true);
+
+        assertThat(executions).hasValue(1);
+        assertThat(first.status.isOk()).isTrue();
+        assertThat(retry.status.isOk()).isTrue();
+        assertThat(retry.response).isEqualTo(first.response);
+        assertThat(meterRegistry.counter("data.idempotency.calls",
+            "method", UserServiceGrpc.getCreateUserMethod().getFullMethodName(), "outcome", "replayed").count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void shouldJoinCallStillInFlight() {
+        RecordingServerCall first = call("key-1", request("alice"), false);
+        RecordingServerCall retry = call("key-1", request("alice"), false);
+        assertThat(retry.status).isNull();
+
+        completePending();
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.status.isOk()).isTrue();
+        assertThat(retry.response).isEqualTo(first.response);
+    }
+
+    @Test
+    void shouldRejectKeyReusedWithDifferentRequest() {
+        call("key-1", request("alice"), true);
+        RecordingServerCall other = call("key-1", request("bob"), true);
+
+        assertThat(executions).hasValue(1);
+        assertThat(other.status.getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+    }
+
+    @Test
+    void shouldRunRetryAgainAfterFailedCall() {
+        RecordingServerCall first = call("key-1", request("alice"), false);
+        RecordingServerCall joined = call("key-1", request("alice"), false);
+        pending.removeFirst().close(Status.UNAVAILABLE, new Metadata());
+
+        assertThat(first.status.getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+        assertThat(joined.status.getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+
+        RecordingServerCall retry = call("key-1", request("alice"), true);
+        assertThat(executions).hasValue(2);
+        assertThat(retry.status.isOk()).isTrue();
+    }
+
+    @Test
+    void shouldForgetKeyWhenFirstCallIsCancelled() {
+        call("key-1", request("alice"), false);
+        ServerCall.Listener<CreateUserRequest> first = lastListener;
+        RecordingServerCall joined = call("key-1", request("alice"), false);
+
+        first.onCancel();
+
+        assertThat(joined.status.getCode()).isEqualTo(Status.Code.CANCELLED);
+        RecordingServerCall retry = call("key-1", request("alice"), true);
+        assertThat(executions).hasValue(2);
+        assertThat(retry.status.isOk()).isTrue();
+    }
+
+    @Test
+    void shouldIgnoreCallsWithoutKey() {
+        call(null, request("alice"), true);
+        call(null, request("alice"), true);
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void shouldExpireEntriesAndEvictEldestOverCapacity() {
+        AtomicLong now = new AtomicLong();
+        IdempotencyTable table = new IdempotencyTable(Duration.ofSeconds(10), 2, now::get);
+        IdempotencyTable.Entry a = new IdempotencyTable.Entry(IdempotencyTable.digest(request("a")));
+
+        assertThat(table.putIfAbsent("a", a)).isNull();
+        assertThat(table.putIfAbsent("a", new IdempotencyTable.Entry(new byte[32]))).isSameAs(a);
+        table.putIfAbsent("b", new IdempotencyTable.Entry(new byte[32]));
+        table.putIfAbsent("c", new IdempotencyTable.Entry(new byte[32]));
+        assertThat(table.size()).isEqualTo(2);
+        assertThat(table.putIfAbsent("a", new IdempotencyTable.Entry(new byte[32]))).isNull();
+
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        table.putIfAbsent("d", new IdempotencyTable.Entry(new byte[32]));
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepOnlyADigestOfTheRequest() {
+        IdempotencyTable.Entry entry = new IdempotencyTable.Entry(IdempotencyTable.digest(request("alice")));
+
+        assertThat(IdempotencyTable.digest(request("alice"))).hasSize(32);
+        assertThat(entry.matches(IdempotencyTable.digest(request("alice")))).isTrue();
+        assertThat(entry.matches(IdempotencyTable.digest(request("bob")))).isFalse();
+    }
+
+    private RecordingServerCall call(String idempotencyKey, CreateUserRequest request, boolean completeImmediately) {
+        Metadata headers = new Metadata();
+        if (idempotencyKey != null) {
+            headers.put(IdempotencyInterceptor.IDEMPOTENCY_KEY, idempotencyKey);
+        }
+        RecordingServerCall call = new RecordingServerCall();
+        ServerCallHandler<CreateUserRequest, CreateUserResponse> handler = (handlerCall, handlerHeaders) ->
+            new ServerCall.Listener<>() {
+                private CreateUserRequest received;
+
+                @Override
+                public void onMessage(CreateUserRequest message) {
+                    received = message;
+                }
+
+                @Override
+                public void onHalfClose() {
+                    int execution = executions.incrementAndGet();
+                    handlerCall.sendHeaders(new Metadata());
+                    handlerCall.sendMessage(CreateUserResponse.newBuilder()
+                        .setUser(User.newBuilder().setId("id-" + execution).setUsername(received.getUsername()))
+                        .build());
+                    if (completeImmediately) {
+                        handlerCall.close(Status.OK, new Metadata());
+                    } else {
+                        pending.add(handlerCall);
+                    }
+                }
+            };
+
+        ServerCall.Listener<CreateUserRequest> listener = interceptor.interceptCall(call, headers, handler);
+        listener.onMessage(request);
+        listener.onHalfClose();
+        lastListener = listener;
+        return call;
+    }
+
+    private void completePending() {
+        pending.forEach(call -> call.close(Status.OK, new Metadata()));
+        pending.clear();
+    }
+
+    private static CreateUserRequest request(String username) {
+        return CreateUserRequest.newBuilder()
+            .setUsername(username)
+            .setEmail(username + "@example.com")
+            .setPassword("password123")
+            .build();
+    }
+
+    private static final class RecordingServerCall extends ServerCall<CreateUserRequest, CreateUserResponse> {
+        private volatile CreateUserResponse response;
+        private volatile Status status;
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public void sendMessage(CreateUserResponse message) {
+            response = message;
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            this.status = status;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public MethodDescriptor<CreateUserRequest, CreateUserResponse> getMethodDescriptor() {
+            return UserServiceGrpc.getCreateUserMethod();
+        }
+    }
+}
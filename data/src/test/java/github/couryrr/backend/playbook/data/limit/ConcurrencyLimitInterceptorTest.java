@@ -0,0 +1,209 @@
+package github.couryrr.backend.playbook.data.limit;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.UserServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ConcurrencyLimitInterceptorTest {
+
+    private final ScheduledExecutorService slowHandlerExecutor = Executors.newScheduledThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        slowHandlerExecutor.shutdownNow();
+    }
+
+    @Test
+    void shouldRejectCallsOverGroupLimitWithResourceExhausted() {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(properties(2));
+
+        RecordingServerCall<?, ?> first = start(interceptor, UserServiceGrpc.getCreateUserMethod());
+        RecordingServerCall<?, ?> second = start(interceptor, UserServiceGrpc.getCreateUserMethod());
+        RecordingServerCall<?, ?> third = start(interceptor, UserServiceGrpc.getCreateUserMethod());
+
+        assertThat(first.status).isNull();
+        assertThat(second.status).isNull();
+        assertThat(third.status.getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+        assertThat(interceptor.getLimiter().getRejected(MethodGroup.WRITE)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReleasePermitWhenCallCloses() {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(properties(1));
+
+        RecordingServerCall<?, ?> first = start(interceptor, UserServiceGrpc.getGetUserMethod());
+        assertThat(interceptor.getLimiter().getInflight(MethodGroup.READ)).isEqualTo(1);
+
+        first.delegateClose();
+        assertThat(interceptor.getLimiter().getInflight(MethodGroup.READ)).isZero();
+
+        RecordingServerCall<?, ?> second = start(interceptor, UserServiceGrpc.getGetUserMethod());
+        assertThat(second.status).isNull();
+    }
+
+    @Test
+    void shouldShedAuthenticationBeforeReadsWhenServerIsBusy() {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(properties(10));
+
+        for (int i = 0; i < 10; i++) {
+            start(interceptor, UserServiceGrpc.getCreateUserMethod());
+            start(interceptor, UserServiceGrpc.getGetUserMethod());
+        }
+
+        List<RecordingServerCall<?, ?>> logins = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            logins.add(start(interceptor, UserServiceGrpc.getAuthenticateUserMethod()));
+        }
+
+        assertThat(logins).filteredOn(call -> call.status == null).hasSize(1);
+        assertThat(interceptor.getLimiter().getInflight(MethodGroup.READ)).isEqualTo(10);
+    }
+
+    @Test
+    void shouldPassThroughUnlimitedMethods() {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(properties(1));
+        MethodDescriptor<Void, Void> health = MethodDescriptor.<Void, Void>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName("grpc.health.v1.Health/Check")
+            .setRequestMarshaller(new NoopMarshaller())
+            .setResponseMarshaller(new NoopMarshaller())
+            .build();
+
+        assertThat(start(interceptor, health).status).isNull();
+        assertThat(start(interceptor, health).status).isNull();
+    }
+
+    @Test
+    void shouldShedLoadAgainstSlowedHandler() throws InterruptedException {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(properties(4));
+        ServerCallHandler<Object, Object> slowHandler = (call, headers) -> {
+            slowHandlerExecutor.schedule(() -> call.close(Status.OK, new Metadata()), 20, TimeUnit.MILLISECONDS);
+            return new ServerCall.Listener<>() {};
+        };
+
+        int clients = 32;
+        int callsPerClient = 10;
+        AtomicInteger served = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(clients * callsPerClient);
+        ExecutorService loadGenerator = Executors.newFixedThreadPool(clients);
+        try {
+            for (int c = 0; c < clients; c++) {
+                loadGenerator.submit(() -> {
+                    for (int i = 0; i < callsPerClient; i++) {
+                        RecordingServerCall<Object, Object> call = new RecordingServerCall<>(
+                            cast(UserServiceGrpc.getAuthenticateUserMethod()), status -> {
+                                if (status.getCode() == Status.Code.RESOURCE_EXHAUSTED) {
+                                    shed.incrementAndGet();
+                                } else {
+                                    served.incrementAndGet();
+                                }
+                                done.countDown();
+                            });
+                        interceptor.interceptCall(call, new Metadata(), slowHandler);
+                    }
+                });
+            }
+            assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            loadGenerator.shutdownNow();
+        }
+
+        assertThat(served.get()).isPositive();
+        assertThat(shed.get()).isPositive();
+        assertThat(interceptor.getLimiter().getInflight(MethodGroup.AUTH)).isZero();
+    }
+
+    private static ConcurrencyLimitProperties properties(int limit) {
+        return new ConcurrencyLimitProperties(true, limit, 1, limit, 0.2, 1.5, 600);
+    }
+
+    private static <ReqT, RespT> RecordingServerCall<ReqT, RespT> start(
+            ConcurrencyLimitInterceptor interceptor, MethodDescriptor<ReqT, RespT> method) {
+        RecordingServerCall<ReqT, RespT> call = new RecordingServerCall<>(method, status -> {});
+        interceptor.interceptCall(call, new Metadata(), (handlerCall, headers) -> {
+            call.delegate = handlerCall;
+            return new ServerCall.Listener<>() {};
+        });
+        return call;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MethodDescriptor<Object, Object> cast(MethodDescriptor<?, ?> method) {
+        return (MethodDescriptor<Object, Object>) method;
+    }
+
+    private static final class RecordingServerCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final Consumer<Status> onClose;
+        private volatile ServerCall<ReqT, RespT> delegate;
+        private volatile Status status;
+
+        private RecordingServerCall(MethodDescriptor<ReqT, RespT> method, Consumer<Status> onClose) {
+            this.method = method;
+            this.onClose = onClose;
+        }
+
+        void delegateClose() {
+            delegate.close(Status.OK, new Metadata());
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            this.status = status;
+            onClose.accept(status);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public MethodDescriptor<ReqT, RespT> getMethodDescriptor() {
+            return method;
+        }
+    }
+
+    private static final class NoopMarshaller implements MethodDescriptor.Marshaller<Void> {
+        @Override
+        public InputStream stream(Void value) {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public Void parse(InputStream stream) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package github.couryrr.backend.playbook.data.limit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class GradientLimitTest {
+
+    @Test
+    void shouldGrowLimitWhileLatencyIsStable() {
+        GradientLimit limit = new GradientLimit(10, 1, 100, 0.2, 1.5, 100);
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(1_000_000, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLimit()).isGreaterThan(10);
+    }
+
+    @Test
+    void shouldShrinkLimitWhenLatencyClimbs() {
+        GradientLimit limit = new GradientLimit(50, 1, 100, 0.2, 1.5, 100);
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(1_000_000, limit.getLimit(), false);
+        }
+        int before = limit.getLimit();
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(20_000_000, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLimit()).isLessThan(before);
+    }
+
+    @Test
+    void shouldNotGrowLimitWhenMostlyIdle() {
+        GradientLimit limit = new GradientLimit(20, 1, 100, 0.2, 1.5, 100);
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(1_000_000, 1, false);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void shouldStayWithinBounds() {
+        GradientLimit limit = new GradientLimit(10, 5, 12, 0.5, 1.5, 100);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(1_000_000, limit.getLimit(), false);
+        }
+        assertThat(limit.getLimit()).isEqualTo(12);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(1_000_000, limit.getLimit(), true);
+        }
+        assertThat(limit.getLimit()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,73 @@
+package github.couryrr.backend.playbook.data.search;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures index build time, posting memory and search latency over synthetic users.
+ * Run with {@code ./mvnw test -Dtest=UserSearchBenchmark -Dbenchmark=true [-Dbenchmark.users=N]};
+ * 10M users needs a heap of about 8 GB.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UserSearchBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+    private static final int SEARCHES = 2_000;
+    private static final String[] NAMES = {
+        "anna", "john", "maria", "lee", "smith", "garcia", "chen", "kim", "nguyen", "patel",
+        "hannah", "joanne", "lin", "muller", "rossi", "silva", "kowalski", "ivanova", "tanaka", "obi"
+    };
+
+    @Test
+    void measureBuildAndSearchLatency() {
+        Map<String, User> users = new HashMap<>(USERS * 2);
+        UserSearchIndex index = new UserSearchIndex(users::values, Runnable::run, 10_000);
+        Random random = new Random(7);
+
+        long buildStart = System.nanoTime();
+        for (int i = 0; i < USERS; i++) {
+            User user = User.newBuilder()
+                .setId("user-" + i)
+                .setUsername("user" + i)
+                .setEmail("mail" + i + "@example.com")
+                .setFirstName(NAMES[random.nextInt(NAMES.length)])
+                .setLastName(NAMES[random.nextInt(NAMES.length)] + (i % 977))
+                .build();
+            users.put(user.getId(), user);
+            index.add(user);
+        }
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+        System.out.printf("users=%d build=%dms documents=%d postings=%dMB%n",
+            USERS, buildMillis, index.documents(), index.postingBytes() >> 20);
+
+        report("common", index, users, () -> NAMES[random.nextInt(NAMES.length)].substring(0, 3));
+        report("rare", index, users, () -> "user" + random.nextInt(USERS));
+        report("two-term", index, users,
+            () -> NAMES[random.nextInt(NAMES.length)] + " " + (100 + random.nextInt(877)));
+    }
+
+    private static void report(String name, UserSearchIndex index, Map<String, User> users,
+            Supplier<String> queries) {
+        long[] latencies = new long[SEARCHES];
+        int truncated = 0;
+        for (int i = 0; i < SEARCHES; i++) {
+            String query = queries.get();
+            long start = System.nanoTime();
+            if (index.search(query, 0, 20, users::get).truncated()) {
+                truncated++;
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-8s p50=%dus p99=%dus max=%dus truncated=%d/%d%n", name,
+            latencies[SEARCHES / 2] / 1000, latencies[(int) (SEARCHES * 0.99)] / 1000,
+            latencies[SEARCHES - 1] / 1000, truncated, SEARCHES);
+    }
+}
@@ -0,0 +1,106 @@
+package github.couryrr.backend.playbook.data.search;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class UserSearchIndexTest {
+
+    private final Map<String, User> users = new LinkedHashMap<>();
+    private final UserSearchIndex index = new UserSearchIndex(users::values, Runnable::run, 10_000);
+
+    @Test
+    void shouldRoundTripPostingsAcrossGapSizes() {
+        PostingList postings = new PostingList();
+        int[] docs = {0, 1, 5, 300, 70_000, 70_001, 1 << 30};
+        for (int doc : docs) {
+            postings.add(doc);
+            postings.add(doc);
+        }
+
+        PostingList.Cursor cursor = postings.cursor();
+        assertThat(IntStream.generate(cursor::next).limit(docs.length + 1).toArray())
+            .containsExactly(0, 1, 5, 300, 70_000, 70_001, 1 << 30, -1);
+        assertThat(postings.size()).isEqualTo(docs.length);
+        assertThat(postings.encodedBytes()).isLessThan(docs.length * Integer.BYTES);
+
+        PostingList.Cursor skipping = postings.cursor();
+        assertThat(skipping.advance(301)).isEqualTo(70_000);
+        assertThat(skipping.advance(2)).isEqualTo(70_000);
+        assertThat(skipping.advance(Integer.MAX_VALUE)).isEqualTo(-1);
+        assertThatIllegalArgumentException().isThrownBy(() -> postings.add(3));
+    }
+
+    @Test
+    void shouldRankExactAndPrefixMatchesAboveSubstrings() {
+        add("1", "joanna", "Jo", "Smith", "jo@example.com");
+        add("2", "ann", "Ann", "Lee", "ann@example.com");
+        add("3", "bob", "Bob", "Annis", "bob@example.com");
+        add("4", "zed", "Zed", "Zee", "hannah.z@example.com");
+        add("5", "carol", "Carol", "Cole", "carol@ann.example.com");
+
+        UserSearchIndex.Result result = index.search("ANN", 0, 10, users::get);
+
+        assertThat(result.users()).extracting(User::getUsername).containsExactly("ann", "bob", "joanna", "zed");
+        assertThat(result.totalMatches()).isEqualTo(4);
+        assertThat(result.truncated()).isFalse();
+        assertThat(index.search("ann", 1, 2, users::get).users()).extracting(User::getUsername)
+            .containsExactly("bob", "joanna");
+        assertThat(index.search("ann lee", 0, 10, users::get).users()).extracting(User::getUsername)
+            .containsExactly("ann");
+        assertThat(index.search("xyz", 0, 10, users::get).users()).isEmpty();
+    }
+
+    @Test
+    void shouldFollowUpdatesAndDeletesAndSurviveRebuild() {
+        User joanna = add("1", "joanna", "Jo", "Smith", "jo@example.com");
+        User ann = add("2", "ann", "Ann", "Lee", "ann@example.com");
+
+        User renamed = joanna.toBuilder().setUsername("josie").build();
+        users.put(renamed.getId(), renamed);
+        index.update(joanna, renamed);
+        users.remove(ann.getId());
+        index.remove(ann);
+
+        assertThat(index.search("ann", 0, 10, users::get).users()).isEmpty();
+        assertThat(index.search("josie", 0, 10, users::get).users()).containsExactly(renamed);
+        assertThat(index.documents()).isEqualTo(3);
+
+        index.rebuild();
+
+        assertThat(index.documents()).isEqualTo(1);
+        assertThat(index.search("smith", 0, 10, users::get).users()).containsExactly(renamed);
+    }
+
+    @Test
+    void shouldStopAtCandidateLimit() {
+        UserSearchIndex bounded = new UserSearchIndex(users::values, Runnable::run, 50);
+        for (int i = 0; i < 200; i++) {
+            bounded.add(add("id-" + i, "user" + i, "Anna", "Lee", "user" + i + "@example.com"));
+        }
+
+        UserSearchIndex.Result result = bounded.search("anna", 0, 10, users::get);
+
+        assertThat(result.totalMatches()).isEqualTo(50);
+        assertThat(result.truncated()).isTrue();
+        assertThat(result.users()).hasSize(10);
+    }
+
+    private User add(String id, String username, String firstName, String lastName, String email) {
+        User user = User.newBuilder()
+            .setId(id)
+            .setUsername(username)
+            .setFirstName(firstName)
+            .setLastName(lastName)
+            .setEmail(email)
+            .build();
+        users.put(id, user);
+        index.add(user);
+        return user;
+    }
+}
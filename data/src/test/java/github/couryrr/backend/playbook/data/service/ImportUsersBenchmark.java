@@ -0,0 +1,83 @@
+package github.couryrr.backend.playbook.data.service;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.CreateUserRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.ImportUsersRequest;
+import github.couryrr.backend.playbook.data.gen.user.v1.ImportUsersResponse;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Streams prebuilt rows through ImportUsers into a fresh service and reports how many
+ * users per second the import sustains, against the 100k users/s target.
+ * Run with {@code ./mvnw test -Dtest=ImportUsersBenchmark -Dbenchmark=true [-Dbenchmark.users=N]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ImportUsersBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+    private static final int ROUNDS = 3;
+    private static final double TARGET_USERS_PER_SECOND = 100_000;
+
+    @Test
+    void measureImportThroughput() {
+        List<ImportUsersRequest> rows = rows();
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            UserServiceImpl userService = new UserServiceImpl(new SimpleMeterRegistry());
+            AtomicReference<ImportUsersResponse> summary = new AtomicReference<>();
+
+            long start = System.nanoTime();
+            StreamObserver<ImportUsersRequest> importStream = userService.importUsers(new StreamObserver<>() {
+                @Override
+                public void onNext(ImportUsersResponse response) {
+                    summary.set(response);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    throw new AssertionError("Import failed", t);
+                }
+
+                @Override
+                public void onCompleted() {
+                }
+            });
+            for (ImportUsersRequest row : rows) {
+                importStream.onNext(row);
+            }
+            importStream.onCompleted();
+            best = Math.min(best, System.nanoTime() - start);
+
+            assertThat(summary.get().getImportedCount()).isEqualTo(USERS);
+        }
+
+        double usersPerSecond = USERS / (best / 1e9);
+        System.out.printf("users=%d best=%.0fms throughput=%.0f users/s target=%.0f users/s (%s)%n",
+            USERS, best / 1e6, usersPerSecond, TARGET_USERS_PER_SECOND,
+            usersPerSecond >= TARGET_USERS_PER_SECOND ? "met" : "missed");
+    }
+
+    private static List<ImportUsersRequest> rows() {
+        List<ImportUsersRequest> rows = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            rows.add(ImportUsersRequest.newBuilder()
+                .setUser(CreateUserRequest.newBuilder()
+                    .setUsername("user" + i)
+                    .setEmail("user" + i + "@example.com")
+                    .setPassword("password" + i)
+                    .setFirstName("First" + (i % 1000))
+                    .setLastName("Last" + (i % 5000)))
+                .build());
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,113 @@
+package github.couryrr.backend.playbook.data.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flight = new SingleFlight<>("GetUser", meterRegistry);
+
+    @Test
+    void shouldShareOneLoadBetweenConcurrentCallers() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<String> leader = executor.submit(() -> flight.load("id-1", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "alice";
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(executor.submit(() -> flight.load("id-1", () -> {
+                    loads.incrementAndGet();
+                    return "unexpected";
+                })));
+            }
+            while (meterRegistry.get(SingleFlight.CALLS).tag("role", "follower").counter().count() < 7) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("alice");
+            for (Future<String> follower : followers) {
+                assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("alice");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get(SingleFlight.COALESCING_RATIO).gauge().value()).isEqualTo(7.0 / 8);
+    }
+
+    @Test
+    void shouldLoadAgainOnceThePreviousLoadCompleted() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        flight.load("id-1", () -> "v" + loads.incrementAndGet());
+        String second = flight.load("id-1", () -> "v" + loads.incrementAndGet());
+
+        assertThat(second).isEqualTo("v2");
+        assertThat(meterRegistry.get(SingleFlight.COALESCING_RATIO).gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldPropagateLoadFailure() {
+        assertThatThrownBy(() -> flight.load("id-1", () -> {
+            throw new IllegalStateException("backend down");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("backend down");
+
+        assertThatCode(() -> flight.load("id-1", () -> "recovered")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void shouldReleaseFollowersWhenTheLoadThrowsAnError() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> flight.load("id-1", () -> {
+                loading.countDown();
+                await(release);
+                throw new StackOverflowError("too deep");
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<String> follower = executor.submit(() -> flight.load("id-1", () -> "unexpected"));
+            while (meterRegistry.get(SingleFlight.CALLS).tag("role", "follower").counter().count() < 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(flight.load("id-1", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
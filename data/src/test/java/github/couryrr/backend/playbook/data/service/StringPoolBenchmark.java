@@ -0,0 +1,66 @@
+package github.couryrr.backend.playbook.data.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Random;
+
+/**
+ * Reports the name bytes the pool saves and its hit rate over Zipf-distributed first
+ * and last names, with one user in ten carrying a rare last name.
+ * Run with {@code ./mvnw test -Dtest=StringPoolBenchmark -Dbenchmark=true [-Dbenchmark.users=N]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StringPoolBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+
+    private static final String[] FIRST_NAMES = {
+        "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+        "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+        "Christopher", "Lisa", "Daniel", "Nancy", "Matthew", "Betty", "Anthony", "Margaret", "Mark", "Sandra"
+    };
+
+    private static final String[] LAST_NAMES = {
+        "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+        "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+        "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson"
+    };
+
+    @Test
+    void reportBytesSavedOnRealisticNames() {
+        StringPool pool = new StringPool(1 << 16);
+        Random random = new Random(42);
+        long retainedWithoutPool = 0;
+
+        for (int i = 0; i < USERS; i++) {
+            // Parsed request fields are always fresh instances, so copy before interning.
+            String firstName = new String(FIRST_NAMES[zipf(random, FIRST_NAMES.length)]);
+            String lastName = i % 10 == 0
+                ? "Rare" + random.nextInt(200_000)
+                : new String(LAST_NAMES[zipf(random, LAST_NAMES.length)]);
+            retainedWithoutPool += StringPool.retainedSize(firstName) + StringPool.retainedSize(lastName);
+            pool.intern(firstName);
+            pool.intern(lastName);
+        }
+
+        System.out.printf("String pool: %d of %d name bytes saved per %d users (%.1f%%), hit rate %.1f%%%n",
+            pool.getBytesSaved(), retainedWithoutPool, USERS,
+            100.0 * pool.getBytesSaved() / retainedWithoutPool,
+            100.0 * pool.getHits() / pool.getLookups());
+    }
+
+    private static int zipf(Random random, int size) {
+        // Inverse-CDF approximation of a Zipf(1) distribution over [0, size).
+        double harmonic = Math.log(size) + 0.5772;
+        double target = random.nextDouble() * harmonic;
+        double sum = 0;
+        for (int rank = 1; rank <= size; rank++) {
+            sum += 1.0 / rank;
+            if (sum >= target) {
+                return rank - 1;
+            }
+        }
+        return size - 1;
+    }
+}
@@ -0,0 +1,57 @@
+package github.couryrr.backend.playbook.data.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class StringPoolTest {
+
+    @Test
+    void shouldReturnPooledInstanceForEqualStrings() {
+        StringPool pool = new StringPool(16);
+
+        String first = pool.intern(new String("Alice"));
+        String second = pool.intern(new String("Alice"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(pool.getHits()).isEqualTo(1);
+        assertThat(pool.getBytesSaved()).isEqualTo(StringPool.retainedSize("Alice"));
+    }
+
+    @Test
+    void shouldPassThroughEmptyAndNullValues() {
+        StringPool pool = new StringPool(16);
+
+        assertThat(pool.intern("")).isEmpty();
+        assertThat(pool.intern(null)).isNull();
+        assertThat(pool.getLookups()).isZero();
+    }
+
+    @Test
+    void shouldStayBoundedWhenValuesAreUnique() {
+        StringPool pool = new StringPool(8);
+
+        for (int i = 0; i < 10_000; i++) {
+            String value = "unique-" + i;
+            assertThat(pool.intern(value)).isEqualTo(value);
+        }
+
+        assertThat(pool.getHits()).isZero();
+    }
+
+    @Test
+    void shouldSaveMostBytesWhenValuesRepeat() {
+        StringPool pool = new StringPool(64);
+        String[] names = {"James", "Mary", "Robert", "Patricia", "John"};
+        long retainedWithoutPool = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            String name = new String(names[i % names.length]);
+            retainedWithoutPool += StringPool.retainedSize(name);
+            pool.intern(name);
+        }
+
+        assertThat(pool.getHits()).isEqualTo(1000 - names.length);
+        assertThat(pool.getBytesSaved()).isGreaterThan(retainedWithoutPool * 9 / 10);
+    }
+}
@@ -0,0 +1,83 @@
+package github.couryrr.backend.playbook.data.service;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.user.v1.GetUserResponse;
+import github.couryrr.backend.playbook.data.gen.user.v1.PublicKey;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compares the bytes on the wire and the CPU spent building and serializing a
+ * GetUser response for the full user and for a username-only read mask, with and
+ * without a public key on the user.
+ * Run with {@code ./mvnw test -Dtest=UserFieldMaskBenchmark -Dbenchmark=true [-Dbenchmark.users=N]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UserFieldMaskBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 100_000);
+    private static final int ROUNDS = 10;
+
+    @Test
+    void compareFullAndUsernameOnlyResponses() {
+        UserFieldMask usernameOnly = UserFieldMask.of(FieldMask.newBuilder().addPaths("username").build());
+
+        for (boolean withKey : new boolean[] {false, true}) {
+            List<User> users = users(withKey);
+            Result full = measure(users, UserFieldMask.ALL);
+            Result masked = measure(users, usernameOnly);
+            System.out.printf("publicKey=%-5s full=%dB %.0fns masked=%dB %.0fns bytes=-%.0f%% cpu=-%.0f%%%n",
+                withKey, full.bytesPerUser(), full.nanosPerUser(), masked.bytesPerUser(), masked.nanosPerUser(),
+                (1 - (double) masked.bytesPerUser() / full.bytesPerUser()) * 100,
+                (1 - masked.nanosPerUser() / full.nanosPerUser()) * 100);
+        }
+    }
+
+    private static Result measure(List<User> users, UserFieldMask mask) {
+        long bytes = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            bytes = 0;
+            long start = System.nanoTime();
+            for (User user : users) {
+                bytes += GetUserResponse.newBuilder().setUser(mask.apply(user)).build().toByteArray().length;
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return new Result(bytes / users.size(), (double) best / users.size());
+    }
+
+    private static List<User> users(boolean withKey) {
+        Timestamp now = Timestamp.newBuilder().setSeconds(1_700_000_000).setNanos(123_456_789).build();
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User.Builder user = User.newBuilder()
+                .setId(UUID.randomUUID().toString())
+                .setUsername("user" + i)
+                .setEmail("user" + i + "@example.com")
+                .setFirstName("First" + (i % 1000))
+                .setLastName("Last" + (i % 5000))
+                .setCreatedAt(now)
+                .setUpdatedAt(now);
+            if (withKey) {
+                user.addPublicKeys(PublicKey.newBuilder()
+                    .setKeyId("key-1")
+                    .setAlgorithm("X25519")
+                    .setKey(ByteString.copyFrom(new byte[32]))
+                    .setCreatedAt(now));
+            }
+            users.add(user.build());
+        }
+        return users;
+    }
+
+    private record Result(long bytesPerUser, double nanosPerUser) {
+    }
+}
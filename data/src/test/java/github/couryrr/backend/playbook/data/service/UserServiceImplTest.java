@@ -1,7 +1,20 @@
 package github.couryrr.backend.playbook.data.service;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.crypto.StreamEncryption;
+import github.couryrr.backend.playbook.data.export.ExportProperties;
 import github.couryrr.backend.playbook.data.gen.user.v1.*;
+import github.couryrr.backend.playbook.data.store.HeapUserStore;
+import github.couryrr.backend.playbook.data.store.StoreFullException;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,7 +22,21 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.times;
 
@@ -18,12 +45,17 @@ class UserServiceImplTest {
 
     private UserServiceImpl userService;
 
+    private SimpleMeterRegistry meterRegistry;
+
     @Mock
     private StreamObserver<CreateUserResponse> createUserResponseObserver;
 
     @Mock
     private StreamObserver<GetUserResponse> getUserResponseObserver;
 
+    @Mock
+    private StreamObserver<GetUsersResponse> getUsersResponseObserver;
+
     @Mock
     private StreamObserver<UpdateUserResponse> updateUserResponseObserver;
 
@@ -36,9 +68,25 @@ class UserServiceImplTest {
     @Mock
     private StreamObserver<AuthenticateUserResponse> authenticateUserResponseObserver;
 
+    @Mock
+    private StreamObserver<ImportUsersResponse> importUsersResponseObserver;
+
+    @Mock
+    private StreamObserver<DeleteUserResponse> deleteUserResponseObserver;
+
+    @Mock
+    private StreamObserver<RegisterPublicKeyResponse> registerPublicKeyResponseObserver;
+
+    @Mock
+    private StreamObserver<GetPublicKeysResponse> getPublicKeysResponseObserver;
+
+    @Mock
+    private StreamObserver<SearchUsersResponse> searchUsersResponseObserver;
+
     @BeforeEach
     void setUp() {
-        userService = new UserServiceImpl();
+        meterRegistry = new SimpleMeterRegistry();
+        userService = new UserServiceImpl(meterRegistry);
     }
 
     @Test
@@ -390,4 +438,567 @@ class UserServiceImplTest {
         assertThat(response.getUser().getUsername()).isEqualTo("updateuser");
         assertThat(response.getUser().getEmail()).isEqualTo("update@example.com");
     }
+
+    @Test
+    void shouldDeleteUserAndReleaseUsernameAndEmail() {
+        CreateUserRequest createRequest = CreateUserRequest.newBuilder()
+                .setUsername("deleteuser")
+                .setEmail("delete@example.com")
+                .setPassword("password123")
+                .setFirstName("Delete")
+                .setLastName("User")
+                .build();
+
+        userService.createUser(createRequest, createUserResponseObserver);
+
+        ArgumentCaptor<CreateUserResponse> createResponseCaptor = ArgumentCaptor.forClass(CreateUserResponse.class);
+        verify(createUserResponseObserver).onNext(createResponseCaptor.capture());
+        String userId = createResponseCaptor.getValue().getUser().getId();
+
+        DeleteUserRequest deleteRequest = DeleteUserRequest.newBuilder()
+                .setId(userId)
+                .build();
+
+        userService.deleteUser(deleteRequest, deleteUserResponseObserver);
+        userService.deleteUser(deleteRequest, deleteUserResponseObserver);
+
+        ArgumentCaptor<DeleteUserResponse> deleteResponseCaptor = ArgumentCaptor.forClass(DeleteUserResponse.class);
+        verify(deleteUserResponseObserver, times(2)).onNext(deleteResponseCaptor.capture());
+        DeleteUserResponse deleted = deleteResponseCaptor.getAllValues().get(0);
+        assertThat(deleted.getUser().getUsername()).isEqualTo("deleteuser");
+        assertThat(deleted.getUser().hasDeletedAt()).isTrue();
+        assertThat(deleteResponseCaptor.getAllValues().get(1).hasError()).isTrue();
+
+        userService.getUser(GetUserRequest.newBuilder().setId(userId).build(), getUserResponseObserver);
+        ArgumentCaptor<GetUserResponse> getResponseCaptor = ArgumentCaptor.forClass(GetUserResponse.class);
+        verify(getUserResponseObserver).onNext(getResponseCaptor.capture());
+        assertThat(getResponseCaptor.getValue().hasError()).isTrue();
+
+        userService.checkUsername(CheckUsernameRequest.newBuilder().setUsername("DeleteUser").build(),
+                checkUsernameResponseObserver);
+        ArgumentCaptor<CheckUsernameResponse> checkResponseCaptor = ArgumentCaptor.forClass(CheckUsernameResponse.class);
+        verify(checkUsernameResponseObserver).onNext(checkResponseCaptor.capture());
+        assertThat(checkResponseCaptor.getValue().getIsAvailable()).isTrue();
+    }
+
+    @Test
+    void shouldAbandonCreateForCancelledCallWithoutClaimingIndexes() {
+        CreateUserRequest request = CreateUserRequest.newBuilder()
+                .setUsername("cancelleduser")
+                .setEmail("cancelled@example.com")
+                .setPassword("password123")
+                .setFirstName("Cancelled")
+                .setLastName("User")
+                .build();
+
+        Context.CancellableContext context = Context.current().withCancellation();
+        context.cancel(null);
+        context.run(() -> userService.createUser(request, createUserResponseObserver));
+
+        ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+        verify(createUserResponseObserver).onError(errorCaptor.capture());
+        verify(createUserResponseObserver, never()).onNext(any());
+        assertThat(Status.fromThrowable(errorCaptor.getValue()).getCode()).isEqualTo(Status.Code.CANCELLED);
+
+        userService.checkUsername(CheckUsernameRequest.newBuilder().setUsername("cancelleduser").build(),
+                checkUsernameResponseObserver);
+        ArgumentCaptor<CheckUsernameResponse> usernameCaptor = ArgumentCaptor.forClass(CheckUsernameResponse.class);
+        verify(checkUsernameResponseObserver).onNext(usernameCaptor.capture());
+        assertThat(usernameCaptor.getValue().getIsAvailable()).isTrue();
+
+        assertThat(meterRegistry.counter("data.user.wasted_work.avoided",
+                "method", "CreateUser", "stage", "validation").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldReportDeadlineExceededForExpiredCall() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Context.CancellableContext context = Context.current()
+                    .withDeadline(Deadline.after(-1, TimeUnit.MILLISECONDS), scheduler);
+            context.run(() -> userService.getUser(GetUserRequest.newBuilder().setId("any").build(),
+                    getUserResponseObserver));
+            context.cancel(null);
+        } finally {
+            scheduler.shutdownNow();
+        }
+
+        ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+        verify(getUserResponseObserver).onError(errorCaptor.capture());
+        verify(getUserResponseObserver, never()).onNext(any());
+        assertThat(errorCaptor.getValue()).isInstanceOf(StatusRuntimeException.class);
+        assertThat(Status.fromThrowable(errorCaptor.getValue()).getCode()).isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+    }
+
+    @Test
+    void shouldImportUsersAndReportRowErrors() {
+        userService.createUser(CreateUserRequest.newBuilder()
+                .setUsername("existing")
+                .setEmail("existing@example.com")
+                .setPassword("password123")
+                .setFirstName("Existing")
+                .setLastName("User")
+                .build(), createUserResponseObserver);
+
+        StreamObserver<ImportUsersRequest> importStream = userService.importUsers(importUsersResponseObserver);
+        for (int i = 0; i < 2500; i++) {
+            importStream.onNext(importRow("imported" + i, "imported" + i + "@example.com"));
+        }
+        importStream.onNext(importRow("existing", "other@example.com"));
+        importStream.onNext(importRow("imported0", "again@example.com"));
+        importStream.onNext(importRow("broken", "not-an-email"));
+        importStream.onCompleted();
+
+        ArgumentCaptor<ImportUsersResponse> responseCaptor = ArgumentCaptor.forClass(ImportUsersResponse.class);
+        verify(importUsersResponseObserver).onNext(responseCaptor.capture());
+        verify(importUsersResponseObserver).onCompleted();
+
+        ImportUsersResponse response = responseCaptor.getValue();
+        assertThat(response.getReceivedCount()).isEqualTo(2503);
+        assertThat(response.getImportedCount()).isEqualTo(2500);
+        assertThat(response.getFailedCount()).isEqualTo(3);
+        assertThat(response.getErrorsList()).extracting(ImportRowError::getRow).containsExactly(2500L, 2501L, 2502L);
+        assertThat(response.getErrors(0).getError().getFieldErrorsList())
+                .anyMatch(error -> error.getField().equals("username"));
+        assertThat(response.getErrors(2).getError().getFieldErrorsList())
+                .anyMatch(error -> error.getField().equals("email") &&
+                         error.getMessage().equals("Invalid email format"));
+
+        userService.authenticateUser(AuthenticateUserRequest.newBuilder()
+                .setEmail("imported42@example.com")
+                .setPassword("password123")
+                .build(), authenticateUserResponseObserver);
+        ArgumentCaptor<AuthenticateUserResponse> authCaptor = ArgumentCaptor.forClass(AuthenticateUserResponse.class);
+        verify(authenticateUserResponseObserver).onNext(authCaptor.capture());
+        assertThat(authCaptor.getValue().getUser().getUsername()).isEqualTo("imported42");
+    }
+
+    @Test
+    void shouldAuthenticateUserImportedWithPreHashedPassword() {
+        String passwordHash = PasswordHashes.encode("s3cret-pass", "0123456789abcdef".getBytes(), 1000);
+
+        StreamObserver<ImportUsersRequest> importStream = userService.importUsers(importUsersResponseObserver);
+        importStream.onNext(ImportUsersRequest.newBuilder()
+                .setUser(CreateUserRequest.newBuilder()
+                        .setUsername("hashed")
+                        .setEmail("hashed@example.com")
+                        .setFirstName("Hashed")
+                        .setLastName("User"))
+                .setPasswordHash(passwordHash)
+                .build());
+        importStream.onCompleted();
+
+        ArgumentCaptor<ImportUsersResponse> responseCaptor = ArgumentCaptor.forClass(ImportUsersResponse.class);
+        verify(importUsersResponseObserver).onNext(responseCaptor.capture());
+        assertThat(responseCaptor.getValue().getImportedCount()).isEqualTo(1);
+
+        userService.authenticateUser(AuthenticateUserRequest.newBuilder()
+                .setEmail("hashed@example.com")
+                .setPassword("wrong-pass")
+                .build(), authenticateUserResponseObserver);
+        userService.authenticateUser(AuthenticateUserRequest.newBuilder()
+                .setEmail("hashed@example.com")
+                .setPassword("s3cret-pass")
+                .build(), authenticateUserResponseObserver);
+
+        ArgumentCaptor<AuthenticateUserResponse> authCaptor = ArgumentCaptor.forClass(AuthenticateUserResponse.class);
+        verify(authenticateUserResponseObserver, times(2)).onNext(authCaptor.capture());
+        assertThat(authCaptor.getAllValues().get(0).hasError()).isTrue();
+        assertThat(authCaptor.getAllValues().get(1).getUser().getUsername()).isEqualTo("hashed");
+    }
+
+    @Test
+    void shouldRejectImportedHashesOutsideTheCostBounds() {
+        String salt = Base64.getEncoder().encodeToString("0123456789abcdef".getBytes());
+        String hash = Base64.getEncoder().encodeToString(new byte[32]);
+
+        StreamObserver<ImportUsersRequest> importStream = userService.importUsers(importUsersResponseObserver);
+        importStream.onNext(ImportUsersRequest.newBuilder()
+                .setUser(CreateUserRequest.newBuilder()
+                        .setUsername("slowhash")
+                        .setEmail("slowhash@example.com"))
+                .setPasswordHash("pbkdf2-sha256$2147483647$" + salt + "$" + hash)
+                .build());
+        importStream.onNext(ImportUsersRequest.newBuilder()
+                .setUser(CreateUserRequest.newBuilder()
+                        .setUsername("longhash")
+                        .setEmail("longhash@example.com"))
+                .setPasswordHash("pbkdf2-sha256$1000$" + salt + "$"
+                        + Base64.getEncoder().encodeToString(new byte[4096]))
+                .build());
+        importStream.onCompleted();
+
+        ArgumentCaptor<ImportUsersResponse> responseCaptor = ArgumentCaptor.forClass(ImportUsersResponse.class);
+        verify(importUsersResponseObserver).onNext(responseCaptor.capture());
+        assertThat(responseCaptor.getValue().getImportedCount()).isZero();
+        assertThat(responseCaptor.getValue().getErrorsList())
+                .extracting(error -> error.getError().getFieldErrors(0).getField())
+                .containsExactly("password_hash", "password_hash");
+    }
+
+    @Test
+    void shouldRotatePublicKeysAndResolveThemInOneBatch() {
+        String aliceId = createUser("alice");
+        String bobId = createUser("bob");
+        createUser("carol");
+
+        userService.registerPublicKey(publicKey(aliceId, "a-1", false), registerPublicKeyResponseObserver);
+        userService.registerPublicKey(publicKey(aliceId, "a-2", true), registerPublicKeyResponseObserver);
+        userService.registerPublicKey(publicKey(bobId, "b-1", false), registerPublicKeyResponseObserver);
+
+        ArgumentCaptor<RegisterPublicKeyResponse> registerCaptor =
+                ArgumentCaptor.forClass(RegisterPublicKeyResponse.class);
+        verify(registerPublicKeyResponseObserver, times(3)).onNext(registerCaptor.capture());
+        User rotated = registerCaptor.getAllValues().get(1).getUser();
+        assertThat(rotated.getPublicKeysList()).extracting(PublicKey::getKeyId).containsExactly("a-1", "a-2");
+        assertThat(rotated.getPublicKeys(0).hasRetiredAt()).isTrue();
+        assertThat(rotated.getPublicKeys(1).hasRetiredAt()).isFalse();
+
+        userService.getPublicKeys(GetPublicKeysRequest.newBuilder()
+                .addUserIds(aliceId)
+                .addUserIds("no-such-id")
+                .addUsernames("BOB")
+                .addUsernames("carol")
+                .addUsernames("alice")
+                .build(), getPublicKeysResponseObserver);
+        userService.getPublicKeys(GetPublicKeysRequest.newBuilder()
+                .addUserIds(aliceId)
+                .setIncludeRetired(true)
+                .build(), getPublicKeysResponseObserver);
+
+        ArgumentCaptor<GetPublicKeysResponse> lookupCaptor = ArgumentCaptor.forClass(GetPublicKeysResponse.class);
+        verify(getPublicKeysResponseObserver, times(2)).onNext(lookupCaptor.capture());
+        PublicKeyBatch batch = lookupCaptor.getAllValues().get(0).getBatch();
+        assertThat(batch.getUsersList()).extracting(UserPublicKeys::getUsername).containsExactly("alice", "bob");
+        assertThat(batch.getUsers(0).getKeysList()).extracting(PublicKey::getKeyId).containsExactly("a-2");
+        assertThat(batch.getMissingList()).containsExactly("no-such-id", "carol");
+        assertThat(lookupCaptor.getAllValues().get(1).getBatch().getUsers(0).getKeysList())
+                .extracting(PublicKey::getKeyId).containsExactly("a-1", "a-2");
+    }
+
+    @Test
+    void shouldRejectDuplicateKeyIdAndForgetKeysOfDeletedUser() {
+        String userId = createUser("dave");
+
+        userService.registerPublicKey(publicKey(userId, "d-1", false), registerPublicKeyResponseObserver);
+        userService.registerPublicKey(publicKey(userId, "d-1", false), registerPublicKeyResponseObserver);
+
+        ArgumentCaptor<RegisterPublicKeyResponse> registerCaptor =
+                ArgumentCaptor.forClass(RegisterPublicKeyResponse.class);
+        verify(registerPublicKeyResponseObserver, times(2)).onNext(registerCaptor.capture());
+        assertThat(registerCaptor.getAllValues().get(1).getValidationError().getFieldErrorsList())
+                .extracting(FieldError::getField).containsExactly("key_id");
+
+        userService.deleteUser(DeleteUserRequest.newBuilder().setId(userId).build(), deleteUserResponseObserver);
+        userService.getPublicKeys(GetPublicKeysRequest.newBuilder().addUserIds(userId).build(),
+                getPublicKeysResponseObserver);
+
+        ArgumentCaptor<GetPublicKeysResponse> lookupCaptor = ArgumentCaptor.forClass(GetPublicKeysResponse.class);
+        verify(getPublicKeysResponseObserver).onNext(lookupCaptor.capture());
+        assertThat(lookupCaptor.getValue().getBatch().getUsersList()).isEmpty();
+        assertThat(lookupCaptor.getValue().getBatch().getMissingList()).containsExactly(userId);
+    }
+
+    @Test
+    void shouldKeepKeysRegisteredWhileTheUserIsUpdated() throws Exception {
+        String userId = createUser("erin");
+        // At most 16 keys may be active, so the updates outnumber the registrations.
+        int keys = 16;
+        int updateCount = 200;
+
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> registrations = writers.submit(() -> {
+                for (int i = 0; i < keys; i++) {
+                    userService.registerPublicKey(publicKey(userId, "e-" + i, false),
+                            registerPublicKeyResponseObserver);
+                }
+            });
+            Future<?> updates = writers.submit(() -> {
+                for (int i = 0; i < updateCount; i++) {
+                    userService.updateUser(UpdateUserRequest.newBuilder()
+                            .setId(userId)
+                            .setFirstName("Erin" + i)
+                            .build(), updateUserResponseObserver);
+                }
+            });
+            registrations.get(30, TimeUnit.SECONDS);
+            updates.get(30, TimeUnit.SECONDS);
+        } finally {
+            writers.shutdownNow();
+        }
+
+        userService.getPublicKeys(GetPublicKeysRequest.newBuilder().addUserIds(userId).build(),
+                getPublicKeysResponseObserver);
+
+        ArgumentCaptor<GetPublicKeysResponse> lookupCaptor = ArgumentCaptor.forClass(GetPublicKeysResponse.class);
+        verify(getPublicKeysResponseObserver).onNext(lookupCaptor.capture());
+        assertThat(lookupCaptor.getValue().getBatch().getUsers(0).getKeysList()).hasSize(keys);
+    }
+
+    @Test
+    void shouldSearchUsersAndPageThroughMatches() {
+        createUser("annabel");
+        createUser("joanne");
+        String renamedId = createUser("hannah");
+        createUser("bob");
+        userService.updateUser(UpdateUserRequest.newBuilder()
+                .setId(renamedId)
+                .setUsername("zoe")
+                .setEmail("zoe@example.com")
+                .build(), updateUserResponseObserver);
+
+        userService.searchUsers(SearchUsersRequest.newBuilder()
+                .setQuery("Ann")
+                .setPageSize(1)
+                .build(), searchUsersResponseObserver);
+        userService.searchUsers(SearchUsersRequest.newBuilder()
+                .setQuery("ann")
+                .setPageSize(1)
+                .setPageToken("1")
+                .build(), searchUsersResponseObserver);
+        userService.searchUsers(SearchUsersRequest.newBuilder()
+                .setQuery("an")
+                .build(), searchUsersResponseObserver);
+
+        ArgumentCaptor<SearchUsersResponse> responseCaptor = ArgumentCaptor.forClass(SearchUsersResponse.class);
+        verify(searchUsersResponseObserver, times(3)).onNext(responseCaptor.capture());
+        SearchUsersPage first = responseCaptor.getAllValues().get(0).getPage();
+        assertThat(first.getUsersList()).extracting(User::getUsername).containsExactly("annabel");
+        assertThat(first.getTotalMatches()).isEqualTo(2);
+        assertThat(first.getNextPageToken()).isEqualTo("1");
+        SearchUsersPage second = responseCaptor.getAllValues().get(1).getPage();
+        assertThat(second.getUsersList()).extracting(User::getUsername).containsExactly("joanne");
+        assertThat(second.getNextPageToken()).isEmpty();
+        assertThat(responseCaptor.getAllValues().get(2).getError().getFieldErrorsList())
+                .extracting(FieldError::getField).containsExactly("query");
+    }
+
+    @Test
+    void shouldGetUsersInRequestOrderAndReportMissing() {
+        String first = createUser("first");
+        String second = createUser("second");
+
+        userService.getUsers(GetUsersRequest.newBuilder()
+                .addIds(second)
+                .addIds("missing-id")
+                .addIds(first)
+                .addIds(second)
+                .build(), getUsersResponseObserver);
+
+        ArgumentCaptor<GetUsersResponse> responseCaptor = ArgumentCaptor.forClass(GetUsersResponse.class);
+        verify(getUsersResponseObserver).onNext(responseCaptor.capture());
+        verify(getUsersResponseObserver).onCompleted();
+        UserBatch batch = responseCaptor.getValue().getBatch();
+        assertThat(batch.getUsersList()).extracting(User::getUsername).containsExactly("second", "first");
+        assertThat(batch.getMissingList()).containsExactly("missing-id");
+    }
+
+    @Test
+    void shouldReturnOnlyTheFieldsInTheReadMask() {
+        String userId = createUser("masked");
+        FieldMask usernameOnly = FieldMask.newBuilder().addPaths("username").build();
+
+        userService.getUser(GetUserRequest.newBuilder()
+                .setId(userId)
+                .setReadMask(usernameOnly)
+                .build(), getUserResponseObserver);
+        userService.getUser(GetUserRequest.newBuilder()
+                .setId(userId)
+                .setReadMask(FieldMask.newBuilder().addPaths("password"))
+                .build(), getUserResponseObserver);
+        userService.getUsers(GetUsersRequest.newBuilder()
+                .addIds(userId)
+                .setReadMask(usernameOnly.toBuilder().addPaths("id"))
+                .build(), getUsersResponseObserver);
+
+        ArgumentCaptor<GetUserResponse> responseCaptor = ArgumentCaptor.forClass(GetUserResponse.class);
+        verify(getUserResponseObserver, times(2)).onNext(responseCaptor.capture());
+        assertThat(responseCaptor.getAllValues().get(0).getUser())
+                .isEqualTo(User.newBuilder().setUsername("masked").build());
+        assertThat(responseCaptor.getAllValues().get(1).getValidationError().getFieldErrorsList())
+                .extracting(FieldError::getField).containsExactly("read_mask");
+        ArgumentCaptor<GetUsersResponse> batchCaptor = ArgumentCaptor.forClass(GetUsersResponse.class);
+        verify(getUsersResponseObserver).onNext(batchCaptor.capture());
+        assertThat(batchCaptor.getValue().getBatch().getUsersList())
+                .containsExactly(User.newBuilder().setId(userId).setUsername("masked").build());
+    }
+
+    @Test
+    void shouldUpdateExactlyTheFieldsInTheUpdateMask() {
+        String userId = createUser("maskupdate");
+
+        userService.updateUser(UpdateUserRequest.newBuilder()
+                .setId(userId)
+                .setFirstName("Renamed")
+                .setUsername("ignored")
+                .setUpdateMask(FieldMask.newBuilder().addPaths("first_name").addPaths("last_name"))
+                .build(), updateUserResponseObserver);
+        userService.updateUser(UpdateUserRequest.newBuilder()
+                .setId(userId)
+                .setUpdateMask(FieldMask.newBuilder().addPaths("created_at"))
+                .build(), updateUserResponseObserver);
+
+        ArgumentCaptor<UpdateUserResponse> responseCaptor = ArgumentCaptor.forClass(UpdateUserResponse.class);
+        verify(updateUserResponseObserver, times(2)).onNext(responseCaptor.capture());
+        User updated = responseCaptor.getAllValues().get(0).getUser();
+        assertThat(updated.getUsername()).isEqualTo("maskupdate");
+        assertThat(updated.getFirstName()).isEqualTo("Renamed");
+        assertThat(updated.getLastName()).isEmpty();
+        assertThat(responseCaptor.getAllValues().get(1).getValidationError().getFieldErrorsList())
+                .extracting(FieldError::getField).containsExactly("update_mask");
+    }
+
+    @Test
+    void shouldValidateMaskedFieldsThatAreUnsetOrInvalid() {
+        String userId = createUser("maskvalidate");
+
+        userService.updateUser(UpdateUserRequest.newBuilder()
+                .setId(userId)
+                .setUpdateMask(FieldMask.newBuilder().addPaths("username"))
+                .build(), updateUserResponseObserver);
+        userService.updateUser(UpdateUserRequest.newBuilder()
+                .setId(userId)
+                .setUpdateMask(FieldMask.newBuilder().addPaths("email"))
+                .build(), updateUserResponseObserver);
+        userService.updateUser(UpdateUserRequest.newBuilder()
+                .setId(userId)
+                .setEmail("not-an-email")
+                .setUpdateMask(FieldMask.newBuilder().addPaths("email"))
+                .build(), updateUserResponseObserver);
+
+        ArgumentCaptor<UpdateUserResponse> responseCaptor = ArgumentCaptor.forClass(UpdateUserResponse.class);
+        verify(updateUserResponseObserver, times(3)).onNext(responseCaptor.capture());
+        assertThat(responseCaptor.getAllValues())
+                .extracting(response -> response.getValidationError().getFieldErrors(0).getMessage())
+                .containsExactly("Username cannot be empty", "Email cannot be empty", "Invalid email format");
+    }
+
+    @Test
+    void shouldAnswerNotModifiedUntilTheUserChanges() {
+        String userId = createUser("cached");
+        userService.getUser(GetUserRequest.newBuilder().setId(userId).build(), getUserResponseObserver);
+        ArgumentCaptor<GetUserResponse> responseCaptor = ArgumentCaptor.forClass(GetUserResponse.class);
+        verify(getUserResponseObserver).onNext(responseCaptor.capture());
+        Timestamp cachedAt = responseCaptor.getValue().getUser().getUpdatedAt();
+
+        userService.getUser(GetUserRequest.newBuilder()
+                .setId(userId)
+                .setIfModifiedSince(cachedAt)
+                .build(), getUserResponseObserver);
+        userService.updateUser(UpdateUserRequest.newBuilder()
+                .setId(userId)
+                .setFirstName("Changed")
+                .build(), updateUserResponseObserver);
+        userService.getUser(GetUserRequest.newBuilder()
+                .setId(userId)
+                .setIfModifiedSince(cachedAt)
+                .build(), getUserResponseObserver);
+
+        ArgumentCaptor<GetUserResponse> revalidationCaptor = ArgumentCaptor.forClass(GetUserResponse.class);
+        verify(getUserResponseObserver, times(3)).onNext(revalidationCaptor.capture());
+        GetUserResponse unchanged = revalidationCaptor.getAllValues().get(1);
+        assertThat(unchanged.hasNotModified()).isTrue();
+        assertThat(unchanged.getNotModified().getUpdatedAt()).isEqualTo(cachedAt);
+        assertThat(unchanged.getSerializedSize()).isLessThan(20);
+        GetUserResponse changed = revalidationCaptor.getAllValues().get(2);
+        assertThat(changed.getUser().getFirstName()).isEqualTo("Changed");
+        assertThat(meterRegistry.counter("data.user.get.conditional", "result", "not_modified").count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.counter("data.user.get.conditional", "result", "modified").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldReleaseClaimsWhenTheStoreWriteFails() {
+        AtomicBoolean full = new AtomicBoolean();
+        HeapUserStore store = new HeapUserStore() {
+            @Override
+            public boolean put(User user) {
+                if (full.get()) {
+                    throw new StoreFullException("full");
+                }
+                return super.put(user);
+            }
+        };
+        userService = new UserServiceImpl(meterRegistry, new ExportProperties(Path.of("exports"), true), store,
+                ObservationRegistry.NOOP, StreamEncryption.disabled());
+        String userId = createUser("before");
+        full.set(true);
+
+        userService.createUser(CreateUserRequest.newBuilder()
+                .setUsername("doomed")
+                .setEmail("doomed@example.com")
+                .setPassword("password123")
+                .build(), createUserResponseObserver);
+        userService.updateUser(UpdateUserRequest.newBuilder()
+                .setId(userId)
+                .setUsername("after")
+                .build(), updateUserResponseObserver);
+
+        verify(createUserResponseObserver).onError(any(StoreFullException.class));
+        verify(updateUserResponseObserver).onError(any(StoreFullException.class));
+        assertThat(store.findIdByUsername("doomed")).isNull();
+        assertThat(store.findIdByEmail("doomed@example.com")).isNull();
+        assertThat(store.findIdByUsername("after")).isNull();
+        assertThat(store.findIdByUsername("before")).isEqualTo(userId);
+    }
+
+    @Test
+    void shouldStampUpdatesStrictlyAfterThePreviousVersion() {
+        Timestamp previous = Timestamp.newBuilder().setSeconds(2_000).setNanos(999_999_999).build();
+
+        assertThat(UserServiceImpl.nextUpdatedAt(previous, Instant.ofEpochSecond(1_000)))
+                .isEqualTo(Timestamp.newBuilder().setSeconds(2_001).setNanos(0).build());
+        assertThat(UserServiceImpl.nextUpdatedAt(previous, Instant.ofEpochSecond(2_000, 999_999_999)))
+                .isEqualTo(Timestamp.newBuilder().setSeconds(2_001).setNanos(0).build());
+        assertThat(UserServiceImpl.nextUpdatedAt(previous, Instant.ofEpochSecond(3_000, 5)))
+                .isEqualTo(Timestamp.newBuilder().setSeconds(3_000).setNanos(5).build());
+    }
+
+    private String createUser(String username) {
+        List<CreateUserResponse> responses = new ArrayList<>();
+        userService.createUser(CreateUserRequest.newBuilder()
+                .setUsername(username)
+                .setEmail(username + "@example.com")
+                .setPassword("password123")
+                .setFirstName("Key")
+                .setLastName("Holder")
+                .build(), new StreamObserver<>() {
+                    @Override
+                    public void onNext(CreateUserResponse response) {
+                        responses.add(response);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+        return responses.getFirst().getUser().getId();
+    }
+
+    private static RegisterPublicKeyRequest publicKey(String userId, String keyId, boolean retireOthers) {
+        return RegisterPublicKeyRequest.newBuilder()
+                .setUserId(userId)
+                .setKeyId(keyId)
+                .setAlgorithm("X25519")
+                .setKey(ByteString.copyFromUtf8("public-key-" + keyId))
+                .setRetireOthers(retireOthers)
+                .build();
+    }
+
+    private static ImportUsersRequest importRow(String username, String email) {
+        return ImportUsersRequest.newBuilder()
+                .setUser(CreateUserRequest.newBuilder()
+                        .setUsername(username)
+                        .setEmail(email)
+                        .setPassword("password123")
+                        .setFirstName("Imported")
+                        .setLastName("User"))
+                .build();
+    }
 }
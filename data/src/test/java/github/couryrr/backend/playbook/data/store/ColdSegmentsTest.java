@@ -0,0 +1,134 @@
+package github.couryrr.backend.playbook.data.store;
+
+import github.couryrr.backend.playbook.data.crypto.RecordEncryption;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ColdSegmentsTest {
+
+    private static final long SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReadBackUsersAcrossSegments() throws IOException {
+        try (ColdSegments segments = ColdSegments.open(directory, SEGMENT_SIZE)) {
+            List<Long> addresses = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                addresses.add(segments.write(user(i)));
+            }
+
+            assertThat(segments.segmentCount()).isGreaterThan(1);
+            for (int i = 0; i < 100; i++) {
+                assertThat(segments.read(addresses.get(i))).isEqualTo(user(i));
+            }
+            assertThat(segments.liveBytes()).isEqualTo(segments.diskBytes());
+        }
+    }
+
+    @Test
+    void shouldReportSealedSegmentsThatAreMostlyReleasedAsSparse() throws IOException {
+        try (ColdSegments segments = ColdSegments.open(directory, SEGMENT_SIZE)) {
+            List<Long> addresses = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                addresses.add(segments.write(user(i)));
+            }
+            assertThat(segments.isSparse(addresses.getFirst())).isFalse();
+
+            for (int i = 0; i < 100; i++) {
+                if (i % 3 != 0) {
+                    segments.release(addresses.get(i));
+                }
+            }
+
+            assertThat(segments.isSparse(addresses.getFirst())).isTrue();
+            assertThat(segments.isSparse(addresses.getLast())).isFalse();
+            assertThat(segments.read(addresses.getFirst())).isEqualTo(user(0));
+        }
+    }
+
+    @Test
+    void shouldDeleteSealedSegmentsOnceEveryRecordIsReleased() throws IOException {
+        try (ColdSegments segments = ColdSegments.open(directory, SEGMENT_SIZE)) {
+            List<Long> addresses = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                addresses.add(segments.write(user(i)));
+            }
+
+            addresses.forEach(segments::release);
+
+            assertThat(segments.liveBytes()).isZero();
+            assertThat(segments.segmentCount()).isEqualTo(1);
+            assertThat(segments.read(addresses.getFirst())).isNull();
+            assertThat(countFiles()).isEqualTo(1);
+        }
+        assertThat(countFiles()).isZero();
+    }
+
+    @Test
+    void shouldRefuseRecordsTooLargeToAddress() throws IOException {
+        try (ColdSegments segments = ColdSegments.open(directory, SEGMENT_SIZE)) {
+            User large = user(1).toBuilder().setFirstName("x".repeat(ColdSegments.MAX_RECORD_BYTES)).build();
+
+            assertThat(segments.write(large)).isEqualTo(ColdSegments.NO_ADDRESS);
+            assertThat(segments.diskBytes()).isZero();
+        }
+    }
+
+    @Test
+    void shouldWriteNoUserInTheClearWhenEncrypted() throws IOException {
+        try (ColdSegments segments = ColdSegments.open(directory, SEGMENT_SIZE, RecordEncryption.ephemeral())) {
+            List<Long> addresses = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                addresses.add(segments.write(user(i)));
+            }
+
+            for (int i = 0; i < 100; i++) {
+                assertThat(segments.read(addresses.get(i))).isEqualTo(user(i));
+            }
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    assertThat(new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1))
+                        .doesNotContain("@example.com");
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldClearSegmentsLeftByAnEarlierProcess() throws IOException {
+        Files.writeString(directory.resolve("00007.cold"), "stale");
+
+        try (ColdSegments segments = ColdSegments.open(directory, SEGMENT_SIZE)) {
+            assertThat(directory.resolve("00007.cold")).doesNotExist();
+            assertThat(segments.segmentCount()).isEqualTo(1);
+        }
+    }
+
+    private long countFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static User user(int i) {
+        return User.newBuilder()
+            .setId("id-" + i)
+            .setUsername("user" + i)
+            .setEmail("user" + i + "@example.com")
+            .setFirstName("First")
+            .setLastName("Last")
+            .build();
+    }
+}
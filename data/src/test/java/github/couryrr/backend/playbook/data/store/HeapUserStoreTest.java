@@ -0,0 +1,198 @@
+package github.couryrr.backend.playbook.data.store;
+
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+
+class HeapUserStoreTest {
+
+    private final HeapUserStore store = new HeapUserStore();
+
+    @TempDir
+    Path coldDirectory;
+
+    @Test
+    void shouldReadSnapshotAsOfWhenItWasTaken() {
+        store.put(user("id-1", "alice"));
+        store.put(user("id-2", "bob"));
+
+        try (UserSnapshot snapshot = store.snapshot()) {
+            store.put(user("id-1", "alicia"));
+            store.put(user("id-3", "carol"));
+            store.delete("id-2", Timestamp.newBuilder().setSeconds(1_000).build());
+
+            assertThat(snapshot.get("id-1").getUsername()).isEqualTo("alice");
+            assertThat(snapshot.get("id-2").getUsername()).isEqualTo("bob");
+            assertThat(snapshot.get("id-3")).isNull();
+            assertThat(snapshot.users()).extracting(User::getUsername).containsExactlyInAnyOrder("alice", "bob");
+        }
+        assertThat(store.users()).extracting(User::getUsername).containsExactlyInAnyOrder("alicia", "carol");
+    }
+
+    @Test
+    void shouldCollectOldVersionsOnceNoSnapshotNeedsThem() {
+        store.put(user("id-1", "alice"));
+        store.put(user("id-1", "alicia"));
+        assertThat(versions().entries()).isZero();
+
+        UserSnapshot snapshot = store.snapshot();
+        store.put(user("id-1", "alex"));
+        store.put(user("id-1", "alexa"));
+        assertThat(versions().entries()).isPositive();
+        assertThat(snapshot.get("id-1").getUsername()).isEqualTo("alicia");
+
+        snapshot.close();
+        assertThat(versions().entries()).isZero();
+        assertThat(versions().estimatedBytes()).isZero();
+        assertThat(store.get("id-1").getUsername()).isEqualTo("alexa");
+    }
+
+    @Test
+    void shouldNotPurgeTombstonesAnOpenSnapshotPredates() {
+        store.put(user("id-1", "alice"));
+        UserSnapshot snapshot = store.snapshot();
+        store.delete("id-1", Timestamp.newBuilder().setSeconds(1_000).build());
+
+        assertThat(store.purgeTombstones(Instant.ofEpochSecond(2_000), 10).tombstonesPurged()).isZero();
+        assertThat(snapshot.get("id-1").getUsername()).isEqualTo("alice");
+
+        snapshot.close();
+        assertThat(store.purgeTombstones(Instant.ofEpochSecond(2_000), 10).tombstonesPurged()).isEqualTo(1);
+        assertThat(versions().entries()).isZero();
+    }
+
+    @Test
+    void shouldSeeEveryWriteOfAConcurrentWriterOrNone() throws InterruptedException {
+        store.put(user("id-1", "gen0"));
+        store.put(user("id-2", "gen0"));
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (int generation = 1; running.get(); generation++) {
+                store.put(user("id-1", "gen" + generation));
+                store.put(user("id-2", "gen" + generation));
+            }
+        });
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                try (UserSnapshot snapshot = store.snapshot()) {
+                    int first = generation(snapshot.get("id-1"));
+                    int second = generation(snapshot.get("id-2"));
+                    assertThat(second).isIn(first, first - 1);
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+        assertThat(versions().entries()).isZero();
+    }
+
+    @Test
+    void shouldSpillColdUsersAndFaultThemBackIn() throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (HeapUserStore tiered = new HeapUserStore(50_000, coldDirectory, 4096, meterRegistry)) {
+            for (int i = 0; i < 1000; i++) {
+                tiered.put(user("id-" + i, "user" + i));
+            }
+
+            assertThat(meterRegistry.get("data.store.tiered.cold_users").gauge().value()).isGreaterThan(800);
+            for (int i = 0; i < 1000; i++) {
+                assertThat(tiered.get("id-" + i)).isEqualTo(user("id-" + i, "user" + i));
+            }
+            for (int round = 0; round < 10; round++) {
+                tiered.get("id-1");
+            }
+
+            assertThat(meterRegistry.get("data.store.tiered.reads").tag("tier", "disk").counter().count())
+                .isGreaterThan(800);
+            assertThat(meterRegistry.get("data.store.tiered.reads").tag("tier", "memory").counter().count())
+                .isGreaterThanOrEqualTo(9);
+            assertThat(meterRegistry.get("data.store.tiered.cold_fault").timer().count()).isGreaterThan(800);
+            assertThat(tiered.users()).hasSize(1000);
+            assertThat(tiered.size()).isEqualTo(1000);
+        }
+    }
+
+    @Test
+    void shouldKeepSpilledVersionsReadableBySnapshotsAndDeletes() throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (HeapUserStore tiered = new HeapUserStore(20_000, coldDirectory, 4096, meterRegistry)) {
+            for (int i = 0; i < 500; i++) {
+                tiered.put(user("id-" + i, "gen0"));
+            }
+
+            try (UserSnapshot snapshot = tiered.snapshot()) {
+                for (int i = 0; i < 500; i++) {
+                    tiered.put(user("id-" + i, "gen1"));
+                }
+                assertThat(snapshot.users()).extracting(User::getUsername).containsOnly("gen0").hasSize(500);
+                assertThat(snapshot.get("id-7").getUsername()).isEqualTo("gen0");
+            }
+            for (int i = 0; i < 500; i++) {
+                assertThat(tiered.delete("id-" + i, Timestamp.newBuilder().setSeconds(1_000).build()))
+                    .extracting(User::getUsername).isEqualTo("gen1");
+            }
+            tiered.purgeTombstones(Instant.ofEpochSecond(2_000), 1000);
+
+            assertThat(tiered.size()).isZero();
+            assertThat(meterRegistry.get("data.store.tiered.disk_live_bytes").gauge().value()).isZero();
+            assertThat(meterRegistry.get("data.store.tiered.segments").gauge().value()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void shouldKeepPublishingAfterADeleteFailsToReadItsSpilledUser() throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HeapUserStore tiered = new HeapUserStore(20_000, coldDirectory, 4096, meterRegistry);
+        for (int i = 0; i < 500; i++) {
+            tiered.put(user("id-" + i, "user" + i));
+        }
+        tiered.close();
+
+        int failed = 0;
+        for (int i = 0; i < 500; i++) {
+            try {
+                tiered.delete("id-" + i, Timestamp.newBuilder().setSeconds(1_000).build());
+            } catch (RuntimeException e) {
+                failed++;
+            }
+        }
+
+        assertThat(failed).isPositive();
+        assertThat(CompletableFuture.supplyAsync(() -> tiered.put(user("id-new", "fresh"))))
+            .succeedsWithin(Duration.ofSeconds(5))
+            .isEqualTo(true);
+    }
+
+    private StructureFootprint versions() {
+        return store.footprint().stream()
+            .filter(structure -> structure.name().equals("versions"))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private static int generation(User user) {
+        return Integer.parseInt(user.getUsername().substring(3));
+    }
+
+    private static User user(String id, String username) {
+        return User.newBuilder()
+            .setId(id)
+            .setUsername(username)
+            .setEmail(username + "@example.com")
+            .setFirstName("First")
+            .setLastName("Last")
+            .build();
+    }
+}
@@ -0,0 +1,139 @@
+package github.couryrr.backend.playbook.data.store;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+class StoreInspectorTest {
+
+    @TempDir
+    Path coldDirectory;
+
+    private HeapUserStore store;
+    private SimpleMeterRegistry meterRegistry;
+    private StoreProperties properties;
+    private StoreInspector inspector;
+
+    @BeforeEach
+    void setUp() {
+        store = new HeapUserStore();
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new StoreProperties(StoreProperties.Mode.HEAP,
+            new StoreProperties.OffHeap(DataSize.ofMegabytes(64), 1024, DataSize.ofGigabytes(4), DataSize.ofGigabytes(1)),
+            new StoreProperties.Tiered(DataSize.ofMegabytes(256), Path.of("cold-users"), DataSize.ofMegabytes(64)),
+            new StoreProperties.Inspection(Duration.ofSeconds(1), 2),
+            new StoreProperties.Compaction(Duration.ofSeconds(1), Duration.ofMinutes(10), 1000));
+        inspector = new StoreInspector(store, properties, meterRegistry);
+    }
+
+    @Test
+    void shouldReportConsistentStoreAfterFullPass() {
+        addUser("id-1", "alice");
+        addUser("id-2", "bob");
+
+        assertThat(inspector.lastReport()).isNull();
+        runPass();
+
+        StoreInspector.ConsistencyReport report = inspector.lastReport();
+        assertThat(report.pass()).isEqualTo(1);
+        assertThat(report.usersChecked()).isEqualTo(2);
+        assertThat(report.missingUsernameClaims()).isZero();
+        assertThat(report.orphanedUsernameClaims()).isZero();
+        assertThat(report.orphanedEmailClaims()).isZero();
+    }
+
+    @Test
+    void shouldReportUsersWhoseKeysAreNotClaimed() {
+        store.put(user("id-1", "alice"));
+        store.claimUsername("alice", "id-1");
+
+        runPass();
+
+        assertThat(inspector.lastReport().missingUsernameClaims()).isZero();
+        assertThat(inspector.lastReport().missingEmailClaims()).isEqualTo(1);
+        assertThat(meterRegistry.get("data.store.inconsistencies").tag("kind", "missing_email_claim").gauge().value())
+            .isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldOnlyReportOrphanedClaimsSeenInConsecutivePasses() {
+        addUser("id-1", "alice");
+        store.claimUsername("left-behind", "id-1");
+        store.claimEmail("gone@example.com", "id-9");
+
+        runPass();
+        assertThat(inspector.lastReport().orphanedUsernameClaims()).isZero();
+        assertThat(inspector.lastReport().orphanedEmailClaims()).isZero();
+
+        runPass();
+        assertThat(inspector.lastReport().pass()).isEqualTo(2);
+        assertThat(inspector.lastReport().orphanedUsernameClaims()).isEqualTo(1);
+        assertThat(inspector.lastReport().orphanedEmailClaims()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldExposeFootprintAsGauges() {
+        addUser("id-1", "alice");
+
+        assertThat(meterRegistry.get("data.store.entries").tag("structure", "users").gauge().value())
+            .isEqualTo(1.0);
+        assertThat(meterRegistry.get("data.store.estimated_bytes").tag("structure", "usernameToId").gauge().value())
+            .isPositive();
+
+        store.releaseUsername("alice", "id-1");
+        assertThat(meterRegistry.get("data.store.estimated_bytes").tag("structure", "usernameToId").gauge().value())
+            .isZero();
+    }
+
+    @Test
+    void shouldNotFaultSpilledUsersBackIn() throws IOException {
+        SimpleMeterRegistry tieredRegistry = new SimpleMeterRegistry();
+        try (HeapUserStore tiered = new HeapUserStore(20_000, coldDirectory, 4096, tieredRegistry)) {
+            store = tiered;
+            inspector = new StoreInspector(tiered, properties, new SimpleMeterRegistry());
+            for (int i = 0; i < 300; i++) {
+                addUser("id-" + i, "user" + i);
+            }
+            double spilled = tieredRegistry.get("data.store.tiered.cold_users").gauge().value();
+            assertThat(spilled).isPositive();
+
+            runPass();
+
+            assertThat(inspector.lastReport().usersChecked()).isEqualTo(300);
+            assertThat(inspector.lastReport().missingEmailClaims()).isZero();
+            assertThat(inspector.lastReport().orphanedEmailClaims()).isZero();
+            assertThat(tieredRegistry.get("data.store.tiered.cold_fault").timer().count()).isZero();
+            assertThat(tieredRegistry.get("data.store.tiered.cold_users").gauge().value()).isEqualTo(spilled);
+        }
+    }
+
+    private void runPass() {
+        long before = inspector.lastReport() == null ? 0 : inspector.lastReport().pass();
+        while (inspector.lastReport() == null || inspector.lastReport().pass() == before) {
+            inspector.inspect();
+        }
+    }
+
+    private void addUser(String id, String username) {
+        store.claimUsername(username, id);
+        store.claimEmail(username + "@example.com", id);
+        store.put(user(id, username));
+    }
+
+    private static User user(String id, String username) {
+        return User.newBuilder()
+            .setId(id)
+            .setUsername(username)
+            .setEmail(username + "@example.com")
+            .build();
+    }
+}
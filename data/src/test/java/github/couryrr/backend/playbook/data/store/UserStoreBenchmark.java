@@ -0,0 +1,80 @@
+package github.couryrr.backend.playbook.data.store;
+
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import github.couryrr.backend.playbook.data.store.offheap.OffHeapUserStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares heap footprint, GC time and read latency of the heap and off-heap stores.
+ * Run with {@code ./mvnw test -Dtest=UserStoreBenchmark -Dbenchmark=true [-Dbenchmark.users=N]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UserStoreBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+    private static final int READS = 1_000_000;
+
+    @Test
+    void compareHeapAndOffHeapStores() {
+        report("heap", new HeapUserStore());
+        report("off-heap", new OffHeapUserStore(64 << 20, USERS));
+    }
+
+    private static void report(String name, UserStore store) {
+        try (store) {
+            long heapBefore = usedHeapAfterGc();
+            long gcBefore = totalGcMillis();
+
+            for (int i = 0; i < USERS; i++) {
+                String id = "user-" + i;
+                store.claimUsername("user" + i, id);
+                store.claimEmail("user" + i + "@example.com", id);
+                store.put(User.newBuilder()
+                    .setId(id)
+                    .setUsername("user" + i)
+                    .setEmail("user" + i + "@example.com")
+                    .setFirstName("First" + (i % 1000))
+                    .setLastName("Last" + (i % 5000))
+                    .build());
+            }
+
+            Random random = new Random(7);
+            long[] latencies = new long[READS];
+            for (int i = 0; i < READS; i++) {
+                String id = "user-" + random.nextInt(USERS);
+                long start = System.nanoTime();
+                store.get(id);
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+
+            long heapAfter = usedHeapAfterGc();
+            long gcAfter = totalGcMillis();
+            System.out.printf("%-8s users=%d retainedHeap=%dMB gcTime=%dms p50=%dns p99=%dns p99.9=%dns%n",
+                name, USERS, (heapAfter - heapBefore) >> 20, gcAfter - gcBefore,
+                latencies[READS / 2], latencies[(int) (READS * 0.99)], latencies[(int) (READS * 0.999)]);
+            if (store instanceof OffHeapUserStore offHeap) {
+                System.out.printf("%-8s offHeap=%dMB%n", name, offHeap.offHeapBytes() >> 20);
+            }
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,70 @@
+package github.couryrr.backend.playbook.data.store.offheap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OffHeapHashIndexTest {
+
+    private final OffHeapHashIndex index = new OffHeapHashIndex(16);
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    @Test
+    void shouldStoreAndReplaceValues() {
+        assertThat(index.put(42, 1, value -> true)).isEqualTo(OffHeapHashIndex.NOT_FOUND);
+        assertThat(index.put(42, 2, value -> true)).isEqualTo(1);
+
+        assertThat(index.get(42, value -> true)).isEqualTo(2);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepCollidingKeysApartThroughMatcher() {
+        index.put(7, 100, value -> value == 100);
+        index.put(7, 200, value -> value == 200);
+
+        assertThat(index.get(7, value -> value == 100)).isEqualTo(100);
+        assertThat(index.get(7, value -> value == 200)).isEqualTo(200);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFindRemainingEntriesAfterRemovalFromProbeChain() {
+        // Same home slot for all three, so they form one probe chain.
+        index.put(5, 1, value -> value == 1);
+        index.put(5, 2, value -> value == 2);
+        index.put(5, 3, value -> value == 3);
+
+        assertThat(index.remove(5, value -> value == 1)).isTrue();
+
+        assertThat(index.get(5, value -> value == 1)).isEqualTo(OffHeapHashIndex.NOT_FOUND);
+        assertThat(index.get(5, value -> value == 2)).isEqualTo(2);
+        assertThat(index.get(5, value -> value == 3)).isEqualTo(3);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldGrowPastInitialCapacity() {
+        for (long i = 1; i <= 10_000; i++) {
+            long value = i;
+            index.put(OffHeapHashIndex.hash(Long.toString(i).getBytes()), value, candidate -> candidate == value);
+        }
+
+        for (long i = 1; i <= 10_000; i++) {
+            long value = i;
+            assertThat(index.get(OffHeapHashIndex.hash(Long.toString(i).getBytes()), candidate -> candidate == value))
+                .isEqualTo(value);
+        }
+        List<Long> values = new ArrayList<>();
+        index.forEachValue(values::add);
+        assertThat(values).hasSize(10_000);
+    }
+}
@@ -0,0 +1,283 @@
+package github.couryrr.backend.playbook.data.store.offheap;
+
+import com.google.protobuf.Timestamp;
+import github.couryrr.backend.playbook.data.gen.user.v1.User;
+import github.couryrr.backend.playbook.data.store.CompactionResult;
+import github.couryrr.backend.playbook.data.store.StoreFullException;
+import github.couryrr.backend.playbook.data.store.StructureFootprint;
+import github.couryrr.backend.playbook.data.store.UserSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OffHeapUserStoreTest {
+
+    private final OffHeapUserStore store = new OffHeapUserStore(4096, 16);
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void shouldStoreAndParseUsers() {
+        User user = user("id-1", "alice");
+
+        store.put(user);
+
+        assertThat(store.get("id-1")).isEqualTo(user);
+        assertThat(store.get("id-2")).isNull();
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnLatestVersionAfterUpdate() {
+        store.put(user("id-1", "alice"));
+        User renamed = user("id-1", "alicia");
+
+        store.put(renamed);
+
+        assertThat(store.get("id-1")).isEqualTo(renamed);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldClaimAndReleaseKeys() {
+        assertThat(store.claimUsername("alice", "id-1")).isTrue();
+        assertThat(store.claimUsername("alice", "id-2")).isFalse();
+        assertThat(store.findIdByUsername("alice")).isEqualTo("id-1");
+
+        store.releaseUsername("alice", "id-2");
+        assertThat(store.findIdByUsername("alice")).isEqualTo("id-1");
+
+        store.releaseUsername("alice", "id-1");
+        assertThat(store.findIdByUsername("alice")).isNull();
+        assertThat(store.claimEmail("alice@example.com", "id-2")).isTrue();
+        assertThat(store.findIdByEmail("alice@example.com")).isEqualTo("id-2");
+    }
+
+    @Test
+    void shouldSpanChunksAndGrowIndexes() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            users.add(user("id-" + i, "user" + i));
+        }
+
+        store.putAll(users);
+
+        assertThat(store.size()).isEqualTo(2000);
+        for (User user : users) {
+            assertThat(store.get(user.getId())).isEqualTo(user);
+        }
+        assertThat(store.users()).containsExactlyInAnyOrderElementsOf(users);
+    }
+
+    @Test
+    void shouldIterateSnapshotTakenWhenIterationStarted() {
+        store.put(user("id-1", "alice"));
+        store.put(user("id-2", "bob"));
+
+        try (UserSnapshot snapshot = store.snapshot()) {
+            Iterator<User> iterator = snapshot.users().iterator();
+            store.put(user("id-1", "alicia"));
+            store.put(user("id-3", "carol"));
+
+            List<User> seen = new ArrayList<>();
+            iterator.forEachRemaining(seen::add);
+            assertThat(seen).extracting(User::getUsername).containsExactly("alice", "bob");
+        }
+        assertThat(store.users()).extracting(User::getUsername).containsExactlyInAnyOrder("alicia", "bob", "carol");
+    }
+
+    @Test
+    void shouldListClaimsAndReportFootprint() {
+        store.claimUsername("alice", "id-1");
+        store.claimUsername("bob", "id-2");
+        store.claimEmail("alice@example.com", "id-1");
+        store.releaseUsername("bob", "id-2");
+        store.put(user("id-1", "alice"));
+
+        assertThat(store.usernameClaims()).containsExactly(Map.entry("alice", "id-1"));
+        assertThat(store.emailClaims()).containsExactly(Map.entry("alice@example.com", "id-1"));
+        assertThat(store.footprint())
+            .filteredOn(structure -> structure.name().equals("usernameIndex"))
+            .singleElement()
+            .satisfies(structure -> {
+                assertThat(structure.entries()).isEqualTo(1);
+                assertThat(structure.estimatedBytes()).isPositive();
+                assertThat(structure.offHeap()).isTrue();
+            });
+    }
+
+    @Test
+    void shouldHideDeletedUsersUntilPurged() {
+        store.put(user("id-1", "alice"));
+        store.put(user("id-2", "bob"));
+        UserSnapshot earlierSnapshot = store.snapshot();
+        Timestamp deletedAt = Timestamp.newBuilder().setSeconds(1_000).build();
+
+        assertThat(store.delete("id-1", deletedAt)).extracting(User::getUsername).isEqualTo("alice");
+        assertThat(store.delete("id-1", deletedAt)).isNull();
+
+        assertThat(store.get("id-1")).isNull();
+        assertThat(store.put(user("id-1", "alicia"))).isFalse();
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.users()).extracting(User::getId).containsExactly("id-2");
+        assertThat(store.tombstones()).singleElement().satisfies(tombstone -> {
+            assertThat(tombstone.getId()).isEqualTo("id-1");
+            assertThat(tombstone.getDeletedAt()).isEqualTo(deletedAt);
+        });
+        assertThat(earlierSnapshot.users()).extracting(User::getUsername).containsExactly("alice", "bob");
+        earlierSnapshot.close();
+        // Closing the snapshot already freed the version the tombstone replaced.
+        long freedBeforePurge = structure(store, "freeRecords").estimatedBytes();
+        assertThat(freedBeforePurge).isPositive();
+
+        assertThat(store.purgeTombstones(Instant.ofEpochSecond(1_000), 10).tombstonesPurged()).isZero();
+        CompactionResult result = store.purgeTombstones(Instant.ofEpochSecond(1_001), 10);
+
+        assertThat(result.tombstonesPurged()).isEqualTo(1);
+        assertThat(result.bytesReclaimed()).isPositive();
+        assertThat(structure(store, "freeRecords").estimatedBytes()).isEqualTo(freedBeforePurge + result.bytesReclaimed());
+        assertThat(store.tombstones()).isEmpty();
+        assertThat(store.put(user("id-1", "alicia"))).isTrue();
+    }
+
+    @Test
+    void shouldReadPinnedSnapshotAndHoldBackItsTombstones() {
+        store.put(user("id-1", "alice"));
+        store.put(user("id-2", "bob"));
+        Timestamp deletedAt = Timestamp.newBuilder().setSeconds(1_000).build();
+
+        UserSnapshot snapshot = store.snapshot();
+        store.put(user("id-1", "alicia"));
+        store.delete("id-2", deletedAt);
+        store.put(user("id-3", "carol"));
+
+        assertThat(snapshot.get("id-1").getUsername()).isEqualTo("alice");
+        assertThat(snapshot.get("id-2").getUsername()).isEqualTo("bob");
+        assertThat(snapshot.get("id-3")).isNull();
+        assertThat(snapshot.users()).extracting(User::getUsername).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(store.purgeTombstones(Instant.ofEpochSecond(1_001), 10).tombstonesPurged()).isZero();
+        assertThat(snapshot.get("id-2").getUsername()).isEqualTo("bob");
+
+        snapshot.close();
+        assertThat(store.purgeTombstones(Instant.ofEpochSecond(1_001), 10).tombstonesPurged()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReuseTheSpaceOfSupersededVersions() {
+        try (OffHeapUserStore bounded = new OffHeapUserStore(4096, 16, 8192, 4096)) {
+            User last = null;
+            for (int update = 0; update < 1000; update++) {
+                last = user("id-1", "name" + update);
+                bounded.put(last);
+            }
+
+            assertThat(bounded.get("id-1")).isEqualTo(last);
+            assertThat(bounded.users()).containsExactly(last);
+            assertThat(structure(bounded, "records").estimatedBytes()).isEqualTo(4096);
+        }
+    }
+
+    @Test
+    void shouldKeepVersionsAnOpenSnapshotReads() {
+        store.put(user("id-1", "alice"));
+
+        try (UserSnapshot snapshot = store.snapshot()) {
+            for (int update = 0; update < 100; update++) {
+                store.put(user("id-1", "name" + update));
+            }
+
+            assertThat(snapshot.get("id-1").getUsername()).isEqualTo("alice");
+            assertThat(snapshot.users()).extracting(User::getUsername).containsExactly("alice");
+        }
+        store.put(user("id-1", "alicia"));
+
+        assertThat(store.get("id-1").getUsername()).isEqualTo("alicia");
+        assertThat(structure(store, "freeRecords").entries()).isPositive();
+        try (UserSnapshot snapshot = store.snapshot()) {
+            assertThat(snapshot.users()).extracting(User::getUsername).containsExactly("alicia");
+        }
+    }
+
+    @Test
+    void shouldFreeVersionsWrittenUnderASnapshotOnceItCloses() {
+        store.put(user("id-1", "alice"));
+        UserSnapshot snapshot = store.snapshot();
+        for (int update = 0; update < 50; update++) {
+            store.put(user("id-1", "name" + update));
+        }
+        assertThat(structure(store, "freeRecords").entries()).isZero();
+
+        snapshot.close();
+
+        assertThat(structure(store, "freeRecords").entries()).isEqualTo(50);
+        assertThat(store.get("id-1").getUsername()).isEqualTo("name49");
+    }
+
+    @Test
+    void shouldReuseTheSpaceOfReleasedClaims() {
+        try (OffHeapUserStore bounded = new OffHeapUserStore(4096, 16, 4096, 4096)) {
+            for (int i = 0; i < 1000; i++) {
+                assertThat(bounded.claimUsername("user" + i, "id-" + i)).isTrue();
+                bounded.releaseUsername("user" + i, "id-" + i);
+            }
+
+            assertThat(bounded.findIdByUsername("user999")).isNull();
+            assertThatThrownBy(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    bounded.claimUsername("user" + i, "id-" + i);
+                }
+            }).isInstanceOf(StoreFullException.class).hasMessageContaining("4096");
+            assertThat(bounded.findIdByUsername("user0")).isEqualTo("id-0");
+        }
+    }
+
+    @Test
+    void shouldRefuseWritesOnceTheRecordLimitIsReached() {
+        try (OffHeapUserStore bounded = new OffHeapUserStore(4096, 16, 8192, 4096)) {
+            List<User> stored = new ArrayList<>();
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    User next = user("id-" + i, "name" + i);
+                    bounded.put(next);
+                    stored.add(next);
+                }
+            } catch (StoreFullException e) {
+                assertThat(e).hasMessageContaining("8192");
+            }
+
+            assertThat(stored.size()).isBetween(1, 999);
+            assertThat(bounded.users()).containsExactlyInAnyOrderElementsOf(stored);
+            assertThat(bounded.footprint())
+                .filteredOn(structure -> structure.name().equals("records"))
+                .singleElement()
+                .satisfies(structure -> assertThat(structure.estimatedBytes()).isEqualTo(8192));
+        }
+    }
+
+    private static StructureFootprint structure(OffHeapUserStore store, String name) {
+        return store.footprint().stream()
+            .filter(structure -> structure.name().equals(name))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private static User user(String id, String username) {
+        return User.newBuilder()
+            .setId(id)
+            .setUsername(username)
+            .setEmail(username + "@example.com")
+            .setFirstName("First")
+            .setLastName("Last")
+            .build();
+    }
+}
@@ -0,0 +1,69 @@
+package github.couryrr.backend.playbook.data.store.offheap;
+
+import github.couryrr.backend.playbook.data.store.StoreFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RecordArenaTest {
+
+    private final RecordArena arena = new RecordArena(4096, 4096);
+
+    @AfterEach
+    void tearDown() {
+        arena.close();
+    }
+
+    @Test
+    void shouldReuseFreedBlocksOfTheSameSize() {
+        long first = arena.allocate(100);
+        arena.allocate(100);
+        arena.free(first, 100);
+
+        assertThat(arena.freeBytes()).isEqualTo(104);
+        assertThat(arena.allocate(97)).isEqualTo(first);
+        assertThat(arena.freeBytes()).isZero();
+    }
+
+    @Test
+    void shouldSplitLargerBlocksAndKeepTheRestScannable() {
+        long block = arena.allocate(200);
+        long after = arena.allocate(8);
+        arena.free(block, 200);
+
+        long reused = arena.allocate(64);
+        long remainder = reused + 64;
+
+        assertThat(reused).isEqualTo(block);
+        assertThat(RecordArena.isFree(arena.chunk(remainder), RecordArena.offset(remainder))).isTrue();
+        assertThat(RecordArena.freeSize(arena.chunk(remainder), RecordArena.offset(remainder))).isEqualTo(136);
+        assertThat(remainder + 136).isEqualTo(after);
+        assertThat(arena.freeBlocks()).isEqualTo(1);
+        assertThat(arena.freeBytes()).isEqualTo(136);
+    }
+
+    @Test
+    void shouldServeLargeBlocksFirstFit() {
+        long large = arena.allocate(2000);
+        arena.allocate(8);
+        arena.free(large, 2000);
+
+        assertThat(arena.allocate(1500)).isEqualTo(large);
+        assertThat(arena.freeBytes()).isEqualTo(2000 - 1504);
+    }
+
+    @Test
+    void shouldAllocateFromFreedSpaceOnceFull() {
+        long first = arena.allocate(64);
+        assertThatThrownBy(() -> {
+            while (true) {
+                arena.allocate(64);
+            }
+        }).isInstanceOf(StoreFullException.class);
+        arena.free(first, 64);
+
+        assertThat(arena.allocate(64)).isEqualTo(first);
+        assertThat(arena.reservedBytes()).isEqualTo(4096);
+    }
+}
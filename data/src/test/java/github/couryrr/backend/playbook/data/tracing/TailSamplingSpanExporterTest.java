@@ -0,0 +1,103 @@
+package github.couryrr.backend.playbook.data.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TailSamplingSpanExporterTest {
+
+    private final InMemorySpanCollector collector = new InMemorySpanCollector(100);
+    private SdkTracerProvider tracerProvider;
+    private TailSamplingSpanExporter exporter;
+
+    private Tracer tracer(double keepProbability, int maxPendingTraces) {
+        exporter = new TailSamplingSpanExporter(collector.exporter(),
+            new TracingProperties.Tail(true, Duration.ofMillis(250), keepProbability, maxPendingTraces, Duration.ofSeconds(30)));
+        tracerProvider = SdkTracerProvider.builder()
+            .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+            .build();
+        return tracerProvider.get("test");
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracerProvider.close();
+    }
+
+    @Test
+    void dropsFastSuccessfulTraces() {
+        Tracer tracer = tracer(0.0, 100);
+
+        trace(tracer, false, 0);
+
+        assertThat(collector.getFinishedSpans()).isEmpty();
+        assertThat(exporter.pendingTraces()).isZero();
+    }
+
+    @Test
+    void keepsWholeTraceWhenAChildSpanFails() {
+        Tracer tracer = tracer(0.0, 100);
+
+        trace(tracer, true, 0);
+
+        assertThat(collector.getFinishedSpans())
+            .extracting(SpanData::getName)
+            .containsExactly("store-write", "CreateUser");
+    }
+
+    @Test
+    void keepsSlowTraces() {
+        Tracer tracer = tracer(0.0, 100);
+
+        trace(tracer, false, 300);
+
+        assertThat(collector.getFinishedSpans()).hasSize(2);
+    }
+
+    @Test
+    void keepsSampledShareOfOrdinaryTraces() {
+        Tracer tracer = tracer(1.0, 100);
+
+        trace(tracer, false, 0);
+
+        assertThat(collector.getFinishedSpans()).hasSize(2);
+    }
+
+    @Test
+    void evictsOldestTracesWhoseRootNeverFinishes() {
+        Tracer tracer = tracer(1.0, 2);
+
+        for (int i = 0; i < 5; i++) {
+            Span root = tracer.spanBuilder("orphan").startSpan();
+            tracer.spanBuilder("child").setParent(Context.current().with(root)).startSpan().end();
+        }
+
+        assertThat(exporter.pendingTraces()).isEqualTo(2);
+        assertThat(collector.getFinishedSpans()).isEmpty();
+    }
+
+    private static void trace(Tracer tracer, boolean fail, long rootLatencyMillis) {
+        long start = System.nanoTime();
+        Span root = tracer.spanBuilder("CreateUser").setStartTimestamp(start, TimeUnit.NANOSECONDS).startSpan();
+        try (Scope ignored = root.makeCurrent()) {
+            Span child = tracer.spanBuilder("store-write").startSpan();
+            if (fail) {
+                child.setStatus(StatusCode.ERROR);
+            }
+            child.end();
+        }
+        root.end(start + TimeUnit.MILLISECONDS.toNanos(rootLatencyMillis) + 1, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,66 @@
+package github.couryrr.backend.playbook.data.warmup;
+
+import github.couryrr.backend.playbook.data.crypto.StreamEncryption;
+import github.couryrr.backend.playbook.data.store.StoreProperties;
+import io.grpc.protobuf.services.HealthStatusManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceWarmupTest {
+
+    @Mock
+    private ObjectProvider<HealthStatusManager> healthStatusManager;
+
+    @Test
+    void shouldReportOutOfServiceUntilWarmupCompletes() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserServiceWarmup warmup = new UserServiceWarmup(
+                new WarmupProperties(true, 50, Duration.ofSeconds(30)), healthStatusManager, meterRegistry,
+                storeProperties(StoreProperties.Mode.HEAP), StreamEncryption.disabled(), ObservationRegistry.NOOP);
+
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        warmup.run(new DefaultApplicationArguments());
+
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(warmup.health().getDetails()).containsEntry("iterations", 50);
+        assertThat(meterRegistry.get("data.warmup.duration").gauge().value()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void shouldWarmUpAgainstTheConfiguredStoreMode() throws Exception {
+        for (StoreProperties.Mode mode : StoreProperties.Mode.values()) {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            UserServiceWarmup warmup = new UserServiceWarmup(
+                    new WarmupProperties(true, 20, Duration.ofSeconds(30)), healthStatusManager, meterRegistry,
+                    storeProperties(mode), StreamEncryption.disabled(), ObservationRegistry.NOOP);
+
+            warmup.run(new DefaultApplicationArguments());
+
+            assertThat(warmup.health().getDetails()).as(mode.name()).containsEntry("iterations", 20);
+            assertThat(meterRegistry.find("data.user.string_pool.hits").gauge()).isNull();
+        }
+    }
+
+    private static StoreProperties storeProperties(StoreProperties.Mode mode) {
+        return new StoreProperties(mode,
+            new StoreProperties.OffHeap(DataSize.ofMegabytes(1), 1024, DataSize.ofMegabytes(64), DataSize.ofMegabytes(16)),
+            new StoreProperties.Tiered(DataSize.ofKilobytes(4), Path.of("unused"), DataSize.ofMegabytes(1)),
+            new StoreProperties.Inspection(Duration.ofSeconds(1), 1000),
+            new StoreProperties.Compaction(Duration.ofSeconds(1), Duration.ofMinutes(10), 1000));
+    }
+}